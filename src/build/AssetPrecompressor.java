@@ -0,0 +1,120 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 构建时为静态资源生成预压缩文件（style.css -> style.css.gz / style.css.br），
+ * 运行时由 WebConfig 中的 EncodedResourceResolver 按 Accept-Encoding 直接返回。
+ * 由 pom.xml 在 process-resources 阶段以单文件源码方式执行：java src/build/AssetPrecompressor.java target/classes/static
+ * gzip 使用 JDK 自带实现；JDK 没有 brotli 编码器，构建机上装有 brotli 命令时才生成 .br。
+ * 压缩后没有变小的文件不生成对应的预压缩文件。
+ */
+public class AssetPrecompressor {
+
+    // 只处理文本类资源和未压缩的字体，woff/woff2/png/pdf 本身已经压缩过
+    private static final Set<String> EXTENSIONS = Set.of("css", "js", "svg", "ttf", "eot", "otf");
+    private static final List<String> DIRECTORIES = List.of("css", "js", "fonts");
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("用法: java AssetPrecompressor.java <static 目录>");
+            System.exit(2);
+        }
+        Path root = Paths.get(args[0]);
+        boolean brotli = brotliAvailable();
+        if (!brotli) {
+            System.out.println("[assets] 未找到 brotli 命令，只生成 .gz");
+        }
+
+        int gzipped = 0;
+        int brotlied = 0;
+        for (String directory : DIRECTORIES) {
+            Path dir = root.resolve(directory);
+            if (!Files.isDirectory(dir)) {
+                continue;
+            }
+            for (Path file : assets(dir)) {
+                long size = Files.size(file);
+                if (gzip(file, size)) {
+                    gzipped++;
+                }
+                if (brotli && brotli(file, size)) {
+                    brotlied++;
+                }
+            }
+        }
+        System.out.println("[assets] 生成 " + gzipped + " 个 .gz，" + brotlied + " 个 .br");
+    }
+
+    private static List<Path> assets(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(file -> EXTENSIONS.contains(extension(file)))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static String extension(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase();
+    }
+
+    private static boolean gzip(Path file, long originalSize) throws IOException {
+        Path target = sibling(file, ".gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(target)) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            Files.copy(file, out);
+        }
+        return keepIfSmaller(target, originalSize);
+    }
+
+    private static boolean brotli(Path file, long originalSize) throws IOException, InterruptedException {
+        Path target = sibling(file, ".br");
+        Process process = new ProcessBuilder("brotli", "--best", "--force", "--output=" + target, file.toString())
+                .inheritIO()
+                .start();
+        if (!process.waitFor(2, TimeUnit.MINUTES) || process.exitValue() != 0) {
+            process.destroyForcibly();
+            Files.deleteIfExists(target);
+            System.out.println("[assets] brotli 压缩失败: " + file);
+            return false;
+        }
+        return keepIfSmaller(target, originalSize);
+    }
+
+    private static boolean keepIfSmaller(Path target, long originalSize) throws IOException {
+        if (Files.size(target) >= originalSize) {
+            Files.delete(target);
+            return false;
+        }
+        return true;
+    }
+
+    private static Path sibling(Path file, String suffix) {
+        return file.resolveSibling(file.getFileName() + suffix);
+    }
+
+    private static boolean brotliAvailable() {
+        try {
+            Process process = new ProcessBuilder("brotli", "--version").redirectErrorStream(true).start();
+            process.getInputStream().readAllBytes();
+            return process.waitFor(10, TimeUnit.SECONDS) && process.exitValue() == 0;
+        } catch (IOException | InterruptedException e) {
+            return false;
+        }
+    }
+}
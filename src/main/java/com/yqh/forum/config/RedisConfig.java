@@ -7,17 +7,20 @@ import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator
 import com.fasterxml.jackson.databind.module.SimpleModule; // 确保导入 SimpleModule
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
+import com.yqh.forum.config.cache.CachePolicy;
+import com.yqh.forum.config.cache.CachePolicyRegistry;
+import com.yqh.forum.config.cache.CompactCacheSerializer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
-import java.time.Duration;
-
 @Configuration
 public class RedisConfig {
 
@@ -25,7 +28,45 @@ public class RedisConfig {
     private ObjectMapper objectMapper;
 
     @Bean
-    public RedisCacheConfiguration redisCacheConfiguration() {
+    public CachePolicyRegistry cachePolicyRegistry(Environment environment) {
+        return CachePolicyRegistry.bind(environment);
+    }
+
+    @Bean
+    public GenericJackson2JsonRedisSerializer cacheJsonSerializer() {
+        return jsonSerializer(objectMapper);
+    }
+
+    /**
+     * 默认策略对应的 Redis 缓存配置，单独配置了策略的缓存见 TwoLevelCacheConfig
+     */
+    @Bean
+    public RedisCacheConfiguration redisCacheConfiguration(CachePolicyRegistry cachePolicyRegistry,
+                                                           GenericJackson2JsonRedisSerializer cacheJsonSerializer) {
+        return redisCacheConfiguration(cachePolicyRegistry.getDefaultPolicy(), cacheJsonSerializer);
+    }
+
+    /**
+     * 按缓存策略生成 Redis 缓存配置：过期时间、是否缓存 null、值的序列化方式
+     */
+    public static RedisCacheConfiguration redisCacheConfiguration(CachePolicy policy,
+                                                                  GenericJackson2JsonRedisSerializer jsonSerializer) {
+        // 紧凑格式处理不了的类型、以及切换前写入的 JSON 缓存值，都交给 JSON 序列化器
+        RedisSerializer<Object> valueSerializer = CachePolicy.SERIALIZER_JSON.equalsIgnoreCase(policy.getSerializer())
+                ? jsonSerializer
+                : new CompactCacheSerializer(jsonSerializer);
+
+        RedisCacheConfiguration configuration = RedisCacheConfiguration.defaultCacheConfig()
+                .entryTtl(policy.getTtl())
+                .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(valueSerializer));
+        return policy.getCacheNullValues() ? configuration : configuration.disableCachingNullValues();
+    }
+
+    /**
+     * 带类型信息的 JSON 序列化器（会修改传入的 ObjectMapper）
+     */
+    public static GenericJackson2JsonRedisSerializer jsonSerializer(ObjectMapper objectMapper) {
         objectMapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
 
         objectMapper.activateDefaultTyping(
@@ -41,12 +82,6 @@ public class RedisConfig {
         sortModule.addDeserializer(Sort.class, new SortDeserializer()); // 注册自定义 SortDeserializer
         objectMapper.registerModule(sortModule);
 
-        GenericJackson2JsonRedisSerializer genericJackson2JsonRedisSerializer = new GenericJackson2JsonRedisSerializer(objectMapper);
-
-        return RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(Duration.ofMinutes(30))
-                .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
-                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(genericJackson2JsonRedisSerializer))
-                .disableCachingNullValues();
+        return new GenericJackson2JsonRedisSerializer(objectMapper);
     }
 }
\ No newline at end of file
@@ -52,6 +52,8 @@ public class SecurityConfig {
                         "/user/register",
                         "/user/login"
                 ).permitAll()
+                // 运行指标仅管理员可见
+                .antMatchers("/actuator/**").hasRole("ADMIN")
                 .anyRequest().authenticated()
                 .and()
             .formLogin()
@@ -1,9 +1,22 @@
 package com.yqh.forum.config;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.CssLinkResourceTransformer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+import org.springframework.web.servlet.resource.ResourceUrlEncodingFilter;
+import org.springframework.web.servlet.resource.VersionResourceResolver;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 @Configuration // 标记这是一个配置类
 public class WebConfig implements WebMvcConfigurer {
@@ -16,8 +29,34 @@ public class WebConfig implements WebMvcConfigurer {
     @Value("${app.post-image-upload-dir}")
     private String postImageUploadDir;
 
+    /**
+     * 打包在 classpath:/static 下的 CSS、JS、字体：
+     * 1. 文件名带内容哈希（style.css -> style-{md5}.css），模板中 @{...} 生成的链接和 CSS 中的 url(...) 自动改写，
+     *    内容变化后 URL 随之变化，所以带哈希的地址可以让浏览器缓存一年且不再重新验证（immutable）；
+     *    不带哈希的原始地址（外部链接、旧页面）内容会变，只缓存 10 分钟；
+     * 2. 构建时生成的 .br / .gz 预压缩文件（见 src/build/AssetPrecompressor.java），按 Accept-Encoding 直接返回，
+     *    不在请求时压缩。
+     * 图片不在其中：头像路径 /images/default-avatar.png 保存在数据库里，不能改名。
+     */
+    private static final String[] FINGERPRINTED_ASSETS = {"/css/**", "/js/**", "/fonts/**"};
+
+    // VersionResourceResolver 内容哈希（MD5）的文件名格式：style-{32 位十六进制}.css
+    private static final Pattern VERSIONED_PATH = Pattern.compile("-[0-9a-f]{32}\\.[^/]+$");
+
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
+        for (String pattern : FINGERPRINTED_ASSETS) {
+            registry.addResourceHandler(pattern)
+                    .addResourceLocations("classpath:/static" + pattern.substring(0, pattern.length() - 2))
+                    .setCacheControl(byVersion(
+                            CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic(),
+                            CacheControl.maxAge(10, TimeUnit.MINUTES).cachePublic()))
+                    .resourceChain(true)
+                    .addResolver(new EncodedResourceResolver())
+                    .addResolver(new VersionResourceResolver().addContentVersionStrategy("/**"))
+                    .addTransformer(new CssLinkResourceTransformer());
+        }
+
         // **头像资源处理器，将 Web URL 路径映射到外部文件目录**
         registry.addResourceHandler("/uploads/avatars/**") // Web URL 路径模式
                 .addResourceLocations("file:" + avatarUploadDir + "/"); // 资源实际存放的文件系统目录
@@ -26,4 +65,34 @@ public class WebConfig implements WebMvcConfigurer {
         registry.addResourceHandler("/uploads/post-images/**")
                 .addResourceLocations("file:" + postImageUploadDir + "/");
     }
+
+    // 缓存头只在资源找到后才写入（404 不带缓存头）；按当前请求的路径是否带哈希选择。
+    // Spring 5.3 的 CacheControl 没有 immutable()，在生成的头后面补上
+    private static CacheControl byVersion(CacheControl versioned, CacheControl unversioned) {
+        return new CacheControl() {
+            @Override
+            public String getHeaderValue() {
+                return isVersionedRequest()
+                        ? versioned.getHeaderValue() + ", immutable"
+                        : unversioned.getHeaderValue();
+            }
+        };
+    }
+
+    private static boolean isVersionedRequest() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes)) {
+            return false;
+        }
+        HttpServletRequest request = ((ServletRequestAttributes) attributes).getRequest();
+        return VERSIONED_PATH.matcher(request.getRequestURI()).find();
+    }
+
+    /**
+     * 把模板中 @{/css/...}、@{/js/...} 生成的链接改写为带内容哈希的地址
+     */
+    @Bean
+    public ResourceUrlEncodingFilter resourceUrlEncodingFilter() {
+        return new ResourceUrlEncodingFilter();
+    }
 }
\ No newline at end of file
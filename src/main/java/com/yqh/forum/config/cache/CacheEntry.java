@@ -0,0 +1,34 @@
+package com.yqh.forum.config.cache;
+
+/**
+ * 缓存中实际保存的条目：值 + 写入时间 + 加载耗时，供 CoalescingCache 判断是否提前刷新。
+ * 序列化：紧凑格式中有专门的标记；JSON 格式下按普通对象（带类型信息）写入。
+ */
+public class CacheEntry {
+
+    private Object value;
+    private long loadedAt;   // 写入时间（epoch 毫秒）
+    private long loadMillis; // 加载耗时（毫秒），未知时为 0
+
+    // JSON 反序列化使用
+    CacheEntry() {
+    }
+
+    public CacheEntry(Object value, long loadedAt, long loadMillis) {
+        this.value = value;
+        this.loadedAt = loadedAt;
+        this.loadMillis = loadMillis;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    public long getLoadMillis() {
+        return loadMillis;
+    }
+}
@@ -0,0 +1,56 @@
+package com.yqh.forum.config.cache;
+
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * 单个缓存的策略，对应配置 app.cache.policies.&lt;缓存名&gt;.*（默认值在 app.cache.default.*）。
+ * 未配置的字段为 null，由 CachePolicyRegistry 用默认策略补全。
+ */
+@Data
+public class CachePolicy {
+
+    public static final String SERIALIZER_COMPACT = "compact";
+    public static final String SERIALIZER_JSON = "json";
+
+    // Redis（L2）中的过期时间
+    private Duration ttl;
+    // 进程内 L1 的最大条目数，0 表示不加 L1（只用 Redis）
+    private Long localMaximumSize;
+    // 进程内 L1 的过期时间，应明显短于 ttl，兜底丢失的跨节点清除消息
+    private Duration localTtl;
+    // 是否缓存 null 返回值
+    private Boolean cacheNullValues;
+    // 值的序列化方式：compact 或 json
+    private String serializer;
+
+    public boolean hasLocalTier() {
+        return localMaximumSize != null && localMaximumSize > 0;
+    }
+
+    /**
+     * 用 defaults 补全未配置的字段，返回新的策略
+     */
+    CachePolicy withDefaults(CachePolicy defaults) {
+        CachePolicy resolved = new CachePolicy();
+        resolved.setTtl(ttl != null ? ttl : defaults.getTtl());
+        resolved.setLocalMaximumSize(localMaximumSize != null ? localMaximumSize : defaults.getLocalMaximumSize());
+        resolved.setLocalTtl(localTtl != null ? localTtl : defaults.getLocalTtl());
+        resolved.setCacheNullValues(cacheNullValues != null ? cacheNullValues : defaults.getCacheNullValues());
+        resolved.setSerializer(serializer != null ? serializer : defaults.getSerializer());
+        return resolved;
+    }
+
+    void validate(String name) {
+        if (ttl == null || ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("缓存 " + name + " 的 ttl 必须大于 0: " + ttl);
+        }
+        if (hasLocalTier() && (localTtl == null || localTtl.isNegative() || localTtl.isZero())) {
+            throw new IllegalArgumentException("缓存 " + name + " 启用了 L1，local-ttl 必须大于 0: " + localTtl);
+        }
+        if (!SERIALIZER_COMPACT.equalsIgnoreCase(serializer) && !SERIALIZER_JSON.equalsIgnoreCase(serializer)) {
+            throw new IllegalArgumentException("缓存 " + name + " 的 serializer 只能是 compact 或 json: " + serializer);
+        }
+    }
+}
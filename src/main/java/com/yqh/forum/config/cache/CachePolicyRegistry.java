@@ -0,0 +1,73 @@
+package com.yqh.forum.config.cache;
+
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 所有缓存的策略（TTL、L1 容量、是否缓存 null、序列化方式），配置示例：
+ * <pre>
+ * app.cache.default.ttl=30m
+ * app.cache.policies.categories.ttl=12h
+ * app.cache.policies.post.local-maximum-size=1000
+ * </pre>
+ * 没有单独配置的缓存使用默认策略；单独配置中没写的字段也取默认策略的值。
+ */
+public class CachePolicyRegistry {
+
+    private final CachePolicy defaultPolicy;
+    private final Map<String, CachePolicy> policies = new LinkedHashMap<>();
+
+    public CachePolicyRegistry(CachePolicy defaultPolicy, Map<String, CachePolicy> policies) {
+        this.defaultPolicy = defaultPolicy.withDefaults(builtInDefaults());
+        this.defaultPolicy.validate("default");
+        policies.forEach((name, policy) -> {
+            CachePolicy resolved = policy.withDefaults(this.defaultPolicy);
+            resolved.validate(name);
+            this.policies.put(name, resolved);
+        });
+    }
+
+    /**
+     * 从 app.cache.default.* 和 app.cache.policies.* 读取策略
+     */
+    public static CachePolicyRegistry bind(Environment environment) {
+        Binder binder = Binder.get(environment);
+        CachePolicy defaultPolicy = binder.bind("app.cache.default", CachePolicy.class).orElseGet(CachePolicy::new);
+        Map<String, CachePolicy> policies = binder.bind("app.cache.policies", Bindable.mapOf(String.class, CachePolicy.class))
+                .orElseGet(Collections::emptyMap);
+        return new CachePolicyRegistry(defaultPolicy, policies);
+    }
+
+    // 什么都没配置时的默认值：30 分钟过期，不加 L1，不缓存 null，紧凑序列化
+    private static CachePolicy builtInDefaults() {
+        CachePolicy policy = new CachePolicy();
+        policy.setTtl(Duration.ofMinutes(30));
+        policy.setLocalMaximumSize(0L);
+        policy.setLocalTtl(Duration.ofSeconds(60));
+        policy.setCacheNullValues(false);
+        policy.setSerializer(CachePolicy.SERIALIZER_COMPACT);
+        return policy;
+    }
+
+    public CachePolicy getDefaultPolicy() {
+        return defaultPolicy;
+    }
+
+    public CachePolicy getPolicy(String cacheName) {
+        return policies.getOrDefault(cacheName, defaultPolicy);
+    }
+
+    /**
+     * 单独配置了策略的缓存名
+     */
+    public Set<String> getCacheNames() {
+        return Collections.unmodifiableSet(policies.keySet());
+    }
+}
@@ -0,0 +1,52 @@
+package com.yqh.forum.config.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+
+/**
+ * 缓存访问 Redis 时的熔断与降级配置，对应 app.cache.circuit-breaker.*，未配置的字段使用这里的默认值。
+ */
+@Data
+public class CircuitBreakerProperties {
+
+    // false 时缓存直接访问 Redis，不做超时控制和降级
+    private boolean enabled = true;
+    // 连续失败（含超时）多少次后熔断
+    private int failureThreshold = 5;
+    // 熔断持续时间，之后放行一个探测请求
+    private Duration openDuration = Duration.ofSeconds(10);
+    // 自适应超时的下限和上限，没有耗时样本时使用上限
+    private Duration minTimeout = Duration.ofMillis(50);
+    private Duration maxTimeout = Duration.ofMillis(500);
+    // 同时进行的 Redis 调用上限，超出的调用直接按失败处理
+    private int maxConcurrency = 32;
+    // 降级缓存（每个缓存一个）的最大条目数和过期时间
+    private long fallbackMaximumSize = 1000;
+    private Duration fallbackTtl = Duration.ofSeconds(30);
+
+    public static CircuitBreakerProperties bind(Environment environment) {
+        return Binder.get(environment).bind("app.cache.circuit-breaker", CircuitBreakerProperties.class)
+                .orElseGet(CircuitBreakerProperties::new);
+    }
+
+    void validate() {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("failure-threshold 必须大于 0: " + failureThreshold);
+        }
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("max-concurrency 必须大于 0: " + maxConcurrency);
+        }
+        if (fallbackMaximumSize < 1) {
+            throw new IllegalArgumentException("fallback-maximum-size 必须大于 0: " + fallbackMaximumSize);
+        }
+        if (minTimeout.isNegative() || minTimeout.isZero() || maxTimeout.compareTo(minTimeout) < 0) {
+            throw new IllegalArgumentException("超时时间必须满足 0 < min-timeout <= max-timeout: " + minTimeout + ", " + maxTimeout);
+        }
+        if (openDuration.isNegative() || fallbackTtl.isNegative() || fallbackTtl.isZero()) {
+            throw new IllegalArgumentException("open-duration 不能为负，fallback-ttl 必须大于 0: " + openDuration + ", " + fallbackTtl);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.yqh.forum.config.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * 缓存加载层，包在 TwoLevelCache 或 Redis 缓存外面，防止缓存击穿：
+ * 1. 合并加载（single-flight）：同一个 key 同时未命中时，只有一个线程执行加载，其他线程等待它的结果；
+ * 2. 提前刷新（XFetch）：命中时按"距离过期的时间"和"上次加载耗时"计算一个概率，
+ *    越接近过期、加载越慢，越可能由当前请求提前重新加载，避免大量请求在同一时刻一起过期。
+ * 只有 @Cacheable(sync = true) 的方法会走 get(key, loader)，其余读写直接透传（值包装为 CacheEntry）。
+ * 合并只在本节点内生效，多个节点同时未命中时每个节点各加载一次。
+ * 同时统计对底层缓存的读取命中/未命中次数（加载前的二次检查不算），供只有远程一级的缓存输出命中率。
+ */
+public class CoalescingCache implements Cache {
+
+    // XFetch 的 beta，越大越倾向提前刷新
+    private static final double BETA = 1.0;
+
+    private final Cache delegate;
+    private final long timeToLiveMillis;
+    private final Clock clock;
+    private final DoubleSupplier random;
+
+    private final ConcurrentMap<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder earlyRefreshes = new LongAdder();
+
+    public CoalescingCache(Cache delegate, Duration timeToLive) {
+        this(delegate, timeToLive, Clock.systemUTC(), () -> ThreadLocalRandom.current().nextDouble());
+    }
+
+    CoalescingCache(Cache delegate, Duration timeToLive, Clock clock, DoubleSupplier random) {
+        this.delegate = delegate;
+        this.timeToLiveMillis = timeToLive.toMillis();
+        this.clock = clock;
+        this.random = random;
+    }
+
+    public Cache getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        ValueWrapper wrapper = lookup(key);
+        if (wrapper == null) {
+            return null;
+        }
+        return new SimpleValueWrapper(unwrap(wrapper.get()));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("缓存 " + getName() + " 中 key=" + key + " 的值不是 " + type.getName() + " 类型: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = lookup(key);
+        if (wrapper == null) {
+            return (T) load(key, valueLoader, true);
+        }
+
+        Object stored = wrapper.get();
+        if (stored instanceof CacheEntry && shouldRefreshEarly((CacheEntry) stored) && !inFlight.containsKey(key)) {
+            earlyRefreshes.increment();
+            return (T) load(key, valueLoader, false);
+        }
+        return (T) unwrap(stored);
+    }
+
+    private ValueWrapper lookup(Object key) {
+        ValueWrapper wrapper = delegate.get(key);
+        (wrapper != null ? hits : misses).increment();
+        return wrapper;
+    }
+
+    // XFetch：now - loadMillis * beta * ln(rand) >= 过期时间 时刷新
+    private boolean shouldRefreshEarly(CacheEntry entry) {
+        if (entry.getLoadMillis() <= 0) {
+            return false;
+        }
+        double rand = 1.0 - random.getAsDouble(); // (0, 1]，避免 ln(0)
+        double now = clock.millis() - entry.getLoadMillis() * BETA * Math.log(rand);
+        return now >= entry.getLoadedAt() + timeToLiveMillis;
+    }
+
+    private Object load(Object key, Callable<?> valueLoader, boolean recheck) {
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing, key, valueLoader);
+        }
+
+        try {
+            Object value;
+            ValueWrapper wrapper = recheck ? delegate.get(key) : null;
+            if (wrapper != null) {
+                // 等待加锁期间已经有其他线程加载完成
+                value = unwrap(wrapper.get());
+            } else {
+                loads.increment();
+                long start = clock.millis();
+                value = valueLoader.call();
+                if (value != null) {
+                    delegate.put(key, new CacheEntry(value, clock.millis(), clock.millis() - start));
+                }
+            }
+            flight.complete(value);
+            return value;
+        } catch (Exception e) {
+            flight.completeExceptionally(e);
+            throw new ValueRetrievalException(key, valueLoader, e);
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> flight, Object key, Callable<?> valueLoader) {
+        try {
+            return flight.get();
+        } catch (ExecutionException e) {
+            throw new ValueRetrievalException(key, valueLoader, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+    }
+
+    private static Object unwrap(Object stored) {
+        return stored instanceof CacheEntry ? ((CacheEntry) stored).getValue() : stored;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        // null 原样交给底层缓存，是否允许缓存 null 由底层决定
+        delegate.put(key, value != null ? new CacheEntry(value, clock.millis(), 0) : null);
+    }
+
+    @Override
+    public void evict(Object key) {
+        delegate.evict(key);
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+
+    // ---- 统计 ----
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long loads() {
+        return loads.sum();
+    }
+
+    public long coalesced() {
+        return coalesced.sum();
+    }
+
+    public long earlyRefreshes() {
+        return earlyRefreshes.sum();
+    }
+}
@@ -0,0 +1,424 @@
+package com.yqh.forum.config.cache;
+
+import com.yqh.forum.dto.CategoryDTO;
+import com.yqh.forum.dto.CommentDTO;
+import com.yqh.forum.dto.PostDTO;
+import com.yqh.forum.dto.TocItem;
+import com.yqh.forum.dto.UserDTO;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 缓存值的紧凑二进制序列化。
+ * 缓存中常见的 DTO（帖子、评论、用户、分类、目录项）按固定字段顺序手写编码，不写类名和字段名；
+ * 整数用变长编码，时间用 epoch 秒 + 纳秒。
+ * 分页结果不直接序列化 PageImpl，而是写成"页码、页大小、总数、排序、内容"的信封，读取时再还原为 PageImpl，
+ * 不需要 SortDeserializer 之类的适配。
+ * CoalescingCache 的 CacheEntry 信封写成"写入时间、加载耗时、值"。
+ * 其他类型交给 fallback（原来的 JSON 序列化）处理并嵌在二进制里，所以任何缓存都可以切换到这个序列化器。
+ * 读取时不是本格式开头的数据（切换前写入的 JSON 缓存）同样交给 fallback。
+ * 修改上述 DTO 的字段后需要把 FORMAT_VERSION +1，旧版本的缓存值会被当作未命中。
+ */
+public class CompactCacheSerializer implements RedisSerializer<Object> {
+
+    // JSON 的第一个字节不会是 0xC5，以此区分两种格式
+    static final byte MAGIC = (byte) 0xC5;
+    static final byte FORMAT_VERSION = 2;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte LONG = 2;
+    private static final byte INTEGER = 3;
+    private static final byte BOOLEAN = 4;
+    private static final byte LIST = 5;
+    private static final byte PAGE = 6;
+    private static final byte POST = 7;
+    private static final byte COMMENT = 8;
+    private static final byte USER = 9;
+    private static final byte CATEGORY = 10;
+    private static final byte TOC_ITEM = 11;
+    private static final byte ENTRY = 12;
+    private static final byte FALLBACK = 15;
+
+    private final RedisSerializer<Object> fallback;
+
+    public CompactCacheSerializer(RedisSerializer<Object> fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(MAGIC);
+            out.writeByte(FORMAT_VERSION);
+            writeValue(out, value);
+        } catch (IOException e) {
+            throw new SerializationException("缓存值序列化失败: " + value.getClass().getName(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != MAGIC) {
+            return fallback.deserialize(bytes);
+        }
+        if (bytes.length < 2 || bytes[1] != FORMAT_VERSION) {
+            // 旧版本格式：当作未命中，重新加载后会被覆盖
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 2, bytes.length - 2))) {
+            return readValue(in);
+        } catch (IOException | RuntimeException e) {
+            throw new SerializationException("缓存值反序列化失败", e);
+        }
+    }
+
+    // ---- 写 ----
+
+    private void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            writeVarLong(out, zigZag((Long) value));
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            writeVarLong(out, zigZag((Integer) value));
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof PostDTO) {
+            out.writeByte(POST);
+            writePost(out, (PostDTO) value);
+        } else if (value instanceof CommentDTO) {
+            out.writeByte(COMMENT);
+            writeComment(out, (CommentDTO) value);
+        } else if (value instanceof UserDTO) {
+            out.writeByte(USER);
+            writeUser(out, (UserDTO) value);
+        } else if (value instanceof CategoryDTO) {
+            out.writeByte(CATEGORY);
+            writeCategory(out, (CategoryDTO) value);
+        } else if (value instanceof TocItem) {
+            out.writeByte(TOC_ITEM);
+            writeTocItem(out, (TocItem) value);
+        } else if (value instanceof CacheEntry) {
+            CacheEntry entry = (CacheEntry) value;
+            out.writeByte(ENTRY);
+            writeVarLong(out, entry.getLoadedAt());
+            writeVarLong(out, entry.getLoadMillis());
+            writeValue(out, entry.getValue());
+        } else if (value instanceof Page) {
+            out.writeByte(PAGE);
+            writePage(out, (Page<?>) value);
+        } else if (value instanceof List) {
+            out.writeByte(LIST);
+            writeList(out, (List<?>) value);
+        } else {
+            byte[] json = fallback.serialize(value);
+            out.writeByte(FALLBACK);
+            writeVarLong(out, json.length);
+            out.write(json);
+        }
+    }
+
+    private void writePage(DataOutputStream out, Page<?> page) throws IOException {
+        out.writeBoolean(page.getPageable().isPaged());
+        writeVarLong(out, page.getNumber());
+        writeVarLong(out, page.getSize());
+        writeVarLong(out, page.getTotalElements());
+        List<Sort.Order> orders = page.getSort().toList();
+        writeVarLong(out, orders.size());
+        for (Sort.Order order : orders) {
+            writeString(out, order.getProperty());
+            out.writeBoolean(order.isAscending());
+        }
+        writeList(out, page.getContent());
+    }
+
+    private void writeList(DataOutputStream out, List<?> list) throws IOException {
+        writeVarLong(out, list.size());
+        for (Object element : list) {
+            writeValue(out, element);
+        }
+    }
+
+    private void writePost(DataOutputStream out, PostDTO post) throws IOException {
+        writeNullableLong(out, post.getId());
+        writeString(out, post.getTitle());
+        writeString(out, post.getContent());
+        writeString(out, post.getSummaryContent());
+        writeString(out, post.getHtmlContent());
+        writeValue(out, post.getToc());
+        writeValue(out, post.getAuthor());
+        writeValue(out, post.getCategory());
+        writeNullableLong(out, post.getViewCount() != null ? post.getViewCount().longValue() : null);
+        writeNullableLong(out, post.getUniqueViewCount() != null ? post.getUniqueViewCount().longValue() : null);
+        writeDateTime(out, post.getCreatedAt());
+        writeDateTime(out, post.getUpdatedAt());
+    }
+
+    private void writeComment(DataOutputStream out, CommentDTO comment) throws IOException {
+        writeNullableLong(out, comment.getId());
+        writeString(out, comment.getContent());
+        writeValue(out, comment.getAuthor());
+        writeNullableLong(out, comment.getPostId());
+        writeDateTime(out, comment.getCreatedAt());
+        writeDateTime(out, comment.getUpdatedAt());
+    }
+
+    private void writeUser(DataOutputStream out, UserDTO user) throws IOException {
+        writeNullableLong(out, user.getId());
+        writeString(out, user.getUsername());
+        writeString(out, user.getEmail());
+        writeString(out, user.getAvatar());
+        writeDateTime(out, user.getCreatedAt());
+        writeDateTime(out, user.getUpdatedAt());
+    }
+
+    private void writeCategory(DataOutputStream out, CategoryDTO category) throws IOException {
+        writeNullableLong(out, category.getId());
+        writeString(out, category.getName());
+        writeString(out, category.getDescription());
+        writeDateTime(out, category.getCreatedAt());
+        writeDateTime(out, category.getUpdatedAt());
+    }
+
+    private void writeTocItem(DataOutputStream out, TocItem item) throws IOException {
+        writeVarLong(out, item.getLevel());
+        writeString(out, item.getId());
+        writeString(out, item.getText());
+    }
+
+    // 字符串：长度 + 1（0 表示 null）+ UTF-8 字节；不用 writeUTF，正文可能超过 64KB
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, utf8.length + 1L);
+        out.write(utf8);
+    }
+
+    private static void writeNullableLong(DataOutputStream out, Long value) throws IOException {
+        if (value == null) {
+            out.writeBoolean(false);
+        } else {
+            out.writeBoolean(true);
+            writeVarLong(out, zigZag(value));
+        }
+    }
+
+    private static void writeDateTime(DataOutputStream out, LocalDateTime value) throws IOException {
+        if (value == null) {
+            out.writeBoolean(false);
+            return;
+        }
+        out.writeBoolean(true);
+        writeVarLong(out, zigZag(value.toEpochSecond(ZoneOffset.UTC)));
+        writeVarLong(out, value.getNano());
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    // ---- 读 ----
+
+    private Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case LONG:
+                return unZigZag(readVarLong(in));
+            case INTEGER:
+                return (int) unZigZag(readVarLong(in));
+            case BOOLEAN:
+                return in.readBoolean();
+            case POST:
+                return readPost(in);
+            case COMMENT:
+                return readComment(in);
+            case USER:
+                return readUser(in);
+            case CATEGORY:
+                return readCategory(in);
+            case TOC_ITEM:
+                return new TocItem((int) readVarLong(in), readString(in), readString(in));
+            case ENTRY:
+                long loadedAt = readVarLong(in);
+                long loadMillis = readVarLong(in);
+                return new CacheEntry(readValue(in), loadedAt, loadMillis);
+            case PAGE:
+                return readPage(in);
+            case LIST:
+                return readList(in);
+            case FALLBACK:
+                byte[] json = new byte[(int) readVarLong(in)];
+                in.readFully(json);
+                return fallback.deserialize(json);
+            default:
+                throw new IOException("未知的类型标记: " + tag);
+        }
+    }
+
+    private Page<Object> readPage(DataInputStream in) throws IOException {
+        boolean paged = in.readBoolean();
+        int number = (int) readVarLong(in);
+        int size = (int) readVarLong(in);
+        long total = readVarLong(in);
+        int orderCount = (int) readVarLong(in);
+        List<Sort.Order> orders = new ArrayList<>(orderCount);
+        for (int i = 0; i < orderCount; i++) {
+            String property = readString(in);
+            orders.add(in.readBoolean() ? Sort.Order.asc(property) : Sort.Order.desc(property));
+        }
+        List<Object> content = readList(in);
+        if (!paged) {
+            return new PageImpl<>(content);
+        }
+        return new PageImpl<>(content, PageRequest.of(number, size, Sort.by(orders)), total);
+    }
+
+    private List<Object> readList(DataInputStream in) throws IOException {
+        int size = (int) readVarLong(in);
+        List<Object> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(readValue(in));
+        }
+        return list;
+    }
+
+    @SuppressWarnings("unchecked")
+    private PostDTO readPost(DataInputStream in) throws IOException {
+        PostDTO post = new PostDTO();
+        post.setId(readNullableLong(in));
+        post.setTitle(readString(in));
+        post.setContent(readString(in));
+        post.setSummaryContent(readString(in));
+        post.setHtmlContent(readString(in));
+        post.setToc((List<TocItem>) readValue(in));
+        post.setAuthor((UserDTO) readValue(in));
+        post.setCategory((CategoryDTO) readValue(in));
+        Long viewCount = readNullableLong(in);
+        post.setViewCount(viewCount != null ? viewCount.intValue() : null);
+        Long uniqueViewCount = readNullableLong(in);
+        post.setUniqueViewCount(uniqueViewCount != null ? uniqueViewCount.intValue() : null);
+        post.setCreatedAt(readDateTime(in));
+        post.setUpdatedAt(readDateTime(in));
+        return post;
+    }
+
+    private CommentDTO readComment(DataInputStream in) throws IOException {
+        CommentDTO comment = new CommentDTO();
+        comment.setId(readNullableLong(in));
+        comment.setContent(readString(in));
+        comment.setAuthor((UserDTO) readValue(in));
+        comment.setPostId(readNullableLong(in));
+        comment.setCreatedAt(readDateTime(in));
+        comment.setUpdatedAt(readDateTime(in));
+        return comment;
+    }
+
+    private UserDTO readUser(DataInputStream in) throws IOException {
+        UserDTO user = new UserDTO();
+        user.setId(readNullableLong(in));
+        user.setUsername(readString(in));
+        user.setEmail(readString(in));
+        user.setAvatar(readString(in));
+        user.setCreatedAt(readDateTime(in));
+        user.setUpdatedAt(readDateTime(in));
+        return user;
+    }
+
+    private CategoryDTO readCategory(DataInputStream in) throws IOException {
+        CategoryDTO category = new CategoryDTO();
+        category.setId(readNullableLong(in));
+        category.setName(readString(in));
+        category.setDescription(readString(in));
+        category.setCreatedAt(readDateTime(in));
+        category.setUpdatedAt(readDateTime(in));
+        return category;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        long length = readVarLong(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] utf8 = new byte[(int) (length - 1)];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static Long readNullableLong(DataInputStream in) throws IOException {
+        return in.readBoolean() ? unZigZag(readVarLong(in)) : null;
+    }
+
+    private static LocalDateTime readDateTime(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        long epochSecond = unZigZag(readVarLong(in));
+        int nano = (int) readVarLong(in);
+        return LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+            if (shift > 63) {
+                throw new IOException("变长整数过长");
+            }
+        }
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
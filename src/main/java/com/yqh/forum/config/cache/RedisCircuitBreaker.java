@@ -0,0 +1,334 @@
+package com.yqh.forum.config.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+
+import java.time.Clock;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓存访问 Redis 的熔断器，所有缓存共用一个（它们访问的是同一个 Redis）。
+ * 1. 超时：每次调用在单独的线程上执行，调用方最多等待"当前超时时间"。超时时间按成功调用的耗时自适应
+ *    （RFC 6298 的 RTO 算法：平滑耗时 + 4 倍耗时偏差），限制在 min-timeout 和 max-timeout 之间，
+ *    不受 Redis 客户端自身命令超时（通常是秒级）的影响；
+ * 2. 熔断：连续 failure-threshold 次失败或超时后打开，打开期间调用直接失败，不再访问 Redis；
+ * 3. 半开：打开 open-duration 之后放行一个探测请求，成功则关闭并通知 onClose 注册的回调，失败则重新打开。
+ *    回调在单独的恢复线程上依次执行，探测请求（通常是页面请求）不等待回调完成。
+ * 只有 Redis 连接/命令类异常（DataAccessException）和超时算失败；
+ * 序列化等其他异常说明 Redis 正常响应了，原样抛给调用方，不计入失败。
+ * 线程已满说明本机并发高，不说明 Redis 有问题：这次调用直接降级，不计入失败，也不会因此打开熔断。
+ * 除缓存外，请求路径上直接访问 Redis 的组件（评论分代号、用户版本号、访客和活跃统计等）也经过这里，
+ * Redis 宕机时它们和缓存一起快速降级，而不是每次等满 Redis 客户端的命令超时。
+ * enabled=false 时不做超时和熔断，在调用线程上直接执行，Redis 异常同样转换成 UnavailableException。
+ */
+public class RedisCircuitBreaker implements MeterBinder, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisCircuitBreaker.class);
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final CircuitBreakerProperties properties;
+    private final Clock clock;
+    private final ThreadPoolExecutor executor;
+    private final ExecutorService recoveryExecutor;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openedAt;
+    private final List<Runnable> closeListeners = new CopyOnWriteArrayList<>();
+
+    // 自适应超时，单位纳秒；smoothed < 0 表示还没有耗时样本
+    private final long minTimeoutNanos;
+    private final long maxTimeoutNanos;
+    private double smoothedNanos = -1;
+    private double deviationNanos;
+    private volatile long timeoutNanos;
+
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder shortCircuited = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder opens = new LongAdder();
+    private final LongAdder fallbackHits = new LongAdder();
+    private final LongAdder fallbackMisses = new LongAdder();
+
+    public RedisCircuitBreaker(CircuitBreakerProperties properties) {
+        this(properties, Clock.systemUTC());
+    }
+
+    RedisCircuitBreaker(CircuitBreakerProperties properties, Clock clock) {
+        properties.validate();
+        this.properties = properties;
+        this.clock = clock;
+        this.minTimeoutNanos = properties.getMinTimeout().toNanos();
+        this.maxTimeoutNanos = properties.getMaxTimeout().toNanos();
+        this.timeoutNanos = maxTimeoutNanos;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(properties.getMaxConcurrency(), properties.getMaxConcurrency(),
+                60, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "redis-cache-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.recoveryExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "redis-cache-recovery");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public CircuitBreakerProperties getProperties() {
+        return properties;
+    }
+
+    /**
+     * 在超时和熔断保护下执行一次 Redis 操作。
+     * 熔断打开、超时、线程已满或 Redis 异常时抛出 UnavailableException，调用方应改用降级方案。
+     */
+    public <T> T execute(Callable<T> operation) {
+        if (!properties.isEnabled()) {
+            return executeDirectly(operation);
+        }
+        if (!tryAcquire()) {
+            shortCircuited.increment();
+            throw new UnavailableException("Redis 熔断中", null);
+        }
+
+        long timeout = timeoutNanos;
+        long start = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(operation);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            // 这次是半开探测时，探测没有发出去，恢复成打开状态让后续请求重新探测
+            state.compareAndSet(State.HALF_OPEN, State.OPEN);
+            throw new UnavailableException("Redis 调用线程已满", e);
+        }
+
+        try {
+            T result = future.get(timeout, TimeUnit.NANOSECONDS);
+            onSuccess(System.nanoTime() - start);
+            return result;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timeouts.increment();
+            onFailure();
+            throw new UnavailableException("Redis 调用超时（" + TimeUnit.NANOSECONDS.toMillis(timeout) + "ms）", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof DataAccessException) {
+                failures.increment();
+                onFailure();
+                throw new UnavailableException("Redis 调用失败: " + cause.getMessage(), cause);
+            }
+            onSuccess(System.nanoTime() - start);
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new UnavailableException("等待 Redis 响应时被中断", e);
+        }
+    }
+
+    private static <T> T executeDirectly(Callable<T> operation) {
+        try {
+            return operation.call();
+        } catch (DataAccessException e) {
+            throw new UnavailableException("Redis 调用失败: " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private boolean tryAcquire() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        // 打开时间已满：只有把状态改成 HALF_OPEN 的那个线程去探测，其他线程继续走降级
+        return current == State.OPEN
+                && clock.millis() - openedAt >= properties.getOpenDuration().toMillis()
+                && state.compareAndSet(State.OPEN, State.HALF_OPEN);
+    }
+
+    private void onSuccess(long elapsedNanos) {
+        successes.increment();
+        consecutiveFailures.set(0);
+        updateTimeout(elapsedNanos);
+        if (state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+            logger.info("Redis 探测成功，关闭熔断");
+            try {
+                recoveryExecutor.execute(this::runCloseListeners);
+            } catch (RejectedExecutionException e) {
+                logger.debug("熔断器已关闭，跳过恢复回调");
+            }
+        }
+    }
+
+    private void runCloseListeners() {
+        for (Runnable listener : closeListeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                logger.warn("熔断恢复回调执行失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void onFailure() {
+        if (state.get() == State.HALF_OPEN) {
+            openedAt = clock.millis();
+            if (state.compareAndSet(State.HALF_OPEN, State.OPEN)) {
+                opens.increment();
+                logger.warn("Redis 探测失败，继续熔断 {}", properties.getOpenDuration());
+            }
+            return;
+        }
+        if (consecutiveFailures.incrementAndGet() >= properties.getFailureThreshold()) {
+            openedAt = clock.millis();
+            if (state.compareAndSet(State.CLOSED, State.OPEN)) {
+                opens.increment();
+                logger.warn("Redis 连续 {} 次调用失败，熔断 {}，缓存改用本机降级", consecutiveFailures.get(), properties.getOpenDuration());
+            }
+        }
+    }
+
+    // RFC 6298：smoothed = 7/8 smoothed + 1/8 sample，deviation = 3/4 deviation + 1/4 |smoothed - sample|
+    private synchronized void updateTimeout(long sampleNanos) {
+        if (smoothedNanos < 0) {
+            smoothedNanos = sampleNanos;
+            deviationNanos = sampleNanos / 2.0;
+        } else {
+            deviationNanos = 0.75 * deviationNanos + 0.25 * Math.abs(smoothedNanos - sampleNanos);
+            smoothedNanos = 0.875 * smoothedNanos + 0.125 * sampleNanos;
+        }
+        long timeout = (long) (smoothedNanos + 4 * deviationNanos);
+        timeoutNanos = Math.max(minTimeoutNanos, Math.min(maxTimeoutNanos, timeout));
+    }
+
+    /**
+     * 熔断关闭（Redis 恢复）时执行的回调，在恢复线程上异步执行；多次恢复的回调按顺序执行，不会并发
+     */
+    public void onClose(Runnable listener) {
+        closeListeners.add(listener);
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public long currentTimeoutMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(timeoutNanos);
+    }
+
+    // 降级缓存的读取结果由 ResilientCache 上报，在这里汇总成指标
+    void recordFallbackRead(boolean hit) {
+        (hit ? fallbackHits : fallbackMisses).increment();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        recoveryExecutor.shutdownNow();
+    }
+
+    // ---- 统计 ----
+
+    public long opens() {
+        return opens.sum();
+    }
+
+    public long shortCircuited() {
+        return shortCircuited.sum();
+    }
+
+    public long timeouts() {
+        return timeouts.sum();
+    }
+
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("forum.cache.circuit.state", state, s -> s.get().ordinal())
+                .description("Redis 熔断状态：0 关闭，1 打开，2 半开")
+                .register(registry);
+        Gauge.builder("forum.cache.circuit.timeout", this, RedisCircuitBreaker::currentTimeoutMillis)
+                .baseUnit("milliseconds")
+                .description("Redis 调用当前的自适应超时时间")
+                .register(registry);
+        FunctionCounter.builder("forum.cache.circuit.opens", opens, LongAdder::sum)
+                .description("熔断打开次数")
+                .register(registry);
+        FunctionCounter.builder("forum.cache.circuit.calls", successes, LongAdder::sum)
+                .tags("result", "success")
+                .description("经过熔断器的 Redis 调用次数")
+                .register(registry);
+        FunctionCounter.builder("forum.cache.circuit.calls", failures, LongAdder::sum)
+                .tags("result", "failure")
+                .description("经过熔断器的 Redis 调用次数")
+                .register(registry);
+        FunctionCounter.builder("forum.cache.circuit.calls", timeouts, LongAdder::sum)
+                .tags("result", "timeout")
+                .description("经过熔断器的 Redis 调用次数")
+                .register(registry);
+        FunctionCounter.builder("forum.cache.circuit.calls", shortCircuited, LongAdder::sum)
+                .tags("result", "short_circuited")
+                .description("经过熔断器的 Redis 调用次数")
+                .register(registry);
+        FunctionCounter.builder("forum.cache.circuit.calls", rejected, LongAdder::sum)
+                .tags("result", "rejected")
+                .description("经过熔断器的 Redis 调用次数")
+                .register(registry);
+        FunctionCounter.builder("forum.cache.fallback.reads", fallbackHits, LongAdder::sum)
+                .tags("result", "hit")
+                .description("Redis 不可用时降级缓存的读取次数")
+                .register(registry);
+        FunctionCounter.builder("forum.cache.fallback.reads", fallbackMisses, LongAdder::sum)
+                .tags("result", "miss")
+                .description("Redis 不可用时降级缓存的读取次数")
+                .register(registry);
+    }
+
+    /**
+     * Redis 暂时不可用（熔断、超时、线程已满或连接异常）
+     */
+    public static class UnavailableException extends RuntimeException {
+
+        UnavailableException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
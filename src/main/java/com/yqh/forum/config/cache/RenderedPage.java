@@ -0,0 +1,33 @@
+package com.yqh.forum.config.cache;
+
+/**
+ * 整页缓存中的一个页面：渲染好的 HTML 和它的校验信息（ETag、Last-Modified），没有时分别为 null 和 -1。
+ */
+public class RenderedPage {
+
+    private String etag;
+    private long lastModified;
+    private String html;
+
+    // JSON 反序列化使用
+    RenderedPage() {
+    }
+
+    public RenderedPage(String etag, long lastModified, String html) {
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.html = html;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public String getHtml() {
+        return html;
+    }
+}
@@ -0,0 +1,207 @@
+package com.yqh.forum.config.cache;
+
+import com.yqh.forum.service.CategoryChangedEvent;
+import com.yqh.forum.service.CommentChangedEvent;
+import com.yqh.forum.service.PostService;
+import com.yqh.forum.service.impl.UniqueViewTracker;
+import com.yqh.forum.service.search.PostChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.AuthenticationTrustResolver;
+import org.springframework.security.authentication.AuthenticationTrustResolverImpl;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.support.SessionFlashMapManager;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 匿名访客的整页缓存：帖子列表（/post）和帖子详情（/post/{id}）渲染好的 HTML 按 URL 缓存，
+ * 命中时不再进入控制器、不查库、不渲染模板。
+ * 详情页放在 renderedPostPages（key 为帖子 ID），列表页放在 renderedPostLists（key 为路径 + 查询串），
+ * 都由 TwoLevelCacheManager 提供，清除会广播到其他节点；过期时间见 app.cache.policies。
+ * 只有控制器设置了 CACHEABLE 请求属性的 200 响应才会写入（404 页、304 响应不缓存）；
+ * 会话中有待显示的提示消息（flash attribute）时不走缓存。
+ * 帖子增删改清除该帖子的详情页和所有列表页，评论增删改清除所属帖子的详情页，
+ * 分类增删改清除所有列表页（列表页上有分类导航和每个帖子的分类名，详情页不显示分类）。
+ * 命中详情页时照常记录浏览数和独立访客，页面上显示的浏览数会滞后，直到缓存被清除或过期。
+ * 缓存的 HTML 引用带内容哈希的静态资源地址，新版本发布后旧哈希返回 404，所以应用启动时清空这两个缓存。
+ * app.page-cache.enabled=true 时启用。
+ */
+@Component
+@ConditionalOnProperty(name = "app.page-cache.enabled", havingValue = "true")
+public class RenderedPageCacheFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RenderedPageCacheFilter.class);
+
+    public static final String CACHEABLE = RenderedPageCacheFilter.class.getName() + ".CACHEABLE";
+
+    static final String POST_PAGES = "renderedPostPages";
+    static final String POST_LISTS = "renderedPostLists";
+
+    private static final String LIST_PATH = "/post";
+    private static final Pattern POST_PATH = Pattern.compile("^/post/(\\d+)$");
+    private static final String CONTENT_TYPE = "text/html;charset=UTF-8";
+    // SessionFlashMapManager 保存待显示提示消息的会话属性
+    private static final String FLASH_MAPS = SessionFlashMapManager.class.getName() + ".FLASH_MAPS";
+    private static final AuthenticationTrustResolver TRUST_RESOLVER = new AuthenticationTrustResolverImpl();
+
+    private final Cache postPages;
+    private final Cache postLists;
+    private final PostService postService;
+    private final UniqueViewTracker uniqueViewTracker;
+
+    // 本节点的清除次数：渲染期间发生过清除的页面不写入缓存，避免把旧内容写回去
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public RenderedPageCacheFilter(CacheManager cacheManager, PostService postService,
+                                   UniqueViewTracker uniqueViewTracker) {
+        this.postPages = cacheManager.getCache(POST_PAGES);
+        this.postLists = cacheManager.getCache(POST_LISTS);
+        this.postService = postService;
+        this.uniqueViewTracker = uniqueViewTracker;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!"GET".equals(request.getMethod())) {
+            return true;
+        }
+        String path = request.getServletPath();
+        if (!LIST_PATH.equals(path) && !POST_PATH.matcher(path).matches()) {
+            return true;
+        }
+        return !isAnonymous() || hasFlashMessages(request);
+    }
+
+    private static boolean isAnonymous() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication == null || TRUST_RESOLVER.isAnonymous(authentication);
+    }
+
+    private static boolean hasFlashMessages(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if (session == null) {
+            return false;
+        }
+        Object flashMaps = session.getAttribute(FLASH_MAPS);
+        return flashMaps instanceof Collection && !((Collection<?>) flashMaps).isEmpty();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Matcher matcher = POST_PATH.matcher(request.getServletPath());
+        Long postId = matcher.matches() ? Long.valueOf(matcher.group(1)) : null;
+        Cache cache = postId != null ? postPages : postLists;
+        Object key = postId != null ? postId : listKey(request);
+
+        RenderedPage page = cache.get(key, RenderedPage.class);
+        if (page != null) {
+            if (postId != null) {
+                postService.incrementViewCount(postId);
+                uniqueViewTracker.record(postId, UniqueViewTracker.visitorId(null, request, response));
+            }
+            write(page, request, response);
+            return;
+        }
+
+        long invalidationsBefore = invalidations.get();
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        try {
+            chain.doFilter(request, wrapper);
+            if (Boolean.TRUE.equals(request.getAttribute(CACHEABLE))
+                    && wrapper.getStatus() == HttpServletResponse.SC_OK
+                    && invalidations.get() == invalidationsBefore) {
+                cache.put(key, new RenderedPage(wrapper.getHeader(HttpHeaders.ETAG), lastModified(wrapper),
+                        new String(wrapper.getContentAsByteArray(), StandardCharsets.UTF_8)));
+            }
+        } finally {
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    private static String listKey(HttpServletRequest request) {
+        String query = request.getQueryString();
+        return query != null ? LIST_PATH + "?" + query : LIST_PATH;
+    }
+
+    private static long lastModified(HttpServletResponse response) {
+        String value = response.getHeader(HttpHeaders.LAST_MODIFIED);
+        if (value == null) {
+            return -1;
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.LAST_MODIFIED, value);
+        return headers.getLastModified();
+    }
+
+    private static void write(RenderedPage page, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // 缓存的页面带有校验信息时，浏览器的缓存仍然有效就直接返回 304
+        if (page.getEtag() != null
+                && new ServletWebRequest(request, response).checkNotModified(page.getEtag(), page.getLastModified())) {
+            return;
+        }
+        byte[] body = page.getHtml().getBytes(StandardCharsets.UTF_8);
+        response.setContentType(CONTENT_TYPE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    /**
+     * 启动时清空：Redis 中保存的页面可能是上一个版本渲染的，引用的静态资源哈希已经不存在
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void clearOnStartup() {
+        invalidations.incrementAndGet();
+        try {
+            postPages.clear();
+            postLists.clear();
+        } catch (RuntimeException e) {
+            logger.warn("启动时清空整页缓存失败: {}", e.getMessage());
+        }
+    }
+
+    // ---- 清除：事务提交后执行，回滚的修改不清缓存 ----
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostChanged(PostChangedEvent event) {
+        invalidations.incrementAndGet();
+        postPages.evict(event.getPostId());
+        postLists.clear();
+    }
+
+    // 事件在 CategorySnapshot.changed() 之后发布，提交后先重建快照再清除，之后渲染的列表页用的是新分类
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        invalidations.incrementAndGet();
+        postLists.clear();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCommentChanged(CommentChangedEvent event) {
+        invalidations.incrementAndGet();
+        postPages.evict(event.getPostId());
+    }
+}
@@ -0,0 +1,199 @@
+package com.yqh.forum.config.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 远程缓存（Redis）的容错包装，所有调用经过 RedisCircuitBreaker（自适应超时 + 熔断）。
+ * Redis 调用失败、超时或处于熔断期间时：
+ * 读写改走本机的降级缓存（Caffeine，容量小、过期短），读不到就当作未命中，由调用方照常加载；
+ * 清除和写入失败的 key 记下来，熔断关闭后补发到 Redis，避免 Redis 中留下停机期间已经失效的旧值。
+ * 熔断关闭时清空降级缓存，重新以 Redis 为准；这些工作在熔断器的恢复线程上执行，补发的清除按批发出。
+ * 补发的清除只保存在本节点内存中，节点在 Redis 恢复前重启会丢失，这部分旧值靠 Redis 中的过期时间兜底。
+ */
+public class ResilientCache implements Cache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResilientCache.class);
+
+    // 待补发的清除超过这个数量时改为恢复后整个清空
+    private static final int MAX_PENDING_EVICTIONS = 10_000;
+    // 补发清除时每批的 key 数，一批一次 Redis 往返
+    static final int EVICTION_BATCH_SIZE = 200;
+
+    private final Cache remote;
+    private final RedisCircuitBreaker breaker;
+    private final com.github.benmanes.caffeine.cache.Cache<Object, Object> fallback;
+    private final Consumer<List<Object>> batchEvictor;
+
+    private final Set<Object> pendingEvictions = ConcurrentHashMap.newKeySet();
+    private volatile boolean pendingClear;
+
+    /**
+     * @param batchEvictor 一次清除远程缓存中的一批 key；为 null 时逐个调用 remote.evict
+     */
+    ResilientCache(Cache remote, RedisCircuitBreaker breaker,
+                   com.github.benmanes.caffeine.cache.Cache<Object, Object> fallback,
+                   Consumer<List<Object>> batchEvictor) {
+        this.remote = remote;
+        this.breaker = breaker;
+        this.fallback = fallback;
+        this.batchEvictor = batchEvictor != null ? batchEvictor : keys -> keys.forEach(remote::evict);
+        breaker.onClose(this::recover);
+    }
+
+    @Override
+    public String getName() {
+        return remote.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return remote.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        try {
+            return breaker.execute(() -> remote.get(key));
+        } catch (RedisCircuitBreaker.UnavailableException e) {
+            Object value = fallback.getIfPresent(key);
+            breaker.recordFallbackRead(value != null);
+            return value != null ? new SimpleValueWrapper(value) : null;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("缓存 " + getName() + " 中 key=" + key + " 的值不是 " + type.getName() + " 类型: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        T value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        put(key, value);
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        try {
+            breaker.execute(() -> {
+                remote.put(key, value);
+                return null;
+            });
+            fallback.invalidate(key);
+        } catch (RedisCircuitBreaker.UnavailableException e) {
+            if (value != null) {
+                fallback.put(key, value);
+            }
+            // Redis 中可能还是旧值，恢复后清掉，下次读取重新加载
+            addPendingEviction(key);
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        fallback.invalidate(key);
+        try {
+            breaker.execute(() -> {
+                remote.evict(key);
+                return null;
+            });
+        } catch (RedisCircuitBreaker.UnavailableException e) {
+            addPendingEviction(key);
+        }
+    }
+
+    @Override
+    public void clear() {
+        fallback.invalidateAll();
+        try {
+            breaker.execute(() -> {
+                remote.clear();
+                return null;
+            });
+        } catch (RedisCircuitBreaker.UnavailableException e) {
+            pendingClear = true;
+            pendingEvictions.clear();
+        }
+    }
+
+    private void addPendingEviction(Object key) {
+        if (pendingClear) {
+            return;
+        }
+        pendingEvictions.add(key);
+        if (pendingEvictions.size() > MAX_PENDING_EVICTIONS) {
+            pendingClear = true;
+            pendingEvictions.clear();
+        }
+    }
+
+    /**
+     * 熔断关闭后在恢复线程上执行：清空降级缓存，把停机期间没能执行的清除按批补发到 Redis。
+     * 补发途中 Redis 再次失败时停止，剩下的等下一次恢复再补发。
+     */
+    void recover() {
+        fallback.invalidateAll();
+        try {
+            if (pendingClear) {
+                breaker.execute(() -> {
+                    remote.clear();
+                    return null;
+                });
+                pendingClear = false;
+            }
+            int replayed = 0;
+            List<Object> keys = new ArrayList<>(pendingEvictions);
+            for (int from = 0; from < keys.size(); from += EVICTION_BATCH_SIZE) {
+                List<Object> batch = keys.subList(from, Math.min(from + EVICTION_BATCH_SIZE, keys.size()));
+                breaker.execute(() -> {
+                    batchEvictor.accept(batch);
+                    return null;
+                });
+                batch.forEach(pendingEvictions::remove);
+                replayed += batch.size();
+            }
+            if (replayed > 0) {
+                logger.info("缓存 {} 补发了 {} 个停机期间的清除", getName(), replayed);
+            }
+        } catch (RedisCircuitBreaker.UnavailableException e) {
+            logger.warn("缓存 {} 补发清除失败，等待下次恢复: {}", getName(), e.getMessage());
+        }
+    }
+
+    // ---- 统计 ----
+
+    public long fallbackSize() {
+        return fallback.estimatedSize();
+    }
+
+    public int pendingEvictions() {
+        return pendingEvictions.size();
+    }
+}
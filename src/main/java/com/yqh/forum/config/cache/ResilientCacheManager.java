@@ -0,0 +1,84 @@
+package com.yqh.forum.config.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * 把远程缓存管理器（RedisCacheManager）返回的每个缓存包成 ResilientCache，
+ * 所有缓存共用同一个 RedisCircuitBreaker，各自有一个降级缓存。
+ * 给了 StringRedisTemplate 时，Redis 恢复后补发的清除按 RedisCache 的 key 规则（前缀 + 字符串化的 key）
+ * 算出 Redis key，一批用一条 DEL 删除；否则逐个调用 evict。
+ * 放在 TwoLevelCacheManager 和 RedisCacheManager 之间，L1 和合并加载不受影响。
+ */
+public class ResilientCacheManager implements CacheManager {
+
+    private final CacheManager delegate;
+    private final RedisCircuitBreaker breaker;
+    private final StringRedisTemplate redisTemplate;
+    private final ConcurrentMap<String, ResilientCache> caches = new ConcurrentHashMap<>();
+
+    public ResilientCacheManager(CacheManager delegate, RedisCircuitBreaker breaker) {
+        this(delegate, breaker, null);
+    }
+
+    public ResilientCacheManager(CacheManager delegate, RedisCircuitBreaker breaker, StringRedisTemplate redisTemplate) {
+        this.delegate = delegate;
+        this.breaker = breaker;
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    private ResilientCache createCache(String name) {
+        Cache remote = delegate.getCache(name);
+        if (remote == null) {
+            return null;
+        }
+        CircuitBreakerProperties properties = breaker.getProperties();
+        return new ResilientCache(remote, breaker, Caffeine.newBuilder()
+                .maximumSize(properties.getFallbackMaximumSize())
+                .expireAfterWrite(properties.getFallbackTtl())
+                .build(), batchEvictor(remote));
+    }
+
+    private Consumer<List<Object>> batchEvictor(Cache remote) {
+        if (redisTemplate == null || !(remote instanceof RedisCache)) {
+            return null;
+        }
+        RedisCache redisCache = (RedisCache) remote;
+        RedisCacheConfiguration configuration = redisCache.getCacheConfiguration();
+        String prefix = configuration.usePrefix() ? configuration.getKeyPrefixFor(redisCache.getName()) : "";
+        ConversionService conversionService = configuration.getConversionService();
+        return keys -> {
+            List<String> redisKeys = new ArrayList<>(keys.size());
+            for (Object key : keys) {
+                // 与 RedisCache.convertKey 一致：能转换的用 ConversionService，其余（如 SimpleKey）用 toString
+                String converted = key instanceof String ? (String) key
+                        : conversionService.canConvert(key.getClass(), String.class)
+                        ? conversionService.convert(key, String.class) : key.toString();
+                redisKeys.add(prefix + converted);
+            }
+            redisTemplate.delete(redisKeys);
+        };
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return delegate.getCacheNames();
+    }
+}
@@ -0,0 +1,163 @@
+package com.yqh.forum.config.cache;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 两级缓存：进程内 Caffeine（L1）在前，Redis（L2）在后。
+ * 读：先查 L1，未命中再查 L2，L2 命中后回填 L1；写：同时写入 L1 和 L2。
+ * 清除：先清 L2 再清本机 L1，然后通过 TwoLevelCacheManager 广播给其他节点清除各自的 L1。
+ * L1 中缓存的是对象本身（不是副本），取出的值只能读，不要修改。
+ * L1 的 key 统一转成字符串，与广播消息中的 key 保持一致。
+ */
+public class TwoLevelCache implements Cache {
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<Object, Object> local;
+    private final Cache remote;
+    private final TwoLevelCacheManager owner;
+
+    private final LongAdder remoteHits = new LongAdder();
+    private final LongAdder remoteMisses = new LongAdder();
+    private final LongAdder remoteEvictions = new LongAdder();
+    // 收到其他节点的广播而清除本机 L1 的次数
+    private final LongAdder localInvalidations = new LongAdder();
+
+    TwoLevelCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> local,
+                  Cache remote, TwoLevelCacheManager owner) {
+        this.name = name;
+        this.local = local;
+        this.remote = remote;
+        this.owner = owner;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return this;
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        Object localKey = localKey(key);
+        Object value = local.getIfPresent(localKey);
+        if (value != null) {
+            return new SimpleValueWrapper(value);
+        }
+
+        ValueWrapper wrapper = remote.get(key);
+        if (wrapper == null) {
+            remoteMisses.increment();
+            return null;
+        }
+        remoteHits.increment();
+        if (wrapper.get() != null) {
+            local.put(localKey, wrapper.get());
+        }
+        return wrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("缓存 " + name + " 中 key=" + key + " 的值不是 " + type.getName() + " 类型: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        T value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        put(key, value);
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        remote.put(key, value);
+        if (value != null) {
+            local.put(localKey(key), value);
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        remote.evict(key);
+        remoteEvictions.increment();
+        local.invalidate(localKey(key));
+        owner.broadcastEvict(name, localKey(key));
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        remoteEvictions.increment();
+        local.invalidateAll();
+        owner.broadcastClear(name);
+    }
+
+    // ---- 收到其他节点广播时只清本机 L1，L2 已由发起方清除 ----
+
+    void invalidateLocal(String localKey) {
+        local.invalidate(localKey);
+        localInvalidations.increment();
+    }
+
+    void clearLocal() {
+        local.invalidateAll();
+        localInvalidations.increment();
+    }
+
+    private static String localKey(Object key) {
+        return String.valueOf(key);
+    }
+
+    // ---- 统计 ----
+
+    public CacheStats localStats() {
+        return local.stats();
+    }
+
+    public long localSize() {
+        // Caffeine 的容量淘汰是异步的，先执行积压的淘汰，避免报告的条数短暂超过上限
+        local.cleanUp();
+        return local.estimatedSize();
+    }
+
+    public long localInvalidations() {
+        return localInvalidations.sum();
+    }
+
+    public long remoteHits() {
+        return remoteHits.sum();
+    }
+
+    public long remoteMisses() {
+        return remoteMisses.sum();
+    }
+
+    public long remoteEvictions() {
+        return remoteEvictions.sum();
+    }
+}
@@ -0,0 +1,83 @@
+package com.yqh.forum.config.cache;
+
+import com.yqh.forum.config.RedisConfig;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 缓存配置：每个缓存按 CachePolicyRegistry 中的策略生成自己的 Redis 缓存配置（L2），
+ * 策略中 local-maximum-size 大于 0 的缓存额外加一层进程内 L1，
+ * 清除消息通过 Redis pub/sub 在节点间广播。
+ * 所有缓存都包了一层 CoalescingCache（合并并发加载、提前刷新），对 @Cacheable(sync = true) 的方法生效。
+ * 对 Redis 的读写和广播经过 RedisCircuitBreaker：调用超时有上限，Redis 不可用时熔断并改用本机降级缓存，
+ * 见 app.cache.circuit-breaker.*。
+ */
+@Configuration
+public class TwoLevelCacheConfig {
+
+    @Bean(destroyMethod = "close")
+    public RedisCircuitBreaker redisCircuitBreaker(Environment environment) {
+        return new RedisCircuitBreaker(CircuitBreakerProperties.bind(environment));
+    }
+
+    @Bean
+    public TwoLevelCacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                                             CachePolicyRegistry cachePolicyRegistry,
+                                             RedisCacheConfiguration redisCacheConfiguration,
+                                             GenericJackson2JsonRedisSerializer cacheJsonSerializer,
+                                             StringRedisTemplate stringRedisTemplate,
+                                             RedisCircuitBreaker redisCircuitBreaker) {
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory)
+                .cacheDefaults(redisCacheConfiguration)
+                .withInitialCacheConfigurations(redisCacheConfigurations(cachePolicyRegistry, cacheJsonSerializer))
+                .build();
+        redisCacheManager.afterPropertiesSet();
+
+        CacheManager remoteCacheManager = redisCacheManager;
+        Consumer<String> publisher = message -> stringRedisTemplate.convertAndSend(TwoLevelCacheManager.INVALIDATION_CHANNEL, message);
+        if (redisCircuitBreaker.getProperties().isEnabled()) {
+            remoteCacheManager = new ResilientCacheManager(redisCacheManager, redisCircuitBreaker, stringRedisTemplate);
+            Consumer<String> direct = publisher;
+            publisher = message -> redisCircuitBreaker.execute(() -> {
+                direct.accept(message);
+                return null;
+            });
+        }
+        return new TwoLevelCacheManager(remoteCacheManager, cachePolicyRegistry, publisher);
+    }
+
+    // 单独配置了策略的缓存各自的 Redis 配置，其余缓存使用 cacheDefaults
+    static Map<String, RedisCacheConfiguration> redisCacheConfigurations(CachePolicyRegistry cachePolicyRegistry,
+                                                                         GenericJackson2JsonRedisSerializer cacheJsonSerializer) {
+        Map<String, RedisCacheConfiguration> configurations = new LinkedHashMap<>();
+        for (String name : cachePolicyRegistry.getCacheNames()) {
+            configurations.put(name, RedisConfig.redisCacheConfiguration(cachePolicyRegistry.getPolicy(name), cacheJsonSerializer));
+        }
+        return configurations;
+    }
+
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                            TwoLevelCacheManager cacheManager) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(
+                (message, pattern) -> cacheManager.handleInvalidation(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(TwoLevelCacheManager.INVALIDATION_CHANNEL));
+        return container;
+    }
+}
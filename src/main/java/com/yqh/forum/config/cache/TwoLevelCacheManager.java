@@ -0,0 +1,218 @@
+package com.yqh.forum.config.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * 在远程缓存（Redis）前面加一层进程内缓存。
+ * 只有策略中 local-maximum-size 大于 0 的缓存是两级的，其余缓存仍然只有远程一级。
+ * 两级缓存的清除通过 publisher 广播（生产环境是 Redis pub/sub），
+ * 各节点收到后调用 handleInvalidation 清除自己的 L1；节点自己发出的消息会被忽略。
+ * 广播可能丢失或与回填交错，L1 同时设置了较短的过期时间兜底。
+ * 返回的每个缓存（无论是否两级）外面都包一层 CoalescingCache，合并并发加载并提前刷新。
+ */
+public class TwoLevelCacheManager implements CacheManager, MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(TwoLevelCacheManager.class);
+
+    public static final String INVALIDATION_CHANNEL = "forum:cache:invalidate";
+
+    private static final String EVICT = "E";
+    private static final String CLEAR = "C";
+
+    private final CacheManager remoteCacheManager;
+    private final CachePolicyRegistry policies;
+    private final Consumer<String> publisher;
+
+    // 区分广播消息来自哪个节点
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ConcurrentMap<String, CoalescingCache> caches = new ConcurrentHashMap<>();
+    // bindTo 之后新创建的缓存也要注册指标
+    private volatile MeterRegistry registry;
+
+    public TwoLevelCacheManager(CacheManager remoteCacheManager, CachePolicyRegistry policies,
+                                Consumer<String> publisher) {
+        this.remoteCacheManager = remoteCacheManager;
+        this.policies = policies;
+        this.publisher = publisher;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    private CoalescingCache createCache(String name) {
+        Cache remote = remoteCacheManager.getCache(name);
+        if (remote == null) {
+            return null;
+        }
+        CachePolicy policy = policies.getPolicy(name);
+        CoalescingCache cache;
+        if (policy.hasLocalTier()) {
+            com.github.benmanes.caffeine.cache.Cache<Object, Object> local = Caffeine.newBuilder()
+                    .maximumSize(policy.getLocalMaximumSize())
+                    .expireAfterWrite(policy.getLocalTtl())
+                    .recordStats()
+                    .build();
+            cache = new CoalescingCache(new TwoLevelCache(name, local, remote, this), policy.getTtl());
+        } else {
+            cache = new CoalescingCache(remote, policy.getTtl());
+        }
+        if (registry != null) {
+            bindMetrics(registry, cache);
+        }
+        return cache;
+    }
+
+    // 两级缓存本体；name 不是两级缓存或尚未创建时返回 null
+    private TwoLevelCache twoLevelCache(String name) {
+        CoalescingCache cache = caches.get(name);
+        if (cache == null || !(cache.getDelegate() instanceof TwoLevelCache)) {
+            return null;
+        }
+        return (TwoLevelCache) cache.getDelegate();
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        Set<String> names = new LinkedHashSet<>(remoteCacheManager.getCacheNames());
+        names.addAll(caches.keySet());
+        return names;
+    }
+
+    // ---- 跨节点清除 ----
+
+    void broadcastEvict(String cacheName, String key) {
+        publish(String.join("\n", nodeId, EVICT, cacheName, key));
+    }
+
+    void broadcastClear(String cacheName) {
+        publish(String.join("\n", nodeId, CLEAR, cacheName, ""));
+    }
+
+    private void publish(String message) {
+        try {
+            publisher.accept(message);
+        } catch (RuntimeException e) {
+            // 广播失败不影响本次写操作，其他节点的 L1 会在过期后自然失效
+            logger.warn("广播缓存清除消息失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 处理其他节点发来的清除消息，格式：节点ID \n 操作(E/C) \n 缓存名 \n key
+     */
+    public void handleInvalidation(String message) {
+        String[] parts = message.split("\n", 4);
+        if (parts.length != 4) {
+            logger.warn("忽略格式不正确的缓存清除消息: {}", message);
+            return;
+        }
+        if (nodeId.equals(parts[0])) {
+            return;
+        }
+        TwoLevelCache cache = twoLevelCache(parts[2]);
+        if (cache == null) {
+            // 本节点还没用过这个缓存，L1 中没有数据
+            return;
+        }
+        if (CLEAR.equals(parts[1])) {
+            cache.clearLocal();
+        } else {
+            cache.invalidateLocal(parts[3]);
+        }
+    }
+
+    // ---- 统计：每个缓存创建时自动注册加载次数和读取次数（forum.cache.gets，按 tier 和 result 区分）；
+    // 只有远程一级的缓存只有 tier=remote 一层，两级缓存分别输出 local 和 remote，还输出清除次数 ----
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        // 单独配置了策略的缓存在启动时就创建，保证指标存在
+        policies.getCacheNames().forEach(this::getCache);
+        for (CoalescingCache cache : caches.values()) {
+            bindMetrics(registry, cache);
+        }
+    }
+
+    private static void bindMetrics(MeterRegistry registry, CoalescingCache cache) {
+        String name = cache.getName();
+        FunctionCounter.builder("forum.cache.loads", cache, CoalescingCache::loads)
+                .tags("cache", name, "result", "loaded")
+                .description("缓存加载次数")
+                .register(registry);
+        FunctionCounter.builder("forum.cache.loads", cache, CoalescingCache::coalesced)
+                .tags("cache", name, "result", "coalesced")
+                .description("缓存加载次数")
+                .register(registry);
+        FunctionCounter.builder("forum.cache.loads", cache, CoalescingCache::earlyRefreshes)
+                .tags("cache", name, "result", "early_refresh")
+                .description("缓存加载次数")
+                .register(registry);
+
+        if (!(cache.getDelegate() instanceof TwoLevelCache)) {
+            FunctionCounter.builder("forum.cache.gets", cache, CoalescingCache::hits)
+                    .tags("cache", name, "tier", "remote", "result", "hit")
+                    .description("缓存读取次数")
+                    .register(registry);
+            FunctionCounter.builder("forum.cache.gets", cache, CoalescingCache::misses)
+                    .tags("cache", name, "tier", "remote", "result", "miss")
+                    .description("缓存读取次数")
+                    .register(registry);
+            return;
+        }
+        TwoLevelCache twoLevel = (TwoLevelCache) cache.getDelegate();
+
+        FunctionCounter.builder("forum.cache.gets", twoLevel, c -> c.localStats().hitCount())
+                .tags("cache", name, "tier", "local", "result", "hit")
+                .description("缓存读取次数")
+                .register(registry);
+        FunctionCounter.builder("forum.cache.gets", twoLevel, c -> c.localStats().missCount())
+                .tags("cache", name, "tier", "local", "result", "miss")
+                .description("缓存读取次数")
+                .register(registry);
+        FunctionCounter.builder("forum.cache.gets", twoLevel, TwoLevelCache::remoteHits)
+                .tags("cache", name, "tier", "remote", "result", "hit")
+                .description("缓存读取次数")
+                .register(registry);
+        FunctionCounter.builder("forum.cache.gets", twoLevel, TwoLevelCache::remoteMisses)
+                .tags("cache", name, "tier", "remote", "result", "miss")
+                .description("缓存读取次数")
+                .register(registry);
+
+        FunctionCounter.builder("forum.cache.evictions", twoLevel, c -> c.localStats().evictionCount())
+                .tags("cache", name, "tier", "local", "cause", "size_or_expiry")
+                .description("两级缓存清除次数")
+                .register(registry);
+        FunctionCounter.builder("forum.cache.evictions", twoLevel, TwoLevelCache::localInvalidations)
+                .tags("cache", name, "tier", "local", "cause", "broadcast")
+                .description("两级缓存清除次数")
+                .register(registry);
+        FunctionCounter.builder("forum.cache.evictions", twoLevel, TwoLevelCache::remoteEvictions)
+                .tags("cache", name, "tier", "remote", "cause", "explicit")
+                .description("两级缓存清除次数")
+                .register(registry);
+
+        Gauge.builder("forum.cache.size", twoLevel, TwoLevelCache::localSize)
+                .tags("cache", name, "tier", "local")
+                .description("进程内缓存的条目数")
+                .register(registry);
+    }
+}
@@ -0,0 +1,181 @@
+package com.yqh.forum.config.init;
+
+import com.yqh.forum.model.BackfillCheckpoint;
+import com.yqh.forum.repository.BackfillCheckpointRepository;
+import com.yqh.forum.service.impl.DailyStatsRollup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 为 daily_stats 回填历史数据：从最早的用户、帖子或评论所在日期到昨天。
+ * 与 PostSummaryBackfill 相同，按区间切块、多线程并行，断点写入 backfill_checkpoints；
+ * 这里的区间是日期（epoch day），每批按明细表重新计算 batch-days 天。
+ * 今天的数据由 DailyStatsRollup 实时累加，回填不覆盖。全部完成后仪表盘改读 daily_stats。
+ */
+@Component
+public class DailyStatsBackfill implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(DailyStatsBackfill.class);
+
+    static final String JOB_NAME = "daily-stats";
+
+    // 每个线程分到的块数，块切得细一些，各线程负载更均衡
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private static final String MIN_DATE_SQL =
+            "SELECT MIN(d) FROM (" +
+                    "SELECT MIN(created_at) AS d FROM users UNION ALL " +
+                    "SELECT MIN(created_at) FROM posts UNION ALL " +
+                    "SELECT MIN(created_at) FROM comments) t";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BackfillCheckpointRepository checkpointRepository;
+    private final DailyStatsRollup dailyStatsRollup;
+
+    @Value("${app.backfill.daily-stats.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.backfill.daily-stats.threads:4}")
+    private int threads;
+
+    @Value("${app.backfill.daily-stats.batch-days:31}")
+    private int batchDays;
+
+    public DailyStatsBackfill(JdbcTemplate jdbcTemplate, BackfillCheckpointRepository checkpointRepository,
+                              DailyStatsRollup dailyStatsRollup) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.checkpointRepository = checkpointRepository;
+        this.dailyStatsRollup = dailyStatsRollup;
+    }
+
+    @Override
+    public void run(String... args) {
+        if (!enabled) {
+            return;
+        }
+        Thread worker = new Thread(this::backfill, "daily-stats-backfill");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    void backfill() {
+        List<BackfillCheckpoint> chunks = checkpointRepository.findByJobNameOrderByChunkNo(JOB_NAME);
+        if (chunks.isEmpty()) {
+            try {
+                chunks = planChunks(LocalDate.now().minusDays(1));
+            } catch (DataIntegrityViolationException e) {
+                // 多个节点同时启动时都会去划分区间，(job_name, chunk_no) 唯一约束只让一个节点写入成功，
+                // 其余节点改用已写入的划分
+                logger.info("每日统计回填的区间划分已由其他节点写入，读取已有断点");
+                chunks = checkpointRepository.findByJobNameOrderByChunkNo(JOB_NAME);
+            }
+        }
+        List<BackfillCheckpoint> pending = new ArrayList<>();
+        for (BackfillCheckpoint chunk : chunks) {
+            if (!chunk.isCompleted()) {
+                pending.add(chunk);
+            }
+        }
+        if (pending.isEmpty()) {
+            dailyStatsRollup.markBackfilled();
+            return;
+        }
+
+        logger.info("开始回填每日统计：{} 个区间待处理，{} 个线程", pending.size(), threads);
+        long startedAt = System.currentTimeMillis();
+        AtomicLong recomputedDays = new AtomicLong();
+        AtomicInteger failedChunks = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, pending.size()));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (BackfillCheckpoint chunk : pending) {
+                futures.add(pool.submit(() -> recomputedDays.addAndGet(processChunk(chunk))));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    // 失败的区间保留断点，下次启动时继续
+                    failedChunks.incrementAndGet();
+                    logger.warn("每日统计回填区间失败: {}", e.getCause().getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failedChunks.incrementAndGet();
+        } finally {
+            pool.shutdownNow();
+        }
+        if (failedChunks.get() == 0) {
+            dailyStatsRollup.markBackfilled();
+        }
+        logger.info("每日统计回填结束：计算 {} 天，失败区间 {} 个，耗时 {} ms",
+                recomputedDays.get(), failedChunks.get(), System.currentTimeMillis() - startedAt);
+    }
+
+    // 把 [最早日期, lastDay] 按天数等分成若干区间，写入断点表；没有历史数据时写入一个已完成的空区间
+    List<BackfillCheckpoint> planChunks(LocalDate lastDay) {
+        Timestamp earliest = jdbcTemplate.queryForObject(MIN_DATE_SQL, Timestamp.class);
+        long maxDay = lastDay.toEpochDay();
+        long minDay = earliest != null ? earliest.toLocalDateTime().toLocalDate().toEpochDay() : maxDay + 1;
+        List<BackfillCheckpoint> chunks = new ArrayList<>();
+        if (minDay > maxDay) {
+            chunks.add(newChunk(0, maxDay, maxDay, true));
+            return checkpointRepository.saveAll(chunks);
+        }
+
+        int chunkCount = Math.max(1, threads * CHUNKS_PER_THREAD);
+        long span = Math.max(1, (maxDay - minDay + chunkCount) / chunkCount);
+        long lower = minDay - 1;
+        for (int chunkNo = 0; lower < maxDay; chunkNo++) {
+            long upper = Math.min(maxDay, lower + span);
+            chunks.add(newChunk(chunkNo, lower, upper, false));
+            lower = upper;
+        }
+        return checkpointRepository.saveAll(chunks);
+    }
+
+    // 区间 (rangeStart, rangeEnd]，lastId 为已处理到的 epoch day
+    private static BackfillCheckpoint newChunk(int chunkNo, long rangeStart, long rangeEnd, boolean completed) {
+        BackfillCheckpoint chunk = new BackfillCheckpoint();
+        chunk.setJobName(JOB_NAME);
+        chunk.setChunkNo(chunkNo);
+        chunk.setRangeStart(rangeStart);
+        chunk.setRangeEnd(rangeEnd);
+        chunk.setLastId(completed ? rangeEnd : rangeStart);
+        chunk.setCompleted(completed);
+        return chunk;
+    }
+
+    // 逐批处理一个区间，每批写入后记录断点
+    private long processChunk(BackfillCheckpoint chunk) {
+        long recomputed = 0;
+        while (chunk.getLastId() < chunk.getRangeEnd()) {
+            long from = chunk.getLastId() + 1;
+            long to = Math.min(chunk.getRangeEnd(), chunk.getLastId() + Math.max(1, batchDays));
+            recomputed += dailyStatsRollup.recompute(LocalDate.ofEpochDay(from), LocalDate.ofEpochDay(to));
+            chunk.setLastId(to);
+            checkpointRepository.save(chunk);
+        }
+        chunk.setCompleted(true);
+        checkpointRepository.save(chunk);
+        return recomputed;
+    }
+}
@@ -0,0 +1,173 @@
+package com.yqh.forum.config.init;
+
+import com.yqh.forum.model.BackfillCheckpoint;
+import com.yqh.forum.repository.BackfillCheckpointRepository;
+import com.yqh.forum.service.util.SummaryUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 为存量帖子回填 posts.summary。
+ * 按 ID 区间切块、多线程并行处理，每处理完一批就把断点写入 backfill_checkpoints，
+ * 中途停机后下次启动从断点继续。新写入的帖子在 createPost/updatePost 中已经带上摘要，不受影响。
+ * 回填在后台线程中进行，不阻塞应用启动。
+ */
+@Component
+public class PostSummaryBackfill implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostSummaryBackfill.class);
+
+    static final String JOB_NAME = "post-summary";
+
+    // 每个线程分到的块数，块切得细一些，各线程负载更均衡
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private static final String RANGE_SQL =
+            "SELECT MIN(id) AS min_id, MAX(id) AS max_id FROM posts WHERE summary IS NULL";
+    private static final String SELECT_SQL =
+            "SELECT id, content FROM posts WHERE id > ? AND id <= ? AND summary IS NULL ORDER BY id LIMIT ?";
+    // summary IS NULL：回填期间用户编辑过的帖子已有新摘要，不覆盖
+    private static final String UPDATE_SQL =
+            "UPDATE posts SET summary = ? WHERE id = ? AND summary IS NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BackfillCheckpointRepository checkpointRepository;
+
+    @Value("${app.backfill.post-summary.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.backfill.post-summary.threads:4}")
+    private int threads;
+
+    @Value("${app.backfill.post-summary.batch-size:200}")
+    private int batchSize;
+
+    public PostSummaryBackfill(JdbcTemplate jdbcTemplate, BackfillCheckpointRepository checkpointRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.checkpointRepository = checkpointRepository;
+    }
+
+    @Override
+    public void run(String... args) {
+        if (!enabled) {
+            return;
+        }
+        Thread worker = new Thread(this::backfill, "post-summary-backfill");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    void backfill() {
+        List<BackfillCheckpoint> chunks = checkpointRepository.findByJobNameOrderByChunkNo(JOB_NAME);
+        if (chunks.isEmpty()) {
+            try {
+                chunks = planChunks();
+            } catch (DataIntegrityViolationException e) {
+                // 多个节点同时启动时都会去划分区间，(job_name, chunk_no) 唯一约束只让一个节点写入成功，
+                // 其余节点改用已写入的划分
+                logger.info("帖子摘要回填的区间划分已由其他节点写入，读取已有断点");
+                chunks = checkpointRepository.findByJobNameOrderByChunkNo(JOB_NAME);
+            }
+        }
+        List<BackfillCheckpoint> pending = new ArrayList<>();
+        for (BackfillCheckpoint chunk : chunks) {
+            if (!chunk.isCompleted()) {
+                pending.add(chunk);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        logger.info("开始回填帖子摘要：{} 个区间待处理，{} 个线程", pending.size(), threads);
+        long startedAt = System.currentTimeMillis();
+        AtomicLong updatedRows = new AtomicLong();
+        AtomicInteger failedChunks = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, pending.size()));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (BackfillCheckpoint chunk : pending) {
+                futures.add(pool.submit(() -> updatedRows.addAndGet(processChunk(chunk))));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    // 失败的区间保留断点，下次启动时继续
+                    failedChunks.incrementAndGet();
+                    logger.warn("帖子摘要回填区间失败: {}", e.getCause().getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
+        }
+        logger.info("帖子摘要回填结束：更新 {} 条，失败区间 {} 个，耗时 {} ms",
+                updatedRows.get(), failedChunks.get(), System.currentTimeMillis() - startedAt);
+    }
+
+    // 按 summary 为空的 ID 范围等分成若干区间，写入断点表
+    private List<BackfillCheckpoint> planChunks() {
+        Map<String, Object> range = jdbcTemplate.queryForMap(RANGE_SQL);
+        if (range.get("min_id") == null) {
+            return new ArrayList<>();
+        }
+        long minId = ((Number) range.get("min_id")).longValue();
+        long maxId = ((Number) range.get("max_id")).longValue();
+
+        int chunkCount = Math.max(1, threads * CHUNKS_PER_THREAD);
+        long span = Math.max(1, (maxId - minId + chunkCount) / chunkCount);
+        List<BackfillCheckpoint> chunks = new ArrayList<>();
+        long lower = minId - 1;
+        for (int chunkNo = 0; lower < maxId; chunkNo++) {
+            long upper = Math.min(maxId, lower + span);
+            BackfillCheckpoint chunk = new BackfillCheckpoint();
+            chunk.setJobName(JOB_NAME);
+            chunk.setChunkNo(chunkNo);
+            chunk.setRangeStart(lower);
+            chunk.setRangeEnd(upper);
+            chunk.setLastId(lower);
+            chunk.setCompleted(false);
+            chunks.add(chunk);
+            lower = upper;
+        }
+        return checkpointRepository.saveAll(chunks);
+    }
+
+    // 逐批处理一个区间，每批提交后记录断点
+    private long processChunk(BackfillCheckpoint chunk) {
+        long updated = 0;
+        while (true) {
+            List<Object[]> batchArgs = jdbcTemplate.query(SELECT_SQL,
+                    (rs, rowNum) -> new Object[]{SummaryUtil.generate(rs.getString("content")), rs.getLong("id")},
+                    chunk.getLastId(), chunk.getRangeEnd(), batchSize);
+            if (batchArgs.isEmpty()) {
+                chunk.setCompleted(true);
+                checkpointRepository.save(chunk);
+                return updated;
+            }
+            for (int count : jdbcTemplate.batchUpdate(UPDATE_SQL, batchArgs)) {
+                updated += Math.max(count, 0);
+            }
+            chunk.setLastId((Long) batchArgs.get(batchArgs.size() - 1)[1]);
+            checkpointRepository.save(chunk);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.yqh.forum.config.security;
+
+import com.yqh.forum.model.Role;
+import com.yqh.forum.model.User;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 当前登录用户的身份（id、用户名、邮箱、头像、角色），由 PrincipalCache 缓存，创建后不再修改。
+ * version 是创建时该用户在 Redis 中的版本号，用来判断会话中的身份是否已过期。
+ */
+public class CurrentUser {
+
+    private final Long id;
+    private final String username;
+    private final String email;
+    private final String avatar;
+    private final Set<String> roles;
+    private final long version;
+
+    public CurrentUser(Long id, String username, String email, String avatar, Set<String> roles, long version) {
+        this.id = id;
+        this.username = username;
+        this.email = email;
+        this.avatar = avatar;
+        this.roles = Collections.unmodifiableSet(roles);
+        this.version = version;
+    }
+
+    public static CurrentUser of(ForumUserDetails details) {
+        Set<String> roles = details.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toSet());
+        return new CurrentUser(details.getId(), details.getUsername(), details.getEmail(), details.getAvatar(),
+                roles, details.getVersion());
+    }
+
+    public static CurrentUser of(User user, long version) {
+        Set<String> roles = user.getRoles().stream()
+                .map(Role::getName)
+                .collect(Collectors.toSet());
+        return new CurrentUser(user.getId(), user.getUsername(), user.getEmail(), user.getAvatar(), roles, version);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getAvatar() {
+        return avatar;
+    }
+
+    public Set<String> getRoles() {
+        return roles;
+    }
+
+    public boolean hasRole(String role) {
+        return roles.contains(role);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
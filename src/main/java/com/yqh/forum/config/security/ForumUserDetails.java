@@ -13,6 +13,9 @@ import java.util.Collection;
 
 public class ForumUserDetails implements UserDetails {
 
+    // 创建时不知道用户的版本号（见 PrincipalCache），这样的身份过期后总是从数据库重新加载
+    public static final long UNKNOWN_VERSION = -1;
+
     // UserDetails 接口需要的字段和方法
     private String username;
     private String password;
@@ -26,9 +29,14 @@ public class ForumUserDetails implements UserDetails {
     private Long id;
     private String email;
     private String avatar; // <-- 这个字段和其 getter 会被 #authentication.principal.avatar 访问
+    private long version; // 创建时该用户在 Redis 中的版本号，资料或密码修改后会变化
 
     // 构造方法：通常接收您的 User 实体和其他安全相关信息来创建 UserDetails 实例
     public ForumUserDetails(User user, Collection<? extends GrantedAuthority> authorities) {
+        this(user, authorities, UNKNOWN_VERSION);
+    }
+
+    public ForumUserDetails(User user, Collection<? extends GrantedAuthority> authorities, long version) {
         this.username = user.getUsername();
         this.password = user.getPassword(); // 注意密码的处理，可能不需要在 UserDetails 中保留太久
         // 根据您的 User 实体或业务逻辑设置账户状态
@@ -42,6 +50,7 @@ public class ForumUserDetails implements UserDetails {
         this.id = user.getId();
         this.email = user.getEmail();
         this.avatar = user.getAvatar(); // <-- 从 User 实体获取 avatar 填充到这里
+        this.version = version;
     }
 
     // ***实现 UserDetails 接口的方法***
@@ -68,4 +77,5 @@ public class ForumUserDetails implements UserDetails {
     public Long getId() { return id; }
     public String getEmail() { return email; }
     public String getAvatar() { return avatar; } // <-- 这个 getAvatar() 方法是关键
+    public long getVersion() { return version; }
 }
\ No newline at end of file
@@ -0,0 +1,194 @@
+package com.yqh.forum.config.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yqh.forum.config.cache.RedisCircuitBreaker;
+import com.yqh.forum.model.User;
+import com.yqh.forum.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 当前登录用户身份的进程内缓存，key 为用户名，过期时间 app.principal-cache.ttl-ms。
+ * 登录成功时直接用认证结果中的 ForumUserDetails 填充，处理请求时从这里取身份，
+ * 不再每次按用户名查询 users 表（连带 EAGER 加载的角色）。
+ * 每个用户在 Redis 中有一个版本号 user:version:{userId}，资料、密码修改或删除用户后 +1，同时清除本机条目，
+ * 并通过 Redis pub/sub 通知其他节点清除它们的条目（否则被删除的用户在其他节点上到过期前仍能发帖、评论）。
+ * 条目过期或被清除后重新取身份：会话中 ForumUserDetails 的版本号与 Redis 一致就直接使用，否则从数据库加载。
+ * 通知可能丢失，这时其他节点上的旧条目在过期前仍会被使用；
+ * 读写版本号、发送通知都经过 RedisCircuitBreaker，Redis 不可用时直接从数据库加载。
+ */
+@Component
+public class PrincipalCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrincipalCache.class);
+
+    private static final String VERSION_KEY_PREFIX = "user:version:";
+
+    public static final String INVALIDATE_CHANNEL = "forum:user:invalidated";
+
+    private final UserRepository userRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisCircuitBreaker redisCircuitBreaker;
+    private final Cache<String, CurrentUser> cache;
+
+    // 区分通知来自哪个节点，自己发出的通知不再处理
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // 从数据库加载身份的次数
+    private final LongAdder databaseLoads = new LongAdder();
+
+    public PrincipalCache(UserRepository userRepository, StringRedisTemplate redisTemplate,
+                          RedisCircuitBreaker redisCircuitBreaker, RedisMessageListenerContainer listenerContainer,
+                          @Value("${app.principal-cache.ttl-ms:60000}") long ttlMillis) {
+        this.userRepository = userRepository;
+        this.redisTemplate = redisTemplate;
+        this.redisCircuitBreaker = redisCircuitBreaker;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                .build();
+        listenerContainer.addMessageListener(
+                (message, pattern) -> handleInvalidation(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    /**
+     * 已认证用户的身份
+     */
+    public CurrentUser get(Authentication authentication) {
+        String username = authentication.getName();
+        CurrentUser cached = cache.getIfPresent(username);
+        if (cached != null) {
+            return cached;
+        }
+        CurrentUser current = resolve(authentication);
+        cache.put(username, current);
+        return current;
+    }
+
+    private CurrentUser resolve(Authentication authentication) {
+        Object principal = authentication.getPrincipal();
+        if (!(principal instanceof ForumUserDetails)) {
+            User user = loadUser(authentication.getName());
+            return CurrentUser.of(user, version(user.getId()));
+        }
+        ForumUserDetails details = (ForumUserDetails) principal;
+        // 先读版本号再查库：查询期间发生的修改会让版本号再变一次，不会把旧数据当成新版本缓存下来
+        long version = version(details.getId());
+        if (version != ForumUserDetails.UNKNOWN_VERSION && version == details.getVersion()) {
+            return CurrentUser.of(details);
+        }
+        return CurrentUser.of(loadUser(details.getUsername()), version);
+    }
+
+    private User loadUser(String username) {
+        databaseLoads.increment();
+        return userRepository.findByUsername(username)
+                .orElseThrow(() -> new UsernameNotFoundException("当前用户不存在"));
+    }
+
+    /**
+     * 用户当前的版本号，从未修改过的用户为 0，Redis 不可用时返回 UNKNOWN_VERSION
+     */
+    public long version(Long userId) {
+        try {
+            String value = redisCircuitBreaker.execute(() -> redisTemplate.opsForValue().get(versionKey(userId)));
+            return value != null ? Long.parseLong(value) : 0L;
+        } catch (RedisCircuitBreaker.UnavailableException e) {
+            logger.warn("读取用户 {} 的版本号失败: {}", userId, e.getMessage());
+            return ForumUserDetails.UNKNOWN_VERSION;
+        }
+    }
+
+    // 登录成功：认证结果中已经有完整的身份，直接放入缓存
+    @EventListener
+    public void onLogin(AuthenticationSuccessEvent event) {
+        Object principal = event.getAuthentication().getPrincipal();
+        if (principal instanceof ForumUserDetails) {
+            ForumUserDetails details = (ForumUserDetails) principal;
+            cache.put(details.getUsername(), CurrentUser.of(details));
+        }
+    }
+
+    /**
+     * 用户资料、密码修改或用户被删除后调用：版本号 +1 并清除本机条目。
+     * 在事务中调用时，提交之后再执行一次，避免提交前有请求把旧数据重新放进缓存。
+     */
+    public void invalidate(Long userId) {
+        evictLocal(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    bumpVersion(userId);
+                    evictLocal(userId);
+                }
+            });
+        } else {
+            bumpVersion(userId);
+        }
+    }
+
+    private void bumpVersion(Long userId) {
+        try {
+            redisCircuitBreaker.execute(() -> redisTemplate.opsForValue().increment(versionKey(userId)));
+            // 版本号已更新，其他节点清除条目后下一次请求会按新版本号重新取身份
+            redisCircuitBreaker.execute(() -> {
+                redisTemplate.convertAndSend(INVALIDATE_CHANNEL, nodeId + "\n" + userId);
+                return null;
+            });
+        } catch (RedisCircuitBreaker.UnavailableException e) {
+            // 其他节点上的旧身份会一直用到重新登录为止（与没有这个缓存之前会话中的 principal 一样）
+            logger.warn("更新用户 {} 的版本号失败: {}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * 处理其他节点发来的清除通知，格式：节点ID \n 用户ID
+     */
+    public void handleInvalidation(String message) {
+        String[] parts = message.split("\n", 2);
+        if (parts.length != 2) {
+            logger.warn("忽略格式不正确的用户清除通知: {}", message);
+            return;
+        }
+        if (!nodeId.equals(parts[0])) {
+            evictLocal(Long.valueOf(parts[1]));
+        }
+    }
+
+    private void evictLocal(Long userId) {
+        cache.asMap().forEach((username, user) -> {
+            if (user.getId().equals(userId)) {
+                cache.invalidate(username);
+            }
+        });
+    }
+
+    private static String versionKey(Long userId) {
+        return VERSION_KEY_PREFIX + userId;
+    }
+
+    // ---- 统计 ----
+
+    public long databaseLoads() {
+        return databaseLoads.sum();
+    }
+}
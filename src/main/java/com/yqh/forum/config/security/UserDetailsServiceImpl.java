@@ -22,6 +22,7 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class UserDetailsServiceImpl implements UserDetailsService {
     private final UserRepository userRepository;
+    private final PrincipalCache principalCache;
 
     //根据用户名从数据库加载用户信息。
     @Override
@@ -47,7 +48,8 @@ public class UserDetailsServiceImpl implements UserDetailsService {
         System.out.println("User Authorities: " + authorities); // 打印获取到的权限
 
         //Collections.emptyList()
-        ForumUserDetails forumUserDetails = new ForumUserDetails(user, authorities); // 创建自定义 UserDetails
+        // 带上当前版本号，资料未修改时 PrincipalCache 可以直接使用会话中的身份
+        ForumUserDetails forumUserDetails = new ForumUserDetails(user, authorities, principalCache.version(user.getId())); // 创建自定义 UserDetails
         System.out.println("Created UserDetails Type: " + forumUserDetails.getClass().getName()); // 打印自定义 UserDetails 类型
 
         return forumUserDetails; // 返回自定义 UserDetails
@@ -0,0 +1,35 @@
+package com.yqh.forum.controller;
+
+import com.yqh.forum.service.SearchService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+
+/**
+ * 管理员的搜索索引操作
+ */
+@Controller
+@RequestMapping("/admin/search")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ROLE_ADMIN')")
+public class AdminSearchController {
+
+    private final SearchService searchService;
+
+    /**
+     * 从数据库重建搜索索引（后台执行）
+     * 处理 /admin/search/rebuild 的 POST 请求
+     */
+    @PostMapping("/rebuild")
+    public String rebuildIndex(RedirectAttributes redirectAttributes) {
+        if (searchService.startRebuild()) {
+            redirectAttributes.addAttribute("message", "搜索索引开始重建，当前索引帖子数：" + searchService.indexedPostCount());
+        } else {
+            redirectAttributes.addAttribute("error", "搜索索引正在重建中，请稍后再试");
+        }
+        return "redirect:/admin/users/dashboard";
+    }
+}
@@ -1,11 +1,16 @@
 package com.yqh.forum.controller; // 请根据您的实际包结构调整
 
+import com.yqh.forum.dto.DashboardSnapshot;
 import com.yqh.forum.model.User;
 import com.yqh.forum.service.DashboardAnalyticsService;
 import com.yqh.forum.service.EmailService;
+import com.yqh.forum.service.TrendBucket;
 import com.yqh.forum.service.UserService; // 假设您已经有了处理用户相关业务逻辑的 UserService
+import com.yqh.forum.service.impl.DailyStatsExporter;
+import com.yqh.forum.service.impl.DashboardSnapshotService;
 // import com.yqh.forum.service.impl.EmailServiceImpl; // Assuming EmailService is an interface
 import lombok.RequiredArgsConstructor; // 如果您使用了 Lombok 的 @RequiredArgsConstructor
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.access.prepost.PreAuthorize; // 导入 @PreAuthorize 注解
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Controller; // 导入 @Controller 注解
@@ -17,6 +22,9 @@ import org.springframework.web.bind.annotation.RequestMapping; // 导入 @Reques
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -33,7 +41,8 @@ public class AdminUserController {
 
     private final UserService userService; // 注入 UserService，用于后续获取用户数据
     private final EmailService emailService;
-    private final DashboardAnalyticsService dashboardAnalyticsService; // << --- 注入新的服务
+    private final DashboardSnapshotService dashboardSnapshotService; // 仪表盘统计快照
+    private final DailyStatsExporter dailyStatsExporter; // 每日统计导出
 
     /**
      * 显示统一的用户管理仪表板页面
@@ -41,15 +50,30 @@ public class AdminUserController {
      * 处理 /admin/users/dashboard 的 GET 请求
      */
     @GetMapping("/dashboard")
-    public String showDashboard(@RequestParam(name = "view", defaultValue = "charts") String view, Model model) {
+    public String showDashboard(@RequestParam(name = "view", defaultValue = "charts") String view,
+                                @RequestParam(name = "days", defaultValue = "7") int days,
+                                @RequestParam(name = "bucket", required = false) TrendBucket bucket,
+                                Model model) {
         model.addAttribute("currentView", view);
         model.addAttribute("currentView", view);
 
+        // 趋势窗口：最近 days 天（含今天），未指定粒度时按窗口长度选择（长窗口按周、按月汇总）；
+        // 总览卡片和趋势取自缓存的快照，见 DashboardSnapshotService
+        int requestedDays = Math.max(1, Math.min(days, DashboardAnalyticsService.MAX_RANGE_DAYS));
+        TrendBucket trendBucket = bucket != null ? bucket : TrendBucket.forDays(requestedDays);
+        int trendDays = Math.min(requestedDays, trendBucket.maxDays());
+        DashboardSnapshot snapshot = dashboardSnapshotService.get(trendDays, trendBucket);
+        model.addAttribute("snapshotGeneratedAt", snapshot.getGeneratedAt());
+
         // 总览卡片数据
-        model.addAttribute("totalUserCount", dashboardAnalyticsService.getTotalUserCount());
-        model.addAttribute("totalPostCount", dashboardAnalyticsService.getTotalPostCount());
-        model.addAttribute("totalCommentCount", dashboardAnalyticsService.getTotalCommentCount());
-        model.addAttribute("todayActiveUserCount", dashboardAnalyticsService.getTodayActiveUserCount());
+        model.addAttribute("totalUserCount", snapshot.getTotalUserCount());
+        model.addAttribute("totalPostCount", snapshot.getTotalPostCount());
+        model.addAttribute("totalCommentCount", snapshot.getTotalCommentCount());
+        model.addAttribute("todayActiveUserCount", snapshot.getTodayActiveUserCount());
+        // 周活、月活，以及前天注册用户的次日留存（昨天是完整的一天）
+        model.addAttribute("weeklyActiveUserCount", snapshot.getWeeklyActiveUserCount());
+        model.addAttribute("monthlyActiveUserCount", snapshot.getMonthlyActiveUserCount());
+        model.addAttribute("nextDayRetentionRate", snapshot.getNextDayRetentionRate());
 
         switch (view) {
             case "delete_list":
@@ -67,23 +91,30 @@ public class AdminUserController {
                 model.addAttribute("title", "后台管理面板 - 数据可视化");
                 model.addAttribute("currentView", "charts");
 
+                model.addAttribute("trendDays", trendDays);
+                model.addAttribute("trendBucket", trendBucket);
+                // 导出的日期范围与趋势窗口相同
+                LocalDate trendEndDate = LocalDate.now();
+                model.addAttribute("trendStartDate", trendEndDate.minusDays(trendDays - 1));
+                model.addAttribute("trendEndDate", trendEndDate);
+
                 // 用户注册趋势
-                Map<String, Long> userRegTrend = dashboardAnalyticsService.getUserRegistrationTrendLast7Days();
+                Map<String, Long> userRegTrend = snapshot.getUserRegistrationTrend();
                 model.addAttribute("userRegistrationLabels", new ArrayList<>(userRegTrend.keySet()));
                 model.addAttribute("userRegistrationData", new ArrayList<>(userRegTrend.values()));
 
                 // 帖子创建趋势
-                Map<String, Long> postCreationTrend = dashboardAnalyticsService.getPostCreationTrendLast7Days();
+                Map<String, Long> postCreationTrend = snapshot.getPostCreationTrend();
                 model.addAttribute("postCreationLabels", new ArrayList<>(postCreationTrend.keySet()));
                 model.addAttribute("postCreationData", new ArrayList<>(postCreationTrend.values()));
 
                 // 评论创建趋势
-                Map<String, Long> commentCreationTrend = dashboardAnalyticsService.getCommentCreationTrendLast7Days();
+                Map<String, Long> commentCreationTrend = snapshot.getCommentCreationTrend();
                 model.addAttribute("commentCreationLabels", new ArrayList<>(commentCreationTrend.keySet()));
                 model.addAttribute("commentCreationData", new ArrayList<>(commentCreationTrend.values()));
 
                 // DAU趋势
-                Map<String, Long> dauTrend = dashboardAnalyticsService.getDauTrendLast7Days();
+                Map<String, Long> dauTrend = snapshot.getDauTrend();
                 model.addAttribute("dauTrendLabels", new ArrayList<>(dauTrend.keySet()));
                 model.addAttribute("dauTrendData", new ArrayList<>(dauTrend.values()));
                 break;
@@ -91,6 +122,30 @@ public class AdminUserController {
         return "admin/users/admin_dashboard";
     }
 
+    /**
+     * 按天导出每日统计，边查边写，不在内存中组装整个结果
+     * 处理 /admin/users/dashboard/export 的 GET 请求；默认导出最近 30 天的 CSV
+     */
+    @GetMapping("/dashboard/export")
+    public void exportDailyStats(@RequestParam(name = "start", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate start,
+                                 @RequestParam(name = "end", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate end,
+                                 @RequestParam(name = "format", defaultValue = "CSV") DailyStatsExporter.Format format,
+                                 HttpServletResponse response) throws IOException {
+        LocalDate endDate = end != null ? end : LocalDate.now();
+        LocalDate startDate = start != null ? start : endDate.minusDays(29);
+        try {
+            DailyStatsExporter.checkRange(startDate, endDate);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+        response.setContentType(format.getContentType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=\"daily-stats-"
+                + startDate + "_" + endDate + "." + format.getExtension() + "\"");
+        dailyStatsExporter.export(startDate, endDate, format, response.getWriter());
+    }
+
     /**
      * 处理用户删除请求
      * 处理 /admin/users/{id}/delete 的 POST 请求
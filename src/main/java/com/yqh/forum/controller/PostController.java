@@ -1,30 +1,41 @@
 package com.yqh.forum.controller;
 
+import com.yqh.forum.config.cache.RenderedPageCacheFilter;
+import com.yqh.forum.config.security.CurrentUser;
+import com.yqh.forum.config.security.ForumUserDetails;
 import com.yqh.forum.dto.CommentDTO;
+import com.yqh.forum.dto.CursorPage;
 import com.yqh.forum.dto.PostDTO;
 import com.yqh.forum.model.Post;
-import com.yqh.forum.model.User; // **新增导入 User 实体类**
-import com.yqh.forum.repository.UserRepository; // **新增导入 UserRepository**
+import com.yqh.forum.repository.CommentRepository.CommentStats;
 import com.yqh.forum.service.CategoryService;
 import com.yqh.forum.service.CommentService;
 import com.yqh.forum.service.PostService;
-import com.yqh.forum.service.util.HtmlHeadingIdUtil;
-import com.yqh.forum.service.util.MarkdownUtil;
+import com.yqh.forum.service.SearchService;
+import com.yqh.forum.service.UserService;
+import com.yqh.forum.service.impl.ActivityBitmaps;
+import com.yqh.forum.service.impl.UniqueViewTracker;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * 帖子控制器
@@ -39,51 +50,65 @@ public class PostController {
     private CategoryService categoryService;
     @Autowired
     private CommentService commentService;
-    @Autowired // **新增注入 UserRepository**
-    private UserRepository userRepository;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UniqueViewTracker uniqueViewTracker;
+    @Autowired
+    private ActivityBitmaps activityBitmaps;
+    @Autowired
+    private SearchService searchService;
 
 
     /**
-     * 显示所有帖子，或根据分类显示帖子
-     * @param page
+     * 显示所有帖子，或根据分类显示帖子（游标分页）
+     * @param cursor 翻页游标，为空时显示最新一页
      * @param categoryId
+     * @param request
      * @param model
      * @return "post/list"
      */
     @GetMapping
     public String listPosts(
-            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) String cursor,
             @RequestParam(required = false) Long categoryId,
+            HttpServletRequest request,
             Model model) {
-        PageRequest pageRequest = PageRequest.of(page, 10, Sort.by("createdAt").descending());
-        Page<PostDTO> posts;
-
-        if (categoryId != null) {
-            posts = postService.findByCategoryId(categoryId, pageRequest);
-            // 在 Model 中保留 categoryId，以便在分页链接中使用
-            model.addAttribute("categoryId", categoryId);
-        } else {
-            posts = postService.findAll(pageRequest);
+        CursorPage<PostDTO> posts;
+        try {
+            if (categoryId != null) {
+                posts = postService.findSummariesByCategoryIdAndCursor(categoryId, cursor, 10);
+                // 在 Model 中保留 categoryId，以便在分页链接中使用
+                model.addAttribute("categoryId", categoryId);
+            } else {
+                posts = postService.findSummariesByCursor(cursor, 10);
+            }
+        } catch (IllegalArgumentException e) {
+            // 游标被篡改或格式过期，回到第一页
+            return categoryId != null ? "redirect:/post?categoryId=" + categoryId : "redirect:/post";
         }
 
         model.addAttribute("posts", posts);
+        addUniqueViews(posts.getContent(), model);
         model.addAttribute("categories", categoryService.findAll());
         // **确保添加 isMyPostsView 属性**
         model.addAttribute("isMyPostsView", false);
+        // 允许匿名访客的整页缓存保存这个页面（见 RenderedPageCacheFilter）
+        request.setAttribute(RenderedPageCacheFilter.CACHEABLE, true);
 
         return "post/list";
     }
 
     /**
-     * 显示当前登录用户的帖子列表
-     * @param page
+     * 显示当前登录用户的帖子列表（游标分页）
+     * @param cursor 翻页游标，为空时显示最新一页
      * @param userDetails
      * @param model
      * @return "post/list"
      */
     @GetMapping("/my")
     public String listMyPosts(
-            @RequestParam(defaultValue = "0") int page, // 分页参数
+            @RequestParam(required = false) String cursor, // 翻页游标
             @AuthenticationPrincipal UserDetails userDetails, // 获取当前登录用户详情
             Model model) {
 
@@ -92,15 +117,19 @@ public class PostController {
             return "redirect:/login";
         }
 
-        // 根据用户名查找用户实体，获取用户 ID
-        User currentUser = userRepository.findByUsername(userDetails.getUsername())
-                .orElseThrow(() -> new RuntimeException("Logged-in user not found in database"));
+        // 用户 ID 取自缓存的登录身份，不查 users 表
+        CurrentUser currentUser = userService.getCurrentUserIdentity();
 
-        // 根据当前用户 ID 获取该用户的帖子列表 (分页)
-        PageRequest pageRequest = PageRequest.of(page, 10, Sort.by("createdAt").descending());
-        Page<PostDTO> posts = postService.findByAuthor(currentUser.getId(), pageRequest);
+        // 根据当前用户 ID 获取该用户的帖子列表 (游标分页)
+        CursorPage<PostDTO> posts;
+        try {
+            posts = postService.findSummariesByAuthorAndCursor(currentUser.getId(), cursor, 10);
+        } catch (IllegalArgumentException e) {
+            return "redirect:/post/my";
+        }
 
         model.addAttribute("posts", posts); // 将帖子列表添加到 Model
+        addUniqueViews(posts.getContent(), model);
         model.addAttribute("categories", categoryService.findAll()); // 添加分类列表 (用于侧边栏)
         // **确保添加 isMyPostsView 属性**
         model.addAttribute("isMyPostsView", true);
@@ -120,10 +149,11 @@ public class PostController {
             @RequestParam String keyword,
             @RequestParam(defaultValue = "0") int page,
             Model model) {
-        PageRequest pageRequest = PageRequest.of(page, 10, Sort.by("createdAt").descending());
-        Page<PostDTO> posts = postService.search(keyword, pageRequest);
+        // 结果来自全文索引，按相关度排序
+        Page<PostDTO> posts = searchService.search(keyword, PageRequest.of(page, 10));
 
         model.addAttribute("posts", posts);
+        addUniqueViews(posts.getContent(), model);
         model.addAttribute("keyword", keyword);
         model.addAttribute("categories", categoryService.findAll());
         // **确保添加 isMyPostsView 属性**
@@ -183,7 +213,12 @@ public class PostController {
      * @return "post/view"
      */
     @GetMapping("/{id}")
-    public String viewPost(@PathVariable Long id, Model model) {
+    public String viewPost(@PathVariable Long id,
+                           @AuthenticationPrincipal UserDetails userDetails,
+                           HttpServletRequest request,
+                           HttpServletResponse response,
+                           WebRequest webRequest,
+                           Model model) {
         postService.incrementViewCount(id);
 
         PostDTO post = postService.findById(id);
@@ -192,17 +227,27 @@ public class PostController {
             return "error/404";
         }
 
+        uniqueViewTracker.record(id, UniqueViewTracker.visitorId(
+                userDetails != null ? userDetails.getUsername() : null, request, response));
+        if (userDetails instanceof ForumUserDetails) {
+            activityBitmaps.markActive(((ForumUserDetails) userDetails).getId());
+        }
 
-        //获取数据库中的markdown内容
-        String markdownContent = post.getContent();
-        //转换html
-        String rawHtmlContent = com.yqh.forum.service.util.MarkdownUtil.convertMarkdownToHtml(markdownContent);
-        //对html添加id
-        String htmlContentWithIds = HtmlHeadingIdUtil.addIdsToHtmlHeadings(rawHtmlContent);
+        // 匿名访客看到的页面只取决于帖子和评论（登录用户的页面带编辑按钮和 CSRF 令牌，不做条件请求），
+        // 内容没变时直接返回 304，不再加载评论、渲染页面
+        if (userDetails == null) {
+            CommentStats commentStats = commentService.findStatsByPostId(id);
+            if (webRequest.checkNotModified(etag(post, commentStats), lastModified(post, commentStats))) {
+                return null;
+            }
+            request.setAttribute(RenderedPageCacheFilter.CACHEABLE, true);
+        }
 
-        System.out.println(htmlContentWithIds);
+        //HTML 在发帖/编辑时已渲染好（含标题 ID），这里直接输出
         model.addAttribute("post", post);
-        model.addAttribute("postHtmlContent", htmlContentWithIds);
+        model.addAttribute("postHtmlContent", post.getHtmlContent());
+        // 缓存中的 PostDTO 是共享对象，浏览数单独放入 Model，不修改它
+        model.addAttribute("viewCount", postService.getViewCount(post));
 
         //评论列表
         Pageable pageable = PageRequest.of(0, 10);
@@ -298,4 +343,31 @@ public class PostController {
             return "redirect:/post/" + id;
         }
     }
-}
\ No newline at end of file
+
+    // 一次 pipeline 取出本页所有帖子的独立访客数
+    private void addUniqueViews(List<PostDTO> posts, Model model) {
+        model.addAttribute("uniqueViews", uniqueViewTracker.countUniqueViews(
+                posts.stream().map(PostDTO::getId).collect(Collectors.toList())));
+    }
+
+    /**
+     * 详情页的 ETag：帖子修改时间 + 评论数 + 最近一次评论修改时间。
+     * 页面上的浏览数不参与计算，所以是弱 ETag。
+     */
+    private static String etag(PostDTO post, CommentStats commentStats) {
+        return "W/\"" + post.getId() + "-" + toEpochMilli(post.getUpdatedAt()) + "-"
+                + commentStats.getCount() + "-" + toEpochMilli(commentStats.getLatestUpdatedAt()) + "\"";
+    }
+
+    /**
+     * 详情页的 Last-Modified：帖子和评论中最晚的修改时间。
+     * 删除评论不会让它变大，只带 If-Modified-Since 的客户端可能看不到删除，带 If-None-Match 的不受影响。
+     */
+    private static long lastModified(PostDTO post, CommentStats commentStats) {
+        return Math.max(toEpochMilli(post.getUpdatedAt()), toEpochMilli(commentStats.getLatestUpdatedAt()));
+    }
+
+    private static long toEpochMilli(LocalDateTime time) {
+        return time != null ? time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0L;
+    }
+}
@@ -4,6 +4,7 @@ import com.yqh.forum.dto.UserDTO;
 import com.yqh.forum.dto.UserRegistrationDTO;
 import com.yqh.forum.model.User;
 import com.yqh.forum.config.security.ForumUserDetails;
+import com.yqh.forum.config.security.PrincipalCache;
 import com.yqh.forum.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -40,6 +41,8 @@ public class UserController {
 //    使用Autowired注入，@Value注入字段不能是final
     @Autowired
     private UserService userService;
+    @Autowired
+    private PrincipalCache principalCache;
     //使用application.properties中配置的属性值
     @Value("${app.avatar-upload-dir}")
     private String UPLOAD_DIR;
@@ -80,14 +83,14 @@ public class UserController {
 
     @GetMapping("/profile")
     public String showProfile(Model model) {
-        UserDTO userDTO = userService.findByUsername(userService.getCurrentUser().getUsername());
+        UserDTO userDTO = userService.findByUsername(userService.getCurrentUserIdentity().getUsername());
         model.addAttribute("user", userDTO);
         return "user/profile";
     }
 
     @GetMapping("/profile/edit")
     public String showEditProfileForm(Model model) {
-        UserDTO userDTO = userService.findByUsername(userService.getCurrentUser().getUsername());
+        UserDTO userDTO = userService.findByUsername(userService.getCurrentUserIdentity().getUsername());
         model.addAttribute("user", userDTO);
         return "user/edit-profile";
     }
@@ -137,13 +140,14 @@ public class UserController {
             userService.updateUser(currentUser);
 
 //  更新${#authentication.principal.avatar}里的头像URL
-            // 1. 从数据库重新获取最新的用户实体 (确保数据是最新的，包括头像 URL)
-            //    或者确保 userService.updateUser 返回了更新后的实体并使用它
-            User updatedUserEntity = userService.getCurrentUser(); // 重新查询最新用户数据
+            // 1. currentUser 就是刚保存的最新数据，不再重新查询；
+            //    updateUser 已让缓存的身份失效（版本号 +1），新的 principal 带上新版本号，之后的请求直接使用它
+            User updatedUserEntity = currentUser;
             // 2. 获取当前用户的权限 (通常从旧的 principal 中获取即可，除非权限也会随资料更新而改变)
             Collection<? extends GrantedAuthority> authorities = userDetails.getAuthorities();
             // 3. 创建一个新的 ForumUserDetails 对象，使用最新的用户实体数据
-            ForumUserDetails updatedPrincipal = new ForumUserDetails(updatedUserEntity, authorities);
+            ForumUserDetails updatedPrincipal = new ForumUserDetails(updatedUserEntity, authorities,
+                    principalCache.version(updatedUserEntity.getId()));
             // 4. 创建一个新的 Authentication Token
             //    这里的密码通常不需要是明文，可以使用旧 principal 的密码哈希，或者如果不需要密码在 principal 中可访问，可以设为 null
             Authentication newAuth = new UsernamePasswordAuthenticationToken(
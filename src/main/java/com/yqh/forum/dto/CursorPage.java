@@ -0,0 +1,28 @@
+package com.yqh.forum.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 游标分页结果（类似 Slice，不含总数）。
+ * nextCursor 指向更早的一页，prevCursor 指向更新的一页，没有对应方向的页时为 null。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> content;
+    private String nextCursor;
+    private String prevCursor;
+
+    public boolean isHasNext() {
+        return nextCursor != null;
+    }
+
+    public boolean isHasPrevious() {
+        return prevCursor != null;
+    }
+}
@@ -0,0 +1,32 @@
+package com.yqh.forum.dto;
+
+import com.yqh.forum.service.TrendBucket;
+import lombok.Data;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * 后台仪表盘一次完整的统计结果（总览卡片 + 四条趋势），由 DashboardSnapshotService 生成并缓存。
+ * 多个请求共享同一个对象，生成后只能读，不要修改。
+ */
+@Data
+public class DashboardSnapshot {
+    private long totalUserCount;
+    private long totalPostCount;
+    private long totalCommentCount;
+    private long todayActiveUserCount;
+    private long weeklyActiveUserCount;
+    private long monthlyActiveUserCount;
+    // 前天注册用户的次日留存（昨天是完整的一天）
+    private double nextDayRetentionRate;
+
+    // 趋势窗口天数（含今天）与粒度；趋势为 <桶的标签, 数量>，按日期排序，标签见 TrendBucket
+    private int trendDays;
+    private TrendBucket trendBucket;
+    private Map<String, Long> userRegistrationTrend;
+    private Map<String, Long> postCreationTrend;
+    private Map<String, Long> commentCreationTrend;
+    private Map<String, Long> dauTrend;
+
+    private LocalDateTime generatedAt;
+}
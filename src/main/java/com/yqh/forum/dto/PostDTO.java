@@ -2,6 +2,7 @@ package com.yqh.forum.dto;
 
 import lombok.Data;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 public class PostDTO {
@@ -9,9 +10,12 @@ public class PostDTO {
     private String title;
     private String content; // 原始 Markdown 内容
     private String summaryContent; // **新增：用于列表页显示的摘要内容**
+    private String htmlContent; // 渲染后的 HTML，仅详情页使用
+    private List<TocItem> toc; // 文章目录，仅详情页使用
     private UserDTO author;
     private CategoryDTO category;
     private Integer viewCount;
+    private Integer uniqueViewCount;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 } 
\ No newline at end of file
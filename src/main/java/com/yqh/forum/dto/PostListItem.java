@@ -0,0 +1,31 @@
+package com.yqh.forum.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 帖子列表投影：列表页需要的列由一条 JOIN 查询直接取出（见 PostRepository.findListItemsByIds 等），
+ * 不加载正文、渲染结果和作者角色（summary 尚未回填的帖子除外，见 content）。字段顺序与 JPQL 构造表达式一致。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PostListItem {
+    private Long id;
+    private String title;
+    private String summary;
+    private Integer viewCount;
+    private Integer uniqueViewCount;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private Long authorId;
+    private String authorUsername;
+    private String authorAvatar;
+    private Long categoryId;
+    private String categoryName;
+    // 只有 summary 为 null（尚未回填）时才有值，用来生成摘要
+    private String content;
+}
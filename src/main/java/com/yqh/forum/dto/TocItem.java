@@ -0,0 +1,17 @@
+package com.yqh.forum.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 文章目录项，渲染 Markdown 时由服务端生成
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TocItem {
+    private int level;   // 标题级别 1-6
+    private String id;   // 标题元素的 id，例如 toc-heading-0
+    private String text; // 标题文本
+}
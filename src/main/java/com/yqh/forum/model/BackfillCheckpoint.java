@@ -0,0 +1,49 @@
+package com.yqh.forum.model;
+
+import lombok.Data;
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 数据回填任务的断点。
+ * 一个任务按 ID 区间切成若干块并行处理，每块一行，记录已处理到的最大 ID；
+ * 应用重启后从 lastId 继续，已完成的块直接跳过。
+ */
+@Data
+@Entity
+@Table(name = "backfill_checkpoints",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"job_name", "chunk_no"}))
+public class BackfillCheckpoint {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_name", nullable = false, length = 64)
+    private String jobName;
+
+    @Column(name = "chunk_no", nullable = false)
+    private Integer chunkNo;
+
+    // 区间 (rangeStart, rangeEnd]
+    @Column(name = "range_start", nullable = false)
+    private Long rangeStart;
+
+    @Column(name = "range_end", nullable = false)
+    private Long rangeEnd;
+
+    // 已处理到的最大 ID，初始为 rangeStart
+    @Column(name = "last_id", nullable = false)
+    private Long lastId;
+
+    @Column(nullable = false)
+    private boolean completed;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = LocalDateTime.now();
+    }
+}
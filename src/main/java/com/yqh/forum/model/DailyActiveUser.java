@@ -0,0 +1,25 @@
+package com.yqh.forum.model;
+
+import lombok.Data;
+import javax.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * 当天已计入 daily_stats.active_users 的用户，用于活跃用户数的去重。
+ * 只有尚未结束的日期需要去重，每晚校对后删除之前日期的记录。
+ */
+@Data
+@Entity
+@Table(name = "daily_active_users",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"stat_date", "user_id"}))
+public class DailyActiveUser {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "stat_date", nullable = false)
+    private LocalDate statDate;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+}
@@ -0,0 +1,36 @@
+package com.yqh.forum.model;
+
+import lombok.Data;
+import javax.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 每日统计汇总，每天一行。
+ * 当天的数据由 DailyStatsRollup 在注册、发帖、评论后累加，已结束的日期每晚按明细表重新计算一次。
+ * 仪表盘的趋势图只读这张表，查询量与天数成正比，与 users/posts/comments 的大小无关。
+ */
+@Data
+@Entity
+@Table(name = "daily_stats")
+public class DailyStat {
+    @Id
+    @Column(name = "stat_date")
+    private LocalDate statDate;
+
+    @Column(name = "new_users", nullable = false)
+    private long newUsers;
+
+    @Column(name = "new_posts", nullable = false)
+    private long newPosts;
+
+    @Column(name = "new_comments", nullable = false)
+    private long newComments;
+
+    // 当天发过帖子或评论的不同用户数
+    @Column(name = "active_users", nullable = false)
+    private long activeUsers;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -1,12 +1,19 @@
 package com.yqh.forum.model;
 
+import com.yqh.forum.dto.TocItem;
 import lombok.Data;
 import javax.persistence.*;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 @Entity
-@Table(name = "posts")
+// 列表 keyset 分页按 (created_at, id) 定位，全局、分类、作者三种列表各一个索引
+@Table(name = "posts", indexes = {
+        @Index(name = "idx_posts_created_id", columnList = "created_at, id"),
+        @Index(name = "idx_posts_category_created_id", columnList = "category_id, created_at, id"),
+        @Index(name = "idx_posts_user_created_id", columnList = "user_id, created_at, id")
+})
 public class Post {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -18,6 +25,23 @@ public class Post {
     @Column(columnDefinition = "TEXT")
     private String content;
 
+    // 列表页展示的摘要，写入时由 SummaryUtil 生成；存量数据由 PostSummaryBackfill 回填
+    @Column(name = "summary", length = 255)
+    private String summary;
+
+    // 写入时渲染好的 HTML（含标题 ID），详情页直接输出
+    @Column(name = "rendered_content", columnDefinition = "LONGTEXT")
+    private String renderedContent;
+
+    // 生成 renderedContent 时的渲染器版本，与 MarkdownUtil.RENDERER_VERSION 不一致时懒重渲染
+    @Column(name = "rendered_version")
+    private Integer renderedVersion;
+
+    // 与 renderedContent 一起生成的文章目录（JSON）
+    @Convert(converter = TocItemListConverter.class)
+    @Column(name = "rendered_toc", columnDefinition = "TEXT")
+    private List<TocItem> renderedToc;
+
     @ManyToOne(fetch = FetchType.EAGER)
     @JoinColumn(name = "user_id", nullable = false)
     private User author;
@@ -29,6 +53,10 @@ public class Post {
     @Column(name = "view_count")
     private Integer viewCount = 0;
 
+    // 独立访客数，由 UniqueViewTracker 定时从 Redis HyperLogLog 同步（估算值）
+    @Column(name = "unique_view_count")
+    private Integer uniqueViewCount = 0;
+
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
@@ -0,0 +1,44 @@
+package com.yqh.forum.model;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yqh.forum.dto.TocItem;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+import java.util.List;
+
+/**
+ * 目录以 JSON 形式存放在 posts.rendered_toc 列中
+ */
+@Converter
+public class TocItemListConverter implements AttributeConverter<List<TocItem>, String> {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<List<TocItem>> TYPE = new TypeReference<List<TocItem>>() {};
+
+    @Override
+    public String convertToDatabaseColumn(List<TocItem> toc) {
+        if (toc == null) {
+            return null;
+        }
+        try {
+            return MAPPER.writeValueAsString(toc);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("目录序列化失败", e);
+        }
+    }
+
+    @Override
+    public List<TocItem> convertToEntityAttribute(String json) {
+        if (json == null || json.isEmpty()) {
+            return null;
+        }
+        try {
+            return MAPPER.readValue(json, TYPE);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("目录反序列化失败", e);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.yqh.forum.model;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -53,7 +54,9 @@ public class User {
 
     // **新增：与 Role 实体的 @ManyToMany 关联映射**
     // FetchType.EAGER 表示加载 User 时立即加载关联的 Role 集合
+    // @BatchSize：一页评论/帖子涉及多个作者时，用一条 IN 查询批量加载它们的角色，而不是每个用户一条
     @ManyToMany(fetch = FetchType.EAGER)
+    @BatchSize(size = 50)
     // @JoinTable 定义了关联表的名称和外键关系
     @JoinTable(
             name = "user_roles", // 关联表的名称 (需要与数据库中的关联表名一致)
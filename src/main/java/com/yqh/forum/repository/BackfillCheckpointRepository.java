@@ -0,0 +1,10 @@
+package com.yqh.forum.repository;
+
+import com.yqh.forum.model.BackfillCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface BackfillCheckpointRepository extends JpaRepository<BackfillCheckpoint, Long> {
+    List<BackfillCheckpoint> findByJobNameOrderByChunkNo(String jobName);
+}
@@ -4,6 +4,7 @@ import com.yqh.forum.model.Comment;
 import com.yqh.forum.model.Post;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -15,6 +16,22 @@ public interface CommentRepository extends JpaRepository<Comment, Long> {
     Page<Comment> findByPost(Post post, Pageable pageable);
     Page<Comment> findByPostOrderByCreatedAtDesc(Post post, Pageable pageable);
 
+    // 评论和作者一条 JOIN 查询取回，避免逐条加载作者
+    @EntityGraph(attributePaths = "author")
+    @Query(value = "SELECT c FROM Comment c WHERE c.post.id = :postId ORDER BY c.createdAt DESC",
+            countQuery = "SELECT COUNT(c) FROM Comment c WHERE c.post.id = :postId")
+    Page<Comment> findWithAuthorByPostId(@Param("postId") Long postId, Pageable pageable);
+
+    // 帖子的评论数和最近一次评论修改时间，用于生成详情页的 ETag
+    @Query("SELECT COUNT(c) AS count, MAX(c.updatedAt) AS latestUpdatedAt FROM Comment c WHERE c.post.id = :postId")
+    CommentStats findStatsByPostId(@Param("postId") Long postId);
+
+    interface CommentStats {
+        long getCount();
+
+        LocalDateTime getLatestUpdatedAt(); // 没有评论时为 null
+    }
+
     // 获取在指定日期范围内每天的评论创建数量
     @Query("SELECT DATE(c.createdAt) as creationDate, COUNT(c.id) as count " +
             "FROM Comment c " +
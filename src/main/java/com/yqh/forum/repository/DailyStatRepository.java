@@ -0,0 +1,11 @@
+package com.yqh.forum.repository;
+
+import com.yqh.forum.model.DailyStat;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DailyStatRepository extends JpaRepository<DailyStat, LocalDate> {
+    List<DailyStat> findByStatDateBetweenOrderByStatDate(LocalDate startDate, LocalDate endDate);
+}
@@ -1,20 +1,24 @@
 package com.yqh.forum.repository;
 
+import com.yqh.forum.dto.PostListItem;
+import com.yqh.forum.dto.TocItem;
 import com.yqh.forum.model.Post;
 import com.yqh.forum.model.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 
 @Repository
-public interface PostRepository extends JpaRepository<Post, Long> {
+public interface PostRepository extends JpaRepository<Post, Long>, PostRepositoryCustom {
     Page<Post> findByAuthor(User author, Pageable pageable);
     
     @Query("SELECT p FROM Post p ORDER BY p.createdAt DESC")
@@ -26,6 +30,24 @@ public interface PostRepository extends JpaRepository<Post, Long> {
     Page<Post> findByCategoryId(Long categoryId, Pageable pageable);
     Page<Post> findByTitleContainingOrContentContaining(String title, String content, Pageable pageable);
 
+    // ---- 列表投影：一条 JOIN 查询取出列表页所需的列，不读取正文 ----
+    // summary 为空（存量数据尚未回填）时才取出正文，由调用方用 SummaryUtil 生成摘要（直接截取会显示 Markdown 标记）
+
+    String LIST_ITEM_SELECT = "SELECT new com.yqh.forum.dto.PostListItem(" +
+            "p.id, p.title, p.summary, p.viewCount, p.uniqueViewCount, " +
+            "p.createdAt, p.updatedAt, a.id, a.username, a.avatar, c.id, c.name, " +
+            "CASE WHEN p.summary IS NULL THEN p.content END) " +
+            "FROM Post p JOIN p.author a JOIN p.category c ";
+
+    // 搜索结果按 ID 回表，顺序由调用方按得分重排
+    @Query(LIST_ITEM_SELECT + "WHERE p.id IN :ids")
+    List<PostListItem> findListItemsByIds(@Param("ids") Collection<Long> ids);
+
+    @Query(value = LIST_ITEM_SELECT + "WHERE p.title LIKE CONCAT('%', :keyword, '%') OR p.content LIKE CONCAT('%', :keyword, '%')",
+            countQuery = "SELECT COUNT(p) FROM Post p " +
+                    "WHERE p.title LIKE CONCAT('%', :keyword, '%') OR p.content LIKE CONCAT('%', :keyword, '%')")
+    Page<PostListItem> searchListItems(@Param("keyword") String keyword, Pageable pageable);
+
 
     // 使用 MySQL 的 DATE() 函数
     @Query("SELECT DATE(p.createdAt) as creationDate, COUNT(p.id) as count " +
@@ -40,4 +62,55 @@ public interface PostRepository extends JpaRepository<Post, Long> {
     @Query("SELECT DISTINCT p.author.id FROM Post p WHERE p.createdAt >= :startDate AND p.createdAt < :endDate")
     List<Long> findDistinctAuthorIdsByCreatedAtBetween(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
 
+    // 按天统计发帖或评论的不同用户数（日活）；JPQL 不支持 UNION，用原生 SQL 一次查出
+    // UNION 先按 (日期, 用户) 去重，外层每组的行数就是当天的活跃用户数
+    @Query(value = "SELECT a.activity_date, COUNT(*) FROM (" +
+            "SELECT DATE(p.created_at) AS activity_date, p.user_id FROM posts p " +
+            "WHERE p.created_at >= :startDate AND p.created_at < :endDate " +
+            "UNION " +
+            "SELECT DATE(c.created_at) AS activity_date, c.user_id FROM comments c " +
+            "WHERE c.created_at >= :startDate AND c.created_at < :endDate" +
+            ") a GROUP BY a.activity_date ORDER BY a.activity_date ASC", nativeQuery = true)
+    List<Object[]> countDailyActiveUsersByDateRange(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
+
+    // 区间内发过帖或评论的不同用户数（没有活跃位图时的周活、月活）
+    @Query(value = "SELECT COUNT(*) FROM (" +
+            "SELECT p.user_id FROM posts p WHERE p.created_at >= :startDate AND p.created_at < :endDate " +
+            "UNION " +
+            "SELECT c.user_id FROM comments c WHERE c.created_at >= :startDate AND c.created_at < :endDate" +
+            ") a", nativeQuery = true)
+    long countActiveUsersByDateRange(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
+
+    // 按周（周一开始）、按月统计发过帖或评论的不同用户数，返回 [桶的第一天, 数量] 行
+    @Query(value = "SELECT DATE_SUB(a.activity_date, INTERVAL WEEKDAY(a.activity_date) DAY) AS bucket_start, " +
+            "COUNT(DISTINCT a.user_id) FROM (" +
+            "SELECT DATE(p.created_at) AS activity_date, p.user_id FROM posts p " +
+            "WHERE p.created_at >= :startDate AND p.created_at < :endDate " +
+            "UNION " +
+            "SELECT DATE(c.created_at) AS activity_date, c.user_id FROM comments c " +
+            "WHERE c.created_at >= :startDate AND c.created_at < :endDate" +
+            ") a GROUP BY bucket_start ORDER BY bucket_start ASC", nativeQuery = true)
+    List<Object[]> countWeeklyActiveUsersByDateRange(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
+
+    @Query(value = "SELECT DATE_FORMAT(a.activity_date, '%Y-%m-01') AS bucket_start, " +
+            "COUNT(DISTINCT a.user_id) FROM (" +
+            "SELECT DATE(p.created_at) AS activity_date, p.user_id FROM posts p " +
+            "WHERE p.created_at >= :startDate AND p.created_at < :endDate " +
+            "UNION " +
+            "SELECT DATE(c.created_at) AS activity_date, c.user_id FROM comments c " +
+            "WHERE c.created_at >= :startDate AND c.created_at < :endDate" +
+            ") a GROUP BY bucket_start ORDER BY bucket_start ASC", nativeQuery = true)
+    List<Object[]> countMonthlyActiveUsersByDateRange(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
+
+    // 懒重渲染后回写 HTML；以 updatedAt 为条件，帖子在此期间被编辑过则放弃回写
+    // JPQL 批量更新不会触发 @PreUpdate，不会改动 updatedAt
+    @Modifying
+    @Query("UPDATE Post p SET p.renderedContent = :html, p.renderedToc = :toc, p.renderedVersion = :version " +
+            "WHERE p.id = :id AND p.updatedAt = :updatedAt")
+    int updateRenderedContent(@Param("id") Long id,
+                              @Param("html") String html,
+                              @Param("toc") List<TocItem> toc,
+                              @Param("version") Integer version,
+                              @Param("updatedAt") LocalDateTime updatedAt);
+
 } 
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.yqh.forum.repository;
+
+import com.yqh.forum.dto.PostListItem;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * PostRepository 的自定义查询片段，实现见 PostRepositoryImpl
+ */
+public interface PostRepositoryCustom {
+
+    /**
+     * 按 (createdAt, id) 做 keyset 分页查询列表投影，不使用 OFFSET，也不统计总数。
+     * @param categoryId 分类过滤，可为 null
+     * @param authorId   作者过滤，可为 null
+     * @param createdAt  游标位置的创建时间，为 null 时从最新的帖子开始
+     * @param id         游标位置的帖子 ID
+     * @param older      true 取游标之前（更早）的帖子，按时间倒序；false 取之后（更新）的帖子，按时间正序
+     * @param limit      最多返回的条数
+     */
+    List<PostListItem> findListItemsByKeyset(Long categoryId, Long authorId,
+                                             LocalDateTime createdAt, Long id,
+                                             boolean older, int limit);
+}
@@ -0,0 +1,50 @@
+package com.yqh.forum.repository;
+
+import com.yqh.forum.dto.PostListItem;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class PostRepositoryImpl implements PostRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<PostListItem> findListItemsByKeyset(Long categoryId, Long authorId,
+                                                    LocalDateTime createdAt, Long id,
+                                                    boolean older, int limit) {
+        StringBuilder jpql = new StringBuilder(PostRepository.LIST_ITEM_SELECT).append("WHERE 1 = 1");
+        if (categoryId != null) {
+            jpql.append(" AND c.id = :categoryId");
+        }
+        if (authorId != null) {
+            jpql.append(" AND a.id = :authorId");
+        }
+        if (createdAt != null) {
+            // 前半部分给出 created_at 上的范围条件，便于走 (created_at, id) 索引
+            jpql.append(older
+                    ? " AND p.createdAt <= :createdAt AND (p.createdAt < :createdAt OR p.id < :id)"
+                    : " AND p.createdAt >= :createdAt AND (p.createdAt > :createdAt OR p.id > :id)");
+        }
+        jpql.append(older
+                ? " ORDER BY p.createdAt DESC, p.id DESC"
+                : " ORDER BY p.createdAt ASC, p.id ASC");
+
+        TypedQuery<PostListItem> query = entityManager.createQuery(jpql.toString(), PostListItem.class);
+        if (categoryId != null) {
+            query.setParameter("categoryId", categoryId);
+        }
+        if (authorId != null) {
+            query.setParameter("authorId", authorId);
+        }
+        if (createdAt != null) {
+            query.setParameter("createdAt", createdAt);
+            query.setParameter("id", id);
+        }
+        return query.setMaxResults(limit).getResultList();
+    }
+}
@@ -0,0 +1,29 @@
+package com.yqh.forum.service;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * 用户注册、发帖、发表评论后发布的事件，每日统计（daily_stats）据此累加。
+ * occurredAt 取实体的创建时间，决定计入哪一天。
+ */
+@Getter
+public class ActivityEvent {
+
+    public enum Type {
+        USER_REGISTERED,
+        POST_CREATED,
+        COMMENT_CREATED
+    }
+
+    private final Type type;
+    private final Long userId;
+    private final LocalDateTime occurredAt;
+
+    public ActivityEvent(Type type, Long userId, LocalDateTime occurredAt) {
+        this.type = type;
+        this.userId = userId;
+        this.occurredAt = occurredAt != null ? occurredAt : LocalDateTime.now();
+    }
+}
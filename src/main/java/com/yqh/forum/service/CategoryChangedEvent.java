@@ -0,0 +1,7 @@
+package com.yqh.forum.service;
+
+/**
+ * 分类新建、编辑或删除后发布的事件。分类很少，监听方整体处理，不带分类 ID。
+ */
+public class CategoryChangedEvent {
+}
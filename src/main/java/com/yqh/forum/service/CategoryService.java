@@ -1,40 +1,26 @@
 package com.yqh.forum.service;
 
 import com.yqh.forum.dto.CategoryDTO;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.annotation.Caching; // 导入 Caching 注解
 import java.util.List;
 
+/**
+ * 分类服务。分类的读取走内存快照（见 CategorySnapshot），不再使用 Spring Cache。
+ */
 public interface CategoryService {
 
-    // 创建分类后，清除所有分类列表的缓存
-    @CacheEvict(value = "categories", allEntries = true)
     CategoryDTO createCategory(CategoryDTO categoryDTO);
 
-    // 更新分类后，清除该分类的缓存以及所有分类列表的缓存
-    @Caching(evict = {
-            @CacheEvict(value = "category", key = "#id"), // 清除单个分类缓存
-            @CacheEvict(value = "categories", allEntries = true) // 清除所有分类列表缓存
-    })
     CategoryDTO updateCategory(Long id, CategoryDTO categoryDTO);
 
-    // 删除分类后，清除该分类的缓存以及所有分类列表的缓存
-    @Caching(evict = {
-            @CacheEvict(value = "category", key = "#id"), // 清除单个分类缓存
-            @CacheEvict(value = "categories", allEntries = true) // 清除所有分类列表缓存
-    })
     void deleteCategory(Long id);
 
-    // 缓存单个分类详情
-    @Cacheable(value = "category", key = "#id")
+    // 从内存快照读取，不存在时返回 null
     CategoryDTO findById(Long id);
 
-    // 缓存所有分类列表
-    @Cacheable(value = "categories") // 对于无参数的 findAll，可以只指定 value
+    // 从内存快照读取，每个页面的侧边栏都会调用；返回的列表不可修改
     List<CategoryDTO> findAll();
 
-    // 这个方法通常不缓存，因为它用于实时校验
+    // 这个方法不走快照，因为它用于实时校验
     boolean existsByName(String name);
 }
 
@@ -0,0 +1,16 @@
+package com.yqh.forum.service;
+
+import lombok.Getter;
+
+/**
+ * 评论新建、编辑或删除后发布的事件，只带所属帖子的 ID。
+ */
+@Getter
+public class CommentChangedEvent {
+
+    private final Long postId;
+
+    public CommentChangedEvent(Long postId) {
+        this.postId = postId;
+    }
+}
@@ -1,16 +1,53 @@
 package com.yqh.forum.service;
 
+import java.time.LocalDate;
 import java.util.Map;
 
 /**
  * 获取仪表盘的数据
  */
 public interface DashboardAnalyticsService {
+
+    // 趋势窗口最长天数，超过一年 "MM-dd" 标签会重复
+    int MAX_TREND_DAYS = 365;
+    // 按周、按月汇总时窗口最长天数（约十年）
+    int MAX_RANGE_DAYS = 3660;
+
     long getTotalUserCount();
     long getTotalPostCount();
     long getTotalCommentCount();
     long getTodayActiveUserCount(); // 定义“今日活跃”
 
+    /**
+     * 按天统计 [startDate, endDate]（两端都包含）内的数据，每个指标只查询一次，
+     * 没有数据的日期补 0。返回 <日期字符串 "MM-dd", 数量>，按日期排序。
+     * 窗口超过 MAX_TREND_DAYS 天或 startDate 晚于 endDate 时抛出 IllegalArgumentException。
+     */
+    Map<String, Long> getUserRegistrationTrend(LocalDate startDate, LocalDate endDate);
+    Map<String, Long> getPostCreationTrend(LocalDate startDate, LocalDate endDate);
+    Map<String, Long> getCommentCreationTrend(LocalDate startDate, LocalDate endDate);
+    Map<String, Long> getDauTrend(LocalDate startDate, LocalDate endDate); // 当天活跃的不同用户数，见 getActiveUserCount
+
+    /**
+     * 按 bucket 汇总 [startDate, endDate] 内的指标，每个指标只查询一次，没有数据的桶补 0。
+     * 标签见 TrendBucket；首尾的周、月只统计窗口内的日期。按天时与上面四个方法相同。
+     * 活跃用户按周、按月是桶内活跃过的不同用户数，而不是日活之和。
+     * 窗口超过 bucket.maxDays() 天或 startDate 晚于 endDate 时抛出 IllegalArgumentException。
+     */
+    Map<String, Long> getTrend(TrendMetric metric, LocalDate startDate, LocalDate endDate, TrendBucket bucket);
+
+    /**
+     * [startDate, endDate] 内活跃过的不同用户数（7 天为周活，30 天为月活）。
+     * 活跃位图完整覆盖窗口（位图开始记录的次日及之后，且没有超出位图的保留天数）时按登录、浏览、发帖、评论统计，
+     * 否则整个窗口按发过帖或评论统计；日活趋势和按周、按月的活跃用户也是如此，同一个结果只用一种口径。
+     */
+    long getActiveUserCount(LocalDate startDate, LocalDate endDate);
+
+    /**
+     * signupDay 注册的用户在 daysLater 天后仍活跃的比例（0~1），没有注册用户或没有位图数据时为 0
+     */
+    double getRetentionRate(LocalDate signupDay, int daysLater);
+
     Map<String, Long> getUserRegistrationTrendLast7Days(); // 返回 <日期字符串, 数量>
     Map<String, Long> getPostCreationTrendLast7Days();
     Map<String, Long> getCommentCreationTrendLast7Days();
@@ -1,24 +1,35 @@
 package com.yqh.forum.service;
 
+import com.yqh.forum.dto.CursorPage;
 import com.yqh.forum.dto.PostDTO;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.annotation.Caching; // <-- 导入这个新的注解
+import org.springframework.cache.annotation.Caching;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.List;
+
 public interface PostService {
 
-    @CacheEvict(value = {"posts", "postsByCategoryId", "postsByAuthor"}, allEntries = true)
+    @CacheEvict(value = {"posts", "postsByCategoryId", "postsByAuthor", "searchPostSummaries"}, allEntries = true)
     PostDTO createPost(PostDTO postDTO, String username);
 
-    @CacheEvict(value = {"post", "posts", "postsByCategoryId", "postsByAuthor"}, key = "#id")
+    // 列表缓存的 key 是分页参数而不是帖子 ID，编辑/删除后需要整体清除
+    @Caching(evict = {
+            @CacheEvict(value = "post", key = "#id"),
+            @CacheEvict(value = {"posts", "postsByCategoryId", "postsByAuthor", "searchPostSummaries"}, allEntries = true)
+    })
     PostDTO updatePost(Long id, PostDTO postDTO, String username);
 
-    @CacheEvict(value = {"post", "posts", "postsByCategoryId", "postsByAuthor"}, key = "#id")
+    @Caching(evict = {
+            @CacheEvict(value = "post", key = "#id"),
+            @CacheEvict(value = {"posts", "postsByCategoryId", "postsByAuthor", "searchPostSummaries"}, allEntries = true)
+    })
     void deletePost(Long id, String username);
 
-    @Cacheable(value = "post", key = "#id")
+    // sync = true：缓存过期时同一帖子的并发请求只有一个去查库（见 CoalescingCache）
+    @Cacheable(value = "post", key = "#id", sync = true)
     PostDTO findById(Long id);
 
     @Cacheable(value = "posts", key = "{#pageable.pageNumber, #pageable.pageSize, #pageable.sort}")
@@ -30,15 +41,33 @@ public interface PostService {
     @Cacheable(value = "searchPosts", key = "{#keyword, #pageable.pageNumber, #pageable.pageSize, #pageable.sort}")
     Page<PostDTO> search(String keyword, Pageable pageable);
 
-    // **修改点：将两个 @CacheEvict 合并到 @Caching 中**
-    @Caching(evict = {
-            @CacheEvict(value = "post", key = "#id"), // 清除单个帖子缓存
-            @CacheEvict(value = {"posts", "postsByCategoryId", "postsByAuthor"}, allEntries = true) // 清除所有列表缓存
-    })
+    // 浏览数先累计在内存中，由 ViewCountBuffer 定时批量写回；写回后不清除帖子缓存，
+    // 页面显示的浏览数通过 getViewCount 在渲染时加上尚未写回的增量
     void incrementViewCount(Long id);
 
+    // 页面上显示的浏览数：缓存中的浏览数加上尚未写回数据库的增量
+    long getViewCount(PostDTO post);
+
     @Cacheable(value = "postsByAuthor", key = "{#userId, #pageable.pageNumber, #pageable.pageSize, #pageable.sort}")
     Page<PostDTO> findByAuthor(Long userId, Pageable pageable);
+
+    // ---- 列表页专用：只查询列表展示需要的列，返回的 PostDTO 不含正文 ----
+
+    // 按给定 ID 顺序返回列表 DTO，不存在的 ID 跳过（用于搜索结果回表）
+    List<PostDTO> findSummariesByIds(List<Long> ids);
+
+    @Cacheable(value = "searchPostSummaries", key = "{#keyword, #pageable.pageNumber, #pageable.pageSize, #pageable.sort}")
+    Page<PostDTO> searchSummaries(String keyword, Pageable pageable);
+
+    // ---- 列表页游标分页：按 (createdAt, id) 定位，不使用 OFFSET 和 COUNT，任意深度翻页代价相同 ----
+    // cursor 为 null 时返回最新一页；游标不合法时抛出 IllegalArgumentException
+    // 游标取值无限，不做缓存
+
+    CursorPage<PostDTO> findSummariesByCursor(String cursor, int size);
+
+    CursorPage<PostDTO> findSummariesByCategoryIdAndCursor(Long categoryId, String cursor, int size);
+
+    CursorPage<PostDTO> findSummariesByAuthorAndCursor(Long userId, String cursor, int size);
 }
 
 //package com.yqh.forum.service;
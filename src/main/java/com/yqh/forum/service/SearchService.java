@@ -0,0 +1,33 @@
+package com.yqh.forum.service;
+
+import com.yqh.forum.dto.PostDTO;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * 帖子全文检索，基于本地倒排索引（见 service.search 包）
+ */
+public interface SearchService {
+
+    /**
+     * 检索帖子，结果按相关度排序，只包含列表页需要的字段
+     */
+    Page<PostDTO> search(String keyword, Pageable pageable);
+
+    /**
+     * 从数据库全量重建索引（同步执行）
+     * @throws IllegalStateException 已有重建任务在进行
+     */
+    void rebuildIndex();
+
+    /**
+     * 在后台线程中重建索引
+     * @return 已有重建任务在进行时返回 false
+     */
+    boolean startRebuild();
+
+    /**
+     * 当前索引中的帖子数
+     */
+    int indexedPostCount();
+}
@@ -0,0 +1,72 @@
+package com.yqh.forum.service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * 趋势的时间粒度。长窗口按周或按月汇总，图表上的点数保持在几十个以内。
+ * 周从周一开始，标签是周一的日期；按天的标签 "MM-dd" 不带年份，所以按天最长 MAX_TREND_DAYS 天。
+ */
+public enum TrendBucket {
+
+    DAY("MM-dd", DashboardAnalyticsService.MAX_TREND_DAYS),
+    WEEK("yyyy-MM-dd", DashboardAnalyticsService.MAX_RANGE_DAYS),
+    MONTH("yyyy-MM", DashboardAnalyticsService.MAX_RANGE_DAYS);
+
+    private final DateTimeFormatter labelFormatter;
+    private final int maxDays;
+
+    TrendBucket(String labelPattern, int maxDays) {
+        this.labelFormatter = DateTimeFormatter.ofPattern(labelPattern);
+        this.maxDays = maxDays;
+    }
+
+    /**
+     * date 所在桶的第一天
+     */
+    public LocalDate start(LocalDate date) {
+        switch (this) {
+            case WEEK:
+                return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH:
+                return date.withDayOfMonth(1);
+            default:
+                return date;
+        }
+    }
+
+    /**
+     * 下一个桶的第一天
+     */
+    public LocalDate next(LocalDate bucketStart) {
+        switch (this) {
+            case WEEK:
+                return bucketStart.plusWeeks(1);
+            case MONTH:
+                return bucketStart.plusMonths(1);
+            default:
+                return bucketStart.plusDays(1);
+        }
+    }
+
+    public String label(LocalDate bucketStart) {
+        return bucketStart.format(labelFormatter);
+    }
+
+    // 这个粒度允许的最长窗口（天）
+    public int maxDays() {
+        return maxDays;
+    }
+
+    /**
+     * 没有指定粒度时按窗口长度选择：三个月以内按天，两年以内按周，更长按月
+     */
+    public static TrendBucket forDays(int days) {
+        if (days <= 92) {
+            return DAY;
+        }
+        return days <= 731 ? WEEK : MONTH;
+    }
+}
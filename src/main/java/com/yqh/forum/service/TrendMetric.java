@@ -0,0 +1,12 @@
+package com.yqh.forum.service;
+
+/**
+ * 仪表盘趋势的指标
+ */
+public enum TrendMetric {
+    NEW_USERS,
+    NEW_POSTS,
+    NEW_COMMENTS,
+    // 按天为日活；按周、按月为桶内活跃过的不同用户数
+    ACTIVE_USERS
+}
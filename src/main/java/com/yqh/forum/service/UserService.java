@@ -1,5 +1,6 @@
 package com.yqh.forum.service;
 
+import com.yqh.forum.config.security.CurrentUser;
 import com.yqh.forum.dto.UserDTO;
 import com.yqh.forum.dto.UserRegistrationDTO;
 import com.yqh.forum.model.User;
@@ -12,7 +13,10 @@ public interface UserService {
     UserDTO findByEmail(String email);
     boolean existsByUsername(String username);
     boolean existsByEmail(String email);
+    // 从数据库加载当前用户实体，需要修改用户时使用
     User getCurrentUser();
+    // 当前用户的身份（id、用户名、邮箱、头像、角色），来自 PrincipalCache，通常不查库
+    CurrentUser getCurrentUserIdentity();
     void updateUser(User user);
     void changePassword(String currentPassword, String newPassword, String confirmPassword);
     List<User> getAllUsers();
@@ -0,0 +1,304 @@
+package com.yqh.forum.service.impl;
+
+import com.yqh.forum.config.cache.RedisCircuitBreaker;
+import com.yqh.forum.config.security.ForumUserDetails;
+import com.yqh.forum.service.ActivityEvent;
+import com.yqh.forum.service.TrendBucket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.RedisStringCommands.BitOperation;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于 Redis 位图的每日活跃用户统计。
+ * 每天一个位图 activity:day:{yyyyMMdd}，第 userId 位为 1 表示该用户当天活跃（登录、浏览帖子、发帖、评论）；
+ * 注册当天另记一个位图 activity:signup:{yyyyMMdd}，用于留存分析。
+ * 日活是一次 BITCOUNT；周活、月活是多天位图 BITOP OR 之后 BITCOUNT；留存是注册位图与之后某天的位图 BITOP AND。
+ * 单个位图约为 最大用户ID/8 字节（10 万用户约 12KB），保留 app.activity.retention-days 天后过期，
+ * 过期的位图读出来是 0，查询更早的日期前先用 retainedSince 判断。
+ * 同一用户当天在本节点只写一次 Redis；Redis 不可用时只记录日志，不影响请求，查询返回空结果由调用方回退。
+ * 记录在请求线程上执行，经过 RedisCircuitBreaker；多天的位图运算可能较慢，不受熔断器的超时限制。
+ */
+@Component
+public class ActivityBitmaps {
+
+    private static final Logger logger = LoggerFactory.getLogger(ActivityBitmaps.class);
+
+    private static final String DAY_KEY_PREFIX = "activity:day:";
+    private static final String SIGNUP_KEY_PREFIX = "activity:signup:";
+    private static final String TMP_KEY_PREFIX = "activity:tmp:";
+    // 第一次记录活跃的日期，之前的日期没有位图
+    private static final String SINCE_KEY = "activity:since";
+    private static final DateTimeFormatter KEY_FORMATTER = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisCircuitBreaker redisCircuitBreaker;
+    private final int retentionDays;
+    private final long ttlSeconds;
+    private final Clock clock;
+
+    // 本节点当天已写入 Redis 的用户，跨天后整体换新
+    private volatile RecordedUsers recorded;
+
+    @Autowired
+    public ActivityBitmaps(StringRedisTemplate redisTemplate, RedisCircuitBreaker redisCircuitBreaker,
+                           @Value("${app.activity.retention-days:400}") int retentionDays) {
+        this(redisTemplate, redisCircuitBreaker, retentionDays, Clock.systemDefaultZone());
+    }
+
+    ActivityBitmaps(StringRedisTemplate redisTemplate, RedisCircuitBreaker redisCircuitBreaker, int retentionDays, Clock clock) {
+        this.redisTemplate = redisTemplate;
+        this.redisCircuitBreaker = redisCircuitBreaker;
+        this.retentionDays = retentionDays;
+        this.ttlSeconds = retentionDays * 86_400L;
+        this.clock = clock;
+        this.recorded = new RecordedUsers(LocalDate.now(clock));
+    }
+
+    // ---- 记录 ----
+
+    /**
+     * 记录用户今天活跃
+     */
+    public void markActive(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        LocalDate today = LocalDate.now(clock);
+        RecordedUsers current = recorded;
+        if (!current.day.equals(today)) {
+            current = new RecordedUsers(today);
+            recorded = current;
+        }
+        if (!current.userIds.add(userId)) {
+            return;
+        }
+        if (!write(today, userId, false)) {
+            // 写入失败，下次活跃时重试
+            current.userIds.remove(userId);
+        }
+    }
+
+    private boolean write(LocalDate day, Long userId, boolean signup) {
+        String dayKey = dayKey(day);
+        try {
+            // SETBIT + EXPIRE 放在一个 pipeline 里，一次网络往返
+            redisCircuitBreaker.execute(() -> redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                conn.setBit(dayKey, userId, true);
+                conn.expire(dayKey, ttlSeconds);
+                if (signup) {
+                    conn.setBit(signupKey(day), userId, true);
+                    conn.expire(signupKey(day), ttlSeconds);
+                }
+                conn.setNX(SINCE_KEY, day.format(KEY_FORMATTER));
+                return null;
+            }));
+            return true;
+        } catch (RuntimeException e) {
+            logger.debug("记录用户 {} 的活跃位图失败: {}", userId, e.getMessage());
+            return false;
+        }
+    }
+
+    @EventListener
+    public void onLogin(AuthenticationSuccessEvent event) {
+        Object principal = event.getAuthentication().getPrincipal();
+        if (principal instanceof ForumUserDetails) {
+            markActive(((ForumUserDetails) principal).getId());
+        }
+    }
+
+    // 注册、发帖、评论提交后记录；注册同时写入当天的注册位图
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onActivity(ActivityEvent event) {
+        if (event.getType() == ActivityEvent.Type.USER_REGISTERED) {
+            write(event.getOccurredAt().toLocalDate(), event.getUserId(), true);
+        } else {
+            markActive(event.getUserId());
+        }
+    }
+
+    // ---- 查询 ----
+
+    /**
+     * 开始记录活跃位图的日期；Redis 不可用或从未记录时为空
+     */
+    public Optional<LocalDate> trackingSince() {
+        try {
+            String value = redisCircuitBreaker.execute(() -> redisTemplate.opsForValue().get(SINCE_KEY));
+            return value != null ? Optional.of(LocalDate.parse(value, KEY_FORMATTER)) : Optional.empty();
+        } catch (RuntimeException e) {
+            logger.debug("读取活跃位图起始日期失败: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * 位图仍然保留的最早日期。某天的位图最后一次写入在当天，过期时间从那时算起，
+     * 所以 retention-days 天前那天的位图可能在今天任意时刻过期，只有之后的日期一定还在
+     */
+    public LocalDate retainedSince() {
+        return LocalDate.now(clock).minusDays(retentionDays - 1);
+    }
+
+    /**
+     * [startDate, endDate] 内每天的活跃用户数，一次 pipeline 完成
+     * @return 日期 -> 活跃用户数，按日期排序；Redis 不可用时返回空 Map
+     */
+    public Map<LocalDate, Long> dailyActiveUsers(LocalDate startDate, LocalDate endDate) {
+        List<LocalDate> days = new ArrayList<>();
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+            days.add(date);
+        }
+        try {
+            List<Object> counts = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (LocalDate day : days) {
+                    conn.bitCount(dayKey(day));
+                }
+                return null;
+            });
+            Map<LocalDate, Long> result = new LinkedHashMap<>();
+            for (int i = 0; i < days.size(); i++) {
+                result.put(days.get(i), (Long) counts.get(i));
+            }
+            return result;
+        } catch (RuntimeException e) {
+            logger.debug("读取日活位图失败: {}", e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * [startDate, endDate] 内活跃过的不同用户数（7 天为周活，30 天为月活）
+     */
+    public OptionalLong activeUsers(LocalDate startDate, LocalDate endDate) {
+        List<String> keys = new ArrayList<>();
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+            keys.add(dayKey(date));
+        }
+        return countCombined(BitOperation.OR, keys.toArray(new String[0]));
+    }
+
+    /**
+     * [startDate, endDate] 内按 bucket 划分，每个桶活跃过的不同用户数；首尾的桶只包含窗口内的日期。
+     * 所有桶的 BITOP OR、BITCOUNT、DEL 放在一个 pipeline 里
+     * @return 桶的第一天 -> 活跃用户数，按日期排序；Redis 不可用时返回空 Map
+     */
+    public Map<LocalDate, Long> activeUsersByBucket(LocalDate startDate, LocalDate endDate, TrendBucket bucket) {
+        Map<LocalDate, String[]> bucketKeys = new LinkedHashMap<>();
+        for (LocalDate bucketStart = bucket.start(startDate); !bucketStart.isAfter(endDate); bucketStart = bucket.next(bucketStart)) {
+            List<String> keys = new ArrayList<>();
+            LocalDate last = bucket.next(bucketStart).minusDays(1);
+            for (LocalDate date = bucketStart.isBefore(startDate) ? startDate : bucketStart;
+                 !date.isAfter(last) && !date.isAfter(endDate); date = date.plusDays(1)) {
+                keys.add(dayKey(date));
+            }
+            bucketKeys.put(bucketStart, keys.toArray(new String[0]));
+        }
+        String destinationPrefix = TMP_KEY_PREFIX + UUID.randomUUID() + ":";
+        try {
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                int i = 0;
+                for (String[] keys : bucketKeys.values()) {
+                    String destination = destinationPrefix + i++;
+                    conn.bitOp(BitOperation.OR, destination, keys);
+                    conn.bitCount(destination);
+                    conn.del(destination);
+                }
+                return null;
+            });
+            Map<LocalDate, Long> result = new LinkedHashMap<>();
+            int i = 0;
+            for (LocalDate bucketStart : bucketKeys.keySet()) {
+                // 每个桶三条命令，第二条是 BITCOUNT
+                result.put(bucketStart, (Long) results.get(i * 3 + 1));
+                i++;
+            }
+            return result;
+        } catch (RuntimeException e) {
+            logger.debug("按{}读取活跃位图失败: {}", bucket, e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * signupDay 注册的用户数
+     */
+    public OptionalLong signups(LocalDate signupDay) {
+        try {
+            Long count = redisTemplate.execute((RedisCallback<Long>) connection ->
+                    ((StringRedisConnection) connection).bitCount(signupKey(signupDay)));
+            return count != null ? OptionalLong.of(count) : OptionalLong.empty();
+        } catch (RuntimeException e) {
+            logger.debug("读取注册位图失败: {}", e.getMessage());
+            return OptionalLong.empty();
+        }
+    }
+
+    /**
+     * signupDay 注册的用户中在 activeDay 活跃的人数
+     */
+    public OptionalLong retainedUsers(LocalDate signupDay, LocalDate activeDay) {
+        return countCombined(BitOperation.AND, signupKey(signupDay), dayKey(activeDay));
+    }
+
+    // BITOP 的结果写入临时 key，计数后删除；三条命令放在一个 pipeline 里
+    private OptionalLong countCombined(BitOperation operation, String... keys) {
+        String destination = TMP_KEY_PREFIX + UUID.randomUUID();
+        try {
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                conn.bitOp(operation, destination, keys);
+                conn.bitCount(destination);
+                conn.del(destination);
+                return null;
+            });
+            return OptionalLong.of((Long) results.get(1));
+        } catch (RuntimeException e) {
+            logger.debug("活跃位图 {} 运算失败: {}", operation, e.getMessage());
+            return OptionalLong.empty();
+        }
+    }
+
+    private static String dayKey(LocalDate day) {
+        return DAY_KEY_PREFIX + day.format(KEY_FORMATTER);
+    }
+
+    private static String signupKey(LocalDate day) {
+        return SIGNUP_KEY_PREFIX + day.format(KEY_FORMATTER);
+    }
+
+    private static final class RecordedUsers {
+        private final LocalDate day;
+        private final Set<Long> userIds = ConcurrentHashMap.newKeySet();
+
+        private RecordedUsers(LocalDate day) {
+            this.day = day;
+        }
+    }
+}
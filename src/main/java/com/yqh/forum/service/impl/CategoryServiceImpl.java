@@ -3,13 +3,15 @@ package com.yqh.forum.service.impl;
 import com.yqh.forum.dto.CategoryDTO;
 import com.yqh.forum.model.Category;
 import com.yqh.forum.repository.CategoryRepository;
+import com.yqh.forum.service.CategoryChangedEvent;
 import com.yqh.forum.service.CategoryService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -18,6 +20,12 @@ public class CategoryServiceImpl implements CategoryService { // 确保实现了
     @Autowired
     private CategoryRepository categoryRepository;
 
+    @Autowired
+    private CategorySnapshot categorySnapshot;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     @Override
     public CategoryDTO createCategory(CategoryDTO categoryDTO) {
         if (categoryRepository.existsByName(categoryDTO.getName())) {
@@ -29,6 +37,8 @@ public class CategoryServiceImpl implements CategoryService { // 确保实现了
         category.setDescription(categoryDTO.getDescription());
 
         Category savedCategory = categoryRepository.save(category);
+        categorySnapshot.changed();
+        eventPublisher.publishEvent(new CategoryChangedEvent());
         return convertToDTO(savedCategory);
     }
 
@@ -46,26 +56,29 @@ public class CategoryServiceImpl implements CategoryService { // 确保实现了
         category.setDescription(categoryDTO.getDescription());
 
         Category updatedCategory = categoryRepository.save(category);
+        categorySnapshot.changed();
+        eventPublisher.publishEvent(new CategoryChangedEvent());
         return convertToDTO(updatedCategory);
     }
 
     @Override
     public void deleteCategory(Long id) {
         categoryRepository.deleteById(id);
+        categorySnapshot.changed();
+        eventPublisher.publishEvent(new CategoryChangedEvent());
     }
 
+    // 只读内存快照，SUPPORTS 避免为此开启事务（获取数据库连接）
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public CategoryDTO findById(Long id) {
-        return categoryRepository.findById(id)
-                .map(this::convertToDTO)
-                .orElse(null);
+        return categorySnapshot.get(id);
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<CategoryDTO> findAll() {
-        return categoryRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return categorySnapshot.all();
     }
 
     @Override
@@ -73,7 +86,7 @@ public class CategoryServiceImpl implements CategoryService { // 确保实现了
         return categoryRepository.existsByName(name);
     }
 
-    private CategoryDTO convertToDTO(Category category) {
+    static CategoryDTO convertToDTO(Category category) {
         CategoryDTO dto = new CategoryDTO();
         dto.setId(category.getId());
         dto.setName(category.getName());
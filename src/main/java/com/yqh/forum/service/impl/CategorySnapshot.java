@@ -0,0 +1,172 @@
+package com.yqh.forum.service.impl;
+
+import com.yqh.forum.config.cache.RedisCircuitBreaker;
+import com.yqh.forum.dto.CategoryDTO;
+import com.yqh.forum.repository.CategoryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * 全部分类的内存快照。分类很少、几乎不变，但每个页面的侧边栏都要用，
+ * 读取时直接返回 volatile 引用指向的不可变列表，不访问 Redis 也不查库。
+ * 分类增删改提交后重建本节点的快照，并通过 Redis pub/sub 通知其他节点重建；
+ * 通知经过 RedisCircuitBreaker 发送，Redis 不可用时不等待、不影响本次写操作；
+ * 通知可能丢失，另外定时全量重建一次兜底。
+ * 快照中的 CategoryDTO 是共享对象，只能读，不要修改。
+ */
+@Component
+public class CategorySnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(CategorySnapshot.class);
+
+    public static final String CHANGE_CHANNEL = "forum:category:changed";
+
+    private final CategoryRepository categoryRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisCircuitBreaker redisCircuitBreaker;
+
+    // 区分通知来自哪个节点，自己发出的通知不再重建
+    private final String nodeId = UUID.randomUUID().toString();
+    // 首次读取前为 null
+    private volatile Snapshot snapshot;
+
+    public CategorySnapshot(CategoryRepository categoryRepository, StringRedisTemplate redisTemplate,
+                            RedisCircuitBreaker redisCircuitBreaker, RedisMessageListenerContainer listenerContainer) {
+        this.categoryRepository = categoryRepository;
+        this.redisTemplate = redisTemplate;
+        this.redisCircuitBreaker = redisCircuitBreaker;
+        listenerContainer.addMessageListener(
+                (message, pattern) -> handleChange(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(CHANGE_CHANNEL));
+    }
+
+    private static final class Snapshot {
+        private final List<CategoryDTO> all;
+        private final Map<Long, CategoryDTO> byId;
+
+        private Snapshot(List<CategoryDTO> all) {
+            this.all = Collections.unmodifiableList(all);
+            Map<Long, CategoryDTO> byId = new LinkedHashMap<>();
+            all.forEach(category -> byId.put(category.getId(), category));
+            this.byId = Collections.unmodifiableMap(byId);
+        }
+    }
+
+    /**
+     * 全部分类（不可修改的列表）
+     */
+    public List<CategoryDTO> all() {
+        return current().all;
+    }
+
+    /**
+     * 按 ID 查找分类，不存在时返回 null
+     */
+    public CategoryDTO get(Long id) {
+        return current().byId.get(id);
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) {
+                    current = load();
+                    snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 从数据库重新加载快照。加锁保证多次重建按顺序执行，最后一次一定能看到所有已提交的修改。
+     */
+    public synchronized void rebuild() {
+        snapshot = load();
+    }
+
+    private Snapshot load() {
+        return new Snapshot(categoryRepository.findAll().stream()
+                .map(CategoryServiceImpl::convertToDTO)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * 分类发生变化后调用。在事务中调用时推迟到事务提交之后，避免重建时读到未提交（或随后回滚）的数据。
+     */
+    public void changed() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    rebuildAndNotify();
+                }
+            });
+        } else {
+            rebuildAndNotify();
+        }
+    }
+
+    private void rebuildAndNotify() {
+        rebuild();
+        try {
+            redisCircuitBreaker.execute(() -> {
+                redisTemplate.convertAndSend(CHANGE_CHANNEL, nodeId);
+                return null;
+            });
+        } catch (RuntimeException e) {
+            // 通知失败不影响本次写操作，其他节点会在定时重建时同步
+            logger.warn("广播分类变更通知失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 处理其他节点发来的变更通知，消息内容是发出通知的节点ID
+     */
+    public void handleChange(String message) {
+        if (nodeId.equals(message)) {
+            return;
+        }
+        rebuild();
+    }
+
+    /**
+     * 启动完成后加载（此时 DataInitializer 已创建默认分类）
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        rebuild();
+    }
+
+    /**
+     * 定时重建，兜底丢失的变更通知
+     */
+    @Scheduled(fixedDelayString = "${app.category.snapshot-resync-interval-ms:300000}")
+    public void resync() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            // 重建失败时继续使用旧快照
+            logger.warn("定时重建分类快照失败: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.yqh.forum.service.impl;
+
+import com.yqh.forum.config.cache.RedisCircuitBreaker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 评论列表缓存的分代号（generation）。
+ * 每个帖子在 Redis 中有一个计数器 comments:gen:{postId}，commentsByPost 的缓存 key 中带上当前分代号。
+ * 某个帖子的评论发生变化时只把它的分代号 +1，之后的读取自然落到新 key 上，
+ * 旧分代的缓存页不再被访问，由 Redis 缓存的 TTL 自动过期；其他帖子的缓存不受影响。
+ * 读取分代号经过 RedisCircuitBreaker，Redis 不可用时按分代 0 处理（此时评论缓存本身也在降级）。
+ * 分代号 +1 失败时不影响评论的增删改，改为清空 commentsByPost（本机立即生效，Redis 中的在恢复后补发清空）。
+ */
+@Component("commentCacheGeneration")
+public class CommentCacheGeneration {
+
+    private static final Logger logger = LoggerFactory.getLogger(CommentCacheGeneration.class);
+
+    private static final String KEY_PREFIX = "comments:gen:";
+    private static final String CACHE_NAME = "commentsByPost";
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisCircuitBreaker redisCircuitBreaker;
+    private final CacheManager cacheManager;
+
+    public CommentCacheGeneration(StringRedisTemplate redisTemplate, RedisCircuitBreaker redisCircuitBreaker,
+                                  CacheManager cacheManager) {
+        this.redisTemplate = redisTemplate;
+        this.redisCircuitBreaker = redisCircuitBreaker;
+        this.cacheManager = cacheManager;
+    }
+
+    /**
+     * 当前分代号，从未修改过的帖子为 0（在 commentsByPost 的 key 表达式中调用）；Redis 不可用时也返回 0
+     */
+    public long current(Long postId) {
+        try {
+            String value = redisCircuitBreaker.execute(() -> redisTemplate.opsForValue().get(key(postId)));
+            return value != null ? Long.parseLong(value) : 0L;
+        } catch (RedisCircuitBreaker.UnavailableException e) {
+            logger.debug("读取帖子 {} 的评论分代号失败: {}", postId, e.getMessage());
+            return 0L;
+        }
+    }
+
+    /**
+     * 分代号 +1。在事务中调用时推迟到事务提交之后执行，
+     * 避免提交前有读请求用新分代号缓存了旧数据。
+     */
+    public void bump(Long postId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    increment(postId);
+                }
+            });
+        } else {
+            increment(postId);
+        }
+    }
+
+    private void increment(Long postId) {
+        try {
+            redisCircuitBreaker.execute(() -> redisTemplate.opsForValue().increment(key(postId)));
+        } catch (RedisCircuitBreaker.UnavailableException e) {
+            // 评论已经提交，不能因为缓存失败返回错误。分代号没变，缓存的旧评论页还会被命中，
+            // 而缓存 key 中的页码、页大小无法逐个枚举，只能整个清空；其他节点的 L1 在过期后失效
+            logger.warn("更新帖子 {} 的评论分代号失败，清空评论列表缓存: {}", postId, e.getMessage());
+            clearCache();
+        }
+    }
+
+    private void clearCache() {
+        Cache cache = cacheManager.getCache(CACHE_NAME);
+        if (cache == null) {
+            return;
+        }
+        try {
+            cache.clear();
+        } catch (RuntimeException e) {
+            // 未启用熔断时 Redis 异常会直接抛出
+            logger.warn("清空评论列表缓存失败: {}", e.getMessage());
+        }
+    }
+
+    private static String key(Long postId) {
+        return KEY_PREFIX + postId;
+    }
+}
@@ -1,21 +1,31 @@
 package com.yqh.forum.service.impl;
 
+import com.yqh.forum.config.security.CurrentUser;
 import com.yqh.forum.dto.CommentDTO;
+import com.yqh.forum.dto.UserDTO;
 import com.yqh.forum.model.Comment;
 import com.yqh.forum.model.Post;
 import com.yqh.forum.model.User;
 import com.yqh.forum.repository.CommentRepository;
+import com.yqh.forum.repository.CommentRepository.CommentStats;
 import com.yqh.forum.repository.PostRepository;
+import com.yqh.forum.repository.UserRepository;
+import com.yqh.forum.service.ActivityEvent;
+import com.yqh.forum.service.CommentChangedEvent;
 import com.yqh.forum.service.CommentService;
 import com.yqh.forum.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @Service
 @Transactional
 public class CommentServiceImpl implements CommentService {
@@ -29,23 +39,35 @@ public class CommentServiceImpl implements CommentService {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CommentCacheGeneration commentCacheGeneration;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
 
     @Override
     public CommentDTO createComment(CommentDTO commentDTO) {
-        User currentUser = userService.getCurrentUser();
+        CurrentUser currentUser = userService.getCurrentUserIdentity();
         Post post = postRepository.findById(commentDTO.getPostId())
                 .orElseThrow(() -> new IllegalArgumentException("帖子不存在"));
 
         Comment comment = new Comment();
         comment.setContent(commentDTO.getContent());
-        comment.setAuthor(currentUser);
+        // 作者只需要外键，用引用代替查询
+        comment.setAuthor(userRepository.getReferenceById(currentUser.getId()));
         comment.setPost(post);
 
         Comment savedComment = commentRepository.save(comment);
         // 如果需要返回缓存的 DTO，确保 DTO 中有 ID
-        CommentDTO savedCommentDTO = convertToDTO(savedComment);
-        // 在此处打印，观察缓存是否被清除
-        System.out.println("创建评论，清除帖子 " + commentDTO.getPostId() + " 的评论列表缓存");
+        CommentDTO savedCommentDTO = convertToDTO(savedComment, post.getId(), convertToUserDTO(currentUser));
+        commentCacheGeneration.bump(post.getId());
+        eventPublisher.publishEvent(new CommentChangedEvent(post.getId()));
+        eventPublisher.publishEvent(new ActivityEvent(ActivityEvent.Type.COMMENT_CREATED,
+                currentUser.getId(), savedComment.getCreatedAt()));
         return savedCommentDTO;
     }
 
@@ -54,16 +76,16 @@ public class CommentServiceImpl implements CommentService {
         Comment comment = commentRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("评论不存在"));
 
-        User currentUser = userService.getCurrentUser();
+        CurrentUser currentUser = userService.getCurrentUserIdentity();
         if (!comment.getAuthor().getId().equals(currentUser.getId())) {
             throw new IllegalArgumentException("您没有权限修改此评论");
         }
 
         comment.setContent(commentDTO.getContent());
         Comment updatedComment = commentRepository.save(comment);
-        // 在此处打印，观察缓存是否被清除
-        System.out.println("更新评论，清除帖子 " + commentDTO.getPostId() + " 的评论列表缓存");
-        return convertToDTO(updatedComment);
+        commentCacheGeneration.bump(updatedComment.getPost().getId());
+        eventPublisher.publishEvent(new CommentChangedEvent(updatedComment.getPost().getId()));
+        return convertToDTO(updatedComment, updatedComment.getPost().getId(), convertToUserDTO(currentUser));
     }
 
     //@Override
@@ -117,7 +139,7 @@ public class CommentServiceImpl implements CommentService {
         Comment comment = commentRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("评论不存在"));
 
-        User currentUser = userService.getCurrentUser();
+        CurrentUser currentUser = userService.getCurrentUserIdentity();
         if (!comment.getAuthor().getId().equals(currentUser.getId())) {
             throw new IllegalArgumentException("您没有权限删除此评论");
         }
@@ -125,46 +147,59 @@ public class CommentServiceImpl implements CommentService {
         Long postId = comment.getPost().getId(); // 获取关联的帖子ID
         commentRepository.delete(comment);
 
-        // 此时，需要手动清除该 postId 对应的缓存。
-        // 因为 @CacheEvict 的 key 表达式在方法执行前或根据方法参数生成，
-        // 这里需要方法内部查到的 postId。
-        // 最优雅的解决方案：在 Controller 调用 deleteComment 后，如果需要精确缓存失效，
-        // 可以让 deleteComment 返回 postId，或者在 Controller 知道 postId 时直接调用一个清除缓存的方法。
-        // 或者，在 Service 内部注入 CacheManager：
-        // @Autowired
-        // private org.springframework.cache.CacheManager cacheManager;
-        // cacheManager.getCache("commentsByPost").clear(); // 清除所有
-        // cacheManager.getCache("commentsByPost").evict(postId + ":*"); // 精确清除，但需要匹配所有页码和大小
-
-        // 简单粗暴但有效的处理方式：清除所有评论列表缓存。
-        // 这种情况下，您需要在 service 接口的 deleteComment 方法上添加 @CacheEvict(value = "commentsByPost", allEntries = true)
-        System.out.println("删除评论，清除帖子 " + postId + " 的评论列表缓存。");
+        // 只让这个帖子的评论列表缓存失效
+        commentCacheGeneration.bump(postId);
+        eventPublisher.publishEvent(new CommentChangedEvent(postId));
     }
 
 
     @Override
     public Page<CommentDTO> findByPostId(Long postId, Pageable pageable) {
         System.out.println("从数据库加载帖子 " + postId + " 的评论列表（页码: " + pageable.getPageNumber() + ", 大小: " + pageable.getPageSize() + "）。");
-        Post post = new Post();
-        post.setId(postId); // 注意：这里创建了一个新的 Post 对象，如果 CommentRepository 严格检查对象引用，可能需要先 findById 获取 Post 实体
-        // 建议：
-        // Post post = postRepository.findById(postId)
-        //         .orElseThrow(() -> new IllegalArgumentException("帖子不存在，无法查询评论"));
-
-        return commentRepository.findByPostOrderByCreatedAtDesc(post, pageable)
-                .map(this::convertToDTO);
+        // 评论与作者一次取回（entity graph），作者的角色由 @BatchSize 批量加载，
+        // 一页评论的查询条数固定，与页大小无关
+        Page<Comment> comments = commentRepository.findWithAuthorByPostId(postId, pageable);
+
+        // 每个作者只转换一次
+        Map<Long, UserDTO> authors = new HashMap<>();
+        for (Comment comment : comments) {
+            authors.computeIfAbsent(comment.getAuthor().getId(), id -> convertToUserDTO(comment.getAuthor()));
+        }
+        return comments.map(comment -> convertToDTO(comment, postId, authors.get(comment.getAuthor().getId())));
     }
 
-    private CommentDTO convertToDTO(Comment comment) {
+    @Override
+    @Transactional(readOnly = true)
+    public CommentStats findStatsByPostId(Long postId) {
+        return commentRepository.findStatsByPostId(postId);
+    }
+
+    private CommentDTO convertToDTO(Comment comment, Long postId, UserDTO author) {
         CommentDTO dto = new CommentDTO();
         dto.setId(comment.getId());
         dto.setContent(comment.getContent());
-        // 注意：这里userService.findByUsername(comment.getAuthor().getUsername()) 可能导致 N+1 查询问题。
-        // 考虑在 Comment 实体中直接关联 User 对象并fetch，或者在 CommentDTO 中只存储 authorId 和 username，避免额外查询。
-        dto.setAuthor(userService.findByUsername(comment.getAuthor().getUsername())); // 假设这个方法返回 UserDTO
-        dto.setPostId(comment.getPost().getId());
+        dto.setAuthor(author);
+        dto.setPostId(postId);
         dto.setCreatedAt(comment.getCreatedAt());
         dto.setUpdatedAt(comment.getUpdatedAt());
         return dto;
     }
+
+    private UserDTO convertToUserDTO(User user) {
+        UserDTO dto = new UserDTO();
+        dto.setId(user.getId());
+        dto.setUsername(user.getUsername());
+        dto.setEmail(user.getEmail());
+        dto.setAvatar(user.getAvatar());
+        return dto;
+    }
+
+    private UserDTO convertToUserDTO(CurrentUser user) {
+        UserDTO dto = new UserDTO();
+        dto.setId(user.getId());
+        dto.setUsername(user.getUsername());
+        dto.setEmail(user.getEmail());
+        dto.setAvatar(user.getAvatar());
+        return dto;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,171 @@
+package com.yqh.forum.service.impl;
+
+import com.yqh.forum.service.DashboardAnalyticsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * 按天导出每日统计（新用户、新帖子、新评论、活跃用户）为 CSV 或 NDJSON。
+ * 结果集以 MySQL 驱动的流式模式逐行读取（只向前、只读、fetch size 为 Integer.MIN_VALUE），
+ * 只对这一条语句生效，不需要在连接 URL 上开启 useCursorFetch 影响其他查询；每读一行直接写出，没有数据的日期在两行之间补 0，内存占用与导出的天数无关。
+ * daily_stats 回填完成后读汇总表，否则对明细表做一次合并的分组查询。
+ * 活跃用户与 daily_stats 相同，是发过帖或评论的用户数。
+ */
+@Component
+public class DailyStatsExporter {
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private static final String CSV_HEADER = "date,new_users,new_posts,new_comments,active_users\n";
+
+    private static final String ROLLUP_SQL =
+            "SELECT stat_date, new_users, new_posts, new_comments, active_users FROM daily_stats " +
+                    "WHERE stat_date >= ? AND stat_date <= ? ORDER BY stat_date";
+    // 四个分组查询 UNION ALL 后按日期合并，每天一行
+    private static final String BASE_TABLES_SQL =
+            "SELECT t.stat_date, SUM(t.new_users), SUM(t.new_posts), SUM(t.new_comments), SUM(t.active_users) FROM (" +
+                    "SELECT DATE(created_at) AS stat_date, COUNT(*) AS new_users, 0 AS new_posts, 0 AS new_comments, 0 AS active_users " +
+                    "FROM users WHERE created_at >= ? AND created_at < ? GROUP BY DATE(created_at) " +
+                    "UNION ALL " +
+                    "SELECT DATE(created_at), 0, COUNT(*), 0, 0 " +
+                    "FROM posts WHERE created_at >= ? AND created_at < ? GROUP BY DATE(created_at) " +
+                    "UNION ALL " +
+                    "SELECT DATE(created_at), 0, 0, COUNT(*), 0 " +
+                    "FROM comments WHERE created_at >= ? AND created_at < ? GROUP BY DATE(created_at) " +
+                    "UNION ALL " +
+                    "SELECT a.activity_date, 0, 0, 0, COUNT(*) FROM (" +
+                    "SELECT DATE(created_at) AS activity_date, user_id FROM posts WHERE created_at >= ? AND created_at < ? " +
+                    "UNION " +
+                    "SELECT DATE(created_at) AS activity_date, user_id FROM comments WHERE created_at >= ? AND created_at < ?" +
+                    ") a GROUP BY a.activity_date" +
+                    ") t GROUP BY t.stat_date ORDER BY t.stat_date";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DailyStatsRollup dailyStatsRollup;
+
+    @Autowired
+    public DailyStatsExporter(JdbcTemplate jdbcTemplate, DailyStatsRollup dailyStatsRollup) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dailyStatsRollup = dailyStatsRollup;
+    }
+
+    /**
+     * 导出 [startDate, endDate]（两端都包含）内每一天的统计，按日期排序
+     * @return 写出的行数（即天数，不含表头）
+     */
+    public long export(LocalDate startDate, LocalDate endDate, Format format, Writer writer) throws IOException {
+        checkRange(startDate, endDate);
+        if (format == Format.CSV) {
+            writer.write(CSV_HEADER);
+        }
+        RowWriter rows = new RowWriter(format, writer, startDate);
+        try {
+            if (dailyStatsRollup.isReady()) {
+                stream(ROLLUP_SQL, rows, Date.valueOf(startDate), Date.valueOf(endDate));
+            } else {
+                Timestamp start = Timestamp.valueOf(startDate.atStartOfDay());
+                Timestamp end = Timestamp.valueOf(endDate.plusDays(1).atStartOfDay());
+                stream(BASE_TABLES_SQL, rows, start, end, start, end, start, end, start, end, start, end);
+            }
+            rows.fillUntil(endDate.plusDays(1));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+        return rows.written;
+    }
+
+    /**
+     * 在写出任何内容之前校验，调用方可以据此返回 400
+     */
+    public static void checkRange(LocalDate startDate, LocalDate endDate) {
+        if (startDate.isAfter(endDate)) {
+            throw new IllegalArgumentException("开始日期不能晚于结束日期");
+        }
+        if (ChronoUnit.DAYS.between(startDate, endDate) + 1 > DashboardAnalyticsService.MAX_RANGE_DAYS) {
+            throw new IllegalArgumentException("导出范围不能超过 " + DashboardAnalyticsService.MAX_RANGE_DAYS + " 天");
+        }
+    }
+
+    // 只读、只向前的结果集，fetch size 为 Integer.MIN_VALUE 时 MySQL 驱动逐行从网络读取，不把整个结果集读进内存。
+    // 读完之前这个连接不能执行其他语句，回调里只写出，不再查询
+    private void stream(String sql, RowWriter rows, Object... args) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(Integer.MIN_VALUE);
+            for (int i = 0; i < args.length; i++) {
+                ps.setObject(i + 1, args[i]);
+            }
+            return ps;
+        }, rs -> {
+            rows.fillUntil(rs.getDate(1).toLocalDate());
+            rows.write(rs.getDate(1).toLocalDate(), rs.getLong(2), rs.getLong(3), rs.getLong(4), rs.getLong(5));
+        });
+    }
+
+    private static final class RowWriter {
+        private final Format format;
+        private final Writer writer;
+        // 下一行应该是哪一天
+        private LocalDate next;
+        private long written;
+
+        private RowWriter(Format format, Writer writer, LocalDate startDate) {
+            this.format = format;
+            this.writer = writer;
+            this.next = startDate;
+        }
+
+        // 在 date 之前没有数据的日期写 0
+        private void fillUntil(LocalDate date) {
+            while (next.isBefore(date)) {
+                write(next, 0, 0, 0, 0);
+            }
+        }
+
+        private void write(LocalDate date, long newUsers, long newPosts, long newComments, long activeUsers) {
+            try {
+                if (format == Format.CSV) {
+                    writer.write(date + "," + newUsers + "," + newPosts + "," + newComments + "," + activeUsers + "\n");
+                } else {
+                    writer.write("{\"date\":\"" + date + "\",\"new_users\":" + newUsers + ",\"new_posts\":" + newPosts +
+                            ",\"new_comments\":" + newComments + ",\"active_users\":" + activeUsers + "}\n");
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            next = date.plusDays(1);
+            written++;
+        }
+    }
+}
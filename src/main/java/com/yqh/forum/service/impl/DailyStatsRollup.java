@@ -0,0 +1,212 @@
+package com.yqh.forum.service.impl;
+
+import com.yqh.forum.service.ActivityEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 维护每日统计汇总表 daily_stats。
+ * 注册、发帖、评论提交后按 ActivityEvent 累加当天的计数；活跃用户数借助 daily_active_users 去重，
+ * 同一用户当天只计一次。累加失败（或多节点、停机造成的偏差）由每晚的校对任务修正：
+ * 最近 app.daily-stats.reconcile-days 个已结束的日期按明细表重新计算并整行覆盖。
+ * 历史数据由 DailyStatsBackfill 一次性回填，回填完成前仪表盘仍直接查明细表。
+ */
+@Component
+public class DailyStatsRollup implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(DailyStatsRollup.class);
+
+    // 当天计数累加，这一天还没有行时插入
+    private static final String INCREMENT_SQL =
+            "INSERT INTO daily_stats (stat_date, new_users, new_posts, new_comments, active_users, updated_at) " +
+                    "VALUES (?, ?, ?, ?, 0, NOW()) ON DUPLICATE KEY UPDATE " +
+                    "new_users = new_users + VALUES(new_users), new_posts = new_posts + VALUES(new_posts), " +
+                    "new_comments = new_comments + VALUES(new_comments), updated_at = NOW()";
+    // 插入成功（返回 1）说明该用户当天第一次活跃
+    private static final String MARK_ACTIVE_SQL =
+            "INSERT IGNORE INTO daily_active_users (stat_date, user_id) VALUES (?, ?)";
+    private static final String INCREMENT_ACTIVE_SQL =
+            "UPDATE daily_stats SET active_users = active_users + 1, updated_at = NOW() WHERE stat_date = ?";
+    // 按明细表重新计算的结果整行覆盖
+    private static final String OVERWRITE_SQL =
+            "INSERT INTO daily_stats (stat_date, new_users, new_posts, new_comments, active_users, updated_at) " +
+                    "VALUES (?, ?, ?, ?, ?, NOW()) ON DUPLICATE KEY UPDATE " +
+                    "new_users = VALUES(new_users), new_posts = VALUES(new_posts), " +
+                    "new_comments = VALUES(new_comments), active_users = VALUES(active_users), updated_at = NOW()";
+    private static final String PRUNE_ACTIVE_SQL = "DELETE FROM daily_active_users WHERE stat_date < ?";
+
+    private static final String COUNT_USERS_SQL =
+            "SELECT DATE(created_at), COUNT(*) FROM users " +
+                    "WHERE created_at >= ? AND created_at < ? GROUP BY DATE(created_at)";
+    private static final String COUNT_POSTS_SQL =
+            "SELECT DATE(created_at), COUNT(*) FROM posts " +
+                    "WHERE created_at >= ? AND created_at < ? GROUP BY DATE(created_at)";
+    private static final String COUNT_COMMENTS_SQL =
+            "SELECT DATE(created_at), COUNT(*) FROM comments " +
+                    "WHERE created_at >= ? AND created_at < ? GROUP BY DATE(created_at)";
+    // 与 PostRepository.countDailyActiveUsersByDateRange 相同
+    private static final String COUNT_ACTIVE_SQL =
+            "SELECT a.activity_date, COUNT(*) FROM (" +
+                    "SELECT DATE(created_at) AS activity_date, user_id FROM posts WHERE created_at >= ? AND created_at < ? " +
+                    "UNION " +
+                    "SELECT DATE(created_at) AS activity_date, user_id FROM comments WHERE created_at >= ? AND created_at < ?" +
+                    ") a GROUP BY a.activity_date";
+
+    // long[] 中各列的下标
+    private static final int NEW_USERS = 0;
+    private static final int NEW_POSTS = 1;
+    private static final int NEW_COMMENTS = 2;
+    private static final int ACTIVE_USERS = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.daily-stats.reconcile-days:3}")
+    private int reconcileDays;
+
+    // 历史数据是否已回填完成，由 DailyStatsBackfill 设置
+    private volatile boolean backfilled;
+
+    private final AtomicLong failedUpdates = new AtomicLong();
+    private final AtomicLong recomputedDays = new AtomicLong();
+
+    public DailyStatsRollup(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * 业务事务提交后累加当天的计数。
+     * 此时原事务已提交，写入需要在新事务中进行；失败只记日志，留给校对任务修正。
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void onActivity(ActivityEvent event) {
+        try {
+            record(event);
+        } catch (DataAccessException e) {
+            failedUpdates.incrementAndGet();
+            logger.warn("每日统计累加失败（{}，用户 {}），将由校对任务修正: {}",
+                    event.getType(), event.getUserId(), e.getMessage());
+        }
+    }
+
+    private void record(ActivityEvent event) {
+        Date statDate = Date.valueOf(event.getOccurredAt().toLocalDate());
+        switch (event.getType()) {
+            case USER_REGISTERED:
+                jdbcTemplate.update(INCREMENT_SQL, statDate, 1, 0, 0);
+                break;
+            case POST_CREATED:
+                jdbcTemplate.update(INCREMENT_SQL, statDate, 0, 1, 0);
+                markActive(statDate, event.getUserId());
+                break;
+            case COMMENT_CREATED:
+                jdbcTemplate.update(INCREMENT_SQL, statDate, 0, 0, 1);
+                markActive(statDate, event.getUserId());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void markActive(Date statDate, Long userId) {
+        if (jdbcTemplate.update(MARK_ACTIVE_SQL, statDate, userId) > 0) {
+            jdbcTemplate.update(INCREMENT_ACTIVE_SQL, statDate);
+        }
+    }
+
+    /**
+     * 按明细表重新计算 [startDate, endDate]（两端都包含）内每一天的统计并整行覆盖，没有数据的日期写 0。
+     * 每个指标一次分组查询，返回写入的天数。
+     */
+    public int recompute(LocalDate startDate, LocalDate endDate) {
+        Timestamp start = Timestamp.valueOf(startDate.atStartOfDay());
+        Timestamp end = Timestamp.valueOf(endDate.plusDays(1).atStartOfDay());
+
+        Map<LocalDate, long[]> days = new LinkedHashMap<>();
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+            days.put(date, new long[4]);
+        }
+        collect(days, NEW_USERS, COUNT_USERS_SQL, start, end);
+        collect(days, NEW_POSTS, COUNT_POSTS_SQL, start, end);
+        collect(days, NEW_COMMENTS, COUNT_COMMENTS_SQL, start, end);
+        collect(days, ACTIVE_USERS, COUNT_ACTIVE_SQL, start, end, start, end);
+
+        List<Object[]> batchArgs = new ArrayList<>(days.size());
+        days.forEach((date, counts) -> batchArgs.add(new Object[]{Date.valueOf(date),
+                counts[NEW_USERS], counts[NEW_POSTS], counts[NEW_COMMENTS], counts[ACTIVE_USERS]}));
+        jdbcTemplate.batchUpdate(OVERWRITE_SQL, batchArgs);
+        recomputedDays.addAndGet(days.size());
+        return days.size();
+    }
+
+    private void collect(Map<LocalDate, long[]> days, int column, String sql, Object... args) {
+        jdbcTemplate.query(sql, rs -> {
+            long[] counts = days.get(rs.getDate(1).toLocalDate());
+            if (counts != null) {
+                counts[column] = rs.getLong(2);
+            }
+        }, args);
+    }
+
+    /**
+     * 每晚重新计算最近几个已结束的日期，修正累加失败、多节点并发和跨零点提交造成的偏差，
+     * 并删除这些日期已不再需要的去重记录
+     */
+    @Scheduled(cron = "${app.daily-stats.reconcile-cron:0 10 0 * * *}")
+    public void reconcile() {
+        reconcile(LocalDate.now());
+    }
+
+    void reconcile(LocalDate today) {
+        try {
+            int days = recompute(today.minusDays(reconcileDays), today.minusDays(1));
+            jdbcTemplate.update(PRUNE_ACTIVE_SQL, Date.valueOf(today));
+            logger.info("每日统计校对完成：重新计算 {} 天", days);
+        } catch (DataAccessException e) {
+            logger.warn("每日统计校对失败，下次校对时重试: {}", e.getMessage());
+        }
+    }
+
+    public boolean isReady() {
+        return backfilled;
+    }
+
+    public void markBackfilled() {
+        backfilled = true;
+    }
+
+    // 累加失败的次数（自应用启动起）
+    public long failedUpdates() {
+        return failedUpdates.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("forum.daily_stats.update_failures", failedUpdates, AtomicLong::get)
+                .description("每日统计累加失败的次数")
+                .register(registry);
+        FunctionCounter.builder("forum.daily_stats.recomputed_days", recomputedDays, AtomicLong::get)
+                .description("按明细表重新计算的天数（回填与校对）")
+                .register(registry);
+    }
+}
@@ -1,36 +1,50 @@
- package com.yqh.forum.service.impl; // 假设您的包名
+package com.yqh.forum.service.impl; // 假设您的包名
 
+import com.yqh.forum.model.DailyStat;
 import com.yqh.forum.repository.CommentRepository;
+import com.yqh.forum.repository.DailyStatRepository;
 import com.yqh.forum.repository.PostRepository;
 import com.yqh.forum.repository.UserRepository;
 import com.yqh.forum.service.DashboardAnalyticsService;
+import com.yqh.forum.service.TrendBucket;
+import com.yqh.forum.service.TrendMetric;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.HashSet;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.function.ToLongFunction;
 
 @Service
 public class DashboardAnalyticsServiceImpl implements DashboardAnalyticsService {
 
+    private static final DateTimeFormatter LABEL_FORMATTER = DateTimeFormatter.ofPattern("MM-dd");
+
     private final UserRepository userRepository;
     private final PostRepository postRepository;
     private final CommentRepository commentRepository;
+    private final DailyStatRepository dailyStatRepository;
+    private final DailyStatsRollup dailyStatsRollup;
+    private final ActivityBitmaps activityBitmaps;
 
     @Autowired
-    public DashboardAnalyticsServiceImpl(UserRepository userRepository, PostRepository postRepository, CommentRepository commentRepository) {
+    public DashboardAnalyticsServiceImpl(UserRepository userRepository, PostRepository postRepository, CommentRepository commentRepository,
+                                         DailyStatRepository dailyStatRepository, DailyStatsRollup dailyStatsRollup,
+                                         ActivityBitmaps activityBitmaps) {
         this.userRepository = userRepository;
         this.postRepository = postRepository;
         this.commentRepository = commentRepository;
+        this.dailyStatRepository = dailyStatRepository;
+        this.dailyStatsRollup = dailyStatsRollup;
+        this.activityBitmaps = activityBitmaps;
     }
 
     @Override
@@ -51,60 +65,226 @@ public class DashboardAnalyticsServiceImpl implements DashboardAnalyticsService
     @Override
     public long getTodayActiveUserCount() {
         LocalDate today = LocalDate.now();
-        LocalDateTime startOfDay = today.atStartOfDay();
-        LocalDateTime endOfDay = today.atTime(LocalTime.MAX);
+        return getDauTrend(today, today).values().iterator().next();
+    }
 
-        Set<Long> activeUserIds = new HashSet<>();
-        activeUserIds.addAll(postRepository.findDistinctAuthorIdsByCreatedAtBetween(startOfDay, endOfDay));
-        activeUserIds.addAll(commentRepository.findDistinctAuthorIdsByCreatedAtBetween(startOfDay, endOfDay));
+    /**
+     * 取出窗口内每天的数量，再在内存中按日期补齐没有数据的天。
+     * daily_stats 回填完成后读汇总表（每天一行），否则对明细表做一次分组查询。
+     */
+    private Map<String, Long> getDailyCounts(LocalDate startDate, LocalDate endDate,
+                                             ToLongFunction<DailyStat> rollupColumn, GroupedCounter counter) {
+        checkWindow(startDate, endDate, MAX_TREND_DAYS);
+        return fillDays(startDate, endDate, queryDailyCounts(startDate, endDate, rollupColumn, counter));
+    }
 
-        return activeUserIds.size();
+    // 日期 -> 数量，只包含有数据的日期
+    private Map<LocalDate, Long> queryDailyCounts(LocalDate startDate, LocalDate endDate,
+                                                  ToLongFunction<DailyStat> rollupColumn, GroupedCounter counter) {
+        if (!dailyStatsRollup.isReady()) {
+            return queryGroupedCounts(counter, startDate, endDate);
+        }
+        Map<LocalDate, Long> countsByDate = new HashMap<>();
+        for (DailyStat stat : dailyStatRepository.findByStatDateBetweenOrderByStatDate(startDate, endDate)) {
+            countsByDate.put(stat.getStatDate(), rollupColumn.applyAsLong(stat));
+        }
+        return countsByDate;
     }
 
-    private Map<String, Long> getDailyCountsForLastNDays(int days, DailyCounter counter) {
-        Map<String, Long> trendData = new LinkedHashMap<>(); //保持日期顺序
-        LocalDate today = LocalDate.now();
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM-dd"); // 或者 "yyyy-MM-dd"
+    // 查询区间为 [startDate 0 点, endDate 次日 0 点)
+    private Map<LocalDate, Long> queryGroupedCounts(GroupedCounter counter, LocalDate startDate, LocalDate endDate) {
+        Map<LocalDate, Long> countsByDate = new HashMap<>();
+        for (Object[] row : counter.count(startDate.atStartOfDay(), endDate.plusDays(1).atStartOfDay())) {
+            countsByDate.put(toLocalDate(row[0]), ((Number) row[1]).longValue());
+        }
+        return countsByDate;
+    }
 
-        for (int i = days - 1; i >= 0; i--) {
-            LocalDate date = today.minusDays(i);
-            LocalDateTime startOfDay = date.atStartOfDay();
-            LocalDateTime endOfDay = date.atTime(LocalTime.MAX); // 包括当天的最后一秒
+    private static void checkWindow(LocalDate startDate, LocalDate endDate, int maxDays) {
+        if (startDate.isAfter(endDate)) {
+            throw new IllegalArgumentException("开始日期不能晚于结束日期");
+        }
+        long days = ChronoUnit.DAYS.between(startDate, endDate) + 1;
+        if (days > maxDays) {
+            throw new IllegalArgumentException("统计窗口不能超过 " + maxDays + " 天");
+        }
+    }
+
+    // 按桶的顺序输出窗口涉及的每个桶，把每天的数量累加到所在的桶，没有数据的补 0
+    private static Map<String, Long> fillBuckets(LocalDate startDate, LocalDate endDate, TrendBucket bucket,
+                                                 Map<LocalDate, Long> countsByDate) {
+        Map<String, Long> trendData = new LinkedHashMap<>();
+        for (LocalDate bucketStart = bucket.start(startDate); !bucketStart.isAfter(endDate); bucketStart = bucket.next(bucketStart)) {
+            trendData.put(bucket.label(bucketStart), 0L);
+        }
+        countsByDate.forEach((date, count) -> trendData.merge(bucket.label(bucket.start(date)), count, Long::sum));
+        return trendData;
+    }
 
-            long count = counter.count(startOfDay, endOfDay);
-            trendData.put(date.format(formatter), count);
+    // 按日期顺序输出窗口内的每一天，没有数据的补 0
+    private static Map<String, Long> fillDays(LocalDate startDate, LocalDate endDate, Map<LocalDate, Long> countsByDate) {
+        Map<String, Long> trendData = new LinkedHashMap<>(); //保持日期顺序
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+            trendData.put(date.format(LABEL_FORMATTER), countsByDate.getOrDefault(date, 0L));
         }
         return trendData;
     }
 
-    // 函数式接口用于传递不同的计数逻辑
+    // DATE() 的结果：JPQL 查询一般是 java.sql.Date，原生查询视驱动而定
+    private static LocalDate toLocalDate(Object value) {
+        if (value instanceof LocalDate) {
+            return (LocalDate) value;
+        }
+        if (value instanceof java.sql.Date) {
+            return ((java.sql.Date) value).toLocalDate();
+        }
+        if (value instanceof java.util.Date) {
+            return new java.sql.Date(((java.util.Date) value).getTime()).toLocalDate();
+        }
+        if (value instanceof LocalDateTime) {
+            return ((LocalDateTime) value).toLocalDate();
+        }
+        return LocalDate.parse(value.toString());
+    }
+
+    // 函数式接口用于传递不同的分组查询，返回 [日期, 数量] 行
     @FunctionalInterface
-    interface DailyCounter {
-        long count(LocalDateTime startOfDay, LocalDateTime endOfDay);
+    interface GroupedCounter {
+        List<Object[]> count(LocalDateTime startInclusive, LocalDateTime endExclusive);
+    }
+
+    @Override
+    public Map<String, Long> getUserRegistrationTrend(LocalDate startDate, LocalDate endDate) {
+        return getDailyCounts(startDate, endDate, DailyStat::getNewUsers, userRepository::countUsersRegisteredByDateRange);
+    }
+
+    @Override
+    public Map<String, Long> getPostCreationTrend(LocalDate startDate, LocalDate endDate) {
+        return getDailyCounts(startDate, endDate, DailyStat::getNewPosts, postRepository::countPostsByDateRange);
+    }
+
+    @Override
+    public Map<String, Long> getCommentCreationTrend(LocalDate startDate, LocalDate endDate) {
+        return getDailyCounts(startDate, endDate, DailyStat::getNewComments, commentRepository::countCommentsByDateRange);
+    }
+
+    /**
+     * 整个窗口都有完整的活跃位图时按位图计数（登录、浏览、发帖、评论），一次 pipeline 完成；
+     * 否则（或 Redis 不可用时）整个窗口按发过帖或评论的用户数统计，不在窗口中间切换口径
+     */
+    @Override
+    public Map<String, Long> getDauTrend(LocalDate startDate, LocalDate endDate) {
+        checkWindow(startDate, endDate, MAX_TREND_DAYS);
+        if (bitmapsCover(startDate)) {
+            Map<LocalDate, Long> counts = activityBitmaps.dailyActiveUsers(startDate, endDate);
+            if (!counts.isEmpty()) {
+                return fillDays(startDate, endDate, counts);
+            }
+        }
+        return getDailyCounts(startDate, endDate, DailyStat::getActiveUsers, postRepository::countDailyActiveUsersByDateRange);
+    }
+
+    // 开始记录的那天只记录了上线之后的活跃，是不完整的一天，位图从次日起才完整；
+    // 超过保留天数的位图已经过期，读出来是 0，窗口早于保留期时同样按数据库统计
+    private boolean bitmapsCover(LocalDate startDate) {
+        Optional<LocalDate> since = activityBitmaps.trackingSince();
+        return since.isPresent() && since.get().isBefore(startDate)
+                && !startDate.isBefore(activityBitmaps.retainedSince());
+    }
+
+    /**
+     * 按天时即上面四个趋势；按周、按月时新增数量取每天的数量（汇总表或一次分组查询）累加到所在的桶，
+     * 活跃用户数在位图覆盖整个窗口时按位图 OR 计数（一次 pipeline），否则按发帖、评论的用户一次分组查询
+     */
+    @Override
+    public Map<String, Long> getTrend(TrendMetric metric, LocalDate startDate, LocalDate endDate, TrendBucket bucket) {
+        checkWindow(startDate, endDate, bucket.maxDays());
+        if (bucket == TrendBucket.DAY) {
+            switch (metric) {
+                case NEW_USERS:
+                    return getUserRegistrationTrend(startDate, endDate);
+                case NEW_POSTS:
+                    return getPostCreationTrend(startDate, endDate);
+                case NEW_COMMENTS:
+                    return getCommentCreationTrend(startDate, endDate);
+                default:
+                    return getDauTrend(startDate, endDate);
+            }
+        }
+        Map<LocalDate, Long> countsByDate;
+        switch (metric) {
+            case NEW_USERS:
+                countsByDate = queryDailyCounts(startDate, endDate, DailyStat::getNewUsers, userRepository::countUsersRegisteredByDateRange);
+                break;
+            case NEW_POSTS:
+                countsByDate = queryDailyCounts(startDate, endDate, DailyStat::getNewPosts, postRepository::countPostsByDateRange);
+                break;
+            case NEW_COMMENTS:
+                countsByDate = queryDailyCounts(startDate, endDate, DailyStat::getNewComments, commentRepository::countCommentsByDateRange);
+                break;
+            default:
+                countsByDate = getActiveUsersByBucket(startDate, endDate, bucket);
+                break;
+        }
+        return fillBuckets(startDate, endDate, bucket, countsByDate);
+    }
+
+    // 桶的第一天 -> 桶内活跃过的不同用户数
+    private Map<LocalDate, Long> getActiveUsersByBucket(LocalDate startDate, LocalDate endDate, TrendBucket bucket) {
+        if (bitmapsCover(startDate)) {
+            Map<LocalDate, Long> counts = activityBitmaps.activeUsersByBucket(startDate, endDate, bucket);
+            if (!counts.isEmpty()) {
+                return counts;
+            }
+        }
+        GroupedCounter counter = bucket == TrendBucket.WEEK
+                ? postRepository::countWeeklyActiveUsersByDateRange
+                : postRepository::countMonthlyActiveUsersByDateRange;
+        return queryGroupedCounts(counter, startDate, endDate);
+    }
+
+    @Override
+    public long getActiveUserCount(LocalDate startDate, LocalDate endDate) {
+        if (bitmapsCover(startDate)) {
+            OptionalLong count = activityBitmaps.activeUsers(startDate, endDate);
+            if (count.isPresent()) {
+                return count.getAsLong();
+            }
+        }
+        return postRepository.countActiveUsersByDateRange(startDate.atStartOfDay(), endDate.plusDays(1).atStartOfDay());
+    }
+
+    @Override
+    public double getRetentionRate(LocalDate signupDay, int daysLater) {
+        OptionalLong signups = activityBitmaps.signups(signupDay);
+        if (signups.isEmpty() || signups.getAsLong() == 0) {
+            return 0;
+        }
+        OptionalLong retained = activityBitmaps.retainedUsers(signupDay, signupDay.plusDays(daysLater));
+        return retained.isPresent() ? (double) retained.getAsLong() / signups.getAsLong() : 0;
     }
 
     @Override
     public Map<String, Long> getUserRegistrationTrendLast7Days() {
-        return getDailyCountsForLastNDays(7, (start, end) -> userRepository.countByCreatedAtBetween(start, end));
+        LocalDate today = LocalDate.now();
+        return getUserRegistrationTrend(today.minusDays(6), today);
     }
 
     @Override
     public Map<String, Long> getPostCreationTrendLast7Days() {
-        return getDailyCountsForLastNDays(7, (start, end) -> postRepository.countByCreatedAtBetween(start, end));
+        LocalDate today = LocalDate.now();
+        return getPostCreationTrend(today.minusDays(6), today);
     }
 
     @Override
     public Map<String, Long> getCommentCreationTrendLast7Days() {
-        return getDailyCountsForLastNDays(7, (start, end) -> commentRepository.countByCreatedAtBetween(start, end));
+        LocalDate today = LocalDate.now();
+        return getCommentCreationTrend(today.minusDays(6), today);
     }
 
     @Override
     public Map<String, Long> getDauTrendLast7Days() {
-        return getDailyCountsForLastNDays(7, (startOfDay, endOfDay) -> {
-            Set<Long> activeUserIds = new HashSet<>();
-            activeUserIds.addAll(postRepository.findDistinctAuthorIdsByCreatedAtBetween(startOfDay, endOfDay));
-            activeUserIds.addAll(commentRepository.findDistinctAuthorIdsByCreatedAtBetween(startOfDay, endOfDay));
-            return activeUserIds.size();
-        });
-    }
-}
\ No newline at end of file
+        LocalDate today = LocalDate.now();
+        return getDauTrend(today.minusDays(6), today);
+    }
+}
@@ -0,0 +1,270 @@
+package com.yqh.forum.service.impl;
+
+import com.yqh.forum.dto.DashboardSnapshot;
+import com.yqh.forum.service.DashboardAnalyticsService;
+import com.yqh.forum.service.TrendBucket;
+import com.yqh.forum.service.TrendMetric;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * 后台仪表盘的统计快照。
+ * 总览卡片和四条趋势彼此独立，在固定大小的线程池中并行计算，页面耗时取决于最慢的一项而不是所有项之和。
+ * 结果按趋势窗口（天数和粒度）缓存 app.dashboard.snapshot-ttl-ms；过期后先返回旧快照，同时在后台刷新。
+ * 同一窗口同一时刻只有一次计算在进行，并发请求共享它的结果，管理员集中访问不会放大成大量重复查询。
+ * 默认窗口由定时任务保持最新；其他窗口一段时间没有访问后丢弃。
+ */
+@Component
+public class DashboardSnapshotService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DashboardSnapshotService.class);
+
+    public static final int DEFAULT_TREND_DAYS = 7;
+
+    // 非默认窗口多久没有访问后不再刷新
+    private static final long IDLE_EVICTION_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final DashboardAnalyticsService dashboardAnalyticsService;
+    private final ThreadPoolExecutor executor;
+    private final long ttlMillis;
+    private final long timeoutMillis;
+    private final Clock clock;
+
+    // "天数/粒度" -> 快照
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong computations = new AtomicLong();
+
+    @Autowired
+    public DashboardSnapshotService(DashboardAnalyticsService dashboardAnalyticsService,
+                                    @Value("${app.dashboard.threads:4}") int threads,
+                                    @Value("${app.dashboard.snapshot-ttl-ms:60000}") long ttlMillis,
+                                    @Value("${app.dashboard.timeout-ms:10000}") long timeoutMillis) {
+        this(dashboardAnalyticsService, threads, ttlMillis, timeoutMillis, Clock.systemDefaultZone());
+    }
+
+    DashboardSnapshotService(DashboardAnalyticsService dashboardAnalyticsService, int threads,
+                             long ttlMillis, long timeoutMillis, Clock clock) {
+        this.dashboardAnalyticsService = dashboardAnalyticsService;
+        this.ttlMillis = ttlMillis;
+        this.timeoutMillis = timeoutMillis;
+        this.clock = clock;
+        AtomicInteger threadNumber = new AtomicInteger();
+        // 队列有界，排满时由提交任务的线程自己执行，不会无限堆积
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(64), runnable -> {
+            Thread thread = new Thread(runnable, "dashboard-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final int trendDays;
+        private final TrendBucket bucket;
+        private volatile DashboardSnapshot snapshot;
+        // 生成快照的时间（clock 毫秒）
+        private volatile long computedAt;
+        private volatile long lastRequestedAt;
+        private final AtomicReference<CompletableFuture<DashboardSnapshot>> inFlight = new AtomicReference<>();
+
+        private Entry(int trendDays, TrendBucket bucket) {
+            this.key = key(trendDays, bucket);
+            this.trendDays = trendDays;
+            this.bucket = bucket;
+        }
+    }
+
+    private static String key(int trendDays, TrendBucket bucket) {
+        return trendDays + "/" + bucket;
+    }
+
+    private Entry entry(int trendDays, TrendBucket bucket) {
+        return entries.computeIfAbsent(key(trendDays, bucket), key -> new Entry(trendDays, bucket));
+    }
+
+    /**
+     * 最近 trendDays 天（含今天）按天的仪表盘快照
+     */
+    public DashboardSnapshot get(int trendDays) {
+        return get(trendDays, TrendBucket.DAY);
+    }
+
+    /**
+     * 最近 trendDays 天（含今天）按 bucket 汇总趋势的仪表盘快照。
+     * 有快照时直接返回（过期则顺带触发后台刷新）；第一次访问某个窗口时等待计算完成。
+     */
+    public DashboardSnapshot get(int trendDays, TrendBucket bucket) {
+        Entry entry = entry(trendDays, bucket);
+        long now = clock.millis();
+        entry.lastRequestedAt = now;
+        DashboardSnapshot snapshot = entry.snapshot;
+        if (snapshot != null) {
+            if (now - entry.computedAt >= ttlMillis) {
+                refresh(entry);
+            }
+            return snapshot;
+        }
+        return await(refresh(entry));
+    }
+
+    private DashboardSnapshot await(CompletableFuture<DashboardSnapshot> future) {
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("仪表盘统计被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("仪表盘统计失败", cause);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("仪表盘统计超时", e);
+        }
+    }
+
+    // 已有计算在进行时直接共享它的结果
+    private CompletableFuture<DashboardSnapshot> refresh(Entry entry) {
+        CompletableFuture<DashboardSnapshot> created = new CompletableFuture<>();
+        CompletableFuture<DashboardSnapshot> existing = entry.inFlight.compareAndExchange(null, created);
+        if (existing != null) {
+            return existing;
+        }
+        compute(entry.trendDays, entry.bucket).whenComplete((snapshot, error) -> {
+            // 先发布快照再清除进行中标记，并发请求不会看到两者皆空而重复计算
+            if (snapshot != null) {
+                entry.snapshot = snapshot;
+                entry.computedAt = clock.millis();
+            }
+            entry.inFlight.set(null);
+            if (snapshot != null) {
+                created.complete(snapshot);
+            } else {
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                logger.warn("仪表盘统计失败（{}）: {}", entry.key, cause.getMessage());
+                created.completeExceptionally(cause);
+            }
+        });
+        return created;
+    }
+
+    // 各项统计分别提交到线程池，全部完成后组装成快照
+    private CompletableFuture<DashboardSnapshot> compute(int trendDays, TrendBucket bucket) {
+        computations.incrementAndGet();
+        LocalDate today = LocalDate.now(clock);
+        LocalDate startDate = today.minusDays(trendDays - 1);
+
+        CompletableFuture<Long> totalUsers = async(dashboardAnalyticsService::getTotalUserCount);
+        CompletableFuture<Long> totalPosts = async(dashboardAnalyticsService::getTotalPostCount);
+        CompletableFuture<Long> totalComments = async(dashboardAnalyticsService::getTotalCommentCount);
+        CompletableFuture<Long> weeklyActive = async(() -> dashboardAnalyticsService.getActiveUserCount(today.minusDays(6), today));
+        CompletableFuture<Long> monthlyActive = async(() -> dashboardAnalyticsService.getActiveUserCount(today.minusDays(29), today));
+        CompletableFuture<Double> retention = async(() -> dashboardAnalyticsService.getRetentionRate(today.minusDays(2), 1));
+        CompletableFuture<Map<String, Long>> userTrend = trend(TrendMetric.NEW_USERS, startDate, today, bucket);
+        CompletableFuture<Map<String, Long>> postTrend = trend(TrendMetric.NEW_POSTS, startDate, today, bucket);
+        CompletableFuture<Map<String, Long>> commentTrend = trend(TrendMetric.NEW_COMMENTS, startDate, today, bucket);
+        CompletableFuture<Map<String, Long>> dauTrend = trend(TrendMetric.ACTIVE_USERS, startDate, today, bucket);
+        // 按天时今日活跃就是日活趋势的最后一天，不再单独查询
+        CompletableFuture<Long> todayActive = bucket == TrendBucket.DAY
+                ? dauTrend.thenApply(DashboardSnapshotService::lastValue)
+                : async(dashboardAnalyticsService::getTodayActiveUserCount);
+
+        return CompletableFuture.allOf(totalUsers, totalPosts, totalComments, weeklyActive, monthlyActive,
+                        retention, userTrend, postTrend, commentTrend, dauTrend, todayActive)
+                .thenApply(ignored -> {
+                    DashboardSnapshot snapshot = new DashboardSnapshot();
+                    snapshot.setTotalUserCount(totalUsers.join());
+                    snapshot.setTotalPostCount(totalPosts.join());
+                    snapshot.setTotalCommentCount(totalComments.join());
+                    snapshot.setWeeklyActiveUserCount(weeklyActive.join());
+                    snapshot.setMonthlyActiveUserCount(monthlyActive.join());
+                    snapshot.setNextDayRetentionRate(retention.join());
+                    snapshot.setTrendDays(trendDays);
+                    snapshot.setTrendBucket(bucket);
+                    snapshot.setUserRegistrationTrend(Collections.unmodifiableMap(userTrend.join()));
+                    snapshot.setPostCreationTrend(Collections.unmodifiableMap(postTrend.join()));
+                    snapshot.setCommentCreationTrend(Collections.unmodifiableMap(commentTrend.join()));
+                    snapshot.setDauTrend(Collections.unmodifiableMap(dauTrend.join()));
+                    snapshot.setTodayActiveUserCount(todayActive.join());
+                    snapshot.setGeneratedAt(LocalDateTime.now(clock));
+                    return snapshot;
+                });
+    }
+
+    // 趋势按日期排序，最后一项就是今天
+    private static long lastValue(Map<String, Long> trend) {
+        long last = 0;
+        for (Long value : trend.values()) {
+            last = value;
+        }
+        return last;
+    }
+
+    private CompletableFuture<Map<String, Long>> trend(TrendMetric metric, LocalDate startDate, LocalDate endDate,
+                                                       TrendBucket bucket) {
+        return async(() -> dashboardAnalyticsService.getTrend(metric, startDate, endDate, bucket));
+    }
+
+    private <T> CompletableFuture<T> async(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, executor);
+    }
+
+    /**
+     * 定时刷新：默认窗口始终保持最新，其他窗口最近有访问才刷新，长时间没有访问的丢弃。
+     * 生成不到 TTL 一半的快照跳过（刷新间隔不超过 TTL 一半时，下一轮之前不会过期）。
+     * 只提交刷新、不等待结果，不占用 Spring 定时任务线程（浏览数写回等其他定时任务也在这些线程上执行）；
+     * 失败已在 refresh 中记录，保留旧快照。
+     */
+    @Scheduled(fixedDelayString = "${app.dashboard.refresh-interval-ms:30000}")
+    public void refreshAll() {
+        Entry defaultEntry = entry(DEFAULT_TREND_DAYS, TrendBucket.DAY);
+        long now = clock.millis();
+        for (Entry entry : entries.values()) {
+            if (entry != defaultEntry && now - entry.lastRequestedAt > IDLE_EVICTION_MILLIS) {
+                entries.remove(entry.key, entry);
+                continue;
+            }
+            if (entry.snapshot != null && now - entry.computedAt < ttlMillis / 2) {
+                continue;
+            }
+            refresh(entry);
+        }
+    }
+
+    // 计算快照的次数（自应用启动起）
+    public long computations() {
+        return computations.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
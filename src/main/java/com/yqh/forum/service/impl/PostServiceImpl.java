@@ -1,7 +1,9 @@
 package com.yqh.forum.service.impl;
 
 import com.yqh.forum.dto.CategoryDTO;
+import com.yqh.forum.dto.CursorPage;
 import com.yqh.forum.dto.PostDTO;
+import com.yqh.forum.dto.PostListItem;
 import com.yqh.forum.dto.UserDTO;
 import com.yqh.forum.exception.ResourceNotFoundException;
 import com.yqh.forum.model.Category;
@@ -10,16 +12,28 @@ import com.yqh.forum.model.User;
 import com.yqh.forum.repository.CategoryRepository;
 import com.yqh.forum.repository.PostRepository;
 import com.yqh.forum.repository.UserRepository;
+import com.yqh.forum.service.ActivityEvent;
 import com.yqh.forum.service.PostService;
+import com.yqh.forum.service.search.PostChangedEvent;
+import com.yqh.forum.service.util.MarkdownUtil;
+import com.yqh.forum.service.util.PostCursor;
+import com.yqh.forum.service.util.RenderedMarkdown;
+import com.yqh.forum.service.util.SummaryUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.cache.annotation.CacheConfig; // 导入 CacheConfig
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional // 保持事务注解
@@ -35,36 +49,11 @@ public class PostServiceImpl implements PostService {
     @Autowired
     private CategoryRepository categoryRepository;
 
-    //过滤图片
-    private static final Pattern IMAGE_PATTERN = Pattern.compile(
-            "!\\[.*?\\]\\(.*?\\)|<img[^>]*?src=[\"'](.*?)\"'.*?>|#",
-            Pattern.CASE_INSENSITIVE
-    );
-    //过滤#号
-    private static final Pattern MARKDOWN_HEADING_PATTERN = Pattern.compile(
-            "^[#]+", // 匹配行首的一个或多个 # 符号
-            Pattern.MULTILINE
-    );
-
-
+    @Autowired
+    private ViewCountBuffer viewCountBuffer;
 
-    private String generateSummaryContent(String fullContent) {
-        if (fullContent == null) {
-            return "";
-        }
-        //1.过滤markdown格式的图片
-        Matcher imageMatcher = IMAGE_PATTERN.matcher(fullContent);
-        String contentWithoutImages = imageMatcher.replaceAll("");
-        //2.过滤Markdown标题的#符号
-        Matcher headingMatcher = MARKDOWN_HEADING_PATTERN.matcher(contentWithoutImages);
-        String contentWithoutHeadings = headingMatcher.replaceAll("");
-
-        int maxLength = 200;
-        if (contentWithoutHeadings.length() > maxLength) {
-            return contentWithoutHeadings.substring(0, maxLength) + "...";
-        }
-        return contentWithoutHeadings;
-    }
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
     @Override
     public PostDTO createPost(PostDTO postDTO, String username) {
@@ -77,11 +66,16 @@ public class PostServiceImpl implements PostService {
         Post post = new Post();
         post.setTitle(postDTO.getTitle());
         post.setContent(postDTO.getContent());
+        post.setSummary(SummaryUtil.generate(post.getContent()));
+        applyRenderedContent(post);
         post.setAuthor(author);
         post.setCategory(category);
         post.setViewCount(0);
 
         Post savedPost = postRepository.save(post);
+        eventPublisher.publishEvent(PostChangedEvent.saved(savedPost.getId(), savedPost.getTitle(), savedPost.getContent()));
+        eventPublisher.publishEvent(new ActivityEvent(ActivityEvent.Type.POST_CREATED,
+                author.getId(), savedPost.getCreatedAt()));
         return convertToDTO(savedPost);
     }
 
@@ -99,9 +93,12 @@ public class PostServiceImpl implements PostService {
 
         post.setTitle(postDTO.getTitle());
         post.setContent(postDTO.getContent());
+        post.setSummary(SummaryUtil.generate(post.getContent()));
+        applyRenderedContent(post);
         post.setCategory(category);
 
         Post updatedPost = postRepository.save(post);
+        eventPublisher.publishEvent(PostChangedEvent.saved(updatedPost.getId(), updatedPost.getTitle(), updatedPost.getContent()));
         return convertToDTO(updatedPost);
     }
 
@@ -115,13 +112,18 @@ public class PostServiceImpl implements PostService {
         }
 
         postRepository.delete(post);
+        eventPublisher.publishEvent(PostChangedEvent.deleted(id));
     }
 
     @Override
     public PostDTO findById(Long id) {
         Post post = postRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("帖子不存在"));
-        return convertToDTO(post);
+        PostDTO dto = convertToDTO(post);
+        RenderedMarkdown rendered = resolveRenderedContent(post);
+        dto.setHtmlContent(rendered.getHtml());
+        dto.setToc(rendered.getToc());
+        return dto;
     }
 
     @Override
@@ -143,12 +145,15 @@ public class PostServiceImpl implements PostService {
     }
 
     @Override
-    @Transactional
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // 只写内存，不需要开启事务占用数据库连接
     public void incrementViewCount(Long id) {
-        Post post = postRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("帖子不存在"));
-        post.setViewCount(post.getViewCount() + 1);
-        postRepository.save(post);
+        viewCountBuffer.increment(id);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public long getViewCount(PostDTO post) {
+        return viewCountBuffer.viewCount(post.getId(), post.getViewCount() != null ? post.getViewCount() : 0);
     }
 
     @Override
@@ -159,6 +164,105 @@ public class PostServiceImpl implements PostService {
                 .map(this::convertToDTO);
     }
 
+    @Override
+    public List<PostDTO> findSummariesByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, PostListItem> byId = new HashMap<>();
+        for (PostListItem item : postRepository.findListItemsByIds(ids)) {
+            byId.put(item.getId(), item);
+        }
+        List<PostDTO> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            PostListItem item = byId.get(id);
+            if (item != null) {
+                result.add(convertListItemToDTO(item));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Page<PostDTO> searchSummaries(String keyword, Pageable pageable) {
+        return postRepository.searchListItems(keyword, pageable)
+                .map(this::convertListItemToDTO);
+    }
+
+    @Override
+    public CursorPage<PostDTO> findSummariesByCursor(String cursor, int size) {
+        return findSummariesByKeyset(null, null, cursor, size);
+    }
+
+    @Override
+    public CursorPage<PostDTO> findSummariesByCategoryIdAndCursor(Long categoryId, String cursor, int size) {
+        return findSummariesByKeyset(categoryId, null, cursor, size);
+    }
+
+    @Override
+    public CursorPage<PostDTO> findSummariesByAuthorAndCursor(Long userId, String cursor, int size) {
+        return findSummariesByKeyset(null, userId, cursor, size);
+    }
+
+    // 多取一条判断该方向上是否还有下一页
+    private CursorPage<PostDTO> findSummariesByKeyset(Long categoryId, Long authorId, String cursor, int size) {
+        PostCursor position = (cursor == null || cursor.isEmpty()) ? null : PostCursor.decode(cursor);
+        boolean older = position == null || position.getDirection() == PostCursor.Direction.OLDER;
+
+        List<PostListItem> rows = postRepository.findListItemsByKeyset(categoryId, authorId,
+                position != null ? position.getCreatedAt() : null,
+                position != null ? position.getId() : null,
+                older, size + 1);
+        boolean more = rows.size() > size;
+        if (more) {
+            rows = rows.subList(0, size);
+        }
+        if (!older) {
+            if (rows.isEmpty()) {
+                // 更新的帖子已被删除，回到第一页
+                return findSummariesByKeyset(categoryId, authorId, null, size);
+            }
+            // 向新翻页时按时间正序查询，展示前翻转为倒序
+            rows = new ArrayList<>(rows);
+            Collections.reverse(rows);
+        }
+
+        // 向旧翻页时，有游标说明前面还有更新的一页；向新翻页时，来处那一页一定存在
+        boolean hasNext = older ? more : true;
+        boolean hasPrevious = older ? position != null : more;
+        String nextCursor = hasNext && !rows.isEmpty() ? PostCursor.olderThan(rows.get(rows.size() - 1)).encode() : null;
+        String prevCursor = hasPrevious && !rows.isEmpty() ? PostCursor.newerThan(rows.get(0)).encode() : null;
+
+        List<PostDTO> content = rows.stream()
+                .map(this::convertListItemToDTO)
+                .collect(Collectors.toList());
+        return new CursorPage<>(content, nextCursor, prevCursor);
+    }
+
+    // 写入时渲染 Markdown，详情页直接使用持久化的 HTML 和目录
+    private void applyRenderedContent(Post post) {
+        RenderedMarkdown rendered = MarkdownUtil.render(post.getContent());
+        post.setRenderedContent(rendered.getHtml());
+        post.setRenderedToc(rendered.getToc());
+        post.setRenderedVersion(MarkdownUtil.RENDERER_VERSION);
+    }
+
+    /**
+     * 返回帖子渲染后的 HTML 和目录。
+     * 旧数据没有渲染结果，或渲染器版本已变化时，重新渲染并回写数据库（懒重渲染）。
+     */
+    private RenderedMarkdown resolveRenderedContent(Post post) {
+        if (post.getRenderedContent() != null
+                && Integer.valueOf(MarkdownUtil.RENDERER_VERSION).equals(post.getRenderedVersion())) {
+            return new RenderedMarkdown(post.getRenderedContent(),
+                    post.getRenderedToc() != null ? post.getRenderedToc() : Collections.emptyList());
+        }
+        RenderedMarkdown rendered = MarkdownUtil.render(post.getContent());
+        postRepository.updateRenderedContent(post.getId(), rendered.getHtml(), rendered.getToc(),
+                MarkdownUtil.RENDERER_VERSION, post.getUpdatedAt());
+        return rendered;
+    }
+
     private PostDTO convertToDTO(Post post) {
         if (post == null) {
             return null;
@@ -168,13 +272,39 @@ public class PostServiceImpl implements PostService {
         dto.setId(post.getId());
         dto.setTitle(post.getTitle());
         dto.setContent(post.getContent());
-        dto.setSummaryContent(generateSummaryContent(post.getContent()));
+        // 存量数据在回填完成前没有 summary，临时从正文生成
+        dto.setSummaryContent(post.getSummary() != null ? post.getSummary() : SummaryUtil.generate(post.getContent()));
 
         dto.setAuthor(convertToUserDTO(post.getAuthor()));
         dto.setCategory(convertToCategoryDTO(post.getCategory()));
         dto.setCreatedAt(post.getCreatedAt());
         dto.setUpdatedAt(post.getUpdatedAt());
         dto.setViewCount(post.getViewCount());
+        dto.setUniqueViewCount(post.getUniqueViewCount());
+        return dto;
+    }
+
+    // 列表投影转 DTO，只填充列表页用到的字段
+    private PostDTO convertListItemToDTO(PostListItem item) {
+        PostDTO dto = new PostDTO();
+        dto.setId(item.getId());
+        dto.setTitle(item.getTitle());
+        dto.setSummaryContent(item.getSummary() != null ? item.getSummary() : SummaryUtil.generate(item.getContent()));
+        dto.setViewCount(item.getViewCount());
+        dto.setUniqueViewCount(item.getUniqueViewCount());
+        dto.setCreatedAt(item.getCreatedAt());
+        dto.setUpdatedAt(item.getUpdatedAt());
+
+        UserDTO author = new UserDTO();
+        author.setId(item.getAuthorId());
+        author.setUsername(item.getAuthorUsername());
+        author.setAvatar(item.getAuthorAvatar());
+        dto.setAuthor(author);
+
+        CategoryDTO category = new CategoryDTO();
+        category.setId(item.getCategoryId());
+        category.setName(item.getCategoryName());
+        dto.setCategory(category);
         return dto;
     }
 
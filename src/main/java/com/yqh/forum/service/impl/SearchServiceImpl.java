@@ -0,0 +1,414 @@
+package com.yqh.forum.service.impl;
+
+import com.yqh.forum.config.cache.RedisCircuitBreaker;
+import com.yqh.forum.dto.PostDTO;
+import com.yqh.forum.service.PostService;
+import com.yqh.forum.service.SearchService;
+import com.yqh.forum.service.search.InvertedIndex;
+import com.yqh.forum.service.search.PostChangedEvent;
+import com.yqh.forum.service.search.SearchHits;
+import com.yqh.forum.service.search.SearchTokenizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 帖子全文检索。
+ * 索引常驻内存，定时（及关闭时）写入磁盘快照；启动时读取快照并补齐快照之后的变更，
+ * 没有可用快照时从数据库全量重建。帖子新建/编辑/删除后通过 PostChangedEvent 增量更新。
+ * 索引在每个节点各有一份：本节点的变更提交后通过 Redis pub/sub 通知其他节点，其他节点从数据库读取该帖子后更新；
+ * 通知可能丢失，另外定时按 updated_at 补齐最近的变更，并按 ID 分页比对 posts 表移除已删除的帖子。
+ * 索引尚未就绪时回退到数据库 LIKE 查询。
+ */
+@Service
+public class SearchServiceImpl implements SearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchServiceImpl.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x46534958; // "FSIX"
+    private static final int SNAPSHOT_FORMAT = 1;
+    private static final String SNAPSHOT_FILE = "posts.idx";
+
+    // 启动补齐时多往前回溯一段时间，覆盖快照前开始、快照后才提交的事务
+    private static final long CATCH_UP_MARGIN_MINUTES = 10;
+    private static final int REBUILD_BATCH_SIZE = 500;
+
+    private static final String REBUILD_SQL =
+            "SELECT id, title, content FROM posts WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String CHANGED_SINCE_SQL =
+            "SELECT id, title, content FROM posts WHERE updated_at >= ?";
+    private static final String POST_SQL = "SELECT id, title, content FROM posts WHERE id = ?";
+    private static final String EXISTING_IDS_SQL = "SELECT id FROM posts WHERE id IN (%s)";
+
+    public static final String CHANGE_CHANNEL = "forum:search:changed";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private RedisCircuitBreaker redisCircuitBreaker;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Value("${app.search.index-dir}")
+    private String indexDir;
+
+    private volatile InvertedIndex index = new InvertedIndex();
+    private volatile boolean ready;
+
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    // 重建期间收到的变更，新索引替换上去之后重放
+    private final Queue<PostChangedEvent> changesDuringRebuild = new ConcurrentLinkedQueue<>();
+
+    // 区分通知来自哪个节点，自己发出的通知不再处理
+    private final String nodeId = UUID.randomUUID().toString();
+    // 上一次补齐变更（或加载索引）的时间，下一次从这里往前回溯 CATCH_UP_MARGIN_MINUTES 开始查
+    private volatile LocalDateTime syncedAt;
+
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener(
+                (message, pattern) -> handleRemoteChange(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(CHANGE_CHANNEL));
+    }
+
+    @Override
+    public Page<PostDTO> search(String keyword, Pageable pageable) {
+        if (!ready) {
+            return postService.searchSummaries(keyword, pageable);
+        }
+        SearchHits hits = index.search(keyword, (int) pageable.getOffset(), pageable.getPageSize());
+        List<PostDTO> content = postService.findSummariesByIds(hits.getPostIds());
+        return new PageImpl<>(content, pageable, hits.getTotal());
+    }
+
+    @Override
+    public int indexedPostCount() {
+        return index.size();
+    }
+
+    /**
+     * 帖子变更后增量更新索引并通知其他节点。事务提交后才执行，回滚的修改不会进入索引。
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostChanged(PostChangedEvent event) {
+        applyChange(event);
+        notifyOtherNodes(event.getPostId());
+    }
+
+    private void applyChange(PostChangedEvent event) {
+        // 先入队再更新：保证重建替换索引前后的变更都不会丢
+        if (rebuilding.get()) {
+            changesDuringRebuild.add(event);
+        }
+        apply(index, event);
+        dirty.set(true);
+    }
+
+    // 消息只带帖子ID，收到的节点从数据库读取最新内容，不会因为消息乱序用旧内容覆盖新内容
+    private void notifyOtherNodes(Long postId) {
+        try {
+            redisCircuitBreaker.execute(() -> {
+                redisTemplate.convertAndSend(CHANGE_CHANNEL, nodeId + "\n" + postId);
+                return null;
+            });
+        } catch (RuntimeException e) {
+            // 通知失败不影响本次写操作，其他节点会在定时补齐时同步
+            logger.warn("广播帖子 {} 的索引变更失败: {}", postId, e.getMessage());
+        }
+    }
+
+    /**
+     * 处理其他节点发来的变更通知，格式：节点ID \n 帖子ID
+     */
+    public void handleRemoteChange(String message) {
+        String[] parts = message.split("\n", 2);
+        if (parts.length != 2) {
+            logger.warn("忽略格式不正确的索引变更通知: {}", message);
+            return;
+        }
+        if (nodeId.equals(parts[0])) {
+            return;
+        }
+        Long postId;
+        try {
+            postId = Long.valueOf(parts[1]);
+        } catch (NumberFormatException e) {
+            logger.warn("忽略格式不正确的索引变更通知: {}", message);
+            return;
+        }
+        List<PostChangedEvent> saved = jdbcTemplate.query(POST_SQL, (rs, rowNum) ->
+                PostChangedEvent.saved(rs.getLong("id"), rs.getString("title"), rs.getString("content")), postId);
+        applyChange(saved.isEmpty() ? PostChangedEvent.deleted(postId) : saved.get(0));
+    }
+
+    /**
+     * 定时补齐：重新索引最近修改过的帖子，移除已删除的帖子，兜底丢失的变更通知
+     */
+    @Scheduled(fixedDelayString = "${app.search.resync-interval-ms:300000}")
+    public void resync() {
+        LocalDateTime since = syncedAt;
+        if (!ready || rebuilding.get() || since == null) {
+            return;
+        }
+        LocalDateTime startedAt = LocalDateTime.now();
+        try {
+            jdbcTemplate.query(CHANGED_SINCE_SQL,
+                    rs -> {
+                        applyChange(PostChangedEvent.saved(rs.getLong("id"), rs.getString("title"), rs.getString("content")));
+                    },
+                    Timestamp.valueOf(since.minusMinutes(CATCH_UP_MARGIN_MINUTES)));
+            forEachDeletedPost(index, postId -> applyChange(PostChangedEvent.deleted(postId)));
+            syncedAt = startedAt;
+        } catch (RuntimeException e) {
+            logger.warn("补齐搜索索引失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 找出索引中有、posts 表中已不存在的帖子。索引中的 ID 每 REBUILD_BATCH_SIZE 个一页，
+     * 按主键 IN 查询这一页还存在哪些，单次查询和结果集的大小与帖子总数无关。
+     */
+    private void forEachDeletedPost(InvertedIndex target, Consumer<Long> onDeleted) {
+        List<Long> page = new ArrayList<>(REBUILD_BATCH_SIZE);
+        for (Long postId : target.postIds()) {
+            page.add(postId);
+            if (page.size() == REBUILD_BATCH_SIZE) {
+                missingFromDatabase(page).forEach(onDeleted);
+                page.clear();
+            }
+        }
+        if (!page.isEmpty()) {
+            missingFromDatabase(page).forEach(onDeleted);
+        }
+    }
+
+    // 返回这一页中数据库已不存在的 ID
+    private List<Long> missingFromDatabase(List<Long> page) {
+        String sql = String.format(EXISTING_IDS_SQL, String.join(",", Collections.nCopies(page.size(), "?")));
+        Set<Long> existing = new HashSet<>(jdbcTemplate.queryForList(sql, Long.class, page.toArray()));
+        List<Long> missing = new ArrayList<>();
+        for (Long postId : page) {
+            if (!existing.contains(postId)) {
+                missing.add(postId);
+            }
+        }
+        return missing;
+    }
+
+    private static void apply(InvertedIndex target, PostChangedEvent event) {
+        if (event.isDeleted()) {
+            target.remove(event.getPostId());
+        } else {
+            target.index(event.getPostId(), event.getTitle(), event.getContent());
+        }
+    }
+
+    /**
+     * 启动后在后台加载索引，不阻塞应用启动
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (!acquireRebuild()) {
+            return;
+        }
+        startWorker("search-index-loader", () -> swapIn(() -> {
+            InvertedIndex loaded = loadSnapshot();
+            return loaded != null ? loaded : buildFromDatabase();
+        }));
+    }
+
+    @Override
+    public void rebuildIndex() {
+        if (!acquireRebuild()) {
+            throw new IllegalStateException("搜索索引正在重建中");
+        }
+        swapIn(this::buildFromDatabase);
+    }
+
+    @Override
+    public boolean startRebuild() {
+        if (!acquireRebuild()) {
+            return false;
+        }
+        startWorker("search-index-rebuild", () -> swapIn(this::buildFromDatabase));
+        return true;
+    }
+
+    private boolean acquireRebuild() {
+        if (rebuilding.get()) {
+            return false;
+        }
+        // 清掉上一轮可能残留的事件，之后到达的变更都会被保留下来重放
+        changesDuringRebuild.clear();
+        return rebuilding.compareAndSet(false, true);
+    }
+
+    private void startWorker(String name, Runnable task) {
+        Thread worker = new Thread(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.error("加载搜索索引失败，搜索将回退到数据库查询", e);
+            }
+        }, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // 构建新索引并替换当前索引，然后重放构建期间的变更；调用方已持有 rebuilding 标记
+    private void swapIn(Supplier<InvertedIndex> loader) {
+        LocalDateTime startedAt = LocalDateTime.now();
+        try {
+            index = loader.get();
+            replayChangesDuringRebuild();
+            syncedAt = startedAt;
+            ready = true;
+            dirty.set(true);
+        } finally {
+            rebuilding.set(false);
+            replayChangesDuringRebuild();
+        }
+        saveSnapshot();
+    }
+
+    private InvertedIndex buildFromDatabase() {
+        long startedAt = System.currentTimeMillis();
+        InvertedIndex fresh = new InvertedIndex();
+        long lastId = 0;
+        while (true) {
+            List<Long> ids = jdbcTemplate.query(REBUILD_SQL, (rs, rowNum) -> {
+                long id = rs.getLong("id");
+                fresh.index(id, rs.getString("title"), rs.getString("content"));
+                return id;
+            }, lastId, REBUILD_BATCH_SIZE);
+            if (ids.isEmpty()) {
+                break;
+            }
+            lastId = ids.get(ids.size() - 1);
+        }
+        logger.info("搜索索引重建完成：{} 篇帖子，耗时 {} ms", fresh.size(), System.currentTimeMillis() - startedAt);
+        return fresh;
+    }
+
+    private void replayChangesDuringRebuild() {
+        PostChangedEvent event;
+        while ((event = changesDuringRebuild.poll()) != null) {
+            apply(index, event);
+        }
+    }
+
+    /**
+     * 有变更时把索引写入磁盘快照（先写临时文件再原子替换）
+     */
+    @Scheduled(fixedDelayString = "${app.search.snapshot-interval-ms:60000}")
+    public synchronized void saveSnapshot() {
+        if (!ready || !dirty.getAndSet(false)) {
+            return;
+        }
+        LocalDateTime takenAt = LocalDateTime.now();
+        Path dir = Paths.get(indexDir);
+        Path tmp = dir.resolve(SNAPSHOT_FILE + ".tmp");
+        try {
+            Files.createDirectories(dir);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_FORMAT);
+                out.writeInt(SearchTokenizer.VERSION);
+                out.writeUTF(takenAt.toString());
+                index.writeTo(out);
+            }
+            Files.move(tmp, dir.resolve(SNAPSHOT_FILE),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty.set(true);
+            logger.warn("写入搜索索引快照失败: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void saveOnShutdown() {
+        saveSnapshot();
+    }
+
+    // 读取快照并补齐快照之后的变更；快照不存在、损坏或分词规则已变化时返回 null
+    private InvertedIndex loadSnapshot() {
+        Path file = Paths.get(indexDir, SNAPSHOT_FILE);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        InvertedIndex loaded;
+        LocalDateTime takenAt;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_FORMAT
+                    || in.readInt() != SearchTokenizer.VERSION) {
+                logger.info("搜索索引快照版本不匹配，将从数据库重建");
+                return null;
+            }
+            takenAt = LocalDateTime.parse(in.readUTF());
+            loaded = InvertedIndex.readFrom(in);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("读取搜索索引快照失败，将从数据库重建: {}", e.getMessage());
+            return null;
+        }
+
+        // 快照之后新建/编辑的帖子
+        jdbcTemplate.query(CHANGED_SINCE_SQL,
+                rs -> {
+                    loaded.index(rs.getLong("id"), rs.getString("title"), rs.getString("content"));
+                },
+                Timestamp.valueOf(takenAt.minusMinutes(CATCH_UP_MARGIN_MINUTES)));
+        // 快照之后删除的帖子
+        forEachDeletedPost(loaded, loaded::remove);
+
+        logger.info("已加载搜索索引快照：{} 篇帖子", loaded.size());
+        return loaded;
+    }
+}
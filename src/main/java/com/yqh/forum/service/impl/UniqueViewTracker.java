@@ -0,0 +1,184 @@
+package com.yqh.forum.service.impl;
+
+import com.yqh.forum.config.cache.RedisCircuitBreaker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * 基于 Redis HyperLogLog 的帖子独立访客统计。
+ * 每个帖子一个 HLL（post:uv:{id}），无论访问量多大，单个 key 最多约 12KB，误差约 0.81%。
+ * 被访问过的帖子 ID 记在 post:uv:dirty 集合中，定时把估算值同步到 posts.unique_view_count。
+ * 记录和批量读取都在页面请求中执行，经过 RedisCircuitBreaker；Redis 不可用时只记录日志，不影响页面访问。
+ */
+@Component
+public class UniqueViewTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(UniqueViewTracker.class);
+
+    private static final String KEY_PREFIX = "post:uv:";
+    private static final String DIRTY_KEY = "post:uv:dirty";
+    private static final int RECONCILE_BATCH_SIZE = 500;
+    private static final String RECONCILE_SQL = "UPDATE posts SET unique_view_count = ? WHERE id = ?";
+
+    static final String VISITOR_COOKIE = "forum_visitor";
+    private static final int VISITOR_COOKIE_MAX_AGE = 365 * 24 * 60 * 60;
+    private static final Pattern VISITOR_PATTERN = Pattern.compile("[0-9a-f]{32}");
+    private static final String VISITOR_ATTRIBUTE = UniqueViewTracker.class.getName() + ".VISITOR";
+
+    private final StringRedisTemplate redisTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final RedisCircuitBreaker redisCircuitBreaker;
+
+    public UniqueViewTracker(StringRedisTemplate redisTemplate, JdbcTemplate jdbcTemplate,
+                             RedisCircuitBreaker redisCircuitBreaker) {
+        this.redisTemplate = redisTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.redisCircuitBreaker = redisCircuitBreaker;
+    }
+
+    /**
+     * 记录一次访问
+     * @param postId 帖子ID
+     * @param visitorId 访客标识（用户名 / 访客 Cookie），只以摘要形式写入 Redis
+     */
+    public void record(Long postId, String visitorId) {
+        String visitorHash = DigestUtils.md5DigestAsHex(visitorId.getBytes(StandardCharsets.UTF_8));
+        try {
+            // PFADD + SADD 放在一个 pipeline 里，一次网络往返
+            redisCircuitBreaker.execute(() -> redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                conn.pfAdd(key(postId), visitorHash);
+                conn.sAdd(DIRTY_KEY, String.valueOf(postId));
+                return null;
+            }));
+        } catch (RuntimeException e) {
+            logger.debug("记录帖子 {} 的独立访客失败: {}", postId, e.getMessage());
+        }
+    }
+
+    /**
+     * 访客标识：登录用户用用户名；匿名访客用长期有效的访客 Cookie，第一次访问时签发。
+     * 同一个匿名访客前后所有请求都用同一个标识，不会因为后来有了会话而被重复计数，
+     * 同一出口 IP 后面的多个访客也能区分开
+     * @param username 登录用户名，匿名访客传 null
+     */
+    public static String visitorId(String username, HttpServletRequest request, HttpServletResponse response) {
+        if (username != null) {
+            return "user:" + username;
+        }
+        return "visitor:" + anonymousVisitor(request, response);
+    }
+
+    private static String anonymousVisitor(HttpServletRequest request, HttpServletResponse response) {
+        // 同一个请求里多次调用时不重复签发
+        Object issued = request.getAttribute(VISITOR_ATTRIBUTE);
+        if (issued != null) {
+            return (String) issued;
+        }
+        Cookie cookie = WebUtils.getCookie(request, VISITOR_COOKIE);
+        String visitor = cookie != null ? cookie.getValue() : null;
+        if (visitor == null || !VISITOR_PATTERN.matcher(visitor).matches()) {
+            visitor = UUID.randomUUID().toString().replace("-", "");
+            Cookie created = new Cookie(VISITOR_COOKIE, visitor);
+            created.setPath("/");
+            created.setMaxAge(VISITOR_COOKIE_MAX_AGE);
+            created.setHttpOnly(true);
+            created.setSecure(request.isSecure());
+            response.addCookie(created);
+        }
+        request.setAttribute(VISITOR_ATTRIBUTE, visitor);
+        return visitor;
+    }
+
+    /**
+     * 批量读取一页帖子的独立访客数，一次 pipeline 完成
+     * @return postId -> 独立访客数；Redis 不可用时返回空 Map，由调用方回退到数据库中的值
+     */
+    public Map<Long, Long> countUniqueViews(Collection<Long> postIds) {
+        if (postIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<Long> ids = new ArrayList<>(postIds);
+        try {
+            List<Object> counts = redisCircuitBreaker.execute(() -> pipelinedCount(ids));
+            Map<Long, Long> result = new LinkedHashMap<>();
+            for (int i = 0; i < ids.size(); i++) {
+                result.put(ids.get(i), (Long) counts.get(i));
+            }
+            return result;
+        } catch (RuntimeException e) {
+            logger.debug("批量读取独立访客数失败: {}", e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
+
+    private List<Object> pipelinedCount(List<Long> ids) {
+        return redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (Long id : ids) {
+                conn.pfCount(key(id));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 定时把有新访问的帖子的 HLL 估算值写回 posts.unique_view_count
+     */
+    @Scheduled(fixedDelayString = "${app.unique-views.reconcile-interval-ms:60000}")
+    public void reconcile() {
+        try {
+            List<String> dirtyIds;
+            while (!(dirtyIds = popDirtyIds()).isEmpty()) {
+                List<Long> ids = new ArrayList<>(dirtyIds.size());
+                dirtyIds.forEach(id -> ids.add(Long.valueOf(id)));
+                List<Object> counts = pipelinedCount(ids);
+
+                List<Object[]> batchArgs = new ArrayList<>(ids.size());
+                for (int i = 0; i < ids.size(); i++) {
+                    batchArgs.add(new Object[]{counts.get(i), ids.get(i)});
+                }
+                try {
+                    jdbcTemplate.batchUpdate(RECONCILE_SQL, batchArgs);
+                } catch (RuntimeException e) {
+                    // 写库失败，放回 dirty 集合等待下一轮
+                    redisTemplate.opsForSet().add(DIRTY_KEY, dirtyIds.toArray(new String[0]));
+                    throw e;
+                }
+                logger.debug("已同步 {} 个帖子的独立访客数", ids.size());
+            }
+        } catch (RuntimeException e) {
+            logger.warn("同步独立访客数失败: {}", e.getMessage());
+        }
+    }
+
+    private List<String> popDirtyIds() {
+        List<String> ids = redisTemplate.opsForSet().pop(DIRTY_KEY, RECONCILE_BATCH_SIZE);
+        return ids != null ? ids : Collections.emptyList();
+    }
+
+    private static String key(Long postId) {
+        return KEY_PREFIX + postId;
+    }
+}
@@ -1,11 +1,15 @@
 package com.yqh.forum.service.impl;
 
+import com.yqh.forum.config.security.CurrentUser;
+import com.yqh.forum.config.security.PrincipalCache;
 import com.yqh.forum.dto.UserDTO;
 import com.yqh.forum.dto.UserRegistrationDTO;
 import com.yqh.forum.model.User;
 import com.yqh.forum.repository.UserRepository;
+import com.yqh.forum.service.ActivityEvent;
 import com.yqh.forum.service.UserService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -29,6 +33,8 @@ public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final PrincipalCache principalCache;
+    private final ApplicationEventPublisher eventPublisher;
 
     private static final Logger logger = LoggerFactory.getLogger(UserServiceImpl.class);
 
@@ -56,6 +62,8 @@ public class UserServiceImpl implements UserService {
         user.setPassword(passwordEncoder.encode(registrationDTO.getPassword()));
 
         User savedUser = userRepository.save(user);
+        eventPublisher.publishEvent(new ActivityEvent(ActivityEvent.Type.USER_REGISTERED,
+                savedUser.getId(), savedUser.getCreatedAt()));
         return convertToDTO(savedUser);
     }
 
@@ -80,9 +88,15 @@ public class UserServiceImpl implements UserService {
                 .orElseThrow(() -> new UsernameNotFoundException("当前用户不存在"));
     }
 
+    @Override
+    public CurrentUser getCurrentUserIdentity() {
+        return principalCache.get(SecurityContextHolder.getContext().getAuthentication());
+    }
+
     @Override
     public void updateUser(User user) {
         userRepository.save(user);
+        principalCache.invalidate(user.getId());
     }
 
     @Override
@@ -114,6 +128,7 @@ public class UserServiceImpl implements UserService {
         // 更新密码
         user.setPassword(passwordEncoder.encode(newPassword));
         userRepository.save(user);
+        principalCache.invalidate(user.getId());
     }
 
     private UserDTO convertToDTO(User user) {
@@ -161,6 +176,7 @@ public class UserServiceImpl implements UserService {
 
         // 5. 保存更新后的用户实体到数据库（将用户的密码更新到数据库）
         userRepository.save(user);
+        principalCache.invalidate(user.getId());
 
         // **返回新生成的裸密码**
         return newRawPassword;
@@ -195,6 +211,7 @@ public class UserServiceImpl implements UserService {
         // 2. 执行删除操作
         try {
             userRepository.deleteById(userId);
+            principalCache.invalidate(userId);
             logger.info("用户 (ID: {}) 已成功删除。", userId);
         } catch (DataIntegrityViolationException e) { // 显式捕获 DataIntegrityViolationException
             logger.warn("删除用户 (ID: {}) 失败，存在数据完整性约束: {}", userId, e.getMessage());
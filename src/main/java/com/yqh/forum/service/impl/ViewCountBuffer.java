@@ -0,0 +1,202 @@
+package com.yqh.forum.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yqh.forum.config.cache.CachePolicyRegistry;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 帖子浏览数的写缓冲（write-behind）。
+ * 每次浏览只在内存中对该帖子的 LongAdder 加一（无锁），
+ * 由定时任务把累计的增量合并成一批 UPDATE posts SET view_count = view_count + ? 写回数据库。
+ * 一批 UPDATE 在同一个事务中执行，失败时整批回滚、增量全部放回缓冲区，不会重复计数。
+ * 写回后不清除帖子详情缓存：页面显示的浏览数由 viewCount 在渲染时计算，
+ * 取缓存中的值与本节点最近一次写回后从数据库读到的值中较大的一个，再加上尚未写回的增量。
+ * 应用关闭时会把剩余的增量全部写回。
+ */
+@Component
+public class ViewCountBuffer implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ViewCountBuffer.class);
+
+    private static final String FLUSH_SQL = "UPDATE posts SET view_count = view_count + ? WHERE id = ?";
+    private static final String READ_BACK_SQL = "SELECT id, view_count FROM posts WHERE id IN (%s)";
+    private static final int READ_BACK_BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    // postId -> 尚未写回数据库的浏览增量
+    private final ConcurrentHashMap<Long, LongAdder> pending = new ConcurrentHashMap<>();
+    // 上一轮因为没有新增量而移出 pending 的计数器，下一轮再清空一次，
+    // 防止移除瞬间仍持有旧引用的请求把增量加到已移除的计数器上而丢失
+    private List<Map.Entry<Long, LongAdder>> retired = new ArrayList<>();
+    // 正在写回的增量：已从 pending 取出，但还没有读回数据库中的新值
+    private volatile Map<Long, Long> inFlight = Collections.emptyMap();
+    // 写回后从数据库读回的浏览数。保留时间与帖子详情缓存的 ttl 相同：
+    // 过期时，写回之前缓存的帖子也已经过期重新加载，缓存中的值不会再比它小
+    private final Cache<Long, Long> flushedCounts;
+
+    private final AtomicLong flushedViews = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+
+    public ViewCountBuffer(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                           CachePolicyRegistry cachePolicyRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.flushedCounts = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(cachePolicyRegistry.getPolicy("post").getTtl())
+                .build();
+    }
+
+    /**
+     * 记录一次浏览，只操作内存
+     */
+    public void increment(Long postId) {
+        pending.computeIfAbsent(postId, id -> new LongAdder()).increment();
+    }
+
+    /**
+     * 页面上显示的浏览数
+     * @param postId 帖子ID
+     * @param cachedViewCount 帖子详情缓存中的浏览数
+     */
+    public long viewCount(Long postId, long cachedViewCount) {
+        Long flushed = flushedCounts.getIfPresent(postId);
+        long base = flushed != null ? Math.max(flushed, cachedViewCount) : cachedViewCount;
+        LongAdder adder = pending.get(postId);
+        return base + (adder != null ? adder.sum() : 0) + inFlight.getOrDefault(postId, 0L);
+    }
+
+    /**
+     * 把累计的增量批量写回数据库
+     */
+    @Scheduled(fixedDelayString = "${app.view-count.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        Map<Long, Long> deltas = drain();
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> batchArgs = new ArrayList<>(deltas.size());
+        deltas.forEach((postId, delta) -> batchArgs.add(new Object[]{delta, postId}));
+        inFlight = deltas;
+        try {
+            // 自动提交模式下中途失败时前面的 UPDATE 已经生效，再整批放回会重复计数；放在一个事务里要么全部生效要么全部回滚
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(FLUSH_SQL, batchArgs));
+        } catch (RuntimeException e) {
+            // 写回失败时把增量放回缓冲区，等下一轮重试
+            deltas.forEach((postId, delta) -> pending.computeIfAbsent(postId, id -> new LongAdder()).add(delta));
+            inFlight = Collections.emptyMap();
+            failedFlushes.incrementAndGet();
+            logger.warn("浏览数写回失败，{} 个帖子的增量将在下一轮重试: {}", deltas.size(), e.getMessage());
+            return;
+        }
+
+        readBack(new ArrayList<>(deltas.keySet()));
+        inFlight = Collections.emptyMap();
+        long total = deltas.values().stream().mapToLong(Long::longValue).sum();
+        flushedViews.addAndGet(total);
+        logger.debug("浏览数写回完成：{} 个帖子，共 {} 次浏览", deltas.size(), total);
+    }
+
+    // 读回刚写回的帖子在数据库中的浏览数（也包含其他节点写回的增量），失败时页面暂时显示缓存中的值
+    private void readBack(List<Long> postIds) {
+        try {
+            for (int from = 0; from < postIds.size(); from += READ_BACK_BATCH_SIZE) {
+                List<Long> batch = postIds.subList(from, Math.min(from + READ_BACK_BATCH_SIZE, postIds.size()));
+                String sql = String.format(READ_BACK_SQL, String.join(",", Collections.nCopies(batch.size(), "?")));
+                jdbcTemplate.query(sql, rs -> {
+                    flushedCounts.put(rs.getLong(1), rs.getLong(2));
+                }, batch.toArray());
+            }
+        } catch (RuntimeException e) {
+            logger.warn("读回浏览数失败: {}", e.getMessage());
+        }
+    }
+
+    // 取出并清零所有增量；本轮没有新增量的计数器移出 pending
+    private Map<Long, Long> drain() {
+        Map<Long, Long> deltas = new HashMap<>();
+        for (Map.Entry<Long, LongAdder> entry : retired) {
+            long residual = entry.getValue().sumThenReset();
+            if (residual > 0) {
+                deltas.merge(entry.getKey(), residual, Long::sum);
+            }
+        }
+
+        List<Map.Entry<Long, LongAdder>> nowIdle = new ArrayList<>();
+        for (Map.Entry<Long, LongAdder> entry : pending.entrySet()) {
+            long delta = entry.getValue().sumThenReset();
+            if (delta > 0) {
+                deltas.merge(entry.getKey(), delta, Long::sum);
+            } else if (pending.remove(entry.getKey(), entry.getValue())) {
+                nowIdle.add(Map.entry(entry.getKey(), entry.getValue()));
+            }
+        }
+        retired = nowIdle;
+        return deltas;
+    }
+
+    /**
+     * 应用关闭前把剩余的增量写回数据库
+     */
+    @PreDestroy
+    public void drainOnShutdown() {
+        flush();
+        if (pendingViews() > 0) {
+            logger.warn("应用关闭时仍有 {} 次浏览未能写回数据库", pendingViews());
+        }
+    }
+
+    // 尚未写回的浏览次数
+    public long pendingViews() {
+        long sum = 0;
+        for (LongAdder adder : pending.values()) {
+            sum += adder.sum();
+        }
+        return sum;
+    }
+
+    // 已写回的浏览次数（自应用启动起）
+    public long flushedViews() {
+        return flushedViews.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("forum.view_count.pending", this, ViewCountBuffer::pendingViews)
+                .description("尚未写回数据库的浏览次数")
+                .register(registry);
+        Gauge.builder("forum.view_count.pending_posts", pending, Map::size)
+                .description("有待写回浏览增量的帖子数")
+                .register(registry);
+        FunctionCounter.builder("forum.view_count.flushed", flushedViews, AtomicLong::get)
+                .description("已写回数据库的浏览次数")
+                .register(registry);
+        FunctionCounter.builder("forum.view_count.flush_failures", failedFlushes, AtomicLong::get)
+                .description("写回失败的批次数")
+                .register(registry);
+    }
+}
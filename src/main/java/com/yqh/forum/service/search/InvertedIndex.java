@@ -0,0 +1,240 @@
+package com.yqh.forum.service.search;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 帖子倒排索引（内存结构，可整体写入/读出磁盘快照）。
+ * 标题和正文分字段记录词频，检索时用 BM25F 打分：先按字段权重合并归一化后的词频，再做饱和，
+ * 标题权重高于正文。查询分词后各词之间是 AND 关系。
+ * 命中范围与原先的 LIKE '%关键词%' 不同：拉丁字母/数字按整词匹配，查询 foo 不会命中只含 foobar 的帖子；
+ * 中文按二元组匹配，只要求查询的每个二元组都出现在帖子中，不要求它们在原文中相邻。
+ * 读写通过读写锁保护，检索可以并发进行。
+ */
+public class InvertedIndex {
+
+    static final float TITLE_WEIGHT = 3.0f;
+    static final float BODY_WEIGHT = 1.0f;
+    static final float K1 = 1.2f;
+    static final float B = 0.75f;
+
+    private static final int TITLE = 0;
+    private static final int BODY = 1;
+
+    // term -> (postId -> 词频 [标题, 正文])
+    private final Map<String, Map<Long, int[]>> postings = new HashMap<>();
+    // postId -> 文档信息
+    private final Map<Long, DocInfo> docs = new HashMap<>();
+    private long totalTitleLength;
+    private long totalBodyLength;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private static class DocInfo {
+        final int titleLength;
+        final int bodyLength;
+        final String[] terms; // 删除文档时用来定位倒排表
+
+        DocInfo(int titleLength, int bodyLength, String[] terms) {
+            this.titleLength = titleLength;
+            this.bodyLength = bodyLength;
+            this.terms = terms;
+        }
+    }
+
+    /**
+     * 新增或替换一篇帖子
+     */
+    public void index(Long postId, String title, String body) {
+        List<String> titleTokens = SearchTokenizer.tokenize(title);
+        List<String> bodyTokens = SearchTokenizer.tokenize(body);
+        Map<String, int[]> frequencies = new HashMap<>();
+        for (String token : titleTokens) {
+            frequencies.computeIfAbsent(token, t -> new int[2])[TITLE]++;
+        }
+        for (String token : bodyTokens) {
+            frequencies.computeIfAbsent(token, t -> new int[2])[BODY]++;
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeInternal(postId);
+            put(postId, titleTokens.size(), bodyTokens.size(), frequencies);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long postId) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(postId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void put(Long postId, int titleLength, int bodyLength, Map<String, int[]> frequencies) {
+        frequencies.forEach((term, tf) -> postings.computeIfAbsent(term, t -> new HashMap<>()).put(postId, tf));
+        docs.put(postId, new DocInfo(titleLength, bodyLength, frequencies.keySet().toArray(new String[0])));
+        totalTitleLength += titleLength;
+        totalBodyLength += bodyLength;
+    }
+
+    private void removeInternal(Long postId) {
+        DocInfo doc = docs.remove(postId);
+        if (doc == null) {
+            return;
+        }
+        for (String term : doc.terms) {
+            Map<Long, int[]> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(postId);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+        totalTitleLength -= doc.titleLength;
+        totalBodyLength -= doc.bodyLength;
+    }
+
+    /**
+     * 检索
+     * @param query  查询字符串，按 SearchTokenizer.tokenizeQuery 分词
+     * @param offset 跳过的命中数
+     * @param limit  返回的命中数
+     */
+    public SearchHits search(String query, int offset, int limit) {
+        Set<String> terms = new LinkedHashSet<>(SearchTokenizer.tokenizeQuery(query));
+        if (terms.isEmpty()) {
+            return new SearchHits(0, new ArrayList<>());
+        }
+
+        lock.readLock().lock();
+        try {
+            List<Map<Long, int[]>> termPostings = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                Map<Long, int[]> posting = postings.get(term);
+                if (posting == null) {
+                    return new SearchHits(0, new ArrayList<>());
+                }
+                termPostings.add(posting);
+            }
+            // 从最短的倒排表开始求交集
+            termPostings.sort(Comparator.comparingInt(Map::size));
+
+            int docCount = docs.size();
+            double avgTitleLength = Math.max(1.0, (double) totalTitleLength / docCount);
+            double avgBodyLength = Math.max(1.0, (double) totalBodyLength / docCount);
+            double[] idf = new double[termPostings.size()];
+            for (int i = 0; i < idf.length; i++) {
+                int df = termPostings.get(i).size();
+                idf[i] = Math.log(1 + (docCount - df + 0.5) / (df + 0.5));
+            }
+
+            List<long[]> scored = new ArrayList<>(); // [postId, score 的 bits]
+            candidates:
+            for (Long postId : termPostings.get(0).keySet()) {
+                DocInfo doc = docs.get(postId);
+                double score = 0;
+                for (int i = 0; i < termPostings.size(); i++) {
+                    int[] tf = termPostings.get(i).get(postId);
+                    if (tf == null) {
+                        continue candidates;
+                    }
+                    double weightedTf =
+                            TITLE_WEIGHT * tf[TITLE] / (1 - B + B * doc.titleLength / avgTitleLength)
+                            + BODY_WEIGHT * tf[BODY] / (1 - B + B * doc.bodyLength / avgBodyLength);
+                    score += idf[i] * weightedTf / (K1 + weightedTf);
+                }
+                scored.add(new long[]{postId, Double.doubleToLongBits(score)});
+            }
+
+            // 得分相同时 ID 大（较新）的排在前面
+            scored.sort((a, b) -> {
+                int byScore = Double.compare(Double.longBitsToDouble(b[1]), Double.longBitsToDouble(a[1]));
+                return byScore != 0 ? byScore : Long.compare(b[0], a[0]);
+            });
+            List<Long> page = new ArrayList<>();
+            for (int i = offset; i < scored.size() && page.size() < limit; i++) {
+                page.add(scored.get(i)[0]);
+            }
+            return new SearchHits(scored.size(), page);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Set<Long> postIds() {
+        lock.readLock().lock();
+        try {
+            return new HashSet<>(docs.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 写出快照：按文档逐条写出字段长度和词频，读入时据此重建倒排表
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        lock.readLock().lock();
+        try {
+            out.writeInt(docs.size());
+            for (Map.Entry<Long, DocInfo> entry : docs.entrySet()) {
+                Long postId = entry.getKey();
+                DocInfo doc = entry.getValue();
+                out.writeLong(postId);
+                out.writeInt(doc.titleLength);
+                out.writeInt(doc.bodyLength);
+                out.writeInt(doc.terms.length);
+                for (String term : doc.terms) {
+                    int[] tf = postings.get(term).get(postId);
+                    out.writeUTF(term);
+                    out.writeInt(tf[TITLE]);
+                    out.writeInt(tf[BODY]);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static InvertedIndex readFrom(DataInputStream in) throws IOException {
+        InvertedIndex index = new InvertedIndex();
+        int docCount = in.readInt();
+        for (int d = 0; d < docCount; d++) {
+            long postId = in.readLong();
+            int titleLength = in.readInt();
+            int bodyLength = in.readInt();
+            int termCount = in.readInt();
+            Map<String, int[]> frequencies = new HashMap<>(termCount * 2);
+            for (int t = 0; t < termCount; t++) {
+                frequencies.put(in.readUTF(), new int[]{in.readInt(), in.readInt()});
+            }
+            index.put(postId, titleLength, bodyLength, frequencies);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,31 @@
+package com.yqh.forum.service.search;
+
+import lombok.Getter;
+
+/**
+ * 帖子新建、编辑或删除后发布的事件，搜索索引据此做增量更新，页面缓存据此清除。
+ * 删除事件只带 postId。
+ */
+@Getter
+public class PostChangedEvent {
+
+    private final Long postId;
+    private final String title;
+    private final String content;
+    private final boolean deleted;
+
+    private PostChangedEvent(Long postId, String title, String content, boolean deleted) {
+        this.postId = postId;
+        this.title = title;
+        this.content = content;
+        this.deleted = deleted;
+    }
+
+    public static PostChangedEvent saved(Long postId, String title, String content) {
+        return new PostChangedEvent(postId, title, content, false);
+    }
+
+    public static PostChangedEvent deleted(Long postId) {
+        return new PostChangedEvent(postId, null, null, true);
+    }
+}
@@ -0,0 +1,16 @@
+package com.yqh.forum.service.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 一次检索的结果：命中总数和当前页的帖子 ID（按得分从高到低）
+ */
+@Data
+@AllArgsConstructor
+public class SearchHits {
+    private long total;
+    private List<Long> postIds;
+}
@@ -0,0 +1,103 @@
+package com.yqh.forum.service.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 搜索分词器，建索引和查询使用同一套规则：
+ * 1. 归一化：NFKC（全角字母数字、全角标点转半角，兼容字符展开），统一转小写；
+ * 2. 切分：按字符类别切成连续片段，拉丁字母/数字片段作为一个词，其余字符作为分隔符；
+ * 3. 中日韩文字片段切成相互重叠的二元组（"数据库" -> "数据" "据库"）。
+ * 建索引时额外输出单字，使单个汉字的查询也能命中；查询时只用二元组（片段只有一个字时用单字），
+ * 保证多字查询的精度。超长的拉丁词（通常是内嵌的 base64 图片、长链接）直接丢弃。
+ */
+public class SearchTokenizer {
+
+    /**
+     * 分词规则版本号。修改分词规则时需要 +1，旧版本的磁盘索引会在启动时被丢弃并从数据库重建。
+     */
+    public static final int VERSION = 2;
+
+    static final int MAX_TOKEN_LENGTH = 64;
+
+    /**
+     * 建索引时使用：拉丁词 + CJK 单字 + CJK 二元组
+     */
+    public static List<String> tokenize(String text) {
+        return tokenize(text, true);
+    }
+
+    /**
+     * 查询时使用：拉丁词 + CJK 二元组（片段只有一个字时为单字）
+     */
+    public static List<String> tokenizeQuery(String text) {
+        return tokenize(text, false);
+    }
+
+    private static List<String> tokenize(String text, boolean indexing) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        String normalized = normalize(text);
+
+        StringBuilder word = new StringBuilder();
+        List<String> cjkRun = new ArrayList<>();
+        for (int i = 0; i < normalized.length(); ) {
+            int codePoint = normalized.codePointAt(i);
+            i += Character.charCount(codePoint);
+
+            if (isCjk(codePoint)) {
+                flushWord(tokens, word);
+                cjkRun.add(new String(Character.toChars(codePoint)));
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                flushCjkRun(tokens, cjkRun, indexing);
+                word.appendCodePoint(codePoint);
+            } else {
+                flushWord(tokens, word);
+                flushCjkRun(tokens, cjkRun, indexing);
+            }
+        }
+        flushWord(tokens, word);
+        flushCjkRun(tokens, cjkRun, indexing);
+        return tokens;
+    }
+
+    static String normalize(String text) {
+        return Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+    }
+
+    private static void flushWord(List<String> tokens, StringBuilder word) {
+        if (word.length() > 0 && word.length() <= MAX_TOKEN_LENGTH) {
+            tokens.add(word.toString());
+        }
+        word.setLength(0);
+    }
+
+    private static void flushCjkRun(List<String> tokens, List<String> run, boolean indexing) {
+        if (run.isEmpty()) {
+            return;
+        }
+        if (run.size() == 1 || indexing) {
+            tokens.addAll(run);
+        }
+        for (int i = 0; i + 1 < run.size(); i++) {
+            tokens.add(run.get(i) + run.get(i + 1));
+        }
+        run.clear();
+    }
+
+    // 汉字、日文假名、韩文
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+
+    private SearchTokenizer() {
+    }
+}
@@ -1,19 +1,45 @@
 package com.yqh.forum.service.util; // Adjust package name based on your structure
 
+import com.vladsch.flexmark.ast.Heading;
+import com.vladsch.flexmark.html.AttributeProvider;
 import com.vladsch.flexmark.html.HtmlRenderer;
+import com.vladsch.flexmark.html.IndependentAttributeProviderFactory;
+import com.vladsch.flexmark.html.renderer.AttributablePart;
+import com.vladsch.flexmark.html.renderer.LinkResolverContext;
 import com.vladsch.flexmark.parser.Parser;
+import com.vladsch.flexmark.util.ast.Node;
+import com.vladsch.flexmark.util.ast.NodeVisitor;
+import com.vladsch.flexmark.util.ast.TextCollectingVisitor;
+import com.vladsch.flexmark.util.ast.VisitHandler;
 import com.vladsch.flexmark.util.data.MutableDataSet;
+import com.vladsch.flexmark.util.html.MutableAttributes;
+import com.yqh.forum.dto.TocItem;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 // Optional: Import extensions if you added them in pom.xml
 // import com.vladsch.flexmark.ext.tables.TablesExtension;
 // import com.vladsch.flexmark.ext.gfm.strikethrough.StrikethroughExtension;
 // import com.vladsch.flexmark.ext.autolink.AutolinkExtension;
 // import java.util.Arrays;
-// import java.util.List;
 // import com.vladsch.flexmark.util.misc.Extension;
 
 
 public class MarkdownUtil {
 
+    /**
+     * 渲染器版本号。修改下面的 flexmark 选项或标题 ID 规则时需要 +1，
+     * 数据库中旧版本的渲染结果会在下次访问时重新渲染。
+     */
+    public static final int RENDERER_VERSION = 2;
+
+    // 标题 ID 前缀，与原先 Jsoup 后处理生成的 ID 保持一致：toc-heading-0, toc-heading-1 ...
+    private static final String HEADING_ID_PREFIX = "toc-heading-";
+
+    private static final AttributeProvider HEADING_ID_PROVIDER = new HeadingIdAttributeProvider();
+
     private static final Parser PARSER;
     private static final HtmlRenderer RENDERER;
 
@@ -22,21 +48,68 @@ public class MarkdownUtil {
 
         options.set(HtmlRenderer.SOFT_BREAK, "<br>\n");
 
-        //options.set(HtmlRenderer.GENERATE_HEADER_ID, true);
+        // 标题 ID 由下面的 HeadingIdAttributeProvider 统一生成，不使用 flexmark 自带的 ID 生成器
+        options.set(HtmlRenderer.GENERATE_HEADER_ID, false);
         //options.set(HtmlRenderer.HEADER_ID_GENERATOR_NO_DUPED_DASHES, true);
 
         PARSER = Parser.builder(options).build();
-        RENDERER = HtmlRenderer.builder(options).build();
+        RENDERER = HtmlRenderer.builder(options)
+                .attributeProviderFactory(new IndependentAttributeProviderFactory() {
+                    @NotNull
+                    @Override
+                    public AttributeProvider apply(@NotNull LinkResolverContext context) {
+                        return HEADING_ID_PROVIDER;
+                    }
+                })
+                .build();
     }
 
     public static String convertMarkdownToHtml(String markdown) {
+        return render(markdown).getHtml();
+    }
+
+    /**
+     * 渲染 Markdown，一次完成：
+     * 1. 按文档顺序为标题分配 toc-heading-N 形式的 ID；
+     * 2. 输出带 ID 的 HTML；
+     * 3. 顺带生成目录（级别、ID、标题文本）。
+     */
+    public static RenderedMarkdown render(String markdown) {
         if (markdown == null || markdown.trim().isEmpty()) {
-            return "";
+            return new RenderedMarkdown("", Collections.emptyList());
+        }
+        Node document = PARSER.parse(markdown);
+        List<TocItem> toc = assignHeadingIds(document);
+        return new RenderedMarkdown(RENDERER.render(document), toc);
+    }
+
+    // 遍历 AST，把 ID 记在标题节点的 anchorRefId 上，渲染时由 HeadingIdAttributeProvider 输出
+    private static List<TocItem> assignHeadingIds(Node document) {
+        List<TocItem> toc = new ArrayList<>();
+        TextCollectingVisitor textCollector = new TextCollectingVisitor();
+        NodeVisitor visitor = new NodeVisitor(new VisitHandler<>(Heading.class, heading -> {
+            String id = HEADING_ID_PREFIX + toc.size();
+            heading.setAnchorRefId(id);
+            toc.add(new TocItem(heading.getLevel(), id, textCollector.collectAndGetText(heading).trim()));
+        }));
+        visitor.visit(document);
+        return toc;
+    }
+
+    // 为标题输出 id 属性
+    private static class HeadingIdAttributeProvider implements AttributeProvider {
+        @Override
+        public void setAttributes(@NotNull Node node, @NotNull AttributablePart part,
+                                  @NotNull MutableAttributes attributes) {
+            if (node instanceof Heading && part == AttributablePart.NODE) {
+                String id = ((Heading) node).getAnchorRefId();
+                if (id != null && !id.isEmpty()) {
+                    attributes.replaceValue("id", id);
+                }
+            }
         }
-        com.vladsch.flexmark.util.ast.Node document = PARSER.parse(markdown);
-        return RENDERER.render(document);
     }
 
     private MarkdownUtil() {
     }
-}
\ No newline at end of file
+}
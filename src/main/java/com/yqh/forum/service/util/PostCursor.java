@@ -0,0 +1,87 @@
+package com.yqh.forum.service.util;
+
+import com.yqh.forum.dto.PostListItem;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * 帖子列表的翻页游标（keyset 分页）。
+ * 记录一页边界帖子的 (createdAt, id) 以及翻页方向，编码为 URL 安全的 Base64 字符串，
+ * 对页面来说是不透明的。
+ */
+public final class PostCursor {
+
+    public enum Direction {
+        OLDER, // 比游标位置更早的帖子（下一页）
+        NEWER  // 比游标位置更新的帖子（上一页）
+    }
+
+    private static final String SEPARATOR = "|";
+
+    private final Direction direction;
+    private final LocalDateTime createdAt;
+    private final Long id;
+
+    private PostCursor(Direction direction, LocalDateTime createdAt, Long id) {
+        this.direction = direction;
+        this.createdAt = createdAt;
+        this.id = id;
+    }
+
+    public static PostCursor olderThan(PostListItem item) {
+        return new PostCursor(Direction.OLDER, item.getCreatedAt(), item.getId());
+    }
+
+    public static PostCursor newerThan(PostListItem item) {
+        return new PostCursor(Direction.NEWER, item.getCreatedAt(), item.getId());
+    }
+
+    public String encode() {
+        String raw = direction.name().charAt(0) + SEPARATOR + createdAt + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标
+     * @throws IllegalArgumentException 游标格式不正确
+     */
+    public static PostCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("无效的分页游标");
+            }
+            Direction direction;
+            switch (parts[0]) {
+                case "O":
+                    direction = Direction.OLDER;
+                    break;
+                case "N":
+                    direction = Direction.NEWER;
+                    break;
+                default:
+                    throw new IllegalArgumentException("无效的分页游标");
+            }
+            return new PostCursor(direction, LocalDateTime.parse(parts[1]), Long.valueOf(parts[2]));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            // NumberFormatException 与 Base64 解码错误都是 IllegalArgumentException
+            throw new IllegalArgumentException("无效的分页游标", e);
+        }
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+}
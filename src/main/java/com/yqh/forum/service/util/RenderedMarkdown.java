@@ -0,0 +1,17 @@
+package com.yqh.forum.service.util;
+
+import com.yqh.forum.dto.TocItem;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Markdown 渲染结果：带标题 ID 的 HTML + 目录
+ */
+@Data
+@AllArgsConstructor
+public class RenderedMarkdown {
+    private String html;
+    private List<TocItem> toc;
+}
@@ -0,0 +1,44 @@
+package com.yqh.forum.service.util;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 帖子摘要生成：去掉图片和标题标记后截取前 200 个字符。
+ * 发帖/编辑时计算一次存入 posts.summary，列表页不再读取正文。
+ */
+public class SummaryUtil {
+
+    public static final int MAX_LENGTH = 200;
+
+    //过滤图片
+    private static final Pattern IMAGE_PATTERN = Pattern.compile(
+            "!\\[.*?\\]\\(.*?\\)|<img[^>]*?src=[\"'](.*?)\"'.*?>|#",
+            Pattern.CASE_INSENSITIVE
+    );
+    //过滤#号
+    private static final Pattern MARKDOWN_HEADING_PATTERN = Pattern.compile(
+            "^[#]+", // 匹配行首的一个或多个 # 符号
+            Pattern.MULTILINE
+    );
+
+    public static String generate(String fullContent) {
+        if (fullContent == null) {
+            return "";
+        }
+        //1.过滤markdown格式的图片
+        Matcher imageMatcher = IMAGE_PATTERN.matcher(fullContent);
+        String contentWithoutImages = imageMatcher.replaceAll("");
+        //2.过滤Markdown标题的#符号
+        Matcher headingMatcher = MARKDOWN_HEADING_PATTERN.matcher(contentWithoutImages);
+        String contentWithoutHeadings = headingMatcher.replaceAll("");
+
+        if (contentWithoutHeadings.length() > MAX_LENGTH) {
+            return contentWithoutHeadings.substring(0, MAX_LENGTH) + "...";
+        }
+        return contentWithoutHeadings;
+    }
+
+    private SummaryUtil() {
+    }
+}
@@ -17,10 +17,15 @@ document.addEventListener("DOMContentLoaded", function() {
         return;
     }
 
-    const headingSelectors = '#post-article-content h1, #post-article-content h2, #post-article-content h3, #post-article-content h4, #post-article-content h5, #post-article-content h6';
-    const headings = Array.from(document.querySelectorAll(headingSelectors));
-
-    if (headings.length === 0) {
+    // 目录由服务端在渲染 Markdown 时生成（window.POST_TOC），不再扫描整篇文章的 DOM
+    const tocItems = (Array.isArray(window.POST_TOC) ? window.POST_TOC : [])
+        .filter(function(item) { return item && item.id && item.text; });
+    // 滚动高亮仍需要标题元素的位置，按 id 直接取
+    const headings = tocItems
+        .map(function(item) { return document.getElementById(item.id); })
+        .filter(function(heading) { return heading !== null; });
+
+    if (tocItems.length === 0) {
         if (tocNavContainer) tocNavContainer.style.display = 'none';
         if (tocColumnElement) tocColumnElement.style.display = 'none';
         if (mainContentColumn) {
@@ -32,15 +37,10 @@ document.addEventListener("DOMContentLoaded", function() {
 
     const listStack = [tocRootUlElement]; // 栈来管理当前嵌套的ul
 
-    headings.forEach(function(heading) {
-        const id = heading.id;
-        const text = heading.textContent.trim();
-        const level = parseInt(heading.tagName.substring(1)); // h1 -> 1, h2 -> 2
-
-        if (!id || !text) {
-            console.warn('Skipping heading without ID or text:', heading.outerHTML);
-            return;
-        }
+    tocItems.forEach(function(item) {
+        const id = item.id;
+        const text = item.text;
+        const level = item.level; // h1 -> 1, h2 -> 2
 
         // 根据级别调整列表嵌套
         // listStack 的长度代表当前所在的嵌套深度 (根ul算第1层)
@@ -0,0 +1,102 @@
+package com.yqh.forum.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.resource.ResourceUrlEncodingFilter;
+import org.springframework.web.servlet.resource.ResourceUrlProvider;
+
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@DisplayName("WebConfig 静态资源指纹与缓存头测试")
+class WebConfigStaticAssetsTest {
+
+    private AnnotationConfigWebApplicationContext context;
+    private MockMvc mockMvc;
+    private ResourceUrlProvider urlProvider;
+
+    @BeforeEach
+    void setUp() {
+        context = new AnnotationConfigWebApplicationContext();
+        context.setServletContext(new MockServletContext());
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", Map.of(
+                "app.avatar-upload-dir", "/tmp/avatars",
+                "app.post-image-upload-dir", "/tmp/post-images")));
+        context.register(MvcConfig.class);
+        context.refresh();
+        mockMvc = MockMvcBuilders.webAppContextSetup(context)
+                .addFilters(context.getBean(ResourceUrlEncodingFilter.class))
+                .build();
+        urlProvider = context.getBean(ResourceUrlProvider.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    @DisplayName("CSS/JS 链接带内容哈希，返回一年的 immutable 缓存头")
+    void fingerprintedAssetIsImmutable() throws Exception {
+        String url = urlProvider.getForLookupPath("/css/style.css");
+        assertNotNull(url);
+        assertTrue(url.matches("/css/style-[0-9a-f]{32}\\.css"), url);
+
+        mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "max-age=31536000, public, immutable"));
+
+        assertTrue(urlProvider.getForLookupPath("/js/main.js").matches("/js/main-[0-9a-f]{32}\\.js"));
+    }
+
+    @Test
+    @DisplayName("不带哈希的原始地址只缓存 10 分钟，不是 immutable")
+    void unversionedAssetIsShortLived() throws Exception {
+        mockMvc.perform(get("/css/style.css"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "max-age=600, public"));
+    }
+
+    @Test
+    @DisplayName("哈希与内容不符的地址返回 404，不带缓存头")
+    void staleFingerprintNotFound() throws Exception {
+        mockMvc.perform(get("/css/style-00000000000000000000000000000000.css"))
+                .andExpect(status().isNotFound())
+                .andExpect(header().doesNotExist("Cache-Control"));
+    }
+
+    @Test
+    @DisplayName("CSS 中引用的其他资源也改写为带哈希的地址")
+    void cssLinksRewritten() throws Exception {
+        String css = mockMvc.perform(get(urlProvider.getForLookupPath("/css/font-awesome.min.css")))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        Matcher font = Pattern.compile("/fonts/fontawesome-webfont-[0-9a-f]{32}\\.woff2").matcher(css);
+        assertTrue(font.find(), "字体链接应改写为带哈希的地址");
+        mockMvc.perform(get(font.group()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "max-age=31536000, public, immutable"));
+    }
+
+    @Configuration
+    @EnableWebMvc
+    @Import(WebConfig.class)
+    static class MvcConfig {
+    }
+}
@@ -0,0 +1,105 @@
+package com.yqh.forum.config.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yqh.forum.config.RedisConfig;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CachePolicyRegistry 缓存策略测试")
+class CachePolicyRegistryTest {
+
+    private static CachePolicyRegistry bind(Map<String, Object> properties) {
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("test", properties));
+        return CachePolicyRegistry.bind(environment);
+    }
+
+    /**
+     * 只有 cacheName 带 L1 的策略，供其他缓存测试使用
+     */
+    static CachePolicyRegistry localTier(String cacheName, long maximumSize) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("app.cache.policies." + cacheName + ".local-maximum-size", maximumSize);
+        return bind(properties);
+    }
+
+    @Test
+    @DisplayName("没有任何配置时使用内置默认值")
+    void builtInDefaults() {
+        CachePolicy policy = bind(new HashMap<>()).getPolicy("posts");
+
+        assertEquals(Duration.ofMinutes(30), policy.getTtl());
+        assertFalse(policy.hasLocalTier());
+        assertFalse(policy.getCacheNullValues());
+        assertEquals(CachePolicy.SERIALIZER_COMPACT, policy.getSerializer());
+    }
+
+    @Test
+    @DisplayName("单独配置的字段覆盖默认策略，没写的字段沿用默认策略")
+    void perCachePolicyOverridesDefaults() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("app.cache.default.ttl", "20m");
+        properties.put("app.cache.default.serializer", "json");
+        properties.put("app.cache.policies.categories.ttl", "12h");
+        properties.put("app.cache.policies.categories.local-maximum-size", "10");
+        properties.put("app.cache.policies.commentsByPost.ttl", "5m");
+        properties.put("app.cache.policies.commentsByPost.cache-null-values", "true");
+        CachePolicyRegistry registry = bind(properties);
+
+        CachePolicy categories = registry.getPolicy("categories");
+        assertEquals(Duration.ofHours(12), categories.getTtl());
+        assertTrue(categories.hasLocalTier());
+        assertEquals(Duration.ofSeconds(60), categories.getLocalTtl());
+        assertEquals("json", categories.getSerializer());
+
+        CachePolicy comments = registry.getPolicy("commentsByPost");
+        assertEquals(Duration.ofMinutes(5), comments.getTtl());
+        assertTrue(comments.getCacheNullValues());
+        assertFalse(comments.hasLocalTier());
+
+        assertEquals(Duration.ofMinutes(20), registry.getPolicy("posts").getTtl());
+        assertTrue(registry.getCacheNames().contains("commentsByPost"), "缓存名保留原始大小写");
+    }
+
+    @Test
+    @DisplayName("非法配置在启动时报错")
+    void invalidPolicyFailsFast() {
+        Map<String, Object> badSerializer = new HashMap<>();
+        badSerializer.put("app.cache.policies.post.serializer", "kryo");
+        assertThrows(IllegalArgumentException.class, () -> bind(badSerializer));
+
+        Map<String, Object> zeroTtl = new HashMap<>();
+        zeroTtl.put("app.cache.policies.post.ttl", "0s");
+        assertThrows(IllegalArgumentException.class, () -> bind(zeroTtl));
+    }
+
+    @Test
+    @DisplayName("每个缓存按自己的策略生成 Redis 配置")
+    void redisConfigurationFollowsPolicy() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("app.cache.policies.categories.ttl", "12h");
+        properties.put("app.cache.policies.commentsByPost.ttl", "5m");
+        properties.put("app.cache.policies.commentsByPost.cache-null-values", "true");
+        properties.put("app.cache.policies.commentsByPost.serializer", "json");
+        CachePolicyRegistry registry = bind(properties);
+        GenericJackson2JsonRedisSerializer json = RedisConfig.jsonSerializer(new ObjectMapper());
+
+        Map<String, RedisCacheConfiguration> configurations = TwoLevelCacheConfig.redisCacheConfigurations(registry, json);
+
+        assertEquals(Duration.ofHours(12), configurations.get("categories").getTtl());
+        assertFalse(configurations.get("categories").getAllowCacheNullValues());
+        assertEquals(Duration.ofMinutes(5), configurations.get("commentsByPost").getTtl());
+        assertTrue(configurations.get("commentsByPost").getAllowCacheNullValues());
+        assertFalse(configurations.containsKey("posts"), "未单独配置的缓存使用 cacheDefaults");
+    }
+}
@@ -0,0 +1,96 @@
+package com.yqh.forum.config.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yqh.forum.config.RedisConfig;
+import com.yqh.forum.dto.PostDTO;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 缓存值序列化基准：比较原 JSON（带类型信息）与紧凑二进制格式的字节数和序列化/反序列化耗时。
+ * 每组先预热再计时，取多轮中的最小值。
+ * 原 JSON 配置无法把 PageImpl 反序列化回来（PageImpl 没有可用的构造器），这种情况读耗时记为 n/a。
+ * 默认不运行，使用 -Dbenchmark=true 开启。
+ */
+@DisplayName("缓存值序列化基准测试")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class CacheSerializerBenchmarkTest {
+
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 20_000;
+    private static final int ROUNDS = 5;
+
+    @Test
+    @DisplayName("JSON vs 紧凑二进制")
+    void jsonVersusCompact() {
+        RedisSerializer<Object> json = RedisConfig.jsonSerializer(new ObjectMapper());
+        RedisSerializer<Object> compact = new CompactCacheSerializer(RedisConfig.jsonSerializer(new ObjectMapper()));
+
+        List<PostDTO> summaries = new ArrayList<>();
+        for (long i = 0; i < 10; i++) {
+            PostDTO summary = CompactCacheSerializerTest.post(i, null);
+            summary.setHtmlContent(null);
+            summary.setToc(null);
+            summary.setSummaryContent("这是一段大约两百字以内的摘要，用来在列表页展示帖子的主要内容。".repeat(4));
+            summaries.add(summary);
+        }
+
+        Object[][] samples = {
+                {"帖子详情", CompactCacheSerializerTest.post(1L, "缓存序列化的正文内容，包含中文和 English。".repeat(60))},
+                {"评论页(10条)", CompactCacheSerializerTest.commentPage(10)},
+                {"帖子列表页(10条)", new PageImpl<>(summaries, PageRequest.of(0, 10, Sort.by(Sort.Order.desc("createdAt"))), 500)},
+        };
+
+        System.out.printf("%-14s %10s %10s %12s %12s %12s %12s%n",
+                "样本", "JSON字节", "紧凑字节", "JSON写(μs)", "紧凑写(μs)", "JSON读(μs)", "紧凑读(μs)");
+        for (Object[] sample : samples) {
+            Object value = sample[1];
+            byte[] jsonBytes = json.serialize(value);
+            byte[] compactBytes = compact.serialize(value);
+
+            double jsonWrite = measure(() -> json.serialize(value));
+            double compactWrite = measure(() -> compact.serialize(value));
+            String jsonRead = readable(json, jsonBytes) ? String.format("%.2f", measure(() -> json.deserialize(jsonBytes))) : "n/a";
+            double compactRead = measure(() -> compact.deserialize(compactBytes));
+
+            System.out.printf("%-14s %10d %10d %12.2f %12.2f %12s %12.2f%n",
+                    sample[0], jsonBytes.length, compactBytes.length, jsonWrite, compactWrite, jsonRead, compactRead);
+            assertTrue(compactBytes.length < jsonBytes.length);
+        }
+    }
+
+    private static boolean readable(RedisSerializer<Object> serializer, byte[] bytes) {
+        try {
+            serializer.deserialize(bytes);
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    // 返回每次调用的平均微秒数（多轮取最小）
+    private static double measure(Runnable task) {
+        for (int i = 0; i < WARMUP; i++) {
+            task.run();
+        }
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                task.run();
+            }
+            best = Math.min(best, (System.nanoTime() - start) / 1e3 / ITERATIONS);
+        }
+        return best;
+    }
+}
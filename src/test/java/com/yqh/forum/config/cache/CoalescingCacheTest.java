@@ -0,0 +1,226 @@
+package com.yqh.forum.config.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CoalescingCache 合并加载与提前刷新测试")
+class CoalescingCacheTest {
+
+    private static final int THREADS = 32;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    // 所有线程都到达后才让 "查库" 返回，保证它们是真正并发地未命中
+    private List<Future<String>> missConcurrently(Request request) {
+        CountDownLatch ready = new CountDownLatch(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(() -> {
+                ready.countDown();
+                start.await();
+                return request.call();
+            }));
+        }
+        try {
+            assertTrue(ready.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+        start.countDown();
+        return results;
+    }
+
+    private interface Request {
+        String call() throws Exception;
+    }
+
+    @ParameterizedTest(name = "缓存 {0}")
+    @ValueSource(strings = {"post", "posts"})
+    @DisplayName("N 个并发未命中只查一次库（两级缓存 post / 仅远程缓存 posts）")
+    void parallelMissesLoadOnce(String cacheName) throws Exception {
+        AtomicInteger queries = new AtomicInteger();
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.registerBean(AtomicInteger.class, () -> queries);
+            context.register(SyncCacheConfig.class);
+            context.refresh();
+            SlowRepository repository = context.getBean(SlowRepository.class);
+
+            List<Future<String>> results = missConcurrently(() ->
+                    "post".equals(cacheName) ? repository.findPost(1L) : repository.findPosts(1L));
+
+            for (Future<String> result : results) {
+                assertEquals("value-1", result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, queries.get());
+            CoalescingCache cache = (CoalescingCache) context.getBean(CacheManager.class).getCache(cacheName);
+            assertEquals(1, cache.loads());
+        }
+    }
+
+    @Test
+    @DisplayName("加载失败时所有等待者都收到异常，之后的请求重新加载")
+    void loaderFailurePropagatesAndIsNotCached() throws Exception {
+        CoalescingCache cache = new CoalescingCache(new ConcurrentMapCache("test"), Duration.ofMinutes(30));
+        AtomicInteger calls = new AtomicInteger();
+
+        List<Future<String>> results = missConcurrently(() -> cache.get("k", () -> {
+            calls.incrementAndGet();
+            Thread.sleep(50);
+            throw new IllegalStateException("db down");
+        }));
+        for (Future<String> result : results) {
+            Exception e = assertThrows(Exception.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(Cache.ValueRetrievalException.class, e.getCause());
+        }
+        assertTrue(calls.get() < THREADS, "并发失败也应被合并");
+
+        assertEquals("ok", cache.get("k", () -> "ok"));
+    }
+
+    @Test
+    @DisplayName("临近过期且加载较慢的条目被提前刷新，刚写入的条目不会")
+    void earlyRefreshNearExpiry() {
+        MutableClock clock = new MutableClock();
+        // random = 0.999 -> -ln(0.001) ≈ 6.9，即提前约 6.9 倍加载耗时刷新
+        CoalescingCache cache = new CoalescingCache(new ConcurrentMapCache("test"), Duration.ofSeconds(60), clock, () -> 0.999);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals("v1", cache.get("k", () -> {
+            clock.advance(1000); // 加载耗时 1 秒
+            return "v" + loads.incrementAndGet();
+        }));
+
+        clock.advance(1000); // 写入后 1 秒：远未过期
+        assertEquals("v1", cache.get("k", () -> "v" + loads.incrementAndGet()));
+        assertEquals(0, cache.earlyRefreshes());
+
+        clock.advance(54_000); // 写入后 55 秒：55 + 6.9 > 60
+        assertEquals("v2", cache.get("k", () -> "v" + loads.incrementAndGet()));
+        assertEquals(1, cache.earlyRefreshes());
+        assertEquals("v2", cache.get("k", String.class));
+    }
+
+    @Test
+    @DisplayName("每次读取底层缓存记一次命中或未命中，加载前的二次检查不重复计数")
+    void countsHitsAndMisses() {
+        CoalescingCache cache = new CoalescingCache(new ConcurrentMapCache("test"), Duration.ofMinutes(30));
+
+        assertNull(cache.get("k"));
+        assertEquals("v", cache.get("k", () -> "v"));
+        assertEquals("v", cache.get("k", () -> "other"));
+        assertEquals("v", cache.get("k", String.class));
+
+        assertEquals(2, cache.hits());
+        assertEquals(2, cache.misses());
+        assertEquals(1, cache.loads());
+    }
+
+    static class MutableClock extends Clock {
+        private long millis = 1_700_000_000_000L;
+
+        void advance(long delta) {
+            millis += delta;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+
+    @Configuration
+    @EnableCaching
+    static class SyncCacheConfig {
+
+        @Bean
+        public TwoLevelCacheManager cacheManager() {
+            return new TwoLevelCacheManager(new ConcurrentMapCacheManager(),
+                    CachePolicyRegistryTest.localTier("post", 100), message -> { });
+        }
+
+        @Bean
+        public SlowRepository slowRepository(AtomicInteger queries) {
+            return new SlowRepository(queries);
+        }
+    }
+
+    static class SlowRepository {
+
+        private final AtomicInteger queries;
+
+        SlowRepository(AtomicInteger queries) {
+            this.queries = queries;
+        }
+
+        @Cacheable(value = "post", key = "#id", sync = true)
+        public String findPost(Long id) throws InterruptedException {
+            return query(id);
+        }
+
+        @Cacheable(value = "posts", key = "#id", sync = true)
+        public String findPosts(Long id) throws InterruptedException {
+            return query(id);
+        }
+
+        private String query(Long id) throws InterruptedException {
+            queries.incrementAndGet();
+            Thread.sleep(100); // 模拟慢查询，让其他线程在加载期间到达
+            return "value-" + id;
+        }
+    }
+}
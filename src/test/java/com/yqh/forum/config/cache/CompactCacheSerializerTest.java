@@ -0,0 +1,229 @@
+package com.yqh.forum.config.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yqh.forum.config.RedisConfig;
+import com.yqh.forum.dto.CategoryDTO;
+import com.yqh.forum.dto.CommentDTO;
+import com.yqh.forum.dto.PostDTO;
+import com.yqh.forum.dto.TocItem;
+import com.yqh.forum.dto.UserDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CompactCacheSerializer 缓存值序列化测试")
+class CompactCacheSerializerTest {
+
+    private GenericJackson2JsonRedisSerializer json;
+    private CompactCacheSerializer serializer;
+
+    @BeforeEach
+    void setUp() {
+        json = RedisConfig.jsonSerializer(new ObjectMapper());
+        serializer = new CompactCacheSerializer(json);
+    }
+
+    static UserDTO user(long id) {
+        UserDTO user = new UserDTO();
+        user.setId(id);
+        user.setUsername("user" + id);
+        user.setEmail("user" + id + "@example.com");
+        user.setAvatar("/uploads/avatars/" + id + ".png");
+        user.setCreatedAt(LocalDateTime.of(2024, 5, 1, 8, 30, 15, 123_000_000));
+        return user;
+    }
+
+    static PostDTO post(long id, String content) {
+        CategoryDTO category = new CategoryDTO();
+        category.setId(3L);
+        category.setName("技术");
+        category.setDescription("技术讨论");
+
+        PostDTO post = new PostDTO();
+        post.setId(id);
+        post.setTitle("Redis 缓存序列化 " + id);
+        post.setContent(content);
+        post.setSummaryContent("摘要");
+        post.setHtmlContent("<h1 id=\"toc-heading-0\">标题</h1><p>" + content + "</p>");
+        post.setToc(List.of(new TocItem(1, "toc-heading-0", "标题")));
+        post.setAuthor(user(7));
+        post.setCategory(category);
+        post.setViewCount(1024);
+        post.setUniqueViewCount(0);
+        post.setCreatedAt(LocalDateTime.of(2024, 6, 1, 12, 0));
+        post.setUpdatedAt(LocalDateTime.of(2024, 6, 2, 9, 45, 1));
+        return post;
+    }
+
+    static Page<CommentDTO> commentPage(int size) {
+        List<CommentDTO> comments = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            CommentDTO comment = new CommentDTO();
+            comment.setId(100L + i);
+            comment.setContent("第 " + i + " 条评论，说得很有道理");
+            comment.setAuthor(user(i % 3));
+            comment.setPostId(1L);
+            comment.setCreatedAt(LocalDateTime.of(2024, 6, 3, 10, i));
+            comments.add(comment);
+        }
+        return new PageImpl<>(comments, PageRequest.of(2, size, Sort.by(Sort.Order.desc("createdAt"))), 95);
+    }
+
+    @Test
+    @DisplayName("帖子详情 DTO 往返后字段一致")
+    void postRoundTrip() {
+        PostDTO post = post(1L, "正文");
+
+        byte[] bytes = serializer.serialize(post);
+
+        assertEquals(CompactCacheSerializer.MAGIC, bytes[0]);
+        assertEquals(post, serializer.deserialize(bytes));
+    }
+
+    /**
+     * 用反射给 DTO 声明的每个字段（包括嵌套的 DTO 和列表）填上互不相同的非默认值。
+     * 给 DTO 新增字段却没有写进序列化器时，这个字段读回来是 null，往返比较失败，
+     * 提醒同时修改 writeXxx/readXxx 并把 FORMAT_VERSION +1。
+     */
+    private static <T> T filled(Class<T> type, AtomicInteger seq) throws Exception {
+        T instance = type.getDeclaredConstructor().newInstance();
+        for (Field field : type.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+            field.setAccessible(true);
+            field.set(instance, valueFor(field, seq));
+        }
+        return instance;
+    }
+
+    private static Object valueFor(Field field, AtomicInteger seq) throws Exception {
+        Class<?> type = field.getType();
+        int n = seq.incrementAndGet();
+        if (type == String.class) {
+            return field.getName() + "-" + n;
+        }
+        if (type == Long.class || type == long.class) {
+            return 1_000_000_000_000L + n;
+        }
+        if (type == Integer.class || type == int.class) {
+            return n;
+        }
+        if (type == Boolean.class || type == boolean.class) {
+            return true;
+        }
+        if (type == LocalDateTime.class) {
+            return LocalDateTime.of(2024, 1, 1, 0, 0).plusSeconds(n * 3_601L).plusNanos(n * 1_000L);
+        }
+        if (type == List.class) {
+            Class<?> element = (Class<?>) ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
+            return List.of(filled(element, seq), filled(element, seq));
+        }
+        if (type.getPackage() == PostDTO.class.getPackage()) {
+            return filled(type, seq);
+        }
+        throw new AssertionError(field.getDeclaringClass().getSimpleName() + "." + field.getName()
+                + " 的类型 " + type.getName() + " 需要在测试中补充取值，并确认 CompactCacheSerializer 已处理");
+    }
+
+    @ParameterizedTest
+    @ValueSource(classes = {PostDTO.class, CommentDTO.class, UserDTO.class, CategoryDTO.class, TocItem.class})
+    @DisplayName("DTO 的每个字段都填上值后往返一致（新增字段未写入序列化器时失败）")
+    void everyDeclaredFieldRoundTrips(Class<?> type) throws Exception {
+        Object value = filled(type, new AtomicInteger());
+
+        Object restored = serializer.deserialize(serializer.serialize(value));
+
+        assertEquals(value, restored);
+        for (Field field : type.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers())) {
+                field.setAccessible(true);
+                assertNotNull(field.get(restored), type.getSimpleName() + "." + field.getName() + " 没有被序列化");
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("分页结果以信封形式写入，读出为 PageImpl 且分页与排序信息一致")
+    @SuppressWarnings("unchecked")
+    void pageRoundTrip() {
+        Page<CommentDTO> page = commentPage(10);
+
+        Page<CommentDTO> restored = (Page<CommentDTO>) serializer.deserialize(serializer.serialize(page));
+
+        assertEquals(page.getContent(), restored.getContent());
+        assertEquals(2, restored.getNumber());
+        assertEquals(10, restored.getSize());
+        assertEquals(95, restored.getTotalElements());
+        assertEquals(Sort.by(Sort.Order.desc("createdAt")), restored.getSort());
+    }
+
+    @Test
+    @DisplayName("列表中的 DTO 与超过 64KB 的正文都能正确往返")
+    @SuppressWarnings("unchecked")
+    void listAndLongContent() {
+        String longContent = "长".repeat(40_000);
+        List<PostDTO> posts = List.of(post(1L, longContent), post(2L, null));
+
+        List<PostDTO> restored = (List<PostDTO>) serializer.deserialize(serializer.serialize(posts));
+
+        assertEquals(posts, restored);
+    }
+
+    @Test
+    @DisplayName("CacheEntry 信封保留写入时间和加载耗时")
+    void cacheEntryRoundTrip() {
+        CacheEntry entry = new CacheEntry(post(1L, "正文"), 1_700_000_000_123L, 42);
+
+        CacheEntry restored = (CacheEntry) serializer.deserialize(serializer.serialize(entry));
+
+        assertEquals(entry.getValue(), restored.getValue());
+        assertEquals(1_700_000_000_123L, restored.getLoadedAt());
+        assertEquals(42, restored.getLoadMillis());
+    }
+
+    @Test
+    @DisplayName("不认识的类型交给 JSON 序列化器")
+    void unknownTypeFallsBackToJson() {
+        Map<String, String> value = new HashMap<>();
+        value.put("name", "forum");
+
+        assertEquals(value, serializer.deserialize(serializer.serialize(value)));
+    }
+
+    @Test
+    @DisplayName("切换前写入的 JSON 缓存值仍可读取")
+    void legacyJsonStillReadable() {
+        PostDTO post = post(1L, "正文");
+
+        assertEquals(post, serializer.deserialize(json.serialize(post)));
+    }
+
+    @Test
+    @DisplayName("格式版本不一致时视为未命中")
+    void otherFormatVersionIsMiss() {
+        byte[] bytes = serializer.serialize(post(1L, "正文"));
+        bytes[1] = (byte) (CompactCacheSerializer.FORMAT_VERSION + 1);
+
+        assertNull(serializer.deserialize(bytes));
+    }
+}
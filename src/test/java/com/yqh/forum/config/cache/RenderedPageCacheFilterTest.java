@@ -0,0 +1,224 @@
+package com.yqh.forum.config.cache;
+
+import com.yqh.forum.service.CategoryChangedEvent;
+import com.yqh.forum.service.CommentChangedEvent;
+import com.yqh.forum.service.PostService;
+import com.yqh.forum.service.impl.UniqueViewTracker;
+import com.yqh.forum.service.search.PostChangedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.servlet.FlashMap;
+import org.springframework.web.servlet.support.SessionFlashMapManager;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@DisplayName("RenderedPageCacheFilter 匿名整页缓存测试")
+class RenderedPageCacheFilterTest {
+
+    private static final String ETAG = "W/\"1-1000-2-2000\"";
+
+    private PostService postService;
+    private UniqueViewTracker uniqueViewTracker;
+    private RenderedPageCacheFilter filter;
+
+    // 模拟控制器：渲染次数 + 是否标记可缓存
+    private final AtomicInteger renders = new AtomicInteger();
+    private boolean cacheable = true;
+
+    @BeforeEach
+    void setUp() {
+        postService = mock(PostService.class);
+        uniqueViewTracker = mock(UniqueViewTracker.class);
+        filter = new RenderedPageCacheFilter(new ConcurrentMapCacheManager(), postService, uniqueViewTracker);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private final FilterChain controller = (request, response) -> {
+        renders.incrementAndGet();
+        HttpServletResponse http = (HttpServletResponse) response;
+        http.setHeader("ETag", ETAG);
+        http.setContentType("text/html;charset=UTF-8");
+        http.getOutputStream().write(("<h1>第 " + renders.get() + " 次渲染</h1>").getBytes(StandardCharsets.UTF_8));
+        if (cacheable) {
+            request.setAttribute(RenderedPageCacheFilter.CACHEABLE, true);
+        }
+    };
+
+    private static MockHttpServletRequest get(String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.setServletPath(path);
+        return request;
+    }
+
+    private static MockHttpServletRequest byCategory(Long categoryId) {
+        MockHttpServletRequest request = get("/post");
+        request.setQueryString("categoryId=" + categoryId);
+        return request;
+    }
+
+    private MockHttpServletResponse perform(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, controller);
+        return response;
+    }
+
+    @Test
+    @DisplayName("匿名访客第二次访问详情页直接返回缓存的 HTML，并照常记录浏览")
+    void anonymousPostPageServedFromCache() throws Exception {
+        MockHttpServletResponse first = perform(get("/post/1"));
+        MockHttpServletResponse second = perform(get("/post/1"));
+
+        assertEquals(1, renders.get());
+        assertEquals(first.getContentAsString(StandardCharsets.UTF_8), second.getContentAsString(StandardCharsets.UTF_8));
+        assertEquals("text/html;charset=UTF-8", second.getContentType());
+        assertEquals(ETAG, second.getHeader("ETag"));
+        verify(postService).incrementViewCount(1L);
+        verify(uniqueViewTracker).record(eq(1L), anyString());
+    }
+
+    @Test
+    @DisplayName("命中缓存且 If-None-Match 相同时返回 304")
+    void cachedPageAnswersConditionalGet() throws Exception {
+        perform(get("/post/1"));
+
+        MockHttpServletRequest request = get("/post/1");
+        request.addHeader("If-None-Match", ETAG);
+        MockHttpServletResponse response = perform(request);
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentLength());
+        assertEquals(1, renders.get());
+    }
+
+    @Test
+    @DisplayName("列表页按查询串分别缓存")
+    void listPagesKeyedByQuery() throws Exception {
+        perform(get("/post"));
+        perform(get("/post"));
+        MockHttpServletRequest byCategory = get("/post");
+        byCategory.setQueryString("categoryId=2");
+        perform(byCategory);
+
+        assertEquals(2, renders.get());
+        verifyNoInteractions(postService);
+    }
+
+    @Test
+    @DisplayName("控制器没有标记可缓存的响应（如 404 页）不写入缓存")
+    void uncacheableResponseNotStored() throws Exception {
+        cacheable = false;
+        perform(get("/post/99"));
+        perform(get("/post/99"));
+
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    @DisplayName("登录用户、带提示消息的会话、非 GET 请求和其他路径都不走缓存")
+    void bypassedRequests() throws Exception {
+        MockHttpServletRequest post = new MockHttpServletRequest("POST", "/post/1");
+        post.setServletPath("/post/1");
+        perform(post);
+        perform(get("/post/1/edit"));
+
+        MockHttpServletRequest withFlash = get("/post/1");
+        MockHttpSession session = new MockHttpSession();
+        FlashMap flashMap = new FlashMap();
+        flashMap.put("successMessage", "帖子发布成功！");
+        session.setAttribute(SessionFlashMapManager.class.getName() + ".FLASH_MAPS", List.of(flashMap));
+        withFlash.setSession(session);
+        perform(withFlash);
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("alice", null, Collections.emptyList()));
+        perform(get("/post/1"));
+        perform(get("/post/1"));
+
+        assertEquals(5, renders.get());
+    }
+
+    @Test
+    @DisplayName("帖子变更清除详情页和所有列表页，评论变更只清除所属帖子的详情页")
+    void mutationsEvictPages() throws Exception {
+        perform(get("/post/1"));
+        perform(get("/post/2"));
+        perform(get("/post"));
+        assertEquals(3, renders.get());
+
+        filter.onCommentChanged(new CommentChangedEvent(1L));
+        perform(get("/post/1"));
+        perform(get("/post/2"));
+        perform(get("/post"));
+        assertEquals(4, renders.get());
+
+        filter.onPostChanged(PostChangedEvent.saved(2L, "标题", "内容"));
+        perform(get("/post/1"));
+        perform(get("/post/2"));
+        perform(get("/post"));
+        assertEquals(6, renders.get());
+    }
+
+    @Test
+    @DisplayName("分类变更清除所有列表页，详情页不受影响")
+    void categoryChangeEvictsLists() throws Exception {
+        perform(get("/post/1"));
+        perform(get("/post"));
+        perform(byCategory(1L));
+        assertEquals(3, renders.get());
+
+        filter.onCategoryChanged(new CategoryChangedEvent());
+        perform(get("/post/1"));
+        perform(get("/post"));
+        perform(byCategory(1L));
+        assertEquals(5, renders.get());
+    }
+
+    @Test
+    @DisplayName("启动时清空详情页和列表页，上一版本渲染的页面不再返回")
+    void clearedOnStartup() throws Exception {
+        perform(get("/post/1"));
+        perform(get("/post"));
+        assertEquals(2, renders.get());
+
+        filter.clearOnStartup();
+        perform(get("/post/1"));
+        perform(get("/post"));
+        assertEquals(4, renders.get());
+    }
+
+    @Test
+    @DisplayName("渲染期间发生清除时不把旧页面写回缓存")
+    void invalidationDuringRenderSkipsStore() throws Exception {
+        FilterChain slowController = (request, response) -> {
+            controller.doFilter(request, response);
+            // 渲染完成前，另一个请求修改了这个帖子
+            filter.onPostChanged(PostChangedEvent.saved(1L, "标题", "新内容"));
+        };
+        filter.doFilter(get("/post/1"), new MockHttpServletResponse(), slowController);
+
+        perform(get("/post/1"));
+        assertEquals(2, renders.get());
+    }
+}
@@ -0,0 +1,353 @@
+package com.yqh.forum.config.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.RedisConnectionFailureException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 故障注入：PausableRedis 是内存中的 Redis 替身，pause() 之后所有操作挂起（相当于 Redis 进程被暂停），
+ * resume() 之后继续执行。
+ */
+@DisplayName("ResilientCache Redis 熔断与降级测试")
+class ResilientCacheTest {
+
+    private static final long MAX_TIMEOUT_MILLIS = 1000;
+
+    private PausableRedis redis;
+    private CoalescingCacheTest.MutableClock clock;
+    private RedisCircuitBreaker breaker;
+    private ResilientCacheManager cacheManager;
+
+    @BeforeEach
+    void setUp() {
+        redis = new PausableRedis();
+        clock = new CoalescingCacheTest.MutableClock();
+        CircuitBreakerProperties properties = new CircuitBreakerProperties();
+        properties.setFailureThreshold(3);
+        properties.setOpenDuration(Duration.ofSeconds(10));
+        properties.setMinTimeout(Duration.ofMillis(20));
+        properties.setMaxTimeout(Duration.ofMillis(MAX_TIMEOUT_MILLIS));
+        breaker = new RedisCircuitBreaker(properties, clock);
+        cacheManager = new ResilientCacheManager(redis, breaker);
+    }
+
+    @AfterEach
+    void tearDown() {
+        redis.resume();
+        breaker.close();
+    }
+
+    private Cache cache() {
+        return cacheManager.getCache("commentsByPost");
+    }
+
+    // 用快速的正常调用把自适应超时压到下限
+    private void warmUp() {
+        for (int i = 0; i < 30; i++) {
+            cache().get("warm-up");
+        }
+    }
+
+    private static long millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    @Test
+    @DisplayName("Redis 正常时超时时间随耗时收敛到下限")
+    void timeoutAdaptsToLatency() {
+        assertEquals(MAX_TIMEOUT_MILLIS, breaker.currentTimeoutMillis());
+        warmUp();
+        assertEquals(20, breaker.currentTimeoutMillis());
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    @DisplayName("Redis 暂停后调用在自适应超时内返回，连续失败后熔断，熔断期间不再访问 Redis")
+    void pausedRedisOpensCircuit() {
+        cache().put("k", "redis");
+        warmUp();
+        redis.pause();
+
+        long start = System.nanoTime();
+        assertNull(cache().get("k"), "Redis 不可用且降级缓存中没有时按未命中处理");
+        cache().put("k2", "local");
+        assertEquals("local", cache().get("k2", String.class), "Redis 不可用时写入的值从降级缓存读取");
+        assertTrue(millisSince(start) < MAX_TIMEOUT_MILLIS, "三次调用都应在自适应超时内返回，而不是等 Redis 客户端超时");
+        assertEquals(3, breaker.timeouts());
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState());
+
+        int redisCalls = redis.calls.get();
+        start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            assertEquals("local", cache().get("k2", String.class));
+        }
+        assertTrue(millisSince(start) < 200, "熔断期间直接走降级，不等待");
+        assertEquals(redisCalls, redis.calls.get(), "熔断期间不应访问 Redis");
+        assertEquals(100, breaker.shortCircuited());
+    }
+
+    @Test
+    @DisplayName("熔断时间未到不探测；探测失败继续熔断；Redis 恢复后探测成功，补发清除并清空降级缓存")
+    void halfOpenProbeRecovers() {
+        cache().put("k", "old");
+        warmUp();
+        redis.pause();
+        for (int i = 0; i < 3; i++) {
+            cache().get("warm-up");
+        }
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState());
+
+        // 熔断期间的清除和写入只记下来，不访问 Redis
+        int redisCalls = redis.calls.get();
+        cache().evict("k");
+        cache().put("n", "local");
+        assertEquals(redisCalls, redis.calls.get());
+        assertEquals(2, ((ResilientCache) cache()).pendingEvictions());
+
+        clock.advance(9_000);
+        cache().get("n");
+        assertEquals(redisCalls, redis.calls.get(), "熔断时间未到，不应探测");
+
+        clock.advance(1_000);
+        assertEquals("local", cache().get("n", String.class), "探测失败时仍返回降级缓存中的值");
+        assertEquals(redisCalls + 1, redis.calls.get(), "只放行一个探测请求");
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(2, breaker.opens());
+
+        redis.resume();
+        clock.advance(10_000);
+        assertNull(cache().get("n"), "探测成功后以 Redis 为准，n 从未写入 Redis");
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.getState());
+
+        ResilientCache resilient = (ResilientCache) cache();
+        awaitRecovery(resilient);
+        assertEquals(0, resilient.pendingEvictions());
+        assertEquals(0, resilient.fallbackSize());
+        assertNull(redis.store("commentsByPost").get("k"), "停机期间的清除应补发到 Redis");
+    }
+
+    @Test
+    @DisplayName("熔断关闭后在恢复线程上补发清除，每批一次调用，不占用探测请求的线程")
+    void recoveryReplaysInBatchesOffProbeThread() {
+        Cache remote = redis.getCache("postsById");
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        ResilientCache resilient = new ResilientCache(remote, breaker, Caffeine.newBuilder().build(), keys -> {
+            batchSizes.add(keys.size());
+            keys.forEach(remote::evict);
+        });
+        List<String> listenerThreads = new CopyOnWriteArrayList<>();
+        breaker.onClose(() -> listenerThreads.add(Thread.currentThread().getName()));
+
+        int keys = ResilientCache.EVICTION_BATCH_SIZE * 2 + 50;
+        for (int i = 0; i < keys; i++) {
+            redis.store("postsById").put(i, "old");
+        }
+        redis.pause();
+        for (int i = 0; i < 3; i++) {
+            resilient.get("warm-up");
+        }
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState());
+        for (int i = 0; i < keys; i++) {
+            resilient.evict(i);
+        }
+        assertEquals(keys, resilient.pendingEvictions());
+
+        redis.resume();
+        clock.advance(10_000);
+        resilient.get("probe");
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.getState());
+
+        awaitRecovery(resilient);
+        assertEquals(List.of(ResilientCache.EVICTION_BATCH_SIZE, ResilientCache.EVICTION_BATCH_SIZE, 50), batchSizes);
+        assertEquals(List.of("redis-cache-recovery"), listenerThreads);
+        for (int i = 0; i < keys; i++) {
+            assertNull(redis.store("postsById").get(i));
+        }
+    }
+
+    // 恢复回调在恢复线程上异步执行，等它补发完清除并清空降级缓存
+    private static void awaitRecovery(ResilientCache cache) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (cache.pendingEvictions() > 0 || cache.fallbackSize() > 0) {
+            assertTrue(System.nanoTime() < deadline, "恢复回调未在 5 秒内完成");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Redis 连接异常按失败计数，其他异常原样抛出且不计入失败")
+    void onlyRedisErrorsCount() {
+        Cache cache = cache();
+        redis.failWith(new RedisConnectionFailureException("connection refused"));
+        for (int i = 0; i < 3; i++) {
+            assertNull(cache.get("k"));
+        }
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(0, breaker.timeouts());
+
+        redis.failWith(new IllegalStateException("无法反序列化"));
+        clock.advance(10_000);
+        assertThrows(IllegalStateException.class, () -> cache.get("k"));
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.getState(), "Redis 正常响应，探测算成功");
+    }
+
+    @Test
+    @DisplayName("调用线程已满时这次调用直接降级，不计入失败，也不打开熔断")
+    void fullThreadPoolDoesNotOpenCircuit() throws Exception {
+        CircuitBreakerProperties properties = new CircuitBreakerProperties();
+        properties.setFailureThreshold(1);
+        properties.setMaxConcurrency(1);
+        properties.setMaxTimeout(Duration.ofSeconds(5));
+        RedisCircuitBreaker single = new RedisCircuitBreaker(properties, clock);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread busy = new Thread(() -> single.execute(() -> {
+            started.countDown();
+            release.await();
+            return null;
+        }));
+        try {
+            busy.start();
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            for (int i = 0; i < 3; i++) {
+                assertThrows(RedisCircuitBreaker.UnavailableException.class, () -> single.execute(() -> "v"));
+            }
+            assertEquals(3, single.rejected());
+            assertEquals(RedisCircuitBreaker.State.CLOSED, single.getState());
+            assertEquals(0, single.opens());
+        } finally {
+            release.countDown();
+            busy.join();
+            single.close();
+        }
+        assertEquals(RedisCircuitBreaker.State.CLOSED, single.getState());
+    }
+
+    @Test
+    @DisplayName("经过 TwoLevelCacheManager 的加载在 Redis 暂停期间照常返回，熔断后由降级缓存命中")
+    void cacheableLoadsSurviveOutage() {
+        TwoLevelCacheManager manager = new TwoLevelCacheManager(cacheManager,
+                CachePolicyRegistryTest.localTier("post", 100), message -> { });
+        Cache comments = manager.getCache("commentsByPost");
+        AtomicInteger loads = new AtomicInteger();
+        warmUp();
+        redis.pause();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            assertEquals("comments", comments.get(1L, () -> {
+                loads.incrementAndGet();
+                return "comments";
+            }));
+        }
+        assertTrue(millisSince(start) < MAX_TIMEOUT_MILLIS * 2);
+        assertEquals(1, loads.get(), "第一次加载的结果写入降级缓存，之后命中降级缓存");
+    }
+
+    /**
+     * 内存中的 Redis 替身：pause() 后所有操作挂起直到 resume()，failWith() 后所有操作抛出指定异常
+     */
+    static class PausableRedis extends ConcurrentMapCacheManager {
+
+        final AtomicInteger calls = new AtomicInteger();
+        private volatile CountDownLatch paused;
+        private volatile RuntimeException failure;
+
+        void pause() {
+            paused = new CountDownLatch(1);
+        }
+
+        void resume() {
+            CountDownLatch latch = paused;
+            paused = null;
+            if (latch != null) {
+                latch.countDown();
+            }
+        }
+
+        void failWith(RuntimeException failure) {
+            this.failure = failure;
+        }
+
+        // 绕过暂停直接查看存储的内容
+        Cache store(String name) {
+            return ((PausableCache) getCache(name)).store;
+        }
+
+        private void await() {
+            calls.incrementAndGet();
+            CountDownLatch latch = paused;
+            if (latch != null) {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RedisConnectionFailureException("interrupted");
+                }
+            }
+            RuntimeException error = failure;
+            if (error != null) {
+                throw error;
+            }
+        }
+
+        @Override
+        protected Cache createConcurrentMapCache(String name) {
+            return new PausableCache(name);
+        }
+
+        class PausableCache extends ConcurrentMapCache {
+
+            final Cache store = new ConcurrentMapCache("store", getNativeCache(), false);
+
+            PausableCache(String name) {
+                super(name);
+            }
+
+            @Override
+            protected Object lookup(Object key) {
+                await();
+                return super.lookup(key);
+            }
+
+            @Override
+            public void put(Object key, Object value) {
+                await();
+                super.put(key, value);
+            }
+
+            @Override
+            public void evict(Object key) {
+                await();
+                super.evict(key);
+            }
+
+            @Override
+            public void clear() {
+                await();
+                super.clear();
+            }
+        }
+    }
+}
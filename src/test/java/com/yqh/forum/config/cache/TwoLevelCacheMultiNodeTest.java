@@ -0,0 +1,182 @@
+package com.yqh.forum.config.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 两个应用上下文模拟两个节点，共享同一个内存中的 "Redis"：
+ * L2 是共享的 ConcurrentMapCacheManager，pub/sub 由 SharedRedis 把消息同步投递给所有节点。
+ */
+@DisplayName("TwoLevelCacheManager 多节点测试")
+class TwoLevelCacheMultiNodeTest {
+
+    private SharedRedis redis;
+    private AnnotationConfigApplicationContext nodeA;
+    private AnnotationConfigApplicationContext nodeB;
+
+    @BeforeEach
+    void setUp() {
+        redis = new SharedRedis();
+        nodeA = startNode(redis);
+        nodeB = startNode(redis);
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.close();
+        nodeB.close();
+    }
+
+    private static AnnotationConfigApplicationContext startNode(SharedRedis redis) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.registerBean(SharedRedis.class, () -> redis);
+        context.register(NodeConfig.class);
+        context.refresh();
+        redis.subscribe(context.getBean(TwoLevelCacheManager.class));
+        return context;
+    }
+
+    private static PostLookup lookup(AnnotationConfigApplicationContext node) {
+        return node.getBean(PostLookup.class);
+    }
+
+    private static TwoLevelCache postCache(AnnotationConfigApplicationContext node) {
+        return (TwoLevelCache) ((CoalescingCache) node.getBean(CacheManager.class).getCache("post")).getDelegate();
+    }
+
+    @Test
+    @DisplayName("一个节点加载后，另一个节点从 L2 读取并回填自己的 L1")
+    void secondNodeReadsFromRemoteThenLocal() {
+        assertEquals("v1:1", lookup(nodeA).find(1L));
+        assertEquals("v1:1", lookup(nodeB).find(1L));
+        assertEquals("v1:1", lookup(nodeB).find(1L));
+
+        assertEquals(1, redis.loads.get(), "只应从数据源加载一次");
+        TwoLevelCache cacheB = postCache(nodeB);
+        assertEquals(1, cacheB.remoteHits());
+        assertEquals(1, cacheB.localStats().hitCount());
+        assertEquals(1, cacheB.localSize());
+    }
+
+    @Test
+    @DisplayName("一个节点清除后，其他节点的 L1 同步失效，再次读取得到新值")
+    void evictOnOneNodeInvalidatesOtherNodes() {
+        lookup(nodeA).find(1L);
+        lookup(nodeB).find(1L);
+        assertEquals(1, postCache(nodeB).localSize());
+
+        redis.version.set(2);
+        lookup(nodeA).update(1L);
+
+        assertEquals(0, postCache(nodeB).localSize());
+        assertEquals(1, postCache(nodeB).localInvalidations());
+        assertEquals(0, postCache(nodeA).localInvalidations(), "节点不处理自己发出的消息");
+        assertEquals("v2:1", lookup(nodeB).find(1L));
+        assertEquals("v2:1", lookup(nodeA).find(1L));
+    }
+
+    @Test
+    @DisplayName("allEntries 清除广播到所有节点")
+    void clearOnOneNodeClearsOtherNodes() {
+        lookup(nodeB).find(1L);
+        lookup(nodeB).find(2L);
+
+        lookup(nodeA).clearAll();
+
+        assertEquals(0, postCache(nodeB).localSize());
+        assertNull(redis.remote.getCache("post").get(1L));
+    }
+
+    @Test
+    @DisplayName("未配置 L1 的缓存直接使用远程缓存")
+    void unlistedCacheIsRemoteOnly() {
+        CoalescingCache posts = (CoalescingCache) nodeA.getBean(CacheManager.class).getCache("posts");
+        assertSame(redis.remote.getCache("posts"), posts.getDelegate());
+    }
+
+    @Test
+    @DisplayName("L1 超出容量时按 LRU 淘汰并计入淘汰次数")
+    void localTierIsBounded() {
+        for (long id = 1; id <= 5; id++) {
+            lookup(nodeA).find(id);
+        }
+        TwoLevelCache cacheA = postCache(nodeA);
+        assertEquals(3, cacheA.localSize());
+        assertEquals(2, cacheA.localStats().evictionCount());
+        // L2 不受 L1 容量限制
+        assertNotNull(redis.remote.getCache("post").get(1L));
+    }
+
+    /**
+     * 内存中的 "Redis"：共享的 L2 + 同步投递的 pub/sub
+     */
+    static class SharedRedis {
+        final ConcurrentMapCacheManager remote = new ConcurrentMapCacheManager();
+        final List<TwoLevelCacheManager> subscribers = new CopyOnWriteArrayList<>();
+        // 模拟数据库中的数据版本与加载次数
+        final AtomicInteger version = new AtomicInteger(1);
+        final AtomicInteger loads = new AtomicInteger();
+
+        void subscribe(TwoLevelCacheManager manager) {
+            subscribers.add(manager);
+        }
+
+        void publish(String message) {
+            subscribers.forEach(manager -> manager.handleInvalidation(message));
+        }
+    }
+
+    @Configuration
+    @EnableCaching
+    static class NodeConfig {
+
+        @Bean
+        public TwoLevelCacheManager cacheManager(SharedRedis redis) {
+            return new TwoLevelCacheManager(redis.remote, CachePolicyRegistryTest.localTier("post", 3), redis::publish);
+        }
+
+        @Bean
+        public PostLookup postLookup(SharedRedis redis) {
+            return new PostLookup(redis);
+        }
+    }
+
+    static class PostLookup {
+
+        private final SharedRedis redis;
+
+        PostLookup(SharedRedis redis) {
+            this.redis = redis;
+        }
+
+        @Cacheable(value = "post", key = "#id")
+        public String find(Long id) {
+            redis.loads.incrementAndGet();
+            return "v" + redis.version.get() + ":" + id;
+        }
+
+        @CacheEvict(value = "post", key = "#id")
+        public void update(Long id) {
+        }
+
+        @CacheEvict(value = "post", allEntries = true)
+        public void clearAll() {
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.yqh.forum.config.init;
+
+import com.yqh.forum.model.BackfillCheckpoint;
+import com.yqh.forum.repository.BackfillCheckpointRepository;
+import com.yqh.forum.service.util.SummaryUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+/**
+ * posts 表和断点表都用内存中的数据模拟：SELECT 按 (lastId, rangeEnd] 和 LIMIT 取 summary 为空的行，
+ * UPDATE 只写 summary 仍为空的行；断点表保存副本，重新读取时拿到的是上次保存的状态，相当于重启后读库。
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("PostSummaryBackfill 帖子摘要回填单元测试")
+class PostSummaryBackfillTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private BackfillCheckpointRepository checkpointRepository;
+
+    private PostSummaryBackfill backfill;
+
+    // posts 表：id -> content，id -> summary（没有表示 NULL）
+    private final Map<Long, String> contents = new TreeMap<>();
+    private final Map<Long, String> summaries = new ConcurrentHashMap<>();
+    // 断点表：chunkNo -> 最近一次保存的副本
+    private final Map<Integer, BackfillCheckpoint> checkpoints = new TreeMap<>();
+    // 每个帖子被 UPDATE 写入摘要的次数
+    private final Map<Long, Integer> updates = new ConcurrentHashMap<>();
+    // 每个区间每次 SELECT 的起点（不含）
+    private final Map<Long, List<Long>> selectsByRangeEnd = new ConcurrentHashMap<>();
+    // 不为 null 时，包含该 ID 的批次更新失败一次
+    private volatile Long failOnId;
+
+    @BeforeEach
+    void setUp() {
+        backfill = new PostSummaryBackfill(jdbcTemplate, checkpointRepository);
+        ReflectionTestUtils.setField(backfill, "threads", 2);
+        ReflectionTestUtils.setField(backfill, "batchSize", 2);
+
+        lenient().when(jdbcTemplate.queryForMap(startsWith("SELECT MIN(id)"))).thenAnswer(invocation -> {
+            Map<String, Object> range = new HashMap<>();
+            contents.keySet().stream().filter(id -> !summaries.containsKey(id)).forEach(id -> {
+                range.putIfAbsent("min_id", id);
+                range.put("max_id", id);
+            });
+            return range;
+        });
+        lenient().when(jdbcTemplate.query(startsWith("SELECT id, content"), any(RowMapper.class), (Object[]) any()))
+                .thenAnswer(invocation -> {
+                    RowMapper<?> mapper = invocation.getArgument(1);
+                    long lastId = invocation.getArgument(2);
+                    long rangeEnd = invocation.getArgument(3);
+                    int limit = invocation.getArgument(4);
+                    selectsByRangeEnd.computeIfAbsent(rangeEnd, end -> new ArrayList<>()).add(lastId);
+                    List<Object> rows = new ArrayList<>();
+                    for (Map.Entry<Long, String> post : contents.entrySet()) {
+                        if (post.getKey() > lastId && post.getKey() <= rangeEnd
+                                && !summaries.containsKey(post.getKey()) && rows.size() < limit) {
+                            rows.add(mapper.mapRow(row(post.getKey(), post.getValue()), rows.size()));
+                        }
+                    }
+                    return rows;
+                });
+        lenient().when(jdbcTemplate.batchUpdate(startsWith("UPDATE posts"), anyList())).thenAnswer(invocation -> {
+            List<Object[]> batchArgs = invocation.getArgument(1);
+            for (Object[] args : batchArgs) {
+                if (args[1].equals(failOnId)) {
+                    failOnId = null;
+                    throw new DataAccessResourceFailureException("数据库连接断开");
+                }
+            }
+            int[] counts = new int[batchArgs.size()];
+            for (int i = 0; i < batchArgs.size(); i++) {
+                Long id = (Long) batchArgs.get(i)[1];
+                if (summaries.putIfAbsent(id, (String) batchArgs.get(i)[0]) == null) {
+                    updates.merge(id, 1, Integer::sum);
+                    counts[i] = 1;
+                }
+            }
+            return counts;
+        });
+
+        lenient().when(checkpointRepository.findByJobNameOrderByChunkNo(PostSummaryBackfill.JOB_NAME))
+                .thenAnswer(invocation -> {
+                    synchronized (checkpoints) {
+                        List<BackfillCheckpoint> stored = new ArrayList<>();
+                        checkpoints.values().forEach(chunk -> stored.add(copy(chunk)));
+                        return stored;
+                    }
+                });
+        lenient().when(checkpointRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<BackfillCheckpoint> chunks = invocation.getArgument(0);
+            chunks.forEach(this::store);
+            return chunks;
+        });
+        lenient().when(checkpointRepository.save(any(BackfillCheckpoint.class))).thenAnswer(invocation -> {
+            store(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+    }
+
+    private static ResultSet row(Long id, String content) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong("id")).thenReturn(id);
+        when(rs.getString("content")).thenReturn(content);
+        return rs;
+    }
+
+    private void store(BackfillCheckpoint chunk) {
+        synchronized (checkpoints) {
+            checkpoints.put(chunk.getChunkNo(), copy(chunk));
+        }
+    }
+
+    private static BackfillCheckpoint copy(BackfillCheckpoint chunk) {
+        BackfillCheckpoint copy = new BackfillCheckpoint();
+        copy.setJobName(chunk.getJobName());
+        copy.setChunkNo(chunk.getChunkNo());
+        copy.setRangeStart(chunk.getRangeStart());
+        copy.setRangeEnd(chunk.getRangeEnd());
+        copy.setLastId(chunk.getLastId());
+        copy.setCompleted(chunk.isCompleted());
+        return copy;
+    }
+
+    private void addPosts(long fromId, long toId) {
+        for (long id = fromId; id <= toId; id++) {
+            contents.put(id, "第 " + id + " 篇帖子的正文");
+        }
+    }
+
+    @Test
+    @DisplayName("区间首尾相接覆盖全部待回填的 ID，落在区间边界上的帖子只更新一次，已有摘要的帖子不动")
+    void chunksCoverRangeWithoutOverlap() {
+        ReflectionTestUtils.setField(backfill, "threads", 3);
+        addPosts(1, 46);
+        summaries.put(1L, "已有摘要");
+        summaries.put(2L, "已有摘要");
+        summaries.put(46L, "已有摘要");
+
+        backfill.backfill();
+
+        // 3 个线程按 12 块算出区间宽度 4：待回填 ID 3..45 切成 11 块，最后一块 (42, 45] 不足 4 个
+        List<BackfillCheckpoint> chunks = new ArrayList<>(checkpoints.values());
+        assertEquals(11, chunks.size());
+        assertEquals(Long.valueOf(2), chunks.get(0).getRangeStart());
+        assertEquals(Long.valueOf(45), chunks.get(chunks.size() - 1).getRangeEnd());
+        for (int i = 0; i < chunks.size(); i++) {
+            BackfillCheckpoint chunk = chunks.get(i);
+            assertEquals(i, chunk.getChunkNo().intValue());
+            assertTrue(chunk.getRangeEnd() > chunk.getRangeStart());
+            if (i > 0) {
+                assertEquals(chunks.get(i - 1).getRangeEnd(), chunk.getRangeStart(), "相邻区间首尾相接");
+            }
+            assertTrue(chunk.isCompleted());
+            assertEquals(chunk.getRangeEnd(), chunk.getLastId());
+        }
+
+        for (long id = 3; id <= 45; id++) {
+            assertEquals(1, updates.getOrDefault(id, 0).intValue(), "帖子 " + id + " 应恰好更新一次");
+            assertEquals(SummaryUtil.generate(contents.get(id)), summaries.get(id));
+        }
+        assertEquals("已有摘要", summaries.get(1L));
+        assertEquals("已有摘要", summaries.get(46L));
+        assertFalse(updates.containsKey(46L));
+    }
+
+    @Test
+    @DisplayName("每批提交后记录断点；区间中途失败时保留断点，再次执行从断点继续，已完成的区间和批次不重做")
+    void resumesFromCheckpoint() {
+        addPosts(1, 40);
+        // 2 个线程切 8 块，每块 5 个 ID；第 3 块 (10, 15] 的第二批 [13, 14] 失败
+        failOnId = 14L;
+
+        backfill.backfill();
+
+        BackfillCheckpoint failed = checkpoints.get(2);
+        assertFalse(failed.isCompleted());
+        assertEquals(Long.valueOf(12), failed.getLastId(), "失败前已提交的批次记入断点");
+        assertEquals(List.of(10L, 12L), selectsByRangeEnd.get(15L));
+        checkpoints.values().stream().filter(chunk -> chunk.getChunkNo() != 2)
+                .forEach(chunk -> assertTrue(chunk.isCompleted()));
+        assertNull(summaries.get(13L));
+        assertNull(summaries.get(14L));
+
+        selectsByRangeEnd.clear();
+        backfill.backfill();
+
+        verify(jdbcTemplate, times(1)).queryForMap(startsWith("SELECT MIN(id)"));
+        verify(checkpointRepository, times(1)).saveAll(anyList());
+        assertEquals(Map.of(15L, List.of(12L, 14L, 15L)), selectsByRangeEnd, "只处理未完成的区间，从断点继续");
+        assertTrue(checkpoints.get(2).isCompleted());
+        for (long id = 1; id <= 40; id++) {
+            assertEquals(1, updates.getOrDefault(id, 0).intValue(), "帖子 " + id + " 应恰好更新一次");
+        }
+
+        selectsByRangeEnd.clear();
+        backfill.backfill();
+        assertTrue(selectsByRangeEnd.isEmpty(), "全部区间完成后不再查询");
+    }
+
+    @Test
+    @DisplayName("多个节点同时划分区间时，写入失败的节点改用已写入的划分继续回填")
+    void concurrentPlanningUsesStoredPlan() {
+        addPosts(1, 10);
+        // 另一个节点先提交了自己的划分（一个区间），本节点写入时违反 (job_name, chunk_no) 唯一约束
+        when(checkpointRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            BackfillCheckpoint other = new BackfillCheckpoint();
+            other.setJobName(PostSummaryBackfill.JOB_NAME);
+            other.setChunkNo(0);
+            other.setRangeStart(0L);
+            other.setRangeEnd(10L);
+            other.setLastId(0L);
+            other.setCompleted(false);
+            store(other);
+            throw new DataIntegrityViolationException("Duplicate entry 'post-summary-0'");
+        });
+
+        assertDoesNotThrow(() -> backfill.backfill());
+
+        assertEquals(1, checkpoints.size());
+        assertTrue(checkpoints.get(0).isCompleted());
+        assertEquals(Map.of(10L, List.of(0L, 2L, 4L, 6L, 8L, 10L)), selectsByRangeEnd, "按已写入的划分处理");
+        for (long id = 1; id <= 10; id++) {
+            assertEquals(1, updates.getOrDefault(id, 0).intValue(), "帖子 " + id + " 应恰好更新一次");
+        }
+    }
+
+    @Test
+    @DisplayName("没有待回填的帖子时不写断点，也不查询帖子")
+    void nothingToBackfill() {
+        addPosts(1, 3);
+        contents.keySet().forEach(id -> summaries.put(id, "已有摘要"));
+
+        backfill.backfill();
+
+        assertTrue(checkpoints.isEmpty());
+        assertTrue(selectsByRangeEnd.isEmpty());
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+}
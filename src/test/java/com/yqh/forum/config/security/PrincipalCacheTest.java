@@ -0,0 +1,197 @@
+package com.yqh.forum.config.security;
+
+import com.yqh.forum.config.cache.CircuitBreakerProperties;
+import com.yqh.forum.config.cache.RedisCircuitBreaker;
+import com.yqh.forum.model.Role;
+import com.yqh.forum.model.User;
+import com.yqh.forum.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 仓库为 Mock，Redis 中的版本号用内存 Map 代替（多个 PrincipalCache 共享同一个 Map 模拟多个节点），
+ * pub/sub 通知同步投递给所有节点。
+ */
+@DisplayName("PrincipalCache 登录身份缓存测试")
+class PrincipalCacheTest {
+
+    private UserRepository userRepository;
+    private Map<String, Long> versions;
+    private StringRedisTemplate redisTemplate;
+    private User alice;
+
+    // 所有节点注册的清除通知处理；deliverMessages 为 false 时模拟通知丢失
+    private final List<PrincipalCache> nodes = new CopyOnWriteArrayList<>();
+    private boolean deliverMessages = true;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        versions = new ConcurrentHashMap<>();
+        redisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(anyString())).thenAnswer(invocation -> {
+            Long value = versions.get(invocation.<String>getArgument(0));
+            return value != null ? value.toString() : null;
+        });
+        when(valueOperations.increment(anyString()))
+                .thenAnswer(invocation -> versions.merge(invocation.getArgument(0), 1L, Long::sum));
+        doAnswer(invocation -> {
+            if (deliverMessages) {
+                nodes.forEach(node -> node.handleInvalidation(invocation.getArgument(1)));
+            }
+            return null;
+        }).when(redisTemplate).convertAndSend(eq(PrincipalCache.INVALIDATE_CHANNEL), anyString());
+
+        Role role = new Role();
+        role.setName("ROLE_USER");
+        alice = new User();
+        alice.setId(7L);
+        alice.setUsername("alice");
+        alice.setEmail("alice@example.com");
+        alice.setAvatar("/uploads/avatars/old.png");
+        alice.setRoles(Set.of(role));
+        when(userRepository.findByUsername("alice")).thenAnswer(invocation -> Optional.of(alice));
+    }
+
+    private PrincipalCache newCache(long ttlMillis) {
+        PrincipalCache cache = new PrincipalCache(userRepository, redisTemplate,
+                new RedisCircuitBreaker(new CircuitBreakerProperties()), mock(RedisMessageListenerContainer.class), ttlMillis);
+        nodes.add(cache);
+        return cache;
+    }
+
+    // 模拟登录：UserDetailsServiceImpl 用当前版本号创建 principal
+    private Authentication login(PrincipalCache cache) {
+        ForumUserDetails details = new ForumUserDetails(alice, List.of(new SimpleGrantedAuthority("ROLE_USER")),
+                cache.version(alice.getId()));
+        return new UsernamePasswordAuthenticationToken(details, null, details.getAuthorities());
+    }
+
+    @Test
+    @DisplayName("登录时用 principal 填充，之后取身份不查库")
+    void loginPopulatesCache() {
+        PrincipalCache cache = newCache(60_000);
+        Authentication authentication = login(cache);
+        cache.onLogin(new AuthenticationSuccessEvent(authentication));
+
+        for (int i = 0; i < 5; i++) {
+            CurrentUser user = cache.get(authentication);
+            assertEquals(7L, user.getId());
+            assertEquals("/uploads/avatars/old.png", user.getAvatar());
+            assertTrue(user.hasRole("ROLE_USER"));
+        }
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    @DisplayName("条目不在缓存中但版本号未变时直接使用会话中的 principal")
+    void matchingVersionReusesPrincipal() {
+        PrincipalCache cache = newCache(60_000);
+        Authentication authentication = login(cache);
+
+        assertEquals("alice", cache.get(authentication).getUsername());
+        assertEquals(0, cache.databaseLoads());
+    }
+
+    @Test
+    @DisplayName("资料修改后版本号 +1，下一次取身份从数据库加载新资料，之后再次命中缓存")
+    void invalidateReloadsFromDatabase() {
+        PrincipalCache cache = newCache(60_000);
+        Authentication authentication = login(cache);
+        cache.onLogin(new AuthenticationSuccessEvent(authentication));
+
+        alice.setAvatar("/uploads/avatars/new.png");
+        cache.invalidate(7L);
+
+        assertEquals(1L, versions.get("user:version:7"));
+        CurrentUser reloaded = cache.get(authentication);
+        assertEquals("/uploads/avatars/new.png", reloaded.getAvatar());
+        assertEquals(1L, reloaded.getVersion());
+        cache.get(authentication);
+        assertEquals(1, cache.databaseLoads());
+    }
+
+    @Test
+    @DisplayName("其他节点修改资料后立即通知本节点清除条目，下一次取身份从数据库加载")
+    void otherNodeInvalidationIsBroadcast() {
+        PrincipalCache nodeA = newCache(60_000);
+        PrincipalCache nodeB = newCache(60_000);
+        Authentication authentication = login(nodeA);
+        nodeA.onLogin(new AuthenticationSuccessEvent(authentication));
+        assertEquals("/uploads/avatars/old.png", nodeA.get(authentication).getAvatar());
+
+        alice.setAvatar("/uploads/avatars/new.png");
+        nodeB.invalidate(7L);
+        assertEquals("/uploads/avatars/new.png", nodeA.get(authentication).getAvatar());
+        assertEquals(1, nodeA.databaseLoads());
+    }
+
+    @Test
+    @DisplayName("其他节点删除用户后，本节点不再使用缓存的身份")
+    void deletedUserRejectedOnOtherNode() {
+        PrincipalCache nodeA = newCache(60_000);
+        PrincipalCache nodeB = newCache(60_000);
+        Authentication authentication = login(nodeA);
+        nodeA.onLogin(new AuthenticationSuccessEvent(authentication));
+
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.empty());
+        nodeB.invalidate(7L);
+
+        assertThrows(UsernameNotFoundException.class, () -> nodeA.get(authentication));
+    }
+
+    @Test
+    @DisplayName("通知丢失时，本节点的条目过期后发现版本号变化并重新加载")
+    void otherNodeSeesChangeAfterExpiry() throws InterruptedException {
+        deliverMessages = false;
+        PrincipalCache nodeA = newCache(50);
+        PrincipalCache nodeB = newCache(60_000);
+        Authentication authentication = login(nodeA);
+        nodeA.onLogin(new AuthenticationSuccessEvent(authentication));
+
+        alice.setAvatar("/uploads/avatars/new.png");
+        nodeB.invalidate(7L);
+        assertEquals("/uploads/avatars/old.png", nodeA.get(authentication).getAvatar(), "过期前仍使用本机条目");
+
+        Thread.sleep(100);
+        assertEquals("/uploads/avatars/new.png", nodeA.get(authentication).getAvatar());
+        assertEquals(1, nodeA.databaseLoads());
+    }
+
+    @Test
+    @DisplayName("Redis 不可用时从数据库加载")
+    void redisFailureFallsBackToDatabase() {
+        PrincipalCache cache = newCache(60_000);
+        Authentication authentication = login(cache);
+        when(redisTemplate.opsForValue()).thenThrow(new RedisConnectionFailureException("connection refused"));
+
+        assertEquals(7L, cache.get(authentication).getId());
+        assertEquals(ForumUserDetails.UNKNOWN_VERSION, cache.get(authentication).getVersion());
+        assertEquals(1, cache.databaseLoads());
+    }
+}
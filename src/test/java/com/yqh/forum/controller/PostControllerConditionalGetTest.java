@@ -0,0 +1,134 @@
+package com.yqh.forum.controller;
+
+import com.yqh.forum.config.cache.RenderedPageCacheFilter;
+import com.yqh.forum.dto.PostDTO;
+import com.yqh.forum.repository.CommentRepository.CommentStats;
+import com.yqh.forum.service.CategoryService;
+import com.yqh.forum.service.CommentService;
+import com.yqh.forum.service.PostService;
+import com.yqh.forum.service.SearchService;
+import com.yqh.forum.service.impl.UniqueViewTracker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.security.web.method.annotation.AuthenticationPrincipalArgumentResolver;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("PostController 帖子详情条件请求测试")
+class PostControllerConditionalGetTest {
+
+    @Mock
+    private PostService postService;
+    @Mock
+    private CategoryService categoryService;
+    @Mock
+    private CommentService commentService;
+    @Mock
+    private UniqueViewTracker uniqueViewTracker;
+    @Mock
+    private SearchService searchService;
+
+    @InjectMocks
+    private PostController postController;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(postController)
+                .setCustomArgumentResolvers(new AuthenticationPrincipalArgumentResolver())
+                .build();
+
+        PostDTO post = new PostDTO();
+        post.setId(1L);
+        post.setTitle("标题");
+        post.setUpdatedAt(LocalDateTime.of(2024, 5, 1, 10, 0));
+        lenient().when(postService.findById(1L)).thenReturn(post);
+    }
+
+    private static CommentStats stats(long count, LocalDateTime latest) {
+        return new CommentStats() {
+            @Override
+            public long getCount() {
+                return count;
+            }
+
+            @Override
+            public LocalDateTime getLatestUpdatedAt() {
+                return latest;
+            }
+        };
+    }
+
+    @Test
+    @DisplayName("内容未变时返回 304，不加载评论、不渲染页面，浏览仍然计数")
+    void unchangedPostReturns304() throws Exception {
+        when(commentService.findStatsByPostId(1L)).thenReturn(stats(2, LocalDateTime.of(2024, 5, 2, 8, 0)));
+        when(commentService.findByPostId(eq(1L), any(Pageable.class))).thenReturn(new PageImpl<>(Collections.emptyList()));
+
+        MvcResult first = mockMvc.perform(get("/post/1"))
+                .andExpect(status().isOk())
+                .andExpect(view().name("post/view"))
+                .andExpect(header().exists("Last-Modified"))
+                .andReturn();
+        String etag = first.getResponse().getHeader("ETag");
+        assertNotNull(etag);
+        assertTrue(etag.startsWith("W/\""));
+        assertEquals(Boolean.TRUE, first.getRequest().getAttribute(RenderedPageCacheFilter.CACHEABLE));
+
+        mockMvc.perform(get("/post/1").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        verify(commentService, times(1)).findByPostId(eq(1L), any(Pageable.class));
+        verify(postService, times(2)).incrementViewCount(1L);
+        verify(uniqueViewTracker, times(2)).record(eq(1L), anyString());
+    }
+
+    @Test
+    @DisplayName("新增或删除评论后 ETag 改变，重新渲染")
+    void commentChangeInvalidatesEtag() throws Exception {
+        when(commentService.findStatsByPostId(1L))
+                .thenReturn(stats(2, LocalDateTime.of(2024, 5, 2, 8, 0)))
+                .thenReturn(stats(1, LocalDateTime.of(2024, 5, 2, 8, 0)));
+        when(commentService.findByPostId(eq(1L), any(Pageable.class))).thenReturn(new PageImpl<>(Collections.emptyList()));
+
+        String etag = mockMvc.perform(get("/post/1")).andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/post/1").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(view().name("post/view"));
+        verify(commentService, times(2)).findByPostId(eq(1L), any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("不存在的帖子不做条件请求，也不标记为可缓存")
+    void missingPostNotCacheable() throws Exception {
+        MvcResult result = mockMvc.perform(get("/post/99"))
+                .andExpect(view().name("error/404"))
+                .andReturn();
+
+        assertNull(result.getResponse().getHeader("ETag"));
+        assertNull(result.getRequest().getAttribute(RenderedPageCacheFilter.CACHEABLE));
+        verify(commentService, never()).findStatsByPostId(any());
+    }
+}
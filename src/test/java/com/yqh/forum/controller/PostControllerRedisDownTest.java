@@ -0,0 +1,239 @@
+package com.yqh.forum.controller;
+
+import com.yqh.forum.config.cache.CircuitBreakerProperties;
+import com.yqh.forum.config.cache.RedisCircuitBreaker;
+import com.yqh.forum.config.security.ForumUserDetails;
+import com.yqh.forum.dto.PostDTO;
+import com.yqh.forum.model.Comment;
+import com.yqh.forum.model.Post;
+import com.yqh.forum.model.User;
+import com.yqh.forum.repository.CommentRepository;
+import com.yqh.forum.repository.PostRepository;
+import com.yqh.forum.repository.UserRepository;
+import com.yqh.forum.service.CategoryService;
+import com.yqh.forum.service.PostService;
+import com.yqh.forum.service.SearchService;
+import com.yqh.forum.service.UserService;
+import com.yqh.forum.service.impl.ActivityBitmaps;
+import com.yqh.forum.service.impl.CommentCacheGeneration;
+import com.yqh.forum.service.impl.CommentServiceImpl;
+import com.yqh.forum.service.impl.UniqueViewTracker;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.method.annotation.AuthenticationPrincipalArgumentResolver;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Redis 挂起（每个命令都要等很久才失败）时访问帖子详情页：
+ * 评论分代号、独立访客、活跃位图都经过熔断器，熔断打开后请求不再等待 Redis。
+ * 通过 Spring 缓存代理调用真实的 CommentServiceImpl，仓库和帖子服务为 Mock。
+ */
+@DisplayName("PostController Redis 不可用时的帖子详情测试")
+class PostControllerRedisDownTest {
+
+    // 模拟 Redis 客户端的命令超时
+    private static final long REDIS_HANG_MILLIS = 3_000;
+
+    private AnnotationConfigApplicationContext context;
+    private MockMvc mockMvc;
+    private RedisCircuitBreaker redisCircuitBreaker;
+    private CommentRepository commentRepository;
+
+    @BeforeEach
+    void setUp() {
+        context = new AnnotationConfigApplicationContext(RedisDownConfig.class);
+        mockMvc = MockMvcBuilders.standaloneSetup(context.getBean(PostController.class))
+                .setCustomArgumentResolvers(new AuthenticationPrincipalArgumentResolver())
+                .build();
+        redisCircuitBreaker = context.getBean(RedisCircuitBreaker.class);
+        commentRepository = context.getBean(CommentRepository.class);
+
+        User author = new User();
+        author.setId(7L);
+        author.setUsername("author");
+        Post post = new Post();
+        post.setId(1L);
+        Comment comment = new Comment();
+        comment.setId(100L);
+        comment.setContent("评论");
+        comment.setAuthor(author);
+        comment.setPost(post);
+        when(commentRepository.findWithAuthorByPostId(eq(1L), any())).thenReturn(new PageImpl<>(List.of(comment)));
+
+        PostDTO postDTO = new PostDTO();
+        postDTO.setId(1L);
+        postDTO.setTitle("标题");
+        postDTO.setUpdatedAt(LocalDateTime.of(2024, 5, 1, 10, 0));
+        // 直接对 Mock 打桩，不经过 PostService 接口上的缓存代理
+        when(context.getBean(RedisDownConfig.class).postService.findById(1L)).thenReturn(postDTO);
+
+        ForumUserDetails details = new ForumUserDetails(author, List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(details, null, details.getAuthorities()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        context.close();
+    }
+
+    @Test
+    @DisplayName("Redis 挂起时页面正常返回；熔断打开后不再等待 Redis，评论按分代 0 缓存")
+    void viewPostWithRedisDown() throws Exception {
+        long start = System.nanoTime();
+        mockMvc.perform(get("/post/1"))
+                .andExpect(status().isOk())
+                .andExpect(view().name("post/view"))
+                .andExpect(model().attribute("comments", hasSize(1)));
+        long firstMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // 三次 Redis 调用各等满熔断器的超时（100ms），而不是 Redis 客户端的超时
+        assertTrue(firstMillis < REDIS_HANG_MILLIS, "首次请求耗时 " + firstMillis + "ms");
+        assertEquals(RedisCircuitBreaker.State.OPEN, redisCircuitBreaker.getState());
+
+        start = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(get("/post/1"))
+                    .andExpect(status().isOk())
+                    .andExpect(model().attribute("comments", hasSize(1)));
+        }
+        long openMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(openMillis < 1_000, "熔断期间三次请求耗时 " + openMillis + "ms");
+        assertTrue(redisCircuitBreaker.shortCircuited() >= 9);
+
+        verify(commentRepository, times(1)).findWithAuthorByPostId(eq(1L), any());
+    }
+
+    @Configuration
+    @EnableCaching
+    static class RedisDownConfig {
+
+        final PostService postService = mock(PostService.class);
+
+        @Bean
+        public CacheManager cacheManager() {
+            return new ConcurrentMapCacheManager();
+        }
+
+        // 所有 Redis 命令都挂起一段时间后连接失败
+        @Bean
+        @SuppressWarnings("unchecked")
+        public StringRedisTemplate stringRedisTemplate() {
+            Answer<Object> hang = invocation -> {
+                Thread.sleep(REDIS_HANG_MILLIS);
+                throw new RedisConnectionFailureException("Redis 无响应");
+            };
+            StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+            ValueOperations<String, String> valueOperations = mock(ValueOperations.class, hang);
+            when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+            when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(hang);
+            return redisTemplate;
+        }
+
+        @Bean(destroyMethod = "close")
+        public RedisCircuitBreaker redisCircuitBreaker() {
+            CircuitBreakerProperties properties = new CircuitBreakerProperties();
+            properties.setFailureThreshold(3);
+            properties.setMinTimeout(Duration.ofMillis(50));
+            properties.setMaxTimeout(Duration.ofMillis(100));
+            properties.setOpenDuration(Duration.ofMinutes(1));
+            return new RedisCircuitBreaker(properties);
+        }
+
+        @Bean
+        public CommentCacheGeneration commentCacheGeneration(StringRedisTemplate stringRedisTemplate,
+                                                             RedisCircuitBreaker redisCircuitBreaker,
+                                                             CacheManager cacheManager) {
+            return new CommentCacheGeneration(stringRedisTemplate, redisCircuitBreaker, cacheManager);
+        }
+
+        @Bean
+        public UniqueViewTracker uniqueViewTracker(StringRedisTemplate stringRedisTemplate,
+                                                   RedisCircuitBreaker redisCircuitBreaker) {
+            return new UniqueViewTracker(stringRedisTemplate, mock(JdbcTemplate.class), redisCircuitBreaker);
+        }
+
+        @Bean
+        public ActivityBitmaps activityBitmaps(StringRedisTemplate stringRedisTemplate,
+                                               RedisCircuitBreaker redisCircuitBreaker) {
+            return new ActivityBitmaps(stringRedisTemplate, redisCircuitBreaker, 400);
+        }
+
+        @Bean
+        public CommentRepository commentRepository() {
+            return mock(CommentRepository.class);
+        }
+
+        @Bean
+        public PostRepository postRepository() {
+            return mock(PostRepository.class);
+        }
+
+        @Bean
+        public UserRepository userRepository() {
+            return mock(UserRepository.class);
+        }
+
+        @Bean
+        public UserService userService() {
+            return mock(UserService.class);
+        }
+
+        @Bean
+        public PostService postService() {
+            return postService;
+        }
+
+        @Bean
+        public CategoryService categoryService() {
+            return mock(CategoryService.class);
+        }
+
+        @Bean
+        public SearchService searchService() {
+            return mock(SearchService.class);
+        }
+
+        @Bean
+        public CommentServiceImpl commentService() {
+            return new CommentServiceImpl();
+        }
+
+        @Bean
+        public PostController postController() {
+            return new PostController();
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.yqh.forum.service.impl;
+
+import com.yqh.forum.config.cache.CircuitBreakerProperties;
+import com.yqh.forum.config.cache.RedisCircuitBreaker;
+import com.yqh.forum.service.ActivityEvent;
+import com.yqh.forum.service.TrendBucket;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.RedisStringCommands.BitOperation;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Redis 用内存中的位图代替：StringRedisConnection 为 Mock，SETBIT/BITCOUNT/BITOP/DEL 操作同一个 Map，
+ * pipeline 按调用顺序收集每条命令的返回值。
+ */
+@DisplayName("ActivityBitmaps 活跃用户位图测试")
+class ActivityBitmapsTest {
+
+    private static final LocalDate DAY1 = LocalDate.of(2024, 3, 4);
+    private static final LocalDate DAY2 = LocalDate.of(2024, 3, 5);
+
+    private final Map<String, BitSet> bitmaps = new ConcurrentHashMap<>();
+    private final Map<String, String> strings = new ConcurrentHashMap<>();
+    private final AtomicInteger pipelines = new AtomicInteger();
+    private volatile RuntimeException failure;
+
+    private DayClock clock;
+    private ActivityBitmaps activityBitmaps;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            pipelines.incrementAndGet();
+            checkAvailable();
+            List<Object> results = new ArrayList<>();
+            invocation.<RedisCallback<Object>>getArgument(0).doInRedis(connection(results));
+            return results;
+        });
+        when(redisTemplate.execute(any(RedisCallback.class))).thenAnswer(invocation -> {
+            checkAvailable();
+            return invocation.<RedisCallback<Object>>getArgument(0).doInRedis(connection(new ArrayList<>()));
+        });
+        ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(anyString())).thenAnswer(invocation -> {
+            checkAvailable();
+            return strings.get(invocation.<String>getArgument(0));
+        });
+
+        clock = new DayClock(DAY1);
+        activityBitmaps = new ActivityBitmaps(redisTemplate, new RedisCircuitBreaker(new CircuitBreakerProperties()), 400, clock);
+    }
+
+    private void checkAvailable() {
+        RuntimeException error = failure;
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private StringRedisConnection connection(List<Object> results) {
+        StringRedisConnection conn = mock(StringRedisConnection.class);
+        when(conn.setBit(anyString(), anyLong(), anyBoolean())).thenAnswer(invocation -> {
+            BitSet bits = bitmaps.computeIfAbsent(invocation.getArgument(0), key -> new BitSet());
+            int offset = (int) (long) invocation.<Long>getArgument(1);
+            boolean previous = bits.get(offset);
+            bits.set(offset, invocation.<Boolean>getArgument(2));
+            results.add(previous);
+            return null;
+        });
+        when(conn.bitCount(anyString())).thenAnswer(invocation -> {
+            BitSet bits = bitmaps.get(invocation.<String>getArgument(0));
+            long count = bits != null ? bits.cardinality() : 0L;
+            results.add(count);
+            return count;
+        });
+        when(conn.bitOp(any(BitOperation.class), anyString(), (String[]) any())).thenAnswer(invocation -> {
+            Object[] args = invocation.getArguments();
+            BitOperation operation = (BitOperation) args[0];
+            BitSet combined = null;
+            for (int i = 2; i < args.length; i++) {
+                BitSet bits = (BitSet) bitmaps.getOrDefault((String) args[i], new BitSet()).clone();
+                if (combined == null) {
+                    combined = bits;
+                } else if (operation == BitOperation.OR) {
+                    combined.or(bits);
+                } else {
+                    combined.and(bits);
+                }
+            }
+            bitmaps.put((String) args[1], combined);
+            results.add((long) combined.length());
+            return null;
+        });
+        when(conn.del((String[]) any())).thenAnswer(invocation -> {
+            for (Object key : invocation.getArguments()) {
+                bitmaps.remove((String) key);
+            }
+            results.add(1L);
+            return null;
+        });
+        when(conn.expire(anyString(), anyLong())).thenAnswer(invocation -> {
+            results.add(true);
+            return null;
+        });
+        when(conn.setNX(anyString(), anyString())).thenAnswer(invocation -> {
+            results.add(strings.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1)) == null);
+            return null;
+        });
+        return conn;
+    }
+
+    @Test
+    @DisplayName("同一用户当天只写一次 Redis，跨天后重新写入")
+    void markActiveOncePerDay() {
+        for (int i = 0; i < 10; i++) {
+            activityBitmaps.markActive(7L);
+        }
+        assertEquals(1, pipelines.get());
+
+        clock.day = DAY2;
+        activityBitmaps.markActive(7L);
+        assertEquals(2, pipelines.get());
+        assertTrue(bitmaps.get("activity:day:20240304").get(7));
+        assertTrue(bitmaps.get("activity:day:20240305").get(7));
+        assertEquals(DAY1, activityBitmaps.trackingSince().orElseThrow(), "起始日期只在第一次记录时写入");
+    }
+
+    @Test
+    @DisplayName("日活按天 BITCOUNT，周活按多天 BITOP OR 去重，临时 key 用完即删")
+    void dailyAndRangeCounts() {
+        activityBitmaps.markActive(1L);
+        activityBitmaps.markActive(2L);
+        clock.day = DAY2;
+        activityBitmaps.markActive(2L);
+        activityBitmaps.markActive(3L);
+
+        assertEquals(Map.of(DAY1, 2L, DAY2, 2L), activityBitmaps.dailyActiveUsers(DAY1, DAY2));
+        assertEquals(OptionalLong.of(3), activityBitmaps.activeUsers(DAY1, DAY2));
+        assertTrue(bitmaps.keySet().stream().noneMatch(key -> key.startsWith("activity:tmp:")));
+    }
+
+    @Test
+    @DisplayName("按周统计时每周的位图 OR 后计数，所有周在一个 pipeline 里完成")
+    void weeklyActiveUsers() {
+        // DAY1 是周一
+        activityBitmaps.markActive(1L);
+        clock.day = DAY2;
+        activityBitmaps.markActive(1L);
+        activityBitmaps.markActive(2L);
+        clock.day = DAY1.plusWeeks(1);
+        activityBitmaps.markActive(3L);
+        int before = pipelines.get();
+
+        Map<LocalDate, Long> weekly = activityBitmaps.activeUsersByBucket(DAY2, DAY1.plusWeeks(1), TrendBucket.WEEK);
+
+        assertEquals(Map.of(DAY1, 2L, DAY1.plusWeeks(1), 1L), weekly);
+        assertEquals(before + 1, pipelines.get());
+        assertTrue(bitmaps.keySet().stream().noneMatch(key -> key.startsWith("activity:tmp:")));
+    }
+
+    @Test
+    @DisplayName("注册位图与之后某天的活跃位图 BITOP AND 得到留存人数")
+    void retentionCohort() {
+        activityBitmaps.onActivity(new ActivityEvent(ActivityEvent.Type.USER_REGISTERED, 5L, DAY1.atTime(9, 0)));
+        activityBitmaps.onActivity(new ActivityEvent(ActivityEvent.Type.USER_REGISTERED, 6L, DAY1.atTime(10, 0)));
+        clock.day = DAY2;
+        activityBitmaps.onActivity(new ActivityEvent(ActivityEvent.Type.COMMENT_CREATED, 5L, DAY2.atTime(8, 0)));
+        activityBitmaps.markActive(9L);
+
+        assertEquals(OptionalLong.of(2), activityBitmaps.signups(DAY1));
+        assertEquals(OptionalLong.of(1), activityBitmaps.retainedUsers(DAY1, DAY2));
+    }
+
+    @Test
+    @DisplayName("保留 400 天时，399 天前的位图一定还在，400 天前的位图可能已经过期")
+    void retainedSinceFollowsRetentionDays() {
+        assertEquals(DAY1.minusDays(399), activityBitmaps.retainedSince());
+        clock.day = DAY2;
+        assertEquals(DAY2.minusDays(399), activityBitmaps.retainedSince());
+    }
+
+    @Test
+    @DisplayName("Redis 不可用时记录失败不抛异常且下次重试，查询返回空结果")
+    void redisFailure() {
+        failure = new RedisConnectionFailureException("connection refused");
+        assertDoesNotThrow(() -> activityBitmaps.markActive(7L));
+        assertTrue(activityBitmaps.dailyActiveUsers(DAY1, DAY2).isEmpty());
+        assertTrue(activityBitmaps.activeUsers(DAY1, DAY2).isEmpty());
+        assertTrue(activityBitmaps.trackingSince().isEmpty());
+
+        failure = null;
+        activityBitmaps.markActive(7L);
+        assertTrue(bitmaps.get("activity:day:20240304").get(7), "失败后没有记入本机去重集合，恢复后重新写入");
+    }
+
+    // 可以切换日期的时钟
+    static class DayClock extends Clock {
+        volatile LocalDate day;
+
+        DayClock(LocalDate day) {
+            this.day = day;
+        }
+
+        @Override
+        public Instant instant() {
+            return day.atTime(12, 0).toInstant(ZoneOffset.UTC);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.yqh.forum.service.impl;
+
+import com.yqh.forum.config.cache.CircuitBreakerProperties;
+import com.yqh.forum.config.cache.RedisCircuitBreaker;
+import com.yqh.forum.dto.CategoryDTO;
+import com.yqh.forum.model.Category;
+import com.yqh.forum.repository.CategoryRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("CategorySnapshot 分类快照单元测试")
+class CategorySnapshotTest {
+
+    @Mock
+    private CategoryRepository categoryRepository;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private RedisMessageListenerContainer listenerContainer;
+
+    private CategorySnapshot snapshot;
+    private MessageListener listener;
+
+    @BeforeEach
+    void setUp() {
+        snapshot = new CategorySnapshot(categoryRepository, redisTemplate, new RedisCircuitBreaker(new CircuitBreakerProperties()), listenerContainer);
+        ArgumentCaptor<MessageListener> captor = ArgumentCaptor.forClass(MessageListener.class);
+        verify(listenerContainer).addMessageListener(captor.capture(), eq(new ChannelTopic(CategorySnapshot.CHANGE_CHANNEL)));
+        listener = captor.getValue();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static Category category(Long id, String name) {
+        Category category = new Category();
+        category.setId(id);
+        category.setName(name);
+        return category;
+    }
+
+    private void receive(String nodeId) {
+        listener.onMessage(new DefaultMessage(CategorySnapshot.CHANGE_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                nodeId.getBytes(StandardCharsets.UTF_8)), null);
+    }
+
+    @Test
+    @DisplayName("多次读取只查一次库，返回的列表不可修改")
+    void readsServedFromMemory() {
+        when(categoryRepository.findAll()).thenReturn(List.of(category(1L, "综合讨论"), category(2L, "技术交流")));
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(2, snapshot.all().size());
+        }
+        assertEquals("技术交流", snapshot.get(2L).getName());
+        assertNull(snapshot.get(99L));
+
+        verify(categoryRepository, times(1)).findAll();
+        List<CategoryDTO> all = snapshot.all();
+        assertThrows(UnsupportedOperationException.class, () -> all.add(new CategoryDTO()));
+    }
+
+    @Test
+    @DisplayName("事务中的变更在提交后才重建快照并通知其他节点")
+    void changeInTransactionRebuildsAfterCommit() {
+        when(categoryRepository.findAll())
+                .thenReturn(List.of(category(1L, "综合讨论")))
+                .thenReturn(List.of(category(1L, "综合讨论"), category(2L, "技术交流")));
+        assertEquals(1, snapshot.all().size());
+
+        TransactionSynchronizationManager.initSynchronization();
+        snapshot.changed();
+        assertEquals(1, snapshot.all().size(), "提交前仍是旧快照");
+        verify(redisTemplate, never()).convertAndSend(anyString(), any());
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        assertEquals(2, snapshot.all().size());
+        verify(redisTemplate).convertAndSend(eq(CategorySnapshot.CHANGE_CHANNEL), anyString());
+    }
+
+    @Test
+    @DisplayName("收到其他节点的通知时重建，忽略自己发出的通知")
+    void notificationFromOtherNodeRebuilds() {
+        when(categoryRepository.findAll())
+                .thenReturn(List.of(category(1L, "综合讨论")))
+                .thenReturn(List.of(category(1L, "综合讨论"), category(2L, "技术交流")))
+                .thenReturn(List.of(category(2L, "技术交流")));
+        snapshot.all();
+
+        snapshot.changed();
+        ArgumentCaptor<String> ownNodeId = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(eq(CategorySnapshot.CHANGE_CHANNEL), ownNodeId.capture());
+        receive(ownNodeId.getValue());
+        assertEquals(2, snapshot.all().size());
+        verify(categoryRepository, times(2)).findAll();
+
+        receive("other-node");
+        assertEquals(List.of(2L), snapshot.all().stream().map(CategoryDTO::getId).toList());
+        verify(categoryRepository, times(3)).findAll();
+    }
+
+    @Test
+    @DisplayName("通知发送失败不影响本节点快照")
+    void publishFailureIsIgnored() {
+        when(categoryRepository.findAll()).thenReturn(List.of(category(1L, "综合讨论")));
+        doThrow(new RedisConnectionFailureException("down")).when(redisTemplate).convertAndSend(anyString(), any());
+
+        assertDoesNotThrow(() -> snapshot.changed());
+        assertEquals(1, snapshot.all().size());
+    }
+}
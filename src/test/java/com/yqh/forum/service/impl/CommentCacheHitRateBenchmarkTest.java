@@ -0,0 +1,94 @@
+package com.yqh.forum.service.impl;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 评论列表缓存命中率模拟：读评论页与发评论混合的负载下，
+ * 对比"任一评论变化清空整个 commentsByPost"与"按帖子分代 key"两种失效方式的命中率。
+ * 帖子热度按 Zipf 分布，读请求 80% 落在第一页。
+ * 默认不运行，使用 -Dbenchmark=true 开启。
+ */
+@DisplayName("评论列表缓存命中率模拟")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class CommentCacheHitRateBenchmarkTest {
+
+    private static final int POSTS = 500;
+    private static final int OPERATIONS = 200_000;
+
+    @Test
+    @DisplayName("清空全部 vs 分代 key")
+    void allEntriesVersusGenerationKeys() {
+        double[] zipf = zipfCumulative(POSTS, 1.0);
+        for (double writeRatio : new double[]{0.01, 0.05, 0.10}) {
+            double allEntries = simulate(zipf, writeRatio, false);
+            double generation = simulate(zipf, writeRatio, true);
+            System.out.printf("写比例 %4.0f%%：清空全部 命中率 %5.1f%%，分代 key 命中率 %5.1f%%%n",
+                    writeRatio * 100, allEntries * 100, generation * 100);
+            assertTrue(generation > allEntries);
+        }
+    }
+
+    private static double simulate(double[] zipf, double writeRatio, boolean generationKeys) {
+        Random random = new Random(42);
+        Set<String> cache = new HashSet<>();
+        Map<Integer, Integer> generations = new HashMap<>();
+        long reads = 0;
+        long hits = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            int post = sample(zipf, random);
+            if (random.nextDouble() < writeRatio) {
+                if (generationKeys) {
+                    generations.merge(post, 1, Integer::sum);
+                } else {
+                    cache.clear();
+                }
+                continue;
+            }
+            int page = random.nextDouble() < 0.8 ? 0 : 1 + random.nextInt(3);
+            String key = post + ":" + generations.getOrDefault(post, 0) + ":" + page + ":10";
+            reads++;
+            if (!cache.add(key)) {
+                hits++;
+            }
+        }
+        return (double) hits / reads;
+    }
+
+    private static double[] zipfCumulative(int n, double s) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, s);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static int sample(double[] cumulative, Random random) {
+        double u = random.nextDouble();
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] < u) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
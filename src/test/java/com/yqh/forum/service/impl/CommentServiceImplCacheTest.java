@@ -0,0 +1,236 @@
+package com.yqh.forum.service.impl;
+
+import com.yqh.forum.config.cache.CircuitBreakerProperties;
+import com.yqh.forum.config.cache.RedisCircuitBreaker;
+import com.yqh.forum.config.security.CurrentUser;
+import com.yqh.forum.dto.CommentDTO;
+import com.yqh.forum.model.Comment;
+import com.yqh.forum.model.Post;
+import com.yqh.forum.model.User;
+import com.yqh.forum.repository.CommentRepository;
+import com.yqh.forum.repository.PostRepository;
+import com.yqh.forum.repository.UserRepository;
+import com.yqh.forum.service.CommentService;
+import com.yqh.forum.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * commentsByPost 缓存的分代 key：通过 Spring 缓存代理调用真实的 CommentServiceImpl，
+ * 仓库为 Mock，Redis 中的分代计数器用内存 Map 代替。
+ */
+@DisplayName("CommentServiceImpl 评论列表缓存测试")
+class CommentServiceImplCacheTest {
+
+    private static final Pageable FIRST_PAGE = PageRequest.of(0, 10);
+
+    private AnnotationConfigApplicationContext context;
+    private CommentService commentService;
+    private CommentRepository commentRepository;
+    private PostRepository postRepository;
+    private UserService userService;
+    private Map<String, Long> generations;
+
+    private User author;
+    private CurrentUser identity;
+
+    @BeforeEach
+    void setUp() {
+        context = new AnnotationConfigApplicationContext(CacheTestConfig.class);
+        commentService = context.getBean(CommentService.class);
+        commentRepository = context.getBean(CommentRepository.class);
+        postRepository = context.getBean(PostRepository.class);
+        userService = context.getBean(UserService.class);
+        generations = context.getBean(CacheTestConfig.class).generations;
+
+        author = new User();
+        author.setId(7L);
+        author.setUsername("author");
+        identity = new CurrentUser(7L, "author", null, null, Set.of("ROLE_USER"), 0);
+        when(commentRepository.findWithAuthorByPostId(any(), any()))
+                .thenAnswer(invocation -> new PageImpl<>(List.of(comment(100L, invocation.getArgument(0)))));
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    @DisplayName("评论未变化时重复读取命中缓存")
+    void repeatedReadsHitCache() {
+        commentService.findByPostId(1L, FIRST_PAGE);
+        commentService.findByPostId(1L, FIRST_PAGE);
+
+        verify(commentRepository, times(1)).findWithAuthorByPostId(eq(1L), any());
+    }
+
+    @Test
+    @DisplayName("新评论只让所属帖子的评论页失效，其他帖子的缓存继续命中")
+    void createCommentOnlyInvalidatesItsPost() {
+        commentService.findByPostId(1L, FIRST_PAGE);
+        commentService.findByPostId(2L, FIRST_PAGE);
+
+        Post post = new Post();
+        post.setId(1L);
+        when(userService.getCurrentUserIdentity()).thenReturn(identity);
+        when(postRepository.findById(1L)).thenReturn(Optional.of(post));
+        when(commentRepository.save(any(Comment.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        CommentDTO newComment = new CommentDTO();
+        newComment.setPostId(1L);
+        newComment.setContent("新评论");
+        commentService.createComment(newComment);
+
+        commentService.findByPostId(1L, FIRST_PAGE);
+        commentService.findByPostId(2L, FIRST_PAGE);
+
+        assertEquals(1L, generations.get("comments:gen:1"));
+        assertNull(generations.get("comments:gen:2"));
+        verify(commentRepository, times(2)).findWithAuthorByPostId(eq(1L), any());
+        verify(commentRepository, times(1)).findWithAuthorByPostId(eq(2L), any());
+    }
+
+    @Test
+    @DisplayName("删除评论后所属帖子的评论页重新加载")
+    void deleteCommentInvalidatesItsPost() {
+        commentService.findByPostId(3L, FIRST_PAGE);
+
+        when(commentRepository.findById(100L)).thenReturn(Optional.of(comment(100L, 3L)));
+        when(userService.getCurrentUserIdentity()).thenReturn(identity);
+        commentService.deleteComment(100L);
+
+        commentService.findByPostId(3L, FIRST_PAGE);
+        verify(commentRepository, times(2)).findWithAuthorByPostId(eq(3L), any());
+    }
+
+    @Test
+    @DisplayName("事务提交后分代号 +1 失败时不抛出异常，改为清空评论列表缓存")
+    void generationBumpFailureClearsCache() {
+        commentService.findByPostId(1L, FIRST_PAGE);
+        context.getBean(CacheTestConfig.class).incrementFails = true;
+
+        Post post = new Post();
+        post.setId(1L);
+        when(userService.getCurrentUserIdentity()).thenReturn(identity);
+        when(postRepository.findById(1L)).thenReturn(Optional.of(post));
+        when(commentRepository.save(any(Comment.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        CommentDTO newComment = new CommentDTO();
+        newComment.setPostId(1L);
+        newComment.setContent("新评论");
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            commentService.createComment(newComment);
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            assertFalse(synchronizations.isEmpty());
+            assertDoesNotThrow(() -> synchronizations.forEach(TransactionSynchronization::afterCommit));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        commentService.findByPostId(1L, FIRST_PAGE);
+        assertNull(generations.get("comments:gen:1"));
+        verify(commentRepository, times(2)).findWithAuthorByPostId(eq(1L), any());
+    }
+
+    private Comment comment(Long id, Long postId) {
+        Post post = new Post();
+        post.setId(postId);
+        Comment comment = new Comment();
+        comment.setId(id);
+        comment.setContent("评论");
+        comment.setAuthor(author);
+        comment.setPost(post);
+        return comment;
+    }
+
+    @Configuration
+    @EnableCaching
+    static class CacheTestConfig {
+
+        final Map<String, Long> generations = new ConcurrentHashMap<>();
+        // 为 true 时分代号 +1 失败
+        volatile boolean incrementFails;
+
+        @Bean
+        public CacheManager cacheManager() {
+            return new ConcurrentMapCacheManager();
+        }
+
+        @Bean
+        @SuppressWarnings("unchecked")
+        public StringRedisTemplate stringRedisTemplate() {
+            StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+            ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+            when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+            when(valueOperations.get(anyString())).thenAnswer(invocation -> {
+                Long value = generations.get(invocation.<String>getArgument(0));
+                return value != null ? value.toString() : null;
+            });
+            when(valueOperations.increment(anyString())).thenAnswer(invocation -> {
+                if (incrementFails) {
+                    throw new RedisConnectionFailureException("connection refused");
+                }
+                return generations.merge(invocation.getArgument(0), 1L, Long::sum);
+            });
+            return redisTemplate;
+        }
+
+        @Bean
+        public CommentCacheGeneration commentCacheGeneration(StringRedisTemplate stringRedisTemplate, CacheManager cacheManager) {
+            return new CommentCacheGeneration(stringRedisTemplate, new RedisCircuitBreaker(new CircuitBreakerProperties()), cacheManager);
+        }
+
+        @Bean
+        public CommentRepository commentRepository() {
+            return mock(CommentRepository.class);
+        }
+
+        @Bean
+        public PostRepository postRepository() {
+            return mock(PostRepository.class);
+        }
+
+        @Bean
+        public UserRepository userRepository() {
+            return mock(UserRepository.class);
+        }
+
+        @Bean
+        public UserService userService() {
+            return mock(UserService.class);
+        }
+
+        @Bean
+        public CommentServiceImpl commentService() {
+            return new CommentServiceImpl();
+        }
+    }
+}
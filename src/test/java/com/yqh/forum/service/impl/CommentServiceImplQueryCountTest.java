@@ -0,0 +1,150 @@
+package com.yqh.forum.service.impl;
+
+import com.yqh.forum.dto.CommentDTO;
+import com.yqh.forum.model.Category;
+import com.yqh.forum.model.Comment;
+import com.yqh.forum.model.Post;
+import com.yqh.forum.model.Role;
+import com.yqh.forum.model.User;
+import com.yqh.forum.service.CommentService;
+import com.yqh.forum.service.UserService;
+import org.hibernate.SessionFactory;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.function.SQLFunctionTemplate;
+import org.hibernate.stat.Statistics;
+import org.hibernate.type.StandardBasicTypes;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 评论分页的 SQL 条数回归测试：一页评论的查询条数不随页大小变化（不能出现 N+1）。
+ * 使用 H2 内存库（MySQL 兼容模式），通过 Hibernate Statistics 统计实际执行的语句数。
+ * 仓库中的统计查询在 JPQL 里用了 MySQL 的 DATE()，H2Dialect 没有注册这个函数，启动时校验查询会失败，
+ * 所以换成 MySqlFunctionsH2Dialect。
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:comment_query_count;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=com.yqh.forum.service.impl.CommentServiceImplQueryCountTest$MySqlFunctionsH2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(CommentServiceImpl.class)
+@DisplayName("CommentServiceImpl 评论分页查询条数测试")
+class CommentServiceImplQueryCountTest {
+
+    private static final int AUTHOR_COUNT = 12;
+    private static final int COMMENT_COUNT = 40;
+
+    @MockBean
+    private UserService userService;
+
+    // 缓存 key 的 SpEL 按名字引用 @commentCacheGeneration
+    @MockBean(name = "commentCacheGeneration")
+    private CommentCacheGeneration commentCacheGeneration;
+
+    @Autowired
+    private CommentService commentService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Long postId;
+
+    @BeforeEach
+    void setUp() {
+        Role role = new Role();
+        role.setName("ROLE_USER");
+        entityManager.persist(role);
+
+        User[] authors = new User[AUTHOR_COUNT];
+        for (int i = 0; i < AUTHOR_COUNT; i++) {
+            User user = new User();
+            user.setUsername("user" + i);
+            user.setPassword("password");
+            user.setEmail("user" + i + "@example.com");
+            Set<Role> roles = new HashSet<>();
+            roles.add(role);
+            user.setRoles(roles);
+            authors[i] = entityManager.persist(user);
+        }
+
+        Category category = new Category();
+        category.setName("默认分类");
+        entityManager.persist(category);
+
+        Post post = new Post();
+        post.setTitle("测试帖子");
+        post.setContent("内容");
+        post.setAuthor(authors[0]);
+        post.setCategory(category);
+        postId = entityManager.persist(post).getId();
+
+        for (int i = 0; i < COMMENT_COUNT; i++) {
+            Comment comment = new Comment();
+            comment.setContent("评论 " + i);
+            comment.setAuthor(authors[i % AUTHOR_COUNT]);
+            comment.setPost(post);
+            entityManager.persist(comment);
+        }
+        entityManager.flush();
+    }
+
+    @Test
+    @DisplayName("不同页大小的评论页执行的 SQL 条数相同")
+    void findByPostId_StatementCountIndependentOfPageSize() {
+        // 页大小都小于评论总数，保证每次都会执行 count 查询
+        long small = countStatements(5);
+        long medium = countStatements(12);
+        long large = countStatements(30);
+
+        assertEquals(small, medium);
+        assertEquals(small, large);
+        // 评论 + 作者、count、作者角色（批量）
+        assertTrue(small <= 3, "评论分页执行了 " + small + " 条 SQL");
+    }
+
+    private long countStatements(int pageSize) {
+        // 清空一级缓存，避免上一次查询加载的实体影响统计
+        entityManager.clear();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        Page<CommentDTO> page = commentService.findByPostId(postId, PageRequest.of(0, pageSize));
+
+        assertEquals(pageSize, page.getNumberOfElements());
+        page.forEach(comment -> assertNotNull(comment.getAuthor().getUsername()));
+        return statistics.getPrepareStatementCount();
+    }
+
+    /**
+     * 补上仓库 JPQL 中用到的 MySQL 函数
+     */
+    public static class MySqlFunctionsH2Dialect extends H2Dialect {
+
+        public MySqlFunctionsH2Dialect() {
+            registerFunction("date", new SQLFunctionTemplate(StandardBasicTypes.DATE, "cast(?1 as date)"));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.yqh.forum.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("DailyStatsExporter 每日统计导出单元测试")
+class DailyStatsExporterTest {
+
+    private static final LocalDate START = LocalDate.of(2024, 3, 1);
+    private static final LocalDate END = LocalDate.of(2024, 3, 4);
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private DailyStatsRollup dailyStatsRollup;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private PreparedStatement statement;
+
+    private DailyStatsExporter exporter;
+
+    // 数据库返回的行：日期, 新用户, 新帖子, 新评论, 活跃用户
+    private final List<Object[]> rows = new ArrayList<>();
+    private String executedSql;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        exporter = new DailyStatsExporter(jdbcTemplate, dailyStatsRollup);
+        lenient().when(connection.prepareStatement(anyString(), anyInt(), anyInt())).thenAnswer(invocation -> {
+            executedSql = invocation.getArgument(0);
+            return statement;
+        });
+        lenient().doAnswer(invocation -> {
+            PreparedStatementCreator creator = invocation.getArgument(0);
+            RowCallbackHandler handler = invocation.getArgument(1);
+            creator.createPreparedStatement(connection);
+            for (Object[] row : rows) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getDate(1)).thenReturn(Date.valueOf((String) row[0]));
+                when(rs.getLong(anyInt())).thenAnswer(call -> row[call.<Integer>getArgument(0) - 1]);
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    @DisplayName("回填完成后读汇总表，以流式结果集逐行读取，没有数据的日期补 0")
+    void csvFromRollupWithGapFilling() throws Exception {
+        when(dailyStatsRollup.isReady()).thenReturn(true);
+        rows.add(new Object[]{"2024-03-02", 1L, 2L, 3L, 4L});
+        StringWriter out = new StringWriter();
+
+        assertEquals(4, exporter.export(START, END, DailyStatsExporter.Format.CSV, out));
+
+        assertEquals("date,new_users,new_posts,new_comments,active_users\n" +
+                "2024-03-01,0,0,0,0\n" +
+                "2024-03-02,1,2,3,4\n" +
+                "2024-03-03,0,0,0,0\n" +
+                "2024-03-04,0,0,0,0\n", out.toString());
+        assertTrue(executedSql.contains("FROM daily_stats"));
+        verify(statement).setFetchSize(Integer.MIN_VALUE);
+        verify(statement).setObject(1, Date.valueOf(START));
+        verify(statement).setObject(2, Date.valueOf(END));
+    }
+
+    @Test
+    @DisplayName("未回填时对明细表做一次合并查询，输出 NDJSON")
+    void ndjsonFromBaseTables() throws Exception {
+        rows.add(new Object[]{"2024-03-01", 5L, 0L, 1L, 2L});
+        rows.add(new Object[]{"2024-03-04", 0L, 7L, 0L, 3L});
+        StringWriter out = new StringWriter();
+
+        exporter.export(START, END, DailyStatsExporter.Format.NDJSON, out);
+
+        String[] lines = out.toString().split("\n");
+        assertEquals(4, lines.length);
+        assertEquals("{\"date\":\"2024-03-01\",\"new_users\":5,\"new_posts\":0,\"new_comments\":1,\"active_users\":2}", lines[0]);
+        assertEquals("{\"date\":\"2024-03-02\",\"new_users\":0,\"new_posts\":0,\"new_comments\":0,\"active_users\":0}", lines[1]);
+        assertEquals("{\"date\":\"2024-03-04\",\"new_users\":0,\"new_posts\":7,\"new_comments\":0,\"active_users\":3}", lines[3]);
+        assertTrue(executedSql.contains("UNION ALL"));
+        verify(jdbcTemplate, times(1)).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        verify(statement).setObject(eq(10), any());
+    }
+
+    @Test
+    @DisplayName("开始日期晚于结束日期时在写出任何内容之前抛出 IllegalArgumentException")
+    void invalidRange() {
+        StringWriter out = new StringWriter();
+        assertThrows(IllegalArgumentException.class,
+                () -> exporter.export(END, START, DailyStatsExporter.Format.CSV, out));
+        assertEquals("", out.toString());
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
@@ -0,0 +1,132 @@
+package com.yqh.forum.service.impl;
+
+import com.yqh.forum.service.ActivityEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("DailyStatsRollup 每日统计汇总单元测试")
+class DailyStatsRollupTest {
+
+    private static final LocalDateTime NOON = LocalDateTime.of(2024, 3, 5, 12, 0);
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private DailyStatsRollup rollup;
+
+    @BeforeEach
+    void setUp() {
+        rollup = new DailyStatsRollup(jdbcTemplate);
+        ReflectionTestUtils.setField(rollup, "reconcileDays", 3);
+    }
+
+    @Test
+    @DisplayName("发帖累加当天帖子数，同一用户当天第一次活跃时活跃用户数 +1，之后不再重复计数")
+    void postCreatedCountsActiveUserOnce() {
+        Date day = Date.valueOf("2024-03-05");
+        // 其他语句也会调用 update，只对去重插入指定返回值
+        lenient().when(jdbcTemplate.update(startsWith("INSERT IGNORE INTO daily_active_users"), eq(day), eq(7L)))
+                .thenReturn(1, 0);
+
+        rollup.onActivity(new ActivityEvent(ActivityEvent.Type.POST_CREATED, 7L, NOON));
+        rollup.onActivity(new ActivityEvent(ActivityEvent.Type.COMMENT_CREATED, 7L, NOON.plusHours(1)));
+
+        verify(jdbcTemplate).update(startsWith("INSERT INTO daily_stats"), eq(day), eq(0), eq(1), eq(0));
+        verify(jdbcTemplate).update(startsWith("INSERT INTO daily_stats"), eq(day), eq(0), eq(0), eq(1));
+        verify(jdbcTemplate, times(1)).update(startsWith("UPDATE daily_stats SET active_users"), eq(day));
+    }
+
+    @Test
+    @DisplayName("注册只累加新用户数，不算活跃")
+    void userRegisteredCountsNewUser() {
+        rollup.onActivity(new ActivityEvent(ActivityEvent.Type.USER_REGISTERED, 8L, NOON));
+
+        verify(jdbcTemplate).update(startsWith("INSERT INTO daily_stats"), eq(Date.valueOf("2024-03-05")), eq(1), eq(0), eq(0));
+        verifyNoMoreInteractions(jdbcTemplate);
+    }
+
+    @Test
+    @DisplayName("累加失败不影响业务，只记录失败次数")
+    void failedUpdateIsSwallowed() {
+        when(jdbcTemplate.update(anyString(), any(), any(), any(), any()))
+                .thenThrow(new DataAccessResourceFailureException("数据库不可用"));
+
+        assertDoesNotThrow(() -> rollup.onActivity(new ActivityEvent(ActivityEvent.Type.POST_CREATED, 7L, NOON)));
+        assertEquals(1, rollup.failedUpdates());
+    }
+
+    @Test
+    @DisplayName("重新计算时每个指标一次分组查询，窗口内每天整行覆盖，没有数据的日期写 0")
+    @SuppressWarnings("unchecked")
+    void recomputeOverwritesEveryDay() {
+        Map<String, List<Object[]>> results = Map.of(
+                "FROM users", List.<Object[]>of(new Object[]{"2024-03-02", 2L}),
+                "FROM posts WHERE", List.<Object[]>of(new Object[]{"2024-03-01", 5L}, new Object[]{"2024-03-03", 1L}),
+                "FROM comments WHERE", List.<Object[]>of(new Object[]{"2024-03-03", 9L}),
+                "a.activity_date", List.<Object[]>of(new Object[]{"2024-03-01", 3L}, new Object[]{"2024-03-03", 4L}));
+        doAnswer(invocation -> {
+            String sql = invocation.getArgument(0);
+            RowCallbackHandler handler = invocation.getArgument(1);
+            String key = sql.contains("a.activity_date") ? "a.activity_date"
+                    : results.keySet().stream().filter(sql::contains).findFirst().orElseThrow();
+            for (Object[] row : results.get(key)) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getDate(1)).thenReturn(Date.valueOf((String) row[0]));
+                when(rs.getLong(2)).thenReturn((Long) row[1]);
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), (Object[]) any());
+
+        assertEquals(4, rollup.recompute(LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 4)));
+
+        verify(jdbcTemplate, times(4)).query(anyString(), any(RowCallbackHandler.class), (Object[]) any());
+        ArgumentCaptor<List<Object[]>> captor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO daily_stats"), captor.capture());
+        List<String> written = new ArrayList<>();
+        for (Object[] args : captor.getValue()) {
+            written.add(args[0] + " " + args[1] + "/" + args[2] + "/" + args[3] + "/" + args[4]);
+        }
+        assertEquals(List.of("2024-03-01 0/5/0/3", "2024-03-02 2/0/0/0", "2024-03-03 0/1/9/4", "2024-03-04 0/0/0/0"),
+                written);
+    }
+
+    @Test
+    @DisplayName("校对只重新计算已结束的日期，并删除之前日期的去重记录")
+    void reconcileCoversClosedDays() {
+        rollup = spy(rollup);
+        doReturn(3).when(rollup).recompute(any(), any());
+
+        rollup.reconcile(LocalDate.of(2024, 3, 5));
+
+        verify(rollup).recompute(LocalDate.of(2024, 3, 2), LocalDate.of(2024, 3, 4));
+        verify(jdbcTemplate).update(startsWith("DELETE FROM daily_active_users"), eq(Date.valueOf("2024-03-05")));
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+}
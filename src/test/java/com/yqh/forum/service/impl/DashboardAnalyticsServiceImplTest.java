@@ -0,0 +1,302 @@
+package com.yqh.forum.service.impl;
+
+import com.yqh.forum.model.DailyStat;
+import com.yqh.forum.repository.CommentRepository;
+import com.yqh.forum.repository.DailyStatRepository;
+import com.yqh.forum.repository.PostRepository;
+import com.yqh.forum.repository.UserRepository;
+import com.yqh.forum.service.DashboardAnalyticsService;
+import com.yqh.forum.service.TrendBucket;
+import com.yqh.forum.service.TrendMetric;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("DashboardAnalyticsServiceImpl 趋势统计测试")
+class DashboardAnalyticsServiceImplTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private PostRepository postRepository;
+
+    @Mock
+    private CommentRepository commentRepository;
+
+    @Mock
+    private DailyStatRepository dailyStatRepository;
+
+    @Mock // 默认未回填完成，走明细表的分组查询
+    private DailyStatsRollup dailyStatsRollup;
+
+    @Mock // 默认没有活跃位图
+    private ActivityBitmaps activityBitmaps;
+
+    @InjectMocks
+    private DashboardAnalyticsServiceImpl dashboardAnalyticsService;
+
+    @BeforeEach
+    void setUp() {
+        // 默认窗口都在位图的保留期内
+        lenient().when(activityBitmaps.retainedSince()).thenReturn(LocalDate.MIN);
+    }
+
+    private static List<Object[]> rows(Object[]... rows) {
+        return new ArrayList<>(List.of(rows));
+    }
+
+    private static DailyStat stat(LocalDate date, long newPosts, long activeUsers) {
+        DailyStat stat = new DailyStat();
+        stat.setStatDate(date);
+        stat.setNewPosts(newPosts);
+        stat.setActiveUsers(activeUsers);
+        return stat;
+    }
+
+    @Test
+    @DisplayName("一次分组查询覆盖整个窗口，没有数据的日期补 0，按日期排序")
+    void groupedQueryWithGapFilling() {
+        LocalDate start = LocalDate.of(2024, 3, 1);
+        LocalDate end = LocalDate.of(2024, 3, 7);
+        when(postRepository.countPostsByDateRange(start.atStartOfDay(), end.plusDays(1).atStartOfDay()))
+                .thenReturn(rows(
+                        new Object[]{java.sql.Date.valueOf("2024-03-02"), 3L},
+                        new Object[]{java.sql.Date.valueOf("2024-03-05"), 1L}));
+
+        Map<String, Long> trend = dashboardAnalyticsService.getPostCreationTrend(start, end);
+
+        assertEquals(List.of("03-01", "03-02", "03-03", "03-04", "03-05", "03-06", "03-07"),
+                new ArrayList<>(trend.keySet()));
+        assertEquals(List.of(0L, 3L, 0L, 0L, 1L, 0L, 0L), new ArrayList<>(trend.values()));
+        verify(postRepository, times(1)).countPostsByDateRange(any(), any());
+        verify(postRepository, never()).countByCreatedAtBetween(any(), any());
+    }
+
+    @Test
+    @DisplayName("日活趋势只查询一次，兼容原生查询返回的日期和计数类型")
+    void dauTrendSingleQuery() {
+        LocalDate start = LocalDate.of(2024, 2, 27);
+        LocalDate end = LocalDate.of(2024, 3, 1);
+        when(postRepository.countDailyActiveUsersByDateRange(any(), any()))
+                .thenReturn(rows(
+                        new Object[]{LocalDate.of(2024, 2, 29), BigInteger.valueOf(5)},
+                        new Object[]{"2024-03-01", 2}));
+
+        Map<String, Long> trend = dashboardAnalyticsService.getDauTrend(start, end);
+
+        assertEquals(List.of("02-27", "02-28", "02-29", "03-01"), new ArrayList<>(trend.keySet()));
+        assertEquals(List.of(0L, 0L, 5L, 2L), new ArrayList<>(trend.values()));
+        verify(postRepository, times(1)).countDailyActiveUsersByDateRange(any(), any());
+        verify(postRepository, never()).findDistinctAuthorIdsByCreatedAtBetween(any(), any());
+        verifyNoInteractions(commentRepository);
+    }
+
+    @Test
+    @DisplayName("30 天窗口的四个趋势一共只查询四次")
+    void constantQueriesForLongerWindow() {
+        LocalDate end = LocalDate.of(2024, 3, 31);
+        LocalDate start = end.minusDays(29);
+        when(userRepository.countUsersRegisteredByDateRange(any(), any())).thenReturn(rows());
+        when(postRepository.countPostsByDateRange(any(), any())).thenReturn(rows());
+        when(commentRepository.countCommentsByDateRange(any(), any())).thenReturn(rows());
+        when(postRepository.countDailyActiveUsersByDateRange(any(), any())).thenReturn(rows());
+
+        assertEquals(30, dashboardAnalyticsService.getUserRegistrationTrend(start, end).size());
+        assertEquals(30, dashboardAnalyticsService.getPostCreationTrend(start, end).size());
+        assertEquals(30, dashboardAnalyticsService.getCommentCreationTrend(start, end).size());
+        assertEquals(30, dashboardAnalyticsService.getDauTrend(start, end).size());
+
+        verify(userRepository).countUsersRegisteredByDateRange(any(), any());
+        verify(postRepository).countPostsByDateRange(any(), any());
+        verify(commentRepository).countCommentsByDateRange(any(), any());
+        verify(postRepository).countDailyActiveUsersByDateRange(any(), any());
+        verifyNoMoreInteractions(userRepository, postRepository, commentRepository);
+    }
+
+    @Test
+    @DisplayName("开始日期晚于结束日期或窗口超过上限时抛出 IllegalArgumentException")
+    void invalidWindow() {
+        LocalDate today = LocalDate.of(2024, 3, 1);
+        assertThrows(IllegalArgumentException.class,
+                () -> dashboardAnalyticsService.getPostCreationTrend(today, today.minusDays(1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> dashboardAnalyticsService.getPostCreationTrend(
+                        today.minusDays(DashboardAnalyticsService.MAX_TREND_DAYS), today));
+        verifyNoInteractions(postRepository);
+    }
+
+    @Test
+    @DisplayName("daily_stats 回填完成后只读汇总表，不再查询明细表")
+    void readsRollupWhenReady() {
+        LocalDate start = LocalDate.of(2024, 3, 1);
+        LocalDate end = LocalDate.of(2024, 3, 4);
+        when(dailyStatsRollup.isReady()).thenReturn(true);
+        when(dailyStatRepository.findByStatDateBetweenOrderByStatDate(start, end))
+                .thenReturn(List.of(stat(LocalDate.of(2024, 3, 2), 4, 3), stat(LocalDate.of(2024, 3, 4), 1, 1)));
+
+        assertEquals(List.of(0L, 4L, 0L, 1L),
+                new ArrayList<>(dashboardAnalyticsService.getPostCreationTrend(start, end).values()));
+        assertEquals(List.of(0L, 3L, 0L, 1L),
+                new ArrayList<>(dashboardAnalyticsService.getDauTrend(start, end).values()));
+        verifyNoInteractions(userRepository, postRepository, commentRepository);
+    }
+
+    @Test
+    @DisplayName("位图没有覆盖整个窗口时整个窗口按发帖、评论统计，不混用两种口径")
+    void dauTrendUsesOneDefinition() {
+        LocalDate start = LocalDate.of(2024, 3, 1);
+        LocalDate end = LocalDate.of(2024, 3, 4);
+        LocalDate since = LocalDate.of(2024, 3, 3);
+        when(activityBitmaps.trackingSince()).thenReturn(Optional.of(since));
+        when(postRepository.countDailyActiveUsersByDateRange(any(), any()))
+                .thenReturn(rows(new Object[]{"2024-03-02", 6L}, new Object[]{"2024-03-03", 7L}));
+
+        Map<String, Long> trend = dashboardAnalyticsService.getDauTrend(start, end);
+
+        assertEquals(List.of(0L, 6L, 7L, 0L), new ArrayList<>(trend.values()));
+        verify(activityBitmaps, never()).dailyActiveUsers(any(), any());
+    }
+
+    @Test
+    @DisplayName("开始记录位图的那天不完整，位图从次日起才用于统计")
+    void trackingDayIsNotCounted() {
+        LocalDate start = LocalDate.of(2024, 3, 1);
+        LocalDate end = LocalDate.of(2024, 3, 7);
+        when(activityBitmaps.trackingSince()).thenReturn(Optional.of(start));
+        when(postRepository.countDailyActiveUsersByDateRange(any(), any())).thenReturn(rows());
+        when(postRepository.countActiveUsersByDateRange(any(), any())).thenReturn(3L);
+
+        assertEquals(7, dashboardAnalyticsService.getDauTrend(start, end).size());
+        assertEquals(3L, dashboardAnalyticsService.getActiveUserCount(start, end));
+        verify(activityBitmaps, never()).dailyActiveUsers(any(), any());
+        verify(activityBitmaps, never()).activeUsers(any(), any());
+
+        when(activityBitmaps.dailyActiveUsers(start.plusDays(1), end)).thenReturn(Map.of(end, 9L));
+        assertEquals(9L, dashboardAnalyticsService.getDauTrend(start.plusDays(1), end).get("03-07"));
+    }
+
+    @Test
+    @DisplayName("窗口全部有位图时不查询数据库；周活由位图 OR 得出")
+    void bitmapsOnlyWhenCovered() {
+        LocalDate end = LocalDate.of(2024, 3, 7);
+        LocalDate start = end.minusDays(6);
+        when(activityBitmaps.trackingSince()).thenReturn(Optional.of(start.minusDays(30)));
+        when(activityBitmaps.dailyActiveUsers(start, end)).thenReturn(Map.of(end, 9L));
+        when(activityBitmaps.activeUsers(start, end)).thenReturn(OptionalLong.of(21));
+
+        assertEquals(9L, dashboardAnalyticsService.getDauTrend(start, end).get("03-07"));
+        assertEquals(21L, dashboardAnalyticsService.getActiveUserCount(start, end));
+        verifyNoInteractions(postRepository, commentRepository, dailyStatRepository);
+    }
+
+    @Test
+    @DisplayName("窗口早于位图保留期时整个窗口按数据库统计，不读已经过期的位图")
+    void windowOlderThanRetentionUsesDatabase() {
+        LocalDate end = LocalDate.of(2024, 3, 31);
+        LocalDate start = end.minusDays(729);
+        when(activityBitmaps.trackingSince()).thenReturn(Optional.of(start.minusDays(1)));
+        when(activityBitmaps.retainedSince()).thenReturn(end.minusDays(399));
+        when(postRepository.countWeeklyActiveUsersByDateRange(any(), any()))
+                .thenReturn(rows(new Object[]{"2022-03-28", 5L}));
+        when(postRepository.countDailyActiveUsersByDateRange(any(), any())).thenReturn(rows());
+        when(postRepository.countActiveUsersByDateRange(any(), any())).thenReturn(8L);
+
+        Map<String, Long> weekly = dashboardAnalyticsService.getTrend(TrendMetric.ACTIVE_USERS, start, end, TrendBucket.WEEK);
+        assertEquals(5L, weekly.get("2022-03-28"));
+        assertEquals(301, dashboardAnalyticsService.getDauTrend(end.minusDays(400), end.minusDays(100)).size());
+        assertEquals(8L, dashboardAnalyticsService.getActiveUserCount(start, end));
+        verify(activityBitmaps, never()).activeUsersByBucket(any(), any(), any());
+        verify(activityBitmaps, never()).dailyActiveUsers(any(), any());
+        verify(activityBitmaps, never()).activeUsers(any(), any());
+
+        // 保留期内的窗口仍然用位图
+        when(activityBitmaps.activeUsers(end.minusDays(6), end)).thenReturn(OptionalLong.of(21));
+        assertEquals(21L, dashboardAnalyticsService.getActiveUserCount(end.minusDays(6), end));
+    }
+
+    @Test
+    @DisplayName("按周汇总时每天的数量累加到所在的周，首尾不完整的周只统计窗口内的日期")
+    void weeklyBucketsFromRollup() {
+        // 2024-03-06 是周三，2024-03-20 是周三
+        LocalDate start = LocalDate.of(2024, 3, 6);
+        LocalDate end = LocalDate.of(2024, 3, 20);
+        when(dailyStatsRollup.isReady()).thenReturn(true);
+        when(dailyStatRepository.findByStatDateBetweenOrderByStatDate(start, end)).thenReturn(List.of(
+                stat(LocalDate.of(2024, 3, 6), 2, 0), stat(LocalDate.of(2024, 3, 10), 3, 0),
+                stat(LocalDate.of(2024, 3, 11), 4, 0), stat(LocalDate.of(2024, 3, 20), 1, 0)));
+
+        Map<String, Long> trend = dashboardAnalyticsService.getTrend(TrendMetric.NEW_POSTS, start, end, TrendBucket.WEEK);
+
+        assertEquals(List.of("2024-03-04", "2024-03-11", "2024-03-18"), new ArrayList<>(trend.keySet()));
+        assertEquals(List.of(5L, 4L, 1L), new ArrayList<>(trend.values()));
+        verify(dailyStatRepository, times(1)).findByStatDateBetweenOrderByStatDate(any(), any());
+        verifyNoInteractions(postRepository);
+    }
+
+    @Test
+    @DisplayName("按月的活跃用户是当月不同用户数：没有位图时一次分组查询，有位图时一次 pipeline")
+    void monthlyActiveUsers() {
+        LocalDate start = LocalDate.of(2023, 11, 15);
+        LocalDate end = LocalDate.of(2024, 1, 31);
+        when(postRepository.countMonthlyActiveUsersByDateRange(start.atStartOfDay(), end.plusDays(1).atStartOfDay()))
+                .thenReturn(rows(new Object[]{"2023-11-01", 12L}, new Object[]{"2024-01-01", BigInteger.valueOf(30)}));
+
+        Map<String, Long> trend = dashboardAnalyticsService.getTrend(TrendMetric.ACTIVE_USERS, start, end, TrendBucket.MONTH);
+
+        assertEquals(List.of("2023-11", "2023-12", "2024-01"), new ArrayList<>(trend.keySet()));
+        assertEquals(List.of(12L, 0L, 30L), new ArrayList<>(trend.values()));
+        verify(postRepository, never()).countDailyActiveUsersByDateRange(any(), any());
+
+        when(activityBitmaps.trackingSince()).thenReturn(Optional.of(start.minusDays(1)));
+        when(activityBitmaps.activeUsersByBucket(start, end, TrendBucket.MONTH))
+                .thenReturn(Map.of(LocalDate.of(2023, 11, 1), 40L, LocalDate.of(2023, 12, 1), 50L));
+        assertEquals(List.of(40L, 50L, 0L), new ArrayList<>(
+                dashboardAnalyticsService.getTrend(TrendMetric.ACTIVE_USERS, start, end, TrendBucket.MONTH).values()));
+        verify(postRepository, times(1)).countMonthlyActiveUsersByDateRange(any(), any());
+    }
+
+    @Test
+    @DisplayName("按天最长一年，按周、按月最长 MAX_RANGE_DAYS 天")
+    void windowLimitDependsOnBucket() {
+        LocalDate end = LocalDate.of(2024, 3, 31);
+        LocalDate start = end.minusDays(729);
+        when(commentRepository.countCommentsByDateRange(any(), any())).thenReturn(rows());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> dashboardAnalyticsService.getTrend(TrendMetric.NEW_COMMENTS, start, end, TrendBucket.DAY));
+        assertEquals(105, dashboardAnalyticsService.getTrend(TrendMetric.NEW_COMMENTS, start, end, TrendBucket.WEEK).size());
+        assertThrows(IllegalArgumentException.class,
+                () -> dashboardAnalyticsService.getTrend(TrendMetric.NEW_COMMENTS,
+                        end.minusDays(DashboardAnalyticsService.MAX_RANGE_DAYS), end, TrendBucket.MONTH));
+        verify(commentRepository, times(1)).countCommentsByDateRange(any(), any());
+    }
+
+    @Test
+    @DisplayName("次日留存 = 注册位图 AND 次日活跃位图 / 注册人数")
+    void retentionRate() {
+        LocalDate day = LocalDate.of(2024, 3, 1);
+        when(activityBitmaps.signups(day)).thenReturn(OptionalLong.of(8));
+        when(activityBitmaps.retainedUsers(day, day.plusDays(1))).thenReturn(OptionalLong.of(2));
+
+        assertEquals(0.25, dashboardAnalyticsService.getRetentionRate(day, 1), 1e-9);
+        assertEquals(0.0, dashboardAnalyticsService.getRetentionRate(day.plusDays(1), 1), "没有注册位图时为 0");
+    }
+}
@@ -0,0 +1,251 @@
+package com.yqh.forum.service.impl;
+
+import com.yqh.forum.dto.DashboardSnapshot;
+import com.yqh.forum.service.DashboardAnalyticsService;
+import com.yqh.forum.service.TrendBucket;
+import com.yqh.forum.service.TrendMetric;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("DashboardSnapshotService 仪表盘快照单元测试")
+class DashboardSnapshotServiceTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 3, 5);
+    private static final long TTL_MILLIS = 60_000;
+
+    @Mock
+    private DashboardAnalyticsService dashboardAnalyticsService;
+
+    private final MutableClock clock = new MutableClock();
+    private DashboardSnapshotService snapshotService;
+
+    @BeforeEach
+    void setUp() {
+        snapshotService = new DashboardSnapshotService(dashboardAnalyticsService, 10, TTL_MILLIS, 5_000, clock);
+    }
+
+    @AfterEach
+    void tearDown() {
+        snapshotService.shutdown();
+    }
+
+    private void stubAll(long totalUsers) {
+        lenient().when(dashboardAnalyticsService.getTotalUserCount()).thenReturn(totalUsers);
+        lenient().when(dashboardAnalyticsService.getTotalPostCount()).thenReturn(20L);
+        lenient().when(dashboardAnalyticsService.getTotalCommentCount()).thenReturn(30L);
+        lenient().when(dashboardAnalyticsService.getActiveUserCount(any(), any())).thenReturn(4L);
+        lenient().when(dashboardAnalyticsService.getRetentionRate(any(), anyInt())).thenReturn(0.5);
+        lenient().when(dashboardAnalyticsService.getTodayActiveUserCount()).thenReturn(5L);
+        lenient().when(dashboardAnalyticsService.getTrend(eq(TrendMetric.NEW_USERS), any(), any(), any())).thenReturn(Map.of("03-05", 1L));
+        lenient().when(dashboardAnalyticsService.getTrend(eq(TrendMetric.NEW_POSTS), any(), any(), any())).thenReturn(Map.of("03-05", 2L));
+        lenient().when(dashboardAnalyticsService.getTrend(eq(TrendMetric.NEW_COMMENTS), any(), any(), any())).thenReturn(Map.of("03-05", 3L));
+        Map<String, Long> dau = new LinkedHashMap<>();
+        dau.put("03-04", 7L);
+        dau.put("03-05", 9L);
+        lenient().when(dashboardAnalyticsService.getTrend(eq(TrendMetric.ACTIVE_USERS), any(), any(), any())).thenReturn(dau);
+    }
+
+    @Test
+    @DisplayName("各项统计并行计算，总耗时接近最慢的一项；今日活跃取日活趋势的最后一天")
+    void computesInParallel() {
+        stubAll(10L);
+        // 十项各耗时 200ms，串行需要 2 秒
+        when(dashboardAnalyticsService.getTotalUserCount()).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return 10L;
+        });
+        when(dashboardAnalyticsService.getTrend(eq(TrendMetric.ACTIVE_USERS), any(), any(), any())).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return Map.of("03-05", 9L);
+        });
+        when(dashboardAnalyticsService.getActiveUserCount(any(), any())).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return 4L;
+        });
+
+        long start = System.nanoTime();
+        DashboardSnapshot snapshot = snapshotService.get(7);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(elapsedMillis < 550, "耗时 " + elapsedMillis + "ms");
+        assertEquals(10L, snapshot.getTotalUserCount());
+        assertEquals(9L, snapshot.getTodayActiveUserCount());
+        assertEquals(7, snapshot.getTrendDays());
+        verify(dashboardAnalyticsService).getTrend(TrendMetric.NEW_USERS, TODAY.minusDays(6), TODAY, TrendBucket.DAY);
+        verify(dashboardAnalyticsService).getActiveUserCount(TODAY.minusDays(29), TODAY);
+        verify(dashboardAnalyticsService, never()).getTodayActiveUserCount();
+    }
+
+    @Test
+    @DisplayName("不同粒度分别缓存；按周时今日活跃单独查询")
+    void snapshotsPerBucket() {
+        stubAll(10L);
+
+        DashboardSnapshot daily = snapshotService.get(365, TrendBucket.DAY);
+        DashboardSnapshot weekly = snapshotService.get(365, TrendBucket.WEEK);
+
+        assertNotSame(daily, weekly);
+        assertEquals(TrendBucket.WEEK, weekly.getTrendBucket());
+        assertEquals(9L, daily.getTodayActiveUserCount());
+        assertEquals(5L, weekly.getTodayActiveUserCount());
+        verify(dashboardAnalyticsService).getTrend(TrendMetric.NEW_POSTS, TODAY.minusDays(364), TODAY, TrendBucket.WEEK);
+        assertSame(weekly, snapshotService.get(365, TrendBucket.WEEK));
+        assertEquals(2, snapshotService.computations());
+    }
+
+    @Test
+    @DisplayName("并发的首次访问共享同一次计算")
+    void concurrentRequestsCoalesce() throws Exception {
+        stubAll(10L);
+        CountDownLatch release = new CountDownLatch(1);
+        when(dashboardAnalyticsService.getTotalUserCount()).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return 10L;
+        });
+
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<DashboardSnapshot>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(callers.submit(() -> snapshotService.get(7)));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            DashboardSnapshot first = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<DashboardSnapshot> result : results) {
+                assertSame(first, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        assertEquals(1, snapshotService.computations());
+        verify(dashboardAnalyticsService, times(1)).getTotalUserCount();
+    }
+
+    @Test
+    @DisplayName("快照过期后先返回旧快照，后台刷新完成后返回新快照")
+    void staleSnapshotIsServedWhileRefreshing() throws Exception {
+        stubAll(10L);
+        DashboardSnapshot first = snapshotService.get(7);
+
+        clock.advance(TTL_MILLIS - 1);
+        assertSame(first, snapshotService.get(7), "未过期时不重新计算");
+        assertEquals(1, snapshotService.computations());
+
+        CountDownLatch release = new CountDownLatch(1);
+        when(dashboardAnalyticsService.getTotalUserCount()).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return 11L;
+        });
+        clock.advance(1);
+        assertSame(first, snapshotService.get(7), "过期后不等待刷新");
+        assertSame(first, snapshotService.get(7));
+        assertEquals(2, snapshotService.computations(), "刷新进行中不重复触发");
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (snapshotService.get(7) == first && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(11L, snapshotService.get(7).getTotalUserCount());
+    }
+
+    @Test
+    @DisplayName("定时刷新失败时保留旧快照；首次计算失败时抛出原始异常")
+    void failureKeepsPreviousSnapshot() {
+        stubAll(10L);
+        DashboardSnapshot first = snapshotService.get(7);
+
+        when(dashboardAnalyticsService.getTotalPostCount()).thenThrow(new IllegalStateException("数据库不可用"));
+        clock.advance(TTL_MILLIS / 2);
+        assertDoesNotThrow(() -> snapshotService.refreshAll());
+        verify(dashboardAnalyticsService, timeout(5_000).times(2)).getTotalPostCount();
+        assertSame(first, snapshotService.get(7));
+
+        IllegalStateException error = assertThrows(IllegalStateException.class, () -> snapshotService.get(30));
+        assertEquals("数据库不可用", error.getMessage());
+    }
+
+    @Test
+    @DisplayName("定时刷新跳过较新的快照；刷新只提交不等待，不占用定时任务线程")
+    void refreshAllDoesNotWait() throws Exception {
+        stubAll(10L);
+        DashboardSnapshot first = snapshotService.get(7);
+
+        clock.advance(TTL_MILLIS / 2 - 1);
+        snapshotService.refreshAll();
+        assertEquals(1, snapshotService.computations(), "生成不到 TTL 一半的快照不刷新");
+
+        CountDownLatch release = new CountDownLatch(1);
+        when(dashboardAnalyticsService.getTotalUserCount()).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return 11L;
+        });
+        clock.advance(1);
+        long start = System.nanoTime();
+        snapshotService.refreshAll();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMillis < 500, "耗时 " + elapsedMillis + "ms");
+        assertEquals(2, snapshotService.computations());
+        assertSame(first, snapshotService.get(7));
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (snapshotService.get(7) == first && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(11L, snapshotService.get(7).getTotalUserCount());
+    }
+
+    // 可以拨动的时钟，固定在 TODAY 当天
+    static class MutableClock extends Clock {
+        private final AtomicLong offsetMillis = new AtomicLong();
+
+        void advance(long millis) {
+            offsetMillis.addAndGet(millis);
+        }
+
+        @Override
+        public Instant instant() {
+            return TODAY.atTime(12, 0).toInstant(ZoneOffset.UTC).plusMillis(offsetMillis.get());
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.yqh.forum.service.impl; // 与 PostServiceImpl 相同的包
 
 import com.yqh.forum.dto.CategoryDTO;
+import com.yqh.forum.dto.CursorPage;
 import com.yqh.forum.dto.PostDTO;
+import com.yqh.forum.dto.PostListItem;
 import com.yqh.forum.dto.UserDTO;
 import com.yqh.forum.exception.ResourceNotFoundException;
 import com.yqh.forum.model.Category;
@@ -10,14 +12,20 @@ import com.yqh.forum.model.User;
 import com.yqh.forum.repository.CategoryRepository;
 import com.yqh.forum.repository.PostRepository;
 import com.yqh.forum.repository.UserRepository;
+import com.yqh.forum.service.search.PostChangedEvent;
+import com.yqh.forum.service.util.MarkdownUtil;
+import com.yqh.forum.service.util.PostCursor;
+import com.yqh.forum.service.util.SummaryUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -25,10 +33,13 @@ import org.springframework.data.domain.Pageable;
 
 import java.time.LocalDateTime;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
@@ -46,6 +57,12 @@ class PostServiceImplTest {
     @Mock // 创建 CategoryRepository 的 Mock 对象
     private CategoryRepository categoryRepository;
 
+    @Mock // 浏览数写缓冲
+    private ViewCountBuffer viewCountBuffer;
+
+    @Mock // 发布帖子变更事件（搜索索引增量更新）
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks // 创建 PostServiceImpl 的实例，并将上面 @Mock 注解的依赖注入进去
     private PostServiceImpl postService;
 
@@ -230,6 +247,11 @@ class PostServiceImplTest {
 
             verify(postRepository).findById(testPost.getId());
             verify(postRepository).delete(testPost);
+
+            ArgumentCaptor<PostChangedEvent> captor = ArgumentCaptor.forClass(PostChangedEvent.class);
+            verify(eventPublisher).publishEvent(captor.capture());
+            assertTrue(captor.getValue().isDeleted());
+            assertEquals(testPost.getId(), captor.getValue().getPostId());
         }
 
         @Test
@@ -290,6 +312,36 @@ class PostServiceImplTest {
             assertEquals("帖子不存在", exception.getMessage());
         }
 
+        @Test
+        @DisplayName("渲染版本一致时，直接返回持久化的HTML，不重新渲染")
+        void findById_whenRenderedContentIsCurrent_shouldServeStoredHtml() {
+            testPost.setRenderedContent("<p>stored</p>");
+            testPost.setRenderedVersion(MarkdownUtil.RENDERER_VERSION);
+            when(postRepository.findById(testPost.getId())).thenReturn(Optional.of(testPost));
+
+            PostDTO foundDTO = postService.findById(testPost.getId());
+
+            assertEquals("<p>stored</p>", foundDTO.getHtmlContent());
+            verify(postRepository, never()).updateRenderedContent(anyLong(), anyString(), any(), anyInt(), any());
+        }
+
+        @Test
+        @DisplayName("渲染版本过期时，重新渲染并以 updatedAt 为条件回写")
+        void findById_whenRenderedContentIsStale_shouldRerenderAndWriteBack() {
+            testPost.setContent("# 标题");
+            testPost.setRenderedContent("<p>stale</p>");
+            testPost.setRenderedVersion(MarkdownUtil.RENDERER_VERSION - 1);
+            when(postRepository.findById(testPost.getId())).thenReturn(Optional.of(testPost));
+
+            PostDTO foundDTO = postService.findById(testPost.getId());
+
+            assertTrue(foundDTO.getHtmlContent().contains("id=\"toc-heading-0\""));
+            assertEquals(1, foundDTO.getToc().size());
+            assertEquals("标题", foundDTO.getToc().get(0).getText());
+            verify(postRepository).updateRenderedContent(testPost.getId(), foundDTO.getHtmlContent(), foundDTO.getToc(),
+                    MarkdownUtil.RENDERER_VERSION, testPost.getUpdatedAt());
+        }
+
         @Test
         @DisplayName("查找所有帖子，返回PostDTO分页")
         void findAll_shouldReturnPageOfPostDTO() {
@@ -366,30 +418,128 @@ class PostServiceImplTest {
     @DisplayName("增加帖子浏览次数 (incrementViewCount)")
     class IncrementViewCountTests {
         @Test
-        @DisplayName("当帖子存在时，成功增加浏览次数")
-        void incrementViewCount_whenPostExists_shouldIncrement() {
-            when(postRepository.findById(testPost.getId())).thenReturn(Optional.of(testPost));
-            // 模拟 save 方法，因为它是 void，我们不需要 thenReturn，但可以验证它被调用
-            // 或者如果 save 返回更新后的实体，可以像下面这样：
-            when(postRepository.save(any(Post.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        @DisplayName("浏览只累计到内存缓冲区，不读写数据库")
+        void incrementViewCount_shouldOnlyBufferTheIncrement() {
+            postService.incrementViewCount(testPost.getId());
+            postService.incrementViewCount(testPost.getId());
 
+            verify(viewCountBuffer, times(2)).increment(testPost.getId());
+            verifyNoInteractions(postRepository);
+        }
+    }
 
-            int initialCount = testPost.getViewCount();
-            postService.incrementViewCount(testPost.getId());
+    @Nested
+    @DisplayName("列表投影 (findSummariesByIds 等)")
+    class ListProjectionTests {
+        private PostListItem listItem(Long id) {
+            return new PostListItem(id, "标题", "摘要", 10, 3, LocalDateTime.now(), LocalDateTime.now(),
+                    testUser.getId(), testUser.getUsername(), "/images/a.png", testCategory.getId(), testCategory.getName(), null);
+        }
 
-            assertEquals(initialCount + 1, testPost.getViewCount()); // 验证原对象被修改
-            verify(postRepository).findById(testPost.getId());
-            verify(postRepository).save(testPost); // 验证修改后的对象被保存
+        @Test
+        @DisplayName("列表投影转换为 PostDTO，不含正文")
+        void findSummariesByIds_shouldMapProjectionWithoutContent() {
+            when(postRepository.findListItemsByIds(List.of(1L))).thenReturn(List.of(listItem(1L)));
+
+            List<PostDTO> result = postService.findSummariesByIds(List.of(1L));
+
+            PostDTO dto = result.get(0);
+            assertEquals("标题", dto.getTitle());
+            assertEquals("摘要", dto.getSummaryContent());
+            assertNull(dto.getContent());
+            assertEquals(testUser.getUsername(), dto.getAuthor().getUsername());
+            assertEquals("/images/a.png", dto.getAuthor().getAvatar());
+            assertEquals(testCategory.getName(), dto.getCategory().getName());
+            assertEquals(3, dto.getUniqueViewCount());
+            verify(postRepository, never()).findAll(any(Pageable.class));
         }
 
         @Test
-        @DisplayName("当帖子不存在时，抛出ResourceNotFoundException")
-        void incrementViewCount_whenPostNotExists_shouldThrowResourceNotFoundException() {
-            when(postRepository.findById(anyLong())).thenReturn(Optional.empty());
+        @DisplayName("摘要尚未回填时用正文生成摘要，不显示 Markdown 标记")
+        void findSummariesByIds_shouldGenerateMissingSummary() {
+            PostListItem item = listItem(1L);
+            item.setSummary(null);
+            item.setContent("# 标题\n![图](/a.png)正文");
+            when(postRepository.findListItemsByIds(List.of(1L))).thenReturn(List.of(item));
+
+            PostDTO dto = postService.findSummariesByIds(List.of(1L)).get(0);
+
+            assertEquals(SummaryUtil.generate("# 标题\n![图](/a.png)正文"), dto.getSummaryContent());
+            assertFalse(dto.getSummaryContent().contains("#"));
+            assertFalse(dto.getSummaryContent().contains("!["));
+            assertNull(dto.getContent());
+        }
 
-            ResourceNotFoundException exception = assertThrows(ResourceNotFoundException.class,
-                    () -> postService.incrementViewCount(99L));
-            assertEquals("帖子不存在", exception.getMessage());
+        @Test
+        @DisplayName("按给定 ID 顺序返回，不存在的 ID 跳过")
+        void findSummariesByIds_shouldKeepOrderAndSkipMissing() {
+            when(postRepository.findListItemsByIds(List.of(3L, 9L, 1L))).thenReturn(List.of(listItem(1L), listItem(3L)));
+
+            List<PostDTO> result = postService.findSummariesByIds(List.of(3L, 9L, 1L));
+
+            assertEquals(List.of(3L, 1L), result.stream().map(PostDTO::getId).collect(Collectors.toList()));
+            verifyNoInteractions(userRepository);
+        }
+    }
+
+    @Nested
+    @DisplayName("游标分页 (findSummariesByCursor 等)")
+    class CursorPaginationTests {
+        private final LocalDateTime base = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+        private PostListItem item(long id) {
+            return new PostListItem(id, "帖子" + id, "摘要", 0, 0, base.plusMinutes(id), base.plusMinutes(id),
+                    testUser.getId(), testUser.getUsername(), null, testCategory.getId(), testCategory.getName(), null);
+        }
+
+        @Test
+        @DisplayName("第一页：没有较新的一页，多取到一条时有较早的一页")
+        void firstPage_shouldExposeOnlyNextCursor() {
+            when(postRepository.findListItemsByKeyset(null, null, null, null, true, 3))
+                    .thenReturn(List.of(item(5), item(4), item(3)));
+
+            CursorPage<PostDTO> page = postService.findSummariesByCursor(null, 2);
+
+            assertEquals(List.of(5L, 4L), page.getContent().stream().map(PostDTO::getId).collect(Collectors.toList()));
+            assertFalse(page.isHasPrevious());
+            assertTrue(page.isHasNext());
+        }
+
+        @Test
+        @DisplayName("按 nextCursor 翻到较早的一页，从上一页最后一条之后开始")
+        void nextCursor_shouldSeekAfterLastItem() {
+            when(postRepository.findListItemsByKeyset(null, null, null, null, true, 3))
+                    .thenReturn(List.of(item(5), item(4), item(3)));
+            String next = postService.findSummariesByCursor(null, 2).getNextCursor();
+
+            when(postRepository.findListItemsByKeyset(null, null, base.plusMinutes(4), 4L, true, 3))
+                    .thenReturn(List.of(item(3)));
+            CursorPage<PostDTO> page = postService.findSummariesByCursor(next, 2);
+
+            assertEquals(1, page.getContent().size());
+            assertTrue(page.isHasPrevious());
+            assertFalse(page.isHasNext());
+        }
+
+        @Test
+        @DisplayName("按 prevCursor 翻回较新的一页，结果仍按时间倒序")
+        void prevCursor_shouldReturnNewerItemsInDescendingOrder() {
+            String prev = PostCursor.newerThan(item(3)).encode();
+            when(postRepository.findListItemsByKeyset(testCategory.getId(), null, base.plusMinutes(3), 3L, false, 3))
+                    .thenReturn(List.of(item(4), item(5)));
+
+            CursorPage<PostDTO> page = postService.findSummariesByCategoryIdAndCursor(testCategory.getId(), prev, 2);
+
+            assertEquals(List.of(5L, 4L), page.getContent().stream().map(PostDTO::getId).collect(Collectors.toList()));
+            assertFalse(page.isHasPrevious());
+            assertTrue(page.isHasNext());
+        }
+
+        @Test
+        @DisplayName("游标格式不正确时抛出 IllegalArgumentException")
+        void invalidCursor_shouldThrowIllegalArgumentException() {
+            assertThrows(IllegalArgumentException.class, () -> postService.findSummariesByCursor("not-a-cursor", 10));
+            verifyNoInteractions(postRepository);
         }
     }
 
@@ -438,5 +588,31 @@ class PostServiceImplTest {
             assertTrue(result.getSummaryContent().endsWith("..."));
             assertTrue(result.getSummaryContent().length() <= 203); // 200 + "..."
         }
+
+        @Test
+        @DisplayName("创建帖子时摘要写入 summary 字段")
+        void createPost_shouldPersistSummary() {
+            testPostDTO.setContent("# 标题\n正文内容");
+            when(userRepository.findByUsername(testUser.getUsername())).thenReturn(Optional.of(testUser));
+            when(categoryRepository.findById(testPostDTO.getCategory().getId())).thenReturn(Optional.of(testCategory));
+            when(postRepository.save(any(Post.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+            postService.createPost(testPostDTO, testUser.getUsername());
+
+            ArgumentCaptor<Post> captor = ArgumentCaptor.forClass(Post.class);
+            verify(postRepository).save(captor.capture());
+            assertEquals(" 标题\n正文内容", captor.getValue().getSummary());
+        }
+
+        @Test
+        @DisplayName("列表优先使用已存储的摘要")
+        void findAll_whenSummaryStored_shouldUseStoredSummary() {
+            testPost.setSummary("已存储的摘要");
+            when(postRepository.findAll(pageable)).thenReturn(new PageImpl<>(List.of(testPost), pageable, 1));
+
+            Page<PostDTO> result = postService.findAll(pageable);
+
+            assertEquals("已存储的摘要", result.getContent().get(0).getSummaryContent());
+        }
     }
 }
\ No newline at end of file
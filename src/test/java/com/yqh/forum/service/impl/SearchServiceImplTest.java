@@ -0,0 +1,228 @@
+package com.yqh.forum.service.impl;
+
+import com.yqh.forum.config.cache.CircuitBreakerProperties;
+import com.yqh.forum.config.cache.RedisCircuitBreaker;
+import com.yqh.forum.service.search.InvertedIndex;
+import com.yqh.forum.service.search.PostChangedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("SearchServiceImpl 跨节点索引同步单元测试")
+class SearchServiceImplTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private RedisMessageListenerContainer listenerContainer;
+
+    @TempDir
+    Path indexDir;
+
+    private RedisCircuitBreaker redisCircuitBreaker;
+    private SearchServiceImpl searchService;
+    private MessageListener listener;
+
+    // 数据库中帖子表的内容：id, title, content
+    private final List<Object[]> posts = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        redisCircuitBreaker = new RedisCircuitBreaker(new CircuitBreakerProperties());
+        searchService = new SearchServiceImpl();
+        ReflectionTestUtils.setField(searchService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(searchService, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(searchService, "redisCircuitBreaker", redisCircuitBreaker);
+        ReflectionTestUtils.setField(searchService, "listenerContainer", listenerContainer);
+        ReflectionTestUtils.setField(searchService, "indexDir", indexDir.toString());
+
+        searchService.subscribe();
+        ArgumentCaptor<MessageListener> captor = ArgumentCaptor.forClass(MessageListener.class);
+        verify(listenerContainer).addMessageListener(captor.capture(), eq(new ChannelTopic(SearchServiceImpl.CHANGE_CHANNEL)));
+        listener = captor.getValue();
+
+        // 空库上重建，索引就绪
+        searchService.rebuildIndex();
+    }
+
+    @AfterEach
+    void tearDown() {
+        redisCircuitBreaker.close();
+    }
+
+    private Set<Long> indexedPostIds() {
+        return ((InvertedIndex) ReflectionTestUtils.getField(searchService, "index")).postIds();
+    }
+
+    private ResultSet row(Object[] post) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong("id")).thenReturn((Long) post[0]);
+        when(rs.getString("title")).thenReturn((String) post[1]);
+        when(rs.getString("content")).thenReturn((String) post[2]);
+        return rs;
+    }
+
+    private void stubPostLookup() {
+        when(jdbcTemplate.query(contains("WHERE id = ?"), any(RowMapper.class), (Object[]) any())).thenAnswer(invocation -> {
+            RowMapper<?> mapper = invocation.getArgument(1);
+            Long postId = invocation.getArgument(2);
+            List<Object> result = new ArrayList<>();
+            for (Object[] post : posts) {
+                if (post[0].equals(postId)) {
+                    result.add(mapper.mapRow(row(post), 0));
+                }
+            }
+            return result;
+        });
+    }
+
+    // 按 IN 列表返回 posts 中存在的 ID，并记录每次查询的 ID 个数
+    private List<Integer> stubExistingIds() {
+        List<Integer> pageSizes = new ArrayList<>();
+        when(jdbcTemplate.queryForList(startsWith("SELECT id FROM posts WHERE id IN"), eq(Long.class), (Object[]) any()))
+                .thenAnswer(invocation -> {
+                    Object[] ids = Arrays.copyOfRange(invocation.getArguments(), 2, invocation.getArguments().length);
+                    pageSizes.add(ids.length);
+                    List<Long> existing = new ArrayList<>();
+                    for (Object[] post : posts) {
+                        if (Arrays.asList(ids).contains(post[0])) {
+                            existing.add((Long) post[0]);
+                        }
+                    }
+                    return existing;
+                });
+        return pageSizes;
+    }
+
+    private void message(String body) {
+        listener.onMessage(new DefaultMessage(SearchServiceImpl.CHANGE_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8)), null);
+    }
+
+    @Test
+    @DisplayName("本节点的变更提交后广播帖子ID，自己发出的通知不重复处理")
+    void localChangeIsPublished() {
+        searchService.onPostChanged(PostChangedEvent.saved(1L, "标题", "内容"));
+
+        ArgumentCaptor<String> published = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(eq(SearchServiceImpl.CHANGE_CHANNEL), published.capture());
+        assertTrue(published.getValue().endsWith("\n1"));
+        assertEquals(Set.of(1L), indexedPostIds());
+
+        message(published.getValue());
+        verify(jdbcTemplate, never()).query(contains("WHERE id = ?"), any(RowMapper.class), (Object[]) any());
+    }
+
+    @Test
+    @DisplayName("Redis 不可用时广播失败不影响本节点的索引更新")
+    void publishFailureIsSwallowed() {
+        doThrow(new RedisConnectionFailureException("Redis 不可用"))
+                .when(redisTemplate).convertAndSend(anyString(), anyString());
+
+        assertDoesNotThrow(() -> searchService.onPostChanged(PostChangedEvent.saved(1L, "标题", "内容")));
+        assertEquals(Set.of(1L), indexedPostIds());
+    }
+
+    @Test
+    @DisplayName("收到其他节点的通知后从数据库读取帖子；帖子已不存在时从索引中移除")
+    void remoteChangeReloadsFromDatabase() {
+        stubPostLookup();
+        posts.add(new Object[]{2L, "其他节点的帖子", "内容"});
+
+        message("other-node\n2");
+        assertEquals(Set.of(2L), indexedPostIds());
+
+        posts.clear();
+        message("other-node\n2");
+        assertTrue(indexedPostIds().isEmpty());
+        verify(redisTemplate, never()).convertAndSend(anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("定时补齐重新索引最近修改的帖子，并移除数据库中已删除的帖子")
+    void resyncCatchesLostNotifications() {
+        searchService.onPostChanged(PostChangedEvent.saved(3L, "已被其他节点删除", "内容"));
+        posts.add(new Object[]{4L, "其他节点新建", "内容"});
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (Object[] post : posts) {
+                handler.processRow(row(post));
+            }
+            return null;
+        }).when(jdbcTemplate).query(contains("updated_at >= ?"), any(RowCallbackHandler.class), (Object[]) any());
+        stubExistingIds();
+
+        searchService.resync();
+
+        assertEquals(Set.of(4L), indexedPostIds());
+    }
+
+    @Test
+    @DisplayName("定时补齐按每页 500 个 ID 比对数据库，不一次性读取全部帖子ID")
+    void resyncChecksDeletesInPages() {
+        for (long id = 1; id <= 1200; id++) {
+            searchService.onPostChanged(PostChangedEvent.saved(id, "标题" + id, "内容"));
+            if (id % 100 != 0) {
+                posts.add(new Object[]{id, "标题" + id, "内容"});
+            }
+        }
+        List<Integer> pageSizes = stubExistingIds();
+
+        searchService.resync();
+
+        assertEquals(List.of(500, 500, 200), pageSizes);
+        assertEquals(1188, indexedPostIds().size());
+        assertFalse(indexedPostIds().contains(100L));
+        assertFalse(indexedPostIds().contains(1200L));
+        verify(jdbcTemplate, never()).queryForList("SELECT id FROM posts", Long.class);
+    }
+
+    @Test
+    @DisplayName("帖子ID不是数字的通知被忽略，不影响后续通知")
+    void malformedPostIdIsIgnored() {
+        stubPostLookup();
+        posts.add(new Object[]{2L, "其他节点的帖子", "内容"});
+
+        assertDoesNotThrow(() -> message("other-node\nabc"));
+        message("other-node\n2");
+
+        assertEquals(Set.of(2L), indexedPostIds());
+    }
+}
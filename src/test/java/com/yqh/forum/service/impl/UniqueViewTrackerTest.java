@@ -0,0 +1,158 @@
+package com.yqh.forum.service.impl;
+
+import com.yqh.forum.config.cache.CircuitBreakerProperties;
+import com.yqh.forum.config.cache.RedisCircuitBreaker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.Cookie;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("UniqueViewTracker 独立访客统计单元测试")
+class UniqueViewTrackerTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private SetOperations<String, String> setOperations;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private UniqueViewTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        tracker = new UniqueViewTracker(redisTemplate, jdbcTemplate, new RedisCircuitBreaker(new CircuitBreakerProperties()));
+    }
+
+    @Test
+    @DisplayName("一页帖子的独立访客数通过一次 pipeline 读取")
+    void countUniqueViews_OnePipeline() {
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(List.of(3L, 0L, 7L));
+
+        Map<Long, Long> counts = tracker.countUniqueViews(List.of(1L, 2L, 3L));
+
+        assertEquals(Map.of(1L, 3L, 2L, 0L, 3L, 7L), counts);
+        verify(redisTemplate, times(1)).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    @DisplayName("Redis 不可用时返回空结果，不抛异常")
+    void countUniqueViews_RedisDown() {
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        assertTrue(tracker.countUniqueViews(List.of(1L)).isEmpty());
+    }
+
+    @Test
+    @DisplayName("定时同步把估算值批量写入数据库")
+    @SuppressWarnings("unchecked")
+    void reconcile_BatchUpdates() {
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        when(setOperations.pop(anyString(), anyLong()))
+                .thenReturn(List.of("1", "2"))
+                .thenReturn(Collections.emptyList());
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(List.of(4L, 9L));
+
+        tracker.reconcile();
+
+        ArgumentCaptor<List<Object[]>> captor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), captor.capture());
+        List<Object[]> args = captor.getValue();
+        assertArrayEquals(new Object[]{4L, 1L}, args.get(0));
+        assertArrayEquals(new Object[]{9L, 2L}, args.get(1));
+    }
+
+    @Test
+    @DisplayName("写库失败时帖子 ID 放回待同步集合")
+    void reconcile_DbFailure_RequeuesIds() {
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        when(setOperations.pop(anyString(), anyLong())).thenReturn(List.of("5"));
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(List.of(2L));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("db down"));
+
+        tracker.reconcile();
+
+        verify(setOperations).add(eq("post:uv:dirty"), eq("5"));
+    }
+
+    @Test
+    @DisplayName("匿名访客第一次访问签发访客 Cookie，之后有了会话也仍用同一个标识")
+    void visitorId_StableBeforeAndAfterSession() {
+        MockHttpServletRequest first = new MockHttpServletRequest("GET", "/post/1");
+        MockHttpServletResponse firstResponse = new MockHttpServletResponse();
+        String before = UniqueViewTracker.visitorId(null, first, firstResponse);
+        Cookie issued = firstResponse.getCookie(UniqueViewTracker.VISITOR_COOKIE);
+        assertNotNull(issued);
+        assertTrue(issued.getMaxAge() > 0);
+        assertTrue(issued.isHttpOnly());
+        assertEquals(before, UniqueViewTracker.visitorId(null, first, firstResponse), "同一请求内标识不变");
+        assertEquals(1, firstResponse.getCookies().length, "同一请求内只签发一次");
+
+        // 浏览器带回 Cookie，并且这时已经有了会话
+        MockHttpServletRequest second = new MockHttpServletRequest("GET", "/post/1");
+        second.setCookies(issued);
+        second.getSession(true);
+        MockHttpServletResponse secondResponse = new MockHttpServletResponse();
+        String after = UniqueViewTracker.visitorId(null, second, secondResponse);
+
+        assertEquals(before, after);
+        assertEquals(0, secondResponse.getCookies().length);
+    }
+
+    @Test
+    @DisplayName("同一出口 IP 后的不同匿名访客各自计数；登录用户按用户名计数")
+    void visitorId_SharedIpAndLoggedInUser() {
+        MockHttpServletRequest alice = new MockHttpServletRequest("GET", "/post/1");
+        MockHttpServletRequest bob = new MockHttpServletRequest("GET", "/post/1");
+        alice.setRemoteAddr("10.0.0.1");
+        bob.setRemoteAddr("10.0.0.1");
+
+        assertNotEquals(UniqueViewTracker.visitorId(null, alice, new MockHttpServletResponse()),
+                UniqueViewTracker.visitorId(null, bob, new MockHttpServletResponse()));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertEquals("user:alice", UniqueViewTracker.visitorId("alice", alice, response));
+        assertEquals(0, response.getCookies().length);
+    }
+
+    @Test
+    @DisplayName("访客 Cookie 格式不对时重新签发")
+    void visitorId_ForgedCookieReplaced() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/post/1");
+        request.setCookies(new Cookie(UniqueViewTracker.VISITOR_COOKIE, "not-a-visitor-id"));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        String visitorId = UniqueViewTracker.visitorId(null, request, response);
+
+        Cookie issued = response.getCookie(UniqueViewTracker.VISITOR_COOKIE);
+        assertNotNull(issued);
+        assertEquals("visitor:" + issued.getValue(), visitorId);
+    }
+}
@@ -0,0 +1,165 @@
+package com.yqh.forum.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import com.yqh.forum.config.cache.CachePolicy;
+import com.yqh.forum.config.cache.CachePolicyRegistry;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+
+import java.sql.ResultSet;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ViewCountBuffer 浏览数写缓冲单元测试")
+class ViewCountBufferTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private TransactionStatus transactionStatus;
+
+    private ViewCountBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        buffer = new ViewCountBuffer(jdbcTemplate, transactionManager,
+                new CachePolicyRegistry(new CachePolicy(), Map.of()));
+        lenient().when(transactionManager.getTransaction(any(TransactionDefinition.class))).thenReturn(transactionStatus);
+    }
+
+    // 读回数据库中的浏览数：帖子 ID -> 浏览数
+    private void stubReadBack(Map<Long, Long> viewCounts) {
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (Map.Entry<Long, Long> entry : viewCounts.entrySet()) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getLong(1)).thenReturn(entry.getKey());
+                when(rs.getLong(2)).thenReturn(entry.getValue());
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), (Object[]) any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, Long> capturedDeltas() {
+        ArgumentCaptor<List<Object[]>> captor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), captor.capture());
+        Map<Long, Long> deltas = new HashMap<>();
+        for (Object[] args : captor.getValue()) {
+            deltas.put((Long) args[1], (Long) args[0]);
+        }
+        return deltas;
+    }
+
+    @Test
+    @DisplayName("并发浏览不丢失增量，合并成一批 UPDATE 在一个事务中写回")
+    void flush_afterConcurrentIncrements_shouldWriteExactDeltasInOneBatch() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch done = new CountDownLatch(8);
+        for (int t = 0; t < 8; t++) {
+            executor.submit(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    buffer.increment(1L);
+                    buffer.increment(2L);
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(16000, buffer.pendingViews());
+
+        buffer.flush();
+
+        Map<Long, Long> deltas = capturedDeltas();
+        assertEquals(8000L, deltas.get(1L));
+        assertEquals(8000L, deltas.get(2L));
+        assertEquals(0, buffer.pendingViews());
+        assertEquals(16000, buffer.flushedViews());
+        verify(transactionManager).commit(transactionStatus);
+    }
+
+    @Test
+    @DisplayName("没有增量时不访问数据库")
+    void flush_whenNothingPending_shouldNotTouchDatabase() {
+        buffer.flush();
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    @DisplayName("写回失败时整批回滚，增量全部放回缓冲区，下一轮重试")
+    void flush_whenBatchFails_shouldKeepDeltasForNextRound() {
+        buffer.increment(1L);
+        buffer.increment(1L);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("db down"));
+
+        buffer.flush();
+
+        assertEquals(2, buffer.pendingViews());
+        assertEquals(0, buffer.flushedViews());
+        verify(jdbcTemplate).batchUpdate(eq("UPDATE posts SET view_count = view_count + ? WHERE id = ?"), anyList());
+        verify(transactionManager).rollback(transactionStatus);
+        verify(transactionManager, never()).commit(any());
+        assertEquals(12, buffer.viewCount(1L, 10), "放回的增量仍计入显示的浏览数");
+    }
+
+    @Test
+    @DisplayName("显示的浏览数 = 缓存值与写回后读回的数据库值中较大的一个 + 未写回的增量")
+    void viewCount_combinesCachedReadBackAndPending() {
+        buffer.increment(1L);
+        buffer.increment(1L);
+        assertEquals(12, buffer.viewCount(1L, 10));
+
+        // 数据库中还包含其他节点写回的 5 次浏览
+        stubReadBack(Map.of(1L, 17L));
+        buffer.flush();
+        assertEquals(17, buffer.viewCount(1L, 10), "写回后缓存中的值已过时，改用读回的值");
+
+        buffer.increment(1L);
+        assertEquals(18, buffer.viewCount(1L, 10));
+        assertEquals(21, buffer.viewCount(1L, 20), "缓存重新加载后比读回的值新");
+        assertEquals(3, buffer.viewCount(2L, 3));
+    }
+
+    @Test
+    @DisplayName("关闭时把剩余增量写回")
+    void drainOnShutdown_shouldFlushRemainingDeltas() {
+        buffer.increment(3L);
+
+        buffer.drainOnShutdown();
+
+        assertEquals(1L, capturedDeltas().get(3L));
+        assertEquals(0, buffer.pendingViews());
+    }
+}
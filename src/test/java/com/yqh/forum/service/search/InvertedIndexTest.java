@@ -0,0 +1,90 @@
+package com.yqh.forum.service.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("InvertedIndex 倒排索引单元测试")
+class InvertedIndexTest {
+
+    private InvertedIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new InvertedIndex();
+        index.index(1L, "Spring Boot caching", "How to configure redis cache in spring applications.");
+        index.index(2L, "Redis tips", "Redis pipelines reduce round trips. Spring is not covered here.");
+        index.index(3L, "Weekend notes", "Went hiking, nothing about software.");
+    }
+
+    @Test
+    @DisplayName("标题命中的帖子排在只有正文命中的帖子前面")
+    void search_titleMatchRanksAboveBodyMatch() {
+        SearchHits hits = index.search("redis", 0, 10);
+
+        assertEquals(2, hits.getTotal());
+        assertEquals(List.of(2L, 1L), hits.getPostIds());
+    }
+
+    @Test
+    @DisplayName("多个查询词之间是 AND 关系，不区分大小写")
+    void search_allTermsRequired() {
+        assertEquals(List.of(1L), index.search("SPRING cache", 0, 10).getPostIds());
+        assertEquals(0, index.search("spring hiking", 0, 10).getTotal());
+    }
+
+    @Test
+    @DisplayName("编辑后旧词不再命中，删除后不再出现在结果中")
+    void index_replaceAndRemove() {
+        index.index(3L, "Weekend notes", "Tried redis at home.");
+        assertTrue(index.search("redis", 0, 10).getPostIds().contains(3L));
+        assertEquals(0, index.search("hiking", 0, 10).getTotal());
+
+        index.remove(2L);
+        assertFalse(index.search("redis", 0, 10).getPostIds().contains(2L));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    @DisplayName("中文查询按二元组匹配，单字查询也能命中")
+    void search_chinese() {
+        index.index(4L, "数据库索引优化", "联合索引的最左前缀原则");
+        index.index(5L, "周末随笔", "今天去图书馆看了一本关于数据结构的书");
+
+        assertEquals(List.of(4L), index.search("索引", 0, 10).getPostIds());
+        assertEquals(List.of(4L), index.search("数据库", 0, 10).getPostIds());
+        // "数据" 两篇都有，标题命中的排在前面
+        assertEquals(List.of(4L, 5L), index.search("数据", 0, 10).getPostIds());
+        assertEquals(List.of(5L), index.search("书", 0, 10).getPostIds());
+    }
+
+    @Test
+    @DisplayName("分页返回指定区间，总数不变")
+    void search_paging() {
+        SearchHits page = index.search("redis", 1, 1);
+
+        assertEquals(2, page.getTotal());
+        assertEquals(List.of(1L), page.getPostIds());
+    }
+
+    @Test
+    @DisplayName("快照写出再读入后检索结果一致")
+    void snapshot_roundTrip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.writeTo(new DataOutputStream(bytes));
+
+        InvertedIndex restored = InvertedIndex.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(index.size(), restored.size());
+        assertEquals(index.search("redis", 0, 10), restored.search("redis", 0, 10));
+    }
+}
@@ -0,0 +1,93 @@
+package com.yqh.forum.service.search;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 搜索索引基准测试：生成中文语料，测量建索引吞吐量和查询延迟。
+ * 默认不运行，使用 -Dbenchmark=true 开启，可用 -Dbenchmark.docs=N 调整文档数。
+ */
+@DisplayName("搜索索引基准测试（中文语料）")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class SearchBenchmarkTest {
+
+    // 常用词，按近似 Zipf 分布抽取，拼出接近真实帖子的文本
+    private static final String[] WORDS = (
+            "我们 一个 数据 问题 可以 使用 需要 这个 没有 如果 因为 所以 但是 已经 开始 时候 进行 方法 " +
+            "系统 服务 配置 缓存 数据库 索引 查询 性能 优化 线程 并发 事务 接口 框架 部署 日志 监控 " +
+            "前端 后端 页面 模板 用户 权限 登录 注册 评论 帖子 分类 搜索 分页 排序 统计 图表 " +
+            "今天 周末 生活 旅行 电影 音乐 读书 学习 工作 面试 经验 分享 总结 笔记 教程 入门 进阶 " +
+            "spring boot redis mysql java jvm docker linux nginx http json api"
+    ).split(" ");
+
+    private static final String PUNCTUATION = "，。！？；：";
+
+    @Test
+    @DisplayName("建索引吞吐量与查询延迟")
+    void indexingThroughputAndQueryLatency() {
+        int docCount = Integer.getInteger("benchmark.docs", 20000);
+        Random random = new Random(42);
+
+        List<String[]> corpus = new ArrayList<>(docCount);
+        long corpusBytes = 0;
+        for (int i = 0; i < docCount; i++) {
+            String title = sentence(random, 4 + random.nextInt(6));
+            StringBuilder body = new StringBuilder();
+            int sentences = 10 + random.nextInt(40);
+            for (int s = 0; s < sentences; s++) {
+                body.append(sentence(random, 5 + random.nextInt(15)));
+            }
+            corpus.add(new String[]{title, body.toString()});
+            corpusBytes += title.getBytes(StandardCharsets.UTF_8).length
+                    + body.toString().getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        InvertedIndex index = new InvertedIndex();
+        long start = System.nanoTime();
+        for (int i = 0; i < docCount; i++) {
+            index.index((long) i, corpus.get(i)[0], corpus.get(i)[1]);
+        }
+        double indexSeconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("索引 %d 篇 / %.1f MB：%.2f s，%.0f 篇/s，%.1f MB/s%n",
+                docCount, corpusBytes / 1048576.0, indexSeconds,
+                docCount / indexSeconds, corpusBytes / 1048576.0 / indexSeconds);
+
+        String[] queries = {"数据库", "缓存", "spring", "性能优化", "周末旅行", "redis 缓存", "并发 事务", "教程", "书", "分页排序"};
+        // 预热
+        for (int i = 0; i < 200; i++) {
+            index.search(queries[i % queries.length], 0, 10);
+        }
+        int rounds = 2000;
+        long[] latencies = new long[rounds];
+        for (int i = 0; i < rounds; i++) {
+            long t = System.nanoTime();
+            index.search(queries[i % queries.length], 0, 10);
+            latencies[i] = System.nanoTime() - t;
+        }
+        Arrays.sort(latencies);
+        System.out.printf("查询 %d 次：p50 %.2f ms，p95 %.2f ms，p99 %.2f ms%n", rounds,
+                latencies[rounds / 2] / 1e6, latencies[rounds * 95 / 100] / 1e6, latencies[rounds * 99 / 100] / 1e6);
+
+        assertTrue(index.size() == docCount);
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int w = 0; w < words; w++) {
+            // 平方分布让靠前的常用词出现得更频繁
+            double r = random.nextDouble();
+            sb.append(WORDS[(int) (r * r * WORDS.length)]);
+        }
+        sb.append(PUNCTUATION.charAt(random.nextInt(PUNCTUATION.length())));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,51 @@
+package com.yqh.forum.service.search;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("SearchTokenizer 分词单元测试")
+class SearchTokenizerTest {
+
+    @Test
+    @DisplayName("中文片段切成重叠二元组，建索引时额外输出单字")
+    void cjk_bigramsWithUnigramsAtIndexTime() {
+        assertEquals(List.of("数", "据", "库", "数据", "据库"), SearchTokenizer.tokenize("数据库"));
+        assertEquals(List.of("数据", "据库"), SearchTokenizer.tokenizeQuery("数据库"));
+    }
+
+    @Test
+    @DisplayName("查询只有一个汉字时用单字")
+    void cjk_singleCharacterQuery() {
+        assertEquals(List.of("库"), SearchTokenizer.tokenizeQuery("库"));
+    }
+
+    @Test
+    @DisplayName("中英混排：拉丁词整体保留，与中文片段分开")
+    void mixedScripts() {
+        assertEquals(List.of("spring", "缓存", "redis"), SearchTokenizer.tokenizeQuery("Spring缓存Redis"));
+        assertEquals(List.of("java17", "新特", "特性"), SearchTokenizer.tokenizeQuery("Java17 新特性"));
+    }
+
+    @Test
+    @DisplayName("全角字母数字转半角并统一小写")
+    void fullWidthAndCaseFolding() {
+        assertEquals(List.of("spring", "boot", "3"), SearchTokenizer.tokenizeQuery("ＳＰＲＩＮＧ　Ｂｏｏｔ ３"));
+    }
+
+    @Test
+    @DisplayName("全角标点作为分隔符")
+    void fullWidthPunctuationSeparates() {
+        assertEquals(List.of("你好", "世界"), SearchTokenizer.tokenizeQuery("你好，世界！"));
+    }
+
+    @Test
+    @DisplayName("超长的拉丁词被丢弃")
+    void overlongTokensDropped() {
+        String base64 = "a".repeat(SearchTokenizer.MAX_TOKEN_LENGTH + 1);
+        assertEquals(List.of("图片"), SearchTokenizer.tokenizeQuery("图片 " + base64));
+    }
+}